@@ -1,16 +1,50 @@
 package com.ai.deepcode.api;
 
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.http.*;
 import org.springframework.stereotype.Component;
 import org.springframework.web.client.RestTemplate;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.function.Consumer;
 
 @Component
 public class GithubApiClient {
 
     private final RestTemplate rest = new RestTemplate();
+    private final JsonFactory jsonFactory = new JsonFactory();
+
+    private static final ParameterizedTypeReference<Map<String, Object>> OBJECT =
+            new ParameterizedTypeReference<>() {
+            };
+    private static final ParameterizedTypeReference<List<Map<String, Object>>> OBJECT_LIST =
+            new ParameterizedTypeReference<>() {
+            };
+
+    /**
+     * One entry of a git tree listing.
+     *
+     * @param path Path relative to the listed tree
+     * @param type "blob", "tree" or "commit" (submodule)
+     * @param sha  Object SHA
+     */
+    public record TreeEntry(String path, String type, String sha) {
+    }
+
+    /**
+     * Outcome of a streamed tree listing.
+     *
+     * @param sha       SHA of the listed tree
+     * @param truncated Whether GitHub truncated the listing
+     */
+    public record TreeListing(String sha, boolean truncated) {
+    }
 
     private HttpHeaders headers(String token) {
         HttpHeaders h = new HttpHeaders();
@@ -22,9 +56,9 @@ public class GithubApiClient {
 
     public List<Map<String, Object>> listRepos(String token) {
         String url = "https://api.github.com/user/repos?per_page=100&sort=updated";
-        ResponseEntity<List> resp = rest.exchange(url, HttpMethod.GET,
-                new HttpEntity<>(headers(token)), List.class);
-        return (List<Map<String, Object>>) resp.getBody();
+        ResponseEntity<List<Map<String, Object>>> resp = rest.exchange(url, HttpMethod.GET,
+                new HttpEntity<>(headers(token)), OBJECT_LIST);
+        return resp.getBody();
     }
 
     /**
@@ -37,15 +71,15 @@ public class GithubApiClient {
         // Try user repos first
         try {
             String url = "https://api.github.com/users/%s/repos?per_page=100&sort=updated".formatted(owner);
-            ResponseEntity<List> resp = rest.exchange(url, HttpMethod.GET,
-                    new HttpEntity<>(headers(token)), List.class);
-            return (List<Map<String, Object>>) resp.getBody();
+            ResponseEntity<List<Map<String, Object>>> resp = rest.exchange(url, HttpMethod.GET,
+                    new HttpEntity<>(headers(token)), OBJECT_LIST);
+            return resp.getBody();
         } catch (Exception e) {
             // Try org repos
             String url = "https://api.github.com/orgs/%s/repos?per_page=100&sort=updated".formatted(owner);
-            ResponseEntity<List> resp = rest.exchange(url, HttpMethod.GET,
-                    new HttpEntity<>(headers(token)), List.class);
-            return (List<Map<String, Object>>) resp.getBody();
+            ResponseEntity<List<Map<String, Object>>> resp = rest.exchange(url, HttpMethod.GET,
+                    new HttpEntity<>(headers(token)), OBJECT_LIST);
+            return resp.getBody();
         }
     }
 
@@ -54,9 +88,9 @@ public class GithubApiClient {
      */
     public Map<String, Object> getRepo(String token, String owner, String repo) {
         String url = "https://api.github.com/repos/%s/%s".formatted(owner, repo);
-        ResponseEntity<Map> resp = rest.exchange(url, HttpMethod.GET,
-                new HttpEntity<>(headers(token)), Map.class);
-        return (Map<String, Object>) resp.getBody();
+        ResponseEntity<Map<String, Object>> resp = rest.exchange(url, HttpMethod.GET,
+                new HttpEntity<>(headers(token)), OBJECT);
+        return resp.getBody();
     }
 
     // Get file content (base64) + sha
@@ -64,9 +98,38 @@ public class GithubApiClient {
         String url = "https://api.github.com/repos/%s/%s/contents/%s%s".formatted(
                 owner, repo, path, (ref == null || ref.isBlank()) ? "" : "?ref=" + ref
         );
-        ResponseEntity<Map> resp = rest.exchange(url, HttpMethod.GET,
-                new HttpEntity<>(headers(token)), Map.class);
-        return (Map<String, Object>) resp.getBody();
+        ResponseEntity<Map<String, Object>> resp = rest.exchange(url, HttpMethod.GET,
+                new HttpEntity<>(headers(token)), OBJECT);
+        return resp.getBody();
+    }
+
+    /**
+     * Callback that consumes a raw file body as it streams in.
+     */
+    @FunctionalInterface
+    public interface RawBodyReader<T> {
+        /**
+         * @param body          Response body stream
+         * @param contentLength Declared length, or -1 if unknown
+         */
+        T read(InputStream body, long contentLength) throws IOException;
+    }
+
+    /**
+     * Fetch a file's bytes using the raw media type, bypassing the base64 JSON envelope.
+     * GET /repos/{owner}/{repo}/contents/{path} with Accept: application/vnd.github.raw+json
+     */
+    public <T> T streamRawFile(String token, String owner, String repo, String path, String ref,
+            RawBodyReader<T> reader) {
+        String url = "https://api.github.com/repos/%s/%s/contents/%s%s".formatted(
+                owner, repo, path, (ref == null || ref.isBlank()) ? "" : "?ref=" + ref
+        );
+        return rest.execute(url, HttpMethod.GET,
+                req -> {
+                    req.getHeaders().putAll(headers(token));
+                    req.getHeaders().set("Accept", "application/vnd.github.raw+json");
+                },
+                resp -> reader.read(resp.getBody(), resp.getHeaders().getContentLength()));
     }
 
     // Simple update file API (creates a commit) - easiest route
@@ -93,22 +156,82 @@ public class GithubApiClient {
         }
 
         HttpEntity<Map<String, Object>> req = new HttpEntity<>(body, headers(token));
-        ResponseEntity<Map> resp = rest.exchange(url, HttpMethod.PUT, req, Map.class);
-        return (Map<String, Object>) resp.getBody();
+        ResponseEntity<Map<String, Object>> resp = rest.exchange(url, HttpMethod.PUT, req, OBJECT);
+        return resp.getBody();
     }
 
     public Map<String, Object> getRepoTree(String token, String owner, String repo, String branch) {
         String ref = (branch == null || branch.isBlank()) ? "HEAD" : branch;
         String url = "https://api.github.com/repos/%s/%s/git/trees/%s?recursive=1".formatted(owner, repo, ref);
 
-        ResponseEntity<Map> resp = rest.exchange(
+        ResponseEntity<Map<String, Object>> resp = rest.exchange(
                 url,
                 HttpMethod.GET,
                 new HttpEntity<>(headers(token)),
-                Map.class
+                OBJECT
         );
 
-        return (Map<String, Object>) resp.getBody();
+        return resp.getBody();
+    }
+
+    /**
+     * Stream the entries of a git tree without materializing the response.
+     * GET /repos/{owner}/{repo}/git/trees/{treeSha}[?recursive=1]
+     *
+     * @param treeSha   Tree SHA or ref name
+     * @param recursive Whether to list the whole subtree
+     * @param sink      Receives each entry as it is parsed
+     */
+    public TreeListing streamTree(String token, String owner, String repo, String treeSha, boolean recursive,
+            Consumer<TreeEntry> sink) {
+        String url = "https://api.github.com/repos/%s/%s/git/trees/%s%s".formatted(
+                owner, repo, treeSha, recursive ? "?recursive=1" : "");
+
+        TreeListing listing = rest.execute(url, HttpMethod.GET,
+                req -> req.getHeaders().putAll(headers(token)),
+                resp -> {
+                    try (JsonParser parser = jsonFactory.createParser(resp.getBody())) {
+                        return parseTree(parser, sink);
+                    }
+                });
+        return listing != null ? listing : new TreeListing(null, false);
+    }
+
+    private static TreeListing parseTree(JsonParser parser, Consumer<TreeEntry> sink) throws IOException {
+        String treeSha = null;
+        boolean truncated = false;
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            return new TreeListing(null, false);
+        }
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            if ("tree".equals(field) && value == JsonToken.START_ARRAY) {
+                while (parser.nextToken() == JsonToken.START_OBJECT) {
+                    String path = null;
+                    String type = null;
+                    String sha = null;
+                    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                        String name = parser.currentName();
+                        parser.nextToken();
+                        switch (name) {
+                            case "path" -> path = parser.getValueAsString();
+                            case "type" -> type = parser.getValueAsString();
+                            case "sha" -> sha = parser.getValueAsString();
+                            default -> parser.skipChildren();
+                        }
+                    }
+                    sink.accept(new TreeEntry(path, type, sha));
+                }
+            } else if ("truncated".equals(field)) {
+                truncated = parser.getValueAsBoolean();
+            } else if ("sha".equals(field)) {
+                treeSha = parser.getValueAsString();
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return new TreeListing(treeSha, truncated);
     }
 
     /**
@@ -117,9 +240,9 @@ public class GithubApiClient {
      */
     public List<Map<String, Object>> listBranches(String token, String owner, String repo) {
         String url = "https://api.github.com/repos/%s/%s/branches?per_page=100".formatted(owner, repo);
-        ResponseEntity<List> resp = rest.exchange(url, HttpMethod.GET,
-                new HttpEntity<>(headers(token)), List.class);
-        return (List<Map<String, Object>>) resp.getBody();
+        ResponseEntity<List<Map<String, Object>>> resp = rest.exchange(url, HttpMethod.GET,
+                new HttpEntity<>(headers(token)), OBJECT_LIST);
+        return resp.getBody();
     }
 
 }
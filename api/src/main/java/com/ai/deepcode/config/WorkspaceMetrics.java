@@ -0,0 +1,55 @@
+package com.ai.deepcode.config;
+
+import com.ai.deepcode.service.WorkspaceStore;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.stereotype.Component;
+
+/**
+ * Exposes WorkspaceStore storage and cache figures as Micrometer meters
+ * (workspace.*), visible under /actuator/metrics.
+ */
+@Component
+public class WorkspaceMetrics implements MeterBinder {
+
+    private final WorkspaceStore workspaceStore;
+
+    public WorkspaceMetrics(WorkspaceStore workspaceStore) {
+        this.workspaceStore = workspaceStore;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("workspace.files", workspaceStore, s -> s.stats().files())
+                .description("Files held in workspace storage")
+                .register(registry);
+        Gauge.builder("workspace.raw.bytes", workspaceStore, s -> s.stats().rawBytes())
+                .description("Uncompressed size of live workspace files")
+                .baseUnit("bytes")
+                .register(registry);
+        Gauge.builder("workspace.stored.bytes", workspaceStore, s -> s.stats().storedBytes())
+                .description("On-disk size of live workspace records")
+                .baseUnit("bytes")
+                .register(registry);
+        Gauge.builder("workspace.dead.bytes", workspaceStore, s -> s.stats().deadBytes())
+                .description("Overwritten record bytes awaiting compaction")
+                .baseUnit("bytes")
+                .register(registry);
+        Gauge.builder("workspace.resident.bytes", workspaceStore, s -> s.stats().residentBytes())
+                .description("Decoded file text held in the in-memory cache")
+                .baseUnit("bytes")
+                .register(registry);
+        Gauge.builder("workspace.compression.ratio", workspaceStore, s -> s.stats().compressionRatio())
+                .description("Uncompressed over stored bytes")
+                .register(registry);
+        FunctionCounter.builder("workspace.cache.evictions", workspaceStore, s -> s.stats().evictions())
+                .description("Files evicted from the decoded-text cache")
+                .register(registry);
+        FunctionCounter.builder("workspace.cache.hits", workspaceStore, s -> s.stats().cacheHits())
+                .register(registry);
+        FunctionCounter.builder("workspace.cache.misses", workspaceStore, s -> s.stats().cacheMisses())
+                .register(registry);
+    }
+}
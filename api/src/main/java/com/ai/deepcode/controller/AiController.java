@@ -30,7 +30,7 @@ public class AiController {
             "ttf", "otf", "woff", "woff2", "eot");
 
     private final OllamaService ollamaService;
-    private final WorkspaceStore workspaceStore;
+    private final WorkspaceService workspaceService;
     private final FileContentService fileContentService;
     private final VectorSearchService vectorSearchService;
     private final IndexingService indexingService;
@@ -39,13 +39,13 @@ public class AiController {
     private final ProjectRepository projectRepository;
     private final ChunkRepository chunkRepository;
 
-    public AiController(OllamaService ollamaService, WorkspaceStore workspaceStore,
+    public AiController(OllamaService ollamaService, WorkspaceService workspaceService,
             FileContentService fileContentService, VectorSearchService vectorSearchService,
             IndexingService indexingService, IndexStatusRepository indexStatusRepository,
             ProjectFileRepository projectFileRepository, ProjectRepository projectRepository,
             ChunkRepository chunkRepository) {
         this.ollamaService = ollamaService;
-        this.workspaceStore = workspaceStore;
+        this.workspaceService = workspaceService;
         this.fileContentService = fileContentService;
         this.vectorSearchService = vectorSearchService;
         this.indexingService = indexingService;
@@ -92,9 +92,9 @@ public class AiController {
         List<ChatRequest.ContextFile> files = ctx.files();
 
         if ("all".equals(mode)) {
-            // Include all device files from workspace (with size limit)
+            // Include all device files uploaded without a project (with size limit)
             List<ChatRequest.ContextFile> allDeviceFiles = new ArrayList<>();
-            for (String path : workspaceStore.getAllPaths()) {
+            for (String path : workspaceService.getAllPaths(WorkspaceService.UNSCOPED)) {
                 allDeviceFiles.add(new ChatRequest.ContextFile("device", path, null));
             }
             return buildPromptWithContextFiles(request.message(), allDeviceFiles, auth);
@@ -333,7 +333,7 @@ public class AiController {
             logEntries.add("Fetching content for " + filesToFetch.size() + " files...");
             for (RagFileRef file : filesToFetch) {
                 try {
-                    String content = fileContentService.fetchContent(file, auth);
+                    String content = fileContentService.fetchContent(mainProjectId, file, auth);
                     if (content != null && !content.isEmpty()) {
                         fileContents.put(file.path(), content);
                     }
@@ -363,14 +363,19 @@ public class AiController {
                 ? request.files().stream().map(RagFileRef::path).toList()
                 : null;
 
-        List<VectorSearchService.SearchResult> searchResults = vectorSearchService.searchAcrossProjects(
+        VectorSearchService.MultiProjectResults search = vectorSearchService.searchAcrossProjects(
                 request.projectIds(),
                 request.message(),
                 request.topK(),
                 embedModel,
                 fileFilter);
+        List<VectorSearchService.SearchResult> searchResults = search.results();
 
         logEntries.add("Retrieved " + searchResults.size() + " relevant chunks.");
+        if (search.partial()) {
+            logEntries.add("No results from " + search.missingProjects().size()
+                    + " project(s) that did not answer in time; context is partial.");
+        }
 
         // Build context from search results
         String ragContext = vectorSearchService.buildContextFromResults(searchResults);
@@ -390,7 +395,8 @@ public class AiController {
                         searchResults.size(),
                         chunksCreatedTotal,
                         filesIndexedTotal,
-                        logEntries));
+                        logEntries,
+                        search.partial()));
     }
 
     private List<RagFileRef> getAllProjectFiles(UUID projectId, List<String> logEntries) {
@@ -416,10 +422,18 @@ public class AiController {
 
         List<RagFileRef> recovered = new ArrayList<>();
         if ("device".equals(project.getSource())) {
-            for (String path : workspaceStore.getAllPaths()) {
+            // This project's workspace first; uploads made without a project id land in the
+            // unscoped one, the same fallback FileContentService uses when fetching content
+            Collection<String> paths = workspaceService.getAllPaths(projectId);
+            String scope = "project";
+            if (paths.isEmpty()) {
+                paths = workspaceService.getAllPaths(WorkspaceService.UNSCOPED);
+                scope = "unscoped";
+            }
+            for (String path : paths) {
                 recovered.add(new RagFileRef("device", path, null));
             }
-            logEntries.add("Recovered " + recovered.size() + " files from workspace store.");
+            logEntries.add("Recovered " + recovered.size() + " files from the " + scope + " workspace.");
         } else if ("github".equals(project.getSource())) {
             // Recover from existing chunks to find paths
             List<String> paths = chunkRepository.findDistinctFilePathsByProjectId(projectId);
@@ -436,7 +450,7 @@ public class AiController {
             }
         }
 
-        // If still empty and it's device, we already tried workspaceStore.
+        // If still empty and it's device, we already tried both workspaces.
         // If it's GitHub and we have no chunks, we can't recover without re-import.
         if (recovered.isEmpty()) {
             log.error("[AiController] FAILED to recover file list for project {}", projectId);
@@ -8,19 +8,27 @@ import com.ai.deepcode.service.*;
 import jakarta.validation.Valid;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.OffsetDateTime;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 
 @RestController
 @RequestMapping("/api/github")
 public class GithubController {
 
     private static final Logger log = LoggerFactory.getLogger(GithubController.class);
+    private static final int MANIFEST_BATCH_SIZE = 1000;
 
     private final GithubTokenService tokenService;
     private final GithubApiClient github;
@@ -28,18 +36,27 @@ public class GithubController {
     private final ProjectFileRepository projectFileRepository;
     private final IndexingService indexingService;
     private final FileContentService fileContentService;
+    private final GithubTreeWalker treeWalker;
+    private final int inlineTreeMaxFiles;
+    private final int fetchConcurrency;
 
     public GithubController(GithubTokenService tokenService, GithubApiClient github,
             ProjectRepository projectRepository,
             ProjectFileRepository projectFileRepository,
             IndexingService indexingService,
-            FileContentService fileContentService) {
+            FileContentService fileContentService,
+            GithubTreeWalker treeWalker,
+            @Value("${tree.inline-max-files:5000}") int inlineTreeMaxFiles,
+            @Value("${github.import.fetch-concurrency:8}") int fetchConcurrency) {
         this.tokenService = tokenService;
         this.github = github;
         this.projectRepository = projectRepository;
         this.projectFileRepository = projectFileRepository;
         this.indexingService = indexingService;
         this.fileContentService = fileContentService;
+        this.treeWalker = treeWalker;
+        this.inlineTreeMaxFiles = inlineTreeMaxFiles;
+        this.fetchConcurrency = Math.max(1, fetchConcurrency);
     }
 
     /**
@@ -189,86 +206,49 @@ public class GithubController {
                         return projectRepository.save(p);
                     });
 
-            log.info("[GithubImport] Project ID={}, fetching repo tree from GitHub API", project.getId());
+            log.info("[GithubImport] Project ID={}, walking repo tree from GitHub API", project.getId());
 
-            Map<String, Object> treeResponse = github.getRepoTree(token, owner, repo, branch);
-
-            if (treeResponse == null) {
-                log.error("[GithubImport] FAIL: GitHub API returned null tree response");
-                return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
-                        .body(Map.of("code", "GITHUB_API_ERROR", "message", "GitHub API returned empty response"));
-            }
-
-            List<Map<String, Object>> items = (List<Map<String, Object>>) treeResponse.getOrDefault("tree", List.of());
-            log.info("[GithubImport] GitHub API returned {} tree items", items.size());
-
-            // Extract only blobs (files) - filter by type
-            List<String> paths = items.stream()
-                    .filter(m -> "blob".equals(m.get("type")))
-                    .map(m -> (String) m.get("path"))
-                    .filter(Objects::nonNull)
-                    .filter(p -> subPath == null || p.startsWith(subPath))
-                    .collect(Collectors.toList());
-
-            // If subPath exists, remove its prefix so tree starts from that folder
-            if (subPath != null) {
-                paths = paths.stream()
-                        .map(p -> p.substring(subPath.length()))
-                        .map(p -> p.startsWith("/") ? p.substring(1) : p)
-                        .filter(p -> !p.isBlank())
-                        .toList();
+            // Stream blob paths straight into project_files in batches instead of
+            // holding the raw tree response in memory. Rows not written by this
+            // import are swept afterwards, so re-imports also drop deleted files.
+            final String finalSubPath = req.subPath(); // Use original subPath for context
+            final GithubRef fileRef = new GithubRef(owner, repo, branch, finalSubPath);
+            ImportSink sink = new ImportSink(project.getId(), subPath, fileRef, OffsetDateTime.now(),
+                    req.shouldPreIndex() ? auth : null);
+            GithubTreeWalker.WalkResult walk;
+            try {
+                walk = treeWalker.walk(token, owner, repo, branch, sink);
+                sink.finish();
+            } finally {
+                sink.close();
             }
-
-            log.info("[GithubImport] Building file tree from {} paths", paths.size());
-
-            // Update file count
-            List<FileNode> tree = buildTree(paths);
-            project.setFileCount(paths.size());
+            ManifestWriteResult manifestResult = sink.manifest;
+            int fileCount = sink.count.get();
+
+            log.info("[GithubImport] Manifest written: inserted={} updated={} deleted={}",
+                    manifestResult.inserted(), manifestResult.updated(), manifestResult.deleted());
+            log.info("[GithubImport] Tree walk returned {} files (truncated={}, treeRequests={})",
+                    fileCount, walk.truncated(), walk.treeRequests());
+
+            // Update file count and the manifest revision that keys cached trees
+            project.setFileCount(fileCount);
+            project.setRevision(subPath == null || walk.rootSha() == null ? walk.rootSha()
+                    : walk.rootSha() + ":" + Integer.toHexString(subPath.hashCode()));
             projectRepository.save(project);
 
-            // PERSIST FILE TREE for RAG
-            log.info("[GithubImport] Persisting {} file entries to project_files", paths.size());
-            final Project finalProject = project;
-            final String finalSubPath = req.subPath(); // Use original subPath for context
-            for (String p : paths) {
-                try {
-                    ProjectFile pf = new ProjectFile();
-                    pf.setProject(finalProject);
-                    pf.setPath(p);
-                    pf.setSource("github");
-                    pf.setGithubOwner(owner);
-                    pf.setGithubRepo(repo);
-                    pf.setGithubBranch(branch);
-                    pf.setGithubSubPath(finalSubPath);
-                    projectFileRepository.save(pf);
-                } catch (Exception e) {
-                    // Ignore or log. Could be duplicate if refreshing.
-                }
-            }
+            // Large trees are served lazily via /api/projects/{id}/tree instead of inline
+            List<FileNode> tree = fileCount <= inlineTreeMaxFiles ? buildTree(project.getId(), sink.inlinePaths) : null;
 
             log.info("[GithubImport] SUCCESS projectId={} files={} treeRoots={}",
-                    project.getId(), paths.size(), tree.size());
+                    project.getId(), fileCount, tree != null ? tree.size() : "lazy");
 
             // Handle pre-indexing if requested
             boolean indexingStarted = false;
             if (req.shouldPreIndex()) {
                 log.info("[GithubImport] Pre-indexing requested, starting indexing for project {}", project.getId());
                 try {
-                    // Fetch file contents and index
-                    Map<String, String> fileContents = new HashMap<>();
-                    for (String filePath : paths) {
-                        try {
-                            RagFileRef ref = new RagFileRef("github", filePath,
-                                    new GithubRef(owner, repo, branch, finalSubPath));
-                            String content = fileContentService.fetchContent(ref, auth);
-                            if (content != null && !content.isEmpty()) {
-                                fileContents.put(filePath, content);
-                            }
-                        } catch (Exception e) {
-                            log.warn("[GithubImport] Failed to fetch content for {}: {}", filePath, e.getMessage());
-                        }
-                    }
-
+                    // Contents were fetched alongside the walk
+                    Map<String, String> fileContents = sink.contents;
                     if (!fileContents.isEmpty()) {
                         String embedModel = req.getEmbedModelOrDefault();
                         log.info("[GithubImport] Starting indexing with {} files using embedModel={}", fileContents.size(), embedModel);
@@ -283,8 +263,13 @@ public class GithubController {
             // Build response with indexing status
             Map<String, Object> response = new HashMap<>();
             response.put("project", ProjectDto.from(project));
-            response.put("tree", tree);
+            if (tree != null) {
+                response.put("tree", tree);
+            }
+            response.put("treeUrl", "/api/projects/" + project.getId() + "/tree");
             response.put("indexingStarted", indexingStarted);
+            response.put("treeTruncated", walk.truncated());
+            response.put("manifest", manifestResult);
 
             return ResponseEntity.ok(response);
 
@@ -395,6 +380,130 @@ public class GithubController {
     }
 
     // ---- helpers ----
+    /**
+     * Receives walked paths, possibly from several walker threads at once, and
+     * returns quickly so tree responses are not held open. Paths go to the
+     * manifest in batches; only the first inline-max-files are kept, for an
+     * inline tree. When pre-indexing, contents are fetched on a separate pool.
+     */
+    private class ImportSink implements Consumer<String> {
+        final UUID projectId;
+        final String subPath;
+        final GithubRef fileRef;
+        final OffsetDateTime startedAt;
+        final Authentication fetchAuth;
+        final ExecutorService fetchPool;
+        final AtomicInteger count = new AtomicInteger();
+        final Map<String, String> contents = new ConcurrentHashMap<>();
+        // Guarded by "this"
+        final List<String> inlinePaths = new ArrayList<>();
+        List<RagFileRef> batch = new ArrayList<>(MANIFEST_BATCH_SIZE);
+        ManifestWriteResult manifest = ManifestWriteResult.EMPTY;
+
+        ImportSink(UUID projectId, String subPath, GithubRef fileRef, OffsetDateTime startedAt,
+                Authentication fetchAuth) {
+            this.projectId = projectId;
+            this.subPath = subPath;
+            this.fileRef = fileRef;
+            this.startedAt = startedAt;
+            this.fetchAuth = fetchAuth;
+            this.fetchPool = fetchAuth == null ? null
+                    : Executors.newFixedThreadPool(fetchConcurrency, r -> {
+                        Thread t = new Thread(r, "github-import-fetch");
+                        t.setDaemon(true);
+                        return t;
+                    });
+        }
+
+        @Override
+        public void accept(String repoPath) {
+            String p = stripSubPath(repoPath, subPath);
+            if (p == null)
+                return;
+            RagFileRef ref = new RagFileRef("github", p, fileRef);
+            List<RagFileRef> full = null;
+            synchronized (this) {
+                if (count.incrementAndGet() <= inlineTreeMaxFiles) {
+                    inlinePaths.add(p);
+                } else if (!inlinePaths.isEmpty()) {
+                    inlinePaths.clear();
+                }
+                batch.add(ref);
+                if (batch.size() >= MANIFEST_BATCH_SIZE) {
+                    full = batch;
+                    batch = new ArrayList<>(MANIFEST_BATCH_SIZE);
+                }
+            }
+            if (fetchPool != null) {
+                fetchPool.execute(() -> fetch(ref));
+            }
+            if (full != null) {
+                write(full);
+            }
+        }
+
+        private void fetch(RagFileRef ref) {
+            try {
+                String content = fileContentService.fetchContent(ref, fetchAuth);
+                if (content != null && !content.isEmpty()) {
+                    contents.put(ref.path(), content);
+                }
+            } catch (Exception e) {
+                log.warn("[GithubImport] Failed to fetch content for {}: {}", ref.path(), e.getMessage());
+            }
+        }
+
+        private void write(List<RagFileRef> files) {
+            ManifestWriteResult written = projectFileRepository.upsertFiles(projectId, files, startedAt);
+            synchronized (this) {
+                manifest = manifest.plus(written);
+            }
+        }
+
+        /**
+         * Write the last batch, sweep rows this import did not see and wait for
+         * pending fetches. Only called once the walk has completed.
+         */
+        void finish() throws InterruptedException {
+            List<RagFileRef> rest;
+            synchronized (this) {
+                rest = batch;
+                batch = new ArrayList<>();
+            }
+            write(rest);
+            int stale = projectFileRepository.deleteFilesNotSeenSince(projectId, startedAt);
+            synchronized (this) {
+                manifest = manifest.withDeleted(stale);
+            }
+            if (fetchPool != null) {
+                fetchPool.shutdown();
+                fetchPool.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        /** Drop pending fetches if the walk failed; a no-op after {@link #finish()}. */
+        void close() {
+            if (fetchPool != null) {
+                fetchPool.shutdownNow();
+            }
+        }
+    }
+
+    /**
+     * Make a repository path relative to the imported sub-path, or null if it lies outside it.
+     */
+    private static String stripSubPath(String path, String subPath) {
+        if (path == null)
+            return null;
+        if (subPath == null)
+            return path;
+        // Match whole segments: "src" must not claim "srcgen/..."
+        if (!path.startsWith(subPath + "/"))
+            return null;
+        String p = path.substring(subPath.length() + 1);
+        return p.isBlank() ? null : p;
+    }
+
     private static String normalize(String p) {
         if (p == null)
             return null;
@@ -406,7 +515,7 @@ public class GithubController {
         return x.isBlank() ? null : x;
     }
 
-    private static List<FileNode> buildTree(List<String> filePaths) {
+    private static List<FileNode> buildTree(UUID projectId, List<String> filePaths) {
         Node root = new Node("", "folder", "");
 
         for (String path : filePaths) {
@@ -432,7 +541,7 @@ public class GithubController {
             }
         }
 
-        return root.toFileNodes();
+        return root.toFileNodes(projectId);
     }
 
     private static class Node {
@@ -447,13 +556,13 @@ public class GithubController {
             this.path = path;
         }
 
-        List<FileNode> toFileNodes() {
+        List<FileNode> toFileNodes(UUID projectId) {
             return children.values().stream().map(n -> new FileNode(
-                    UUID.randomUUID().toString(),
+                    ProjectTreeService.nodeId(projectId, n.path),
                     n.name,
                     n.type,
                     n.path,
-                    n.type.equals("folder") ? n.toFileNodes() : null,
+                    n.type.equals("folder") ? n.toFileNodes(projectId) : null,
                     false)).toList();
         }
     }
@@ -11,6 +11,7 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.OffsetDateTime;
 import java.util.*;
 
 /**
@@ -70,7 +71,7 @@ public class IndexController {
                 String path = file.path();
                 try {
                     // Pass authentication for GitHub file fetching
-                    String content = fileContentService.fetchContent(file, auth);
+                    String content = fileContentService.fetchContent(request.projectId(), file, auth);
 
                     if (content != null && !content.isEmpty()) {
                         fileContents.put(path, content);
@@ -112,26 +113,16 @@ public class IndexController {
             project = projectRepository.save(project);
         }
 
-        // PERSIST FILE TREE for future 'mode=all' RAG search
+        // PERSIST FILE TREE for future 'mode=all' RAG search.
+        // Only upsert here: a selection is a subset, so nothing is swept.
+        ManifestWriteResult manifest = ManifestWriteResult.EMPTY;
         if (request.files() != null && !request.files().isEmpty()) {
-            final Project finalProject = project;
-            // Best effort: only insert new ones or overwrite? Let's just update all.
-            for (RagFileRef f : request.files()) {
-                try {
-                    ProjectFile pf = new ProjectFile();
-                    pf.setProject(finalProject);
-                    pf.setPath(f.path());
-                    pf.setSource(f.source());
-                    if (f.github() != null) {
-                        pf.setGithubOwner(f.github().owner());
-                        pf.setGithubRepo(f.github().repo());
-                        pf.setGithubBranch(f.github().branch());
-                        pf.setGithubSubPath(f.github().subPath());
-                    }
-                    projectFileRepository.save(pf);
-                } catch (Exception e) {
-                    // Ignore duplicate key errors if index already has them
-                }
+            manifest = projectFileRepository.upsertFiles(project.getId(), request.files(), OffsetDateTime.now());
+            log.info("[Index] Manifest upserted: inserted={} updated={}", manifest.inserted(), manifest.updated());
+            if (manifest.inserted() > 0) {
+                // New paths change the tree shape; bump the revision so cached trees are rebuilt
+                project.setRevision("local-" + System.currentTimeMillis());
+                project = projectRepository.save(project);
             }
         }
 
@@ -141,12 +132,14 @@ public class IndexController {
                 fileContents,
                 request.embedModel(),
                 request.chunkSize(),
-                request.chunkOverlap());
+                request.chunkOverlap(),
+                request.normalize());
 
         Map<String, Object> response = new HashMap<>();
         response.put("message", "Indexing started");
         response.put("projectId", request.projectId());
         response.put("fileCount", fileContents.size());
+        response.put("manifest", manifest);
         if (!errors.isEmpty()) {
             response.put("partialErrors", errors);
         }
@@ -200,7 +193,7 @@ public class IndexController {
         // Extension matches
         List<String> validExtensions = List.of(
                 ".md", ".txt", ".java", ".ts", ".js", ".json", ".yml", ".yaml", ".xml",
-                ".properties", ".env", ".gitignore", ".py", ".c", ".cpp", ".h", ".hpp",
+                ".properties", ".env", ".gitignore", ".ragignore", ".py", ".c", ".cpp", ".h", ".hpp",
                 ".cs", ".sh", ".bash", ".sql", ".css", ".html", ".kt", ".rs", ".go");
 
         for (String ext : validExtensions) {
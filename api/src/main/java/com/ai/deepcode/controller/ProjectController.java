@@ -1,12 +1,18 @@
 package com.ai.deepcode.controller;
 
+import com.ai.deepcode.dto.FileTreePage;
 import com.ai.deepcode.entity.Project;
 import com.ai.deepcode.repository.ProjectRepository;
+import com.ai.deepcode.service.ProjectTreeService;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -14,10 +20,14 @@ import java.util.UUID;
 @RequestMapping("/api/projects")
 public class ProjectController {
 
+    private static final int MAX_TREE_PAGE = 2000;
+
     private final ProjectRepository projectRepository;
+    private final ProjectTreeService projectTreeService;
 
-    public ProjectController(ProjectRepository projectRepository) {
+    public ProjectController(ProjectRepository projectRepository, ProjectTreeService projectTreeService) {
         this.projectRepository = projectRepository;
+        this.projectTreeService = projectTreeService;
     }
 
     @GetMapping
@@ -32,6 +42,37 @@ public class ProjectController {
                 .orElse(ResponseEntity.notFound().build());
     }
 
+    /**
+     * List one directory level of the project's file tree.
+     * GET /api/projects/{id}/tree?path=src/main&offset=0&limit=500
+     *
+     * Responses carry an ETag derived from the manifest revision, so unchanged
+     * directories are answered with 304 Not Modified.
+     */
+    @GetMapping("/{id}/tree")
+    public ResponseEntity<FileTreePage> getTreeLevel(@PathVariable UUID id,
+            @RequestParam(defaultValue = "") String path,
+            @RequestParam(defaultValue = "0") int offset,
+            @RequestParam(defaultValue = "500") int limit,
+            WebRequest request) {
+        String revision = projectTreeService.currentRevision(id);
+        if (revision == null) {
+            return ResponseEntity.notFound().build();
+        }
+
+        int pageSize = Math.min(Math.max(limit, 1), MAX_TREE_PAGE);
+        String etag = "\"" + revision + "-" + Integer.toHexString(Objects.hash(path, offset, pageSize)) + "\"";
+        if (request.checkNotModified(etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+        }
+
+        FileTreePage page = projectTreeService.listDirectory(id, revision, path, offset, pageSize);
+        return ResponseEntity.ok()
+                .eTag(etag)
+                .cacheControl(CacheControl.noCache())
+                .body(page);
+    }
+
     // Create or get existing project (idempotent-ish)
     @PostMapping
     public Project createOrGetProject(@RequestBody Map<String, Object> payload) {
@@ -0,0 +1,138 @@
+package com.ai.deepcode.controller;
+
+import com.ai.deepcode.dto.GithubPushEvent;
+import com.ai.deepcode.entity.Project;
+import com.ai.deepcode.service.PushReindexService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Receives repository webhooks and schedules event-driven reindexing.
+ *
+ * Every delivery must carry a valid signature for github.webhook.secret; with
+ * no secret configured the endpoint rejects all deliveries, since /api/** is
+ * otherwise open.
+ */
+@RestController
+@RequestMapping("/api/webhooks")
+public class WebhookController {
+
+    private static final Logger log = LoggerFactory.getLogger(WebhookController.class);
+
+    private final PushReindexService pushReindexService;
+    private final ObjectMapper objectMapper;
+    private final String webhookSecret;
+
+    public WebhookController(PushReindexService pushReindexService, ObjectMapper objectMapper,
+            @Value("${github.webhook.secret:}") String webhookSecret) {
+        this.pushReindexService = pushReindexService;
+        this.objectMapper = objectMapper;
+        this.webhookSecret = webhookSecret;
+    }
+
+    @PostConstruct
+    void warnIfNoSecret() {
+        if (!isSecretConfigured()) {
+            log.warn("[Webhook] github.webhook.secret is not configured; GitHub webhooks will be rejected");
+        }
+    }
+
+    /**
+     * GitHub push webhook. Changed files are debounced per project and reindexed incrementally.
+     * POST /api/webhooks/github
+     */
+    @PostMapping("/github")
+    public ResponseEntity<Map<String, Object>> githubWebhook(
+            @RequestHeader(value = "X-GitHub-Event", required = false) String eventType,
+            @RequestHeader(value = "X-Hub-Signature-256", required = false) String signature,
+            @RequestBody byte[] body) {
+
+        if (!isSecretConfigured()) {
+            log.warn("[Webhook] Rejected GitHub webhook: github.webhook.secret is not configured");
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .body(Map.of("code", "GITHUB_WEBHOOK_SECRET_MISSING", "message",
+                            "Server has no webhook secret configured; webhooks are disabled"));
+        }
+        if (!isSignatureValid(body, signature)) {
+            log.warn("[Webhook] Rejected GitHub webhook with invalid signature");
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                    .body(Map.of("code", "WEBHOOK_SIGNATURE_INVALID", "message", "Invalid webhook signature"));
+        }
+
+        if ("ping".equals(eventType)) {
+            return ResponseEntity.ok(Map.of("pong", true));
+        }
+        if (!"push".equals(eventType)) {
+            return ResponseEntity.accepted().body(Map.of("ignored", true, "reason", "Unsupported event: " + eventType));
+        }
+
+        GithubPushEvent event;
+        try {
+            event = objectMapper.readValue(body, GithubPushEvent.class);
+        } catch (Exception e) {
+            return ResponseEntity.badRequest()
+                    .body(Map.of("code", "INVALID_PAYLOAD", "message", "Invalid push payload: " + e.getMessage()));
+        }
+
+        if (event.deleted() || event.branch() == null) {
+            return ResponseEntity.accepted().body(Map.of("ignored", true, "reason", "Not a branch update"));
+        }
+
+        Optional<Project> project = pushReindexService.resolveProject(event);
+        if (project.isEmpty()) {
+            log.info("[Webhook] No project for push ref={} repo={}", event.ref(),
+                    event.repository() != null ? event.repository().name() : null);
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body(Map.of("code", "PROJECT_NOT_FOUND", "message", "No imported project matches this push"));
+        }
+
+        if (!pushReindexService.isFetchConfigured()) {
+            log.error("[Webhook] github.webhook.token is not configured; cannot fetch pushed files");
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .body(Map.of("code", "GITHUB_WEBHOOK_TOKEN_MISSING", "message",
+                            "Server has no GitHub token configured for webhook-driven reindexing"));
+        }
+
+        int pendingPaths = pushReindexService.submit(project.get(), event);
+        return ResponseEntity.accepted().body(Map.of(
+                "accepted", true,
+                "projectId", project.get().getId().toString(),
+                "pendingPaths", pendingPaths));
+    }
+
+    private boolean isSecretConfigured() {
+        return webhookSecret != null && !webhookSecret.isBlank();
+    }
+
+    /**
+     * Verify the HMAC-SHA256 signature GitHub computes with the configured webhook secret.
+     */
+    private boolean isSignatureValid(byte[] body, String signature) {
+        if (signature == null || !signature.startsWith("sha256=")) {
+            return false;
+        }
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(webhookSecret.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+            byte[] expected = mac.doFinal(body);
+            byte[] actual = HexFormat.of().parseHex(signature.substring("sha256=".length()));
+            return MessageDigest.isEqual(expected, actual);
+        } catch (Exception e) {
+            return false;
+        }
+    }
+}
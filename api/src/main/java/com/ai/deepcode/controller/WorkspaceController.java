@@ -1,58 +1,81 @@
 package com.ai.deepcode.controller;
 
-import com.ai.deepcode.service.WorkspaceStore;
+import com.ai.deepcode.dto.ArchiveUploadResult;
+import com.ai.deepcode.dto.DeviceUploadResult;
+import com.ai.deepcode.service.ArchiveUploadService;
+import com.ai.deepcode.service.DeviceUploadService;
+import com.ai.deepcode.service.WorkspaceService;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
-import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.util.Collection;
 import java.util.Map;
+import java.util.UUID;
 
 @RestController
 @RequestMapping("/api/workspace")
 public class WorkspaceController {
 
-    private final WorkspaceStore workspaceStore;
+    private final WorkspaceService workspaceService;
+    private final DeviceUploadService deviceUploadService;
+    private final ArchiveUploadService archiveUploadService;
 
-    public WorkspaceController(WorkspaceStore workspaceStore) {
-        this.workspaceStore = workspaceStore;
+    public WorkspaceController(WorkspaceService workspaceService, DeviceUploadService deviceUploadService,
+            ArchiveUploadService archiveUploadService) {
+        this.workspaceService = workspaceService;
+        this.deviceUploadService = deviceUploadService;
+        this.archiveUploadService = archiveUploadService;
     }
 
+    /**
+     * Streaming multipart upload: each "files" part is written to workspace storage
+     * as it arrives, named by the "paths" field sent just before it. Without a
+     * projectId the files go to the unscoped namespace.
+     */
     @PostMapping("/device/upload")
-    public ResponseEntity<Map<String, Object>> uploadDeviceFiles(
-            @RequestParam("files") MultipartFile[] files,
-            @RequestParam("paths") String[] paths
-    ) {
-        if (files.length != paths.length) {
-            return ResponseEntity.badRequest()
-                    .body(Map.of("error", "files and paths arrays must have the same length"));
-        }
-
-        int uploaded = 0;
-        for (int i = 0; i < files.length; i++) {
-            try {
-                byte[] content = files[i].getBytes();
-                workspaceStore.storeFile(paths[i], content);
-                uploaded++;
-            } catch (IOException e) {
-                // Skip files that fail to read
-            }
-        }
-
-        return ResponseEntity.ok(Map.of("uploaded", uploaded));
+    public ResponseEntity<DeviceUploadResult> uploadDeviceFiles(
+            @RequestParam(required = false) UUID projectId,
+            HttpServletRequest request) {
+        return ResponseEntity.ok(deviceUploadService.upload(projectId, request));
+    }
+
+    /**
+     * Upload a whole device project as one zip, tar or tar.gz body. Files are
+     * stored and indexed while the archive streams in; the response is sent once
+     * the archive is fully read, with indexing possibly still running.
+     */
+    @PostMapping("/device/archive")
+    public ResponseEntity<ArchiveUploadResult> uploadDeviceArchive(
+            @RequestParam UUID projectId,
+            @RequestParam(defaultValue = "0") int stripComponents,
+            @RequestParam(required = false) String embedModel,
+            @RequestParam(required = false) Integer chunkSize,
+            @RequestParam(required = false) Integer chunkOverlap,
+            HttpServletRequest request) throws IOException {
+        ArchiveUploadResult result = archiveUploadService.upload(projectId, request.getInputStream(),
+                request.getContentLengthLong(), stripComponents, embedModel, chunkSize, chunkOverlap);
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(result);
     }
 
     @GetMapping("/files")
-    public ResponseEntity<Map<String, Object>> listFiles() {
+    public ResponseEntity<Map<String, Object>> listFiles(@RequestParam(required = false) UUID projectId) {
+        Collection<String> paths = workspaceService.getAllPaths(projectId);
         return ResponseEntity.ok(Map.of(
-                "count", workspaceStore.getFileCount(),
-                "paths", workspaceStore.getAllPaths()
+                "projectId", WorkspaceService.scope(projectId),
+                "count", paths.size(),
+                "paths", paths
         ));
     }
 
+    /**
+     * Remove a project's workspace files (the unscoped namespace when no projectId is given).
+     */
     @DeleteMapping("/clear")
-    public ResponseEntity<Map<String, Object>> clearWorkspace() {
-        workspaceStore.clear();
-        return ResponseEntity.ok(Map.of("cleared", true));
+    public ResponseEntity<Map<String, Object>> clearWorkspace(@RequestParam(required = false) UUID projectId) {
+        int removed = workspaceService.clear(projectId);
+        return ResponseEntity.ok(Map.of("cleared", true, "removed", removed));
     }
 }
@@ -0,0 +1,18 @@
+package com.ai.deepcode.dto;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Outcome of an archive upload. Indexing of the stored files continues in the
+ * background; progress is reported by /api/index/status/{projectId}.
+ */
+public record ArchiveUploadResult(
+        UUID projectId,
+        String format,
+        int stored,
+        int skipped,
+        long bytes,
+        List<DeviceUploadResult.FileResult> failures,
+        ManifestWriteResult manifest) {
+}
@@ -12,5 +12,7 @@ public record ChunkHitDto(
         String filePath,
         int chunkIndex,
         String content,
+        Integer startLine,
+        Integer endLine,
         double score) {
 }
@@ -0,0 +1,42 @@
+package com.ai.deepcode.dto;
+
+import java.util.List;
+
+/**
+ * Outcome of a device upload, reported per file.
+ */
+public record DeviceUploadResult(
+        int uploaded,
+        int failed,
+        long bytes,
+        List<FileResult> files) {
+
+    /**
+     * @param error null when the file was stored, otherwise a CODE: message string
+     */
+    public record FileResult(
+            String path,
+            long bytes,
+            String error) {
+
+        public static FileResult stored(String path, long bytes) {
+            return new FileResult(path, bytes, null);
+        }
+
+        public static FileResult failed(String path, String error) {
+            return new FileResult(path, 0, error);
+        }
+    }
+
+    public static DeviceUploadResult of(List<FileResult> files) {
+        int failed = 0;
+        long bytes = 0;
+        for (FileResult f : files) {
+            if (f.error() != null) {
+                failed++;
+            }
+            bytes += f.bytes();
+        }
+        return new DeviceUploadResult(files.size() - failed, failed, bytes, files);
+    }
+}
@@ -0,0 +1,24 @@
+package com.ai.deepcode.dto;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * One page of a single directory level of a project's file tree.
+ * Folder nodes carry no children; clients request them with the folder's path.
+ *
+ * @param projectId Project the tree belongs to
+ * @param revision  Manifest revision the page was built from
+ * @param path      Directory that was listed ("" for the root)
+ * @param nodes     Children of {@code path}, folders and files sorted by name
+ * @param offset    Index of the first node in this page
+ * @param total     Total number of children of {@code path}
+ */
+public record FileTreePage(
+        UUID projectId,
+        String revision,
+        String path,
+        List<FileNode> nodes,
+        int offset,
+        int total) {
+}
@@ -0,0 +1,64 @@
+package com.ai.deepcode.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.List;
+
+/**
+ * Subset of the GitHub "push" webhook payload needed for incremental reindexing.
+ *
+ * @param ref        Full ref that was pushed, e.g. "refs/heads/main"
+ * @param after      Commit SHA the ref points to after the push
+ * @param deleted    True when the push deleted the ref
+ * @param repository Repository the push belongs to
+ * @param commits    Commits included in the push (GitHub caps this list at 20)
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public record GithubPushEvent(
+        String ref,
+        String after,
+        boolean deleted,
+        Repository repository,
+        List<Commit> commits) {
+
+    private static final String BRANCH_PREFIX = "refs/heads/";
+
+    /**
+     * Branch name derived from {@link #ref()}, or null for tag pushes.
+     */
+    public String branch() {
+        if (ref == null || !ref.startsWith(BRANCH_PREFIX)) {
+            return null;
+        }
+        return ref.substring(BRANCH_PREFIX.length());
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public record Repository(
+            String name,
+            Owner owner,
+            @JsonProperty("default_branch") String defaultBranch) {
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public record Owner(
+            String name,
+            String login) {
+
+        /**
+         * Push payloads populate "name", other events populate "login".
+         */
+        public String effectiveLogin() {
+            return login != null ? login : name;
+        }
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public record Commit(
+            String id,
+            List<String> added,
+            List<String> modified,
+            List<String> removed) {
+    }
+}
@@ -18,7 +18,8 @@ public record IndexRequest(
         List<RagFileRef> files,
         String embedModel,
         Integer chunkSize,
-        Integer chunkOverlap) {
+        Integer chunkOverlap,
+        Boolean normalize) {
     public IndexRequest {
         if (embedModel == null || embedModel.isBlank()) {
             embedModel = "nomic-embed-text";
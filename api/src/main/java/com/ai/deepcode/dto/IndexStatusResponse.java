@@ -3,6 +3,7 @@ package com.ai.deepcode.dto;
 import com.ai.deepcode.entity.IndexStatus;
 
 import java.time.OffsetDateTime;
+import java.util.Map;
 import java.util.UUID;
 
 /**
@@ -22,7 +23,12 @@ public record IndexStatusResponse(
         Integer chunkOverlap,
         String errorMessage,
         OffsetDateTime startedAt,
-        OffsetDateTime completedAt) {
+        OffsetDateTime completedAt,
+        int skippedFiles,
+        Map<String, Integer> skipReasons,
+        Map<String, String> skippedPaths,
+        boolean normalizeContent,
+        long tokensSaved) {
 
     public static IndexStatusResponse from(IndexStatus entity) {
         if (entity == null) {
@@ -33,6 +39,7 @@ public record IndexStatusResponse(
         int indexedFiles = entity.getIndexedFiles() != null ? entity.getIndexedFiles() : 0;
         int failedFiles = entity.getFailedFiles() != null ? entity.getFailedFiles() : 0;
         int totalChunks = entity.getTotalChunks() != null ? entity.getTotalChunks() : 0;
+        int skippedFiles = entity.getSkippedFiles() != null ? entity.getSkippedFiles() : 0;
 
         // Calculate progress percentage (0-100)
         int progress = 0;
@@ -44,7 +51,10 @@ public record IndexStatusResponse(
         String message = switch (entity.getStatus()) {
             case PENDING -> "Waiting to start...";
             case IN_PROGRESS -> String.format("Indexing files... (%d/%d)", indexedFiles, totalFiles);
-            case COMPLETED -> String.format("Completed! %d files indexed, %d chunks created.", indexedFiles, totalChunks);
+            case COMPLETED -> skippedFiles > 0
+                    ? String.format("Completed! %d files indexed, %d chunks created, %d files skipped.",
+                            indexedFiles, totalChunks, skippedFiles)
+                    : String.format("Completed! %d files indexed, %d chunks created.", indexedFiles, totalChunks);
             case COMPLETED_WITH_ERRORS -> String.format("Completed with errors. %d/%d files indexed.", indexedFiles, totalFiles);
             case FAILED -> entity.getErrorMessage() != null ? entity.getErrorMessage() : "Indexing failed.";
         };
@@ -63,6 +73,11 @@ public record IndexStatusResponse(
                 entity.getChunkOverlap(),
                 entity.getErrorMessage(),
                 entity.getStartedAt(),
-                entity.getCompletedAt());
+                entity.getCompletedAt(),
+                skippedFiles,
+                entity.getSkipReasons() != null ? entity.getSkipReasons() : Map.of(),
+                entity.getSkippedPaths() != null ? entity.getSkippedPaths() : Map.of(),
+                Boolean.TRUE.equals(entity.getNormalizeContent()),
+                entity.getTokensSaved() != null ? entity.getTokensSaved() : 0L);
     }
 }
@@ -0,0 +1,20 @@
+package com.ai.deepcode.dto;
+
+/**
+ * Row counts from a bulk project_files manifest write.
+ */
+public record ManifestWriteResult(
+        int inserted,
+        int updated,
+        int deleted) {
+
+    public static final ManifestWriteResult EMPTY = new ManifestWriteResult(0, 0, 0);
+
+    public ManifestWriteResult plus(ManifestWriteResult other) {
+        return new ManifestWriteResult(inserted + other.inserted, updated + other.updated, deleted + other.deleted);
+    }
+
+    public ManifestWriteResult withDeleted(int deleted) {
+        return new ManifestWriteResult(inserted, updated, deleted);
+    }
+}
@@ -16,6 +16,7 @@ public record ProjectDto(
         String githubRepo,
         String githubBranch,
         Integer fileCount,
+        String revision,
         String createdAt,
         String updatedAt
 ) {
@@ -32,6 +33,7 @@ public record ProjectDto(
                 project.getGithubRepo(),
                 project.getGithubBranch(),
                 project.getFileCount(),
+                project.getRevision(),
                 project.getCreatedAt() != null ? project.getCreatedAt().toString() : null,
                 project.getUpdatedAt() != null ? project.getUpdatedAt().toString() : null
         );
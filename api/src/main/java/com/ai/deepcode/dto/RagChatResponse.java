@@ -12,6 +12,8 @@ public record RagChatResponse(
             int chunksUsed,
             int chunksCreated,
             int filesIndexed,
-            List<String> messageLog) {
+            List<String> messageLog,
+            // Some selected projects were not searched in time; their chunks are missing
+            boolean partial) {
     }
 }
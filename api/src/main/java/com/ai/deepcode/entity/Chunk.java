@@ -12,6 +12,8 @@ import java.util.UUID;
         @ColumnResult(name = "file_path", type = String.class),
         @ColumnResult(name = "chunk_index", type = Integer.class),
         @ColumnResult(name = "content", type = String.class),
+        @ColumnResult(name = "start_line", type = Integer.class),
+        @ColumnResult(name = "end_line", type = Integer.class),
         @ColumnResult(name = "score", type = Double.class)
 }))
 public class Chunk {
@@ -36,6 +38,18 @@ public class Chunk {
     @Column(name = "token_count")
     private Integer tokenCount;
 
+    @Column(name = "start_line")
+    private Integer startLine;
+
+    @Column(name = "end_line")
+    private Integer endLine;
+
+    @Column(name = "content_hash", length = 64)
+    private String contentHash;
+
+    @Column(name = "file_id")
+    private UUID fileId;
+
     @Column(name = "created_at")
     private OffsetDateTime createdAt;
 
@@ -93,6 +107,38 @@ public class Chunk {
         this.tokenCount = tokenCount;
     }
 
+    public Integer getStartLine() {
+        return startLine;
+    }
+
+    public void setStartLine(Integer startLine) {
+        this.startLine = startLine;
+    }
+
+    public Integer getEndLine() {
+        return endLine;
+    }
+
+    public void setEndLine(Integer endLine) {
+        this.endLine = endLine;
+    }
+
+    public UUID getFileId() {
+        return fileId;
+    }
+
+    public void setFileId(UUID fileId) {
+        this.fileId = fileId;
+    }
+
+    public String getContentHash() {
+        return contentHash;
+    }
+
+    public void setContentHash(String contentHash) {
+        this.contentHash = contentHash;
+    }
+
     public OffsetDateTime getCreatedAt() {
         return createdAt;
     }
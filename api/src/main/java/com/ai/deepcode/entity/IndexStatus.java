@@ -1,13 +1,20 @@
 package com.ai.deepcode.entity;
 
 import jakarta.persistence.*;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
+
 import java.time.OffsetDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.UUID;
 
 @Entity
 @Table(name = "index_status")
 public class IndexStatus {
 
+    public static final int MAX_SKIPPED_PATHS = 200;
+
     @Id
     @GeneratedValue(strategy = GenerationType.UUID)
     private UUID id;
@@ -32,6 +39,19 @@ public class IndexStatus {
     @Column(name = "total_chunks")
     private Integer totalChunks = 0;
 
+    @Column(name = "skipped_files")
+    private Integer skippedFiles = 0;
+
+    /** skip reason -> number of files */
+    @JdbcTypeCode(SqlTypes.JSON)
+    @Column(name = "skip_reasons", columnDefinition = "jsonb")
+    private Map<String, Integer> skipReasons = new LinkedHashMap<>();
+
+    /** path -> skip reason, capped at {@link #MAX_SKIPPED_PATHS} entries */
+    @JdbcTypeCode(SqlTypes.JSON)
+    @Column(name = "skipped_paths", columnDefinition = "jsonb")
+    private Map<String, String> skippedPaths = new LinkedHashMap<>();
+
     @Column(name = "embed_model")
     private String embedModel;
 
@@ -41,6 +61,14 @@ public class IndexStatus {
     @Column(name = "chunk_overlap")
     private Integer chunkOverlap;
 
+    /** Embed chunks without license headers, package lines and full import paths */
+    @Column(name = "normalize_content")
+    private Boolean normalizeContent;
+
+    /** Embedding input tokens saved by normalization in the last indexing run */
+    @Column(name = "tokens_saved")
+    private Long tokensSaved = 0L;
+
     @Column(name = "error_message")
     private String errorMessage;
 
@@ -56,6 +84,36 @@ public class IndexStatus {
     @Column(name = "updated_at")
     private OffsetDateTime updatedAt;
 
+    /**
+     * Record a file left out of the index. A path already recorded is not counted again.
+     */
+    public void recordSkip(String path, String reason) {
+        if (skippedPaths != null && skippedPaths.containsKey(path)) {
+            return;
+        }
+        skippedFiles = (skippedFiles != null ? skippedFiles : 0) + 1;
+        if (skipReasons == null) {
+            skipReasons = new LinkedHashMap<>();
+        }
+        skipReasons.merge(reason, 1, Integer::sum);
+        if (skippedPaths == null) {
+            skippedPaths = new LinkedHashMap<>();
+        }
+        if (skippedPaths.size() < MAX_SKIPPED_PATHS) {
+            skippedPaths.put(path, reason);
+        }
+    }
+
+    public void addTokensSaved(long tokens) {
+        tokensSaved = (tokensSaved != null ? tokensSaved : 0L) + tokens;
+    }
+
+    public void clearSkips() {
+        skippedFiles = 0;
+        skipReasons = new LinkedHashMap<>();
+        skippedPaths = new LinkedHashMap<>();
+    }
+
     @PrePersist
     protected void onCreate() {
         createdAt = OffsetDateTime.now();
@@ -124,6 +182,30 @@ public class IndexStatus {
         this.totalChunks = totalChunks;
     }
 
+    public Integer getSkippedFiles() {
+        return skippedFiles;
+    }
+
+    public void setSkippedFiles(Integer skippedFiles) {
+        this.skippedFiles = skippedFiles;
+    }
+
+    public Map<String, Integer> getSkipReasons() {
+        return skipReasons;
+    }
+
+    public void setSkipReasons(Map<String, Integer> skipReasons) {
+        this.skipReasons = skipReasons;
+    }
+
+    public Map<String, String> getSkippedPaths() {
+        return skippedPaths;
+    }
+
+    public void setSkippedPaths(Map<String, String> skippedPaths) {
+        this.skippedPaths = skippedPaths;
+    }
+
     public String getEmbedModel() {
         return embedModel;
     }
@@ -148,6 +230,22 @@ public class IndexStatus {
         this.chunkOverlap = chunkOverlap;
     }
 
+    public Boolean getNormalizeContent() {
+        return normalizeContent;
+    }
+
+    public void setNormalizeContent(Boolean normalizeContent) {
+        this.normalizeContent = normalizeContent;
+    }
+
+    public Long getTokensSaved() {
+        return tokensSaved;
+    }
+
+    public void setTokensSaved(Long tokensSaved) {
+        this.tokensSaved = tokensSaved;
+    }
+
     public String getErrorMessage() {
         return errorMessage;
     }
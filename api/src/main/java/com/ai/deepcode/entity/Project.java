@@ -33,6 +33,9 @@ public class Project {
     @Column(name = "file_count")
     private Integer fileCount = 0;
 
+    @Column(name = "revision")
+    private String revision; // commit/tree SHA (or local stamp) the file manifest was built from
+
     @Column(name = "created_at")
     private OffsetDateTime createdAt;
 
@@ -79,6 +82,9 @@ public class Project {
     public Integer getFileCount() { return fileCount; }
     public void setFileCount(Integer fileCount) { this.fileCount = fileCount; }
 
+    public String getRevision() { return revision; }
+    public void setRevision(String revision) { this.revision = revision; }
+
     public OffsetDateTime getCreatedAt() { return createdAt; }
     public void setCreatedAt(OffsetDateTime createdAt) { this.createdAt = createdAt; }
 
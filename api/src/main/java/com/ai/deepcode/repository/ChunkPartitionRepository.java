@@ -0,0 +1,174 @@
+package com.ai.deepcode.repository;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Dedicated chunk partitions for large projects. chunks is list-partitioned by
+ * project_id; every project starts in chunks_default and is moved into a
+ * partition of its own, chunks_p_&lt;id without dashes&gt;, once it is large
+ * enough to deserve its own indexes. Clearing or dropping such a project is
+ * then a TRUNCATE or DROP of one table instead of a row-by-row delete.
+ */
+@Repository
+public class ChunkPartitionRepository {
+
+        private static final Logger log = LoggerFactory.getLogger(ChunkPartitionRepository.class);
+
+        /** Every stored column; content_tsv is generated. */
+        private static final String COLUMNS = "id, project_id, file_path, chunk_index, content, embedding_768, "
+                        + "token_count, created_at, embedding_384, embedding_1024, start_line, end_line, content_hash, file_id";
+
+        private final JdbcTemplate jdbcTemplate;
+        private final TransactionTemplate requiresNew;
+
+        public ChunkPartitionRepository(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager) {
+                this.jdbcTemplate = jdbcTemplate;
+                this.requiresNew = new TransactionTemplate(transactionManager);
+                this.requiresNew.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        }
+
+        static String partitionName(UUID projectId) {
+                return "chunks_p_" + projectId.toString().replace("-", "");
+        }
+
+        public boolean hasDedicatedPartition(UUID projectId) {
+                Boolean attached = jdbcTemplate.queryForObject("""
+                                SELECT EXISTS (
+                                    SELECT 1 FROM pg_inherits i
+                                    JOIN pg_class c ON c.oid = i.inhrelid
+                                    WHERE i.inhparent = 'chunks'::regclass AND c.relname = ?
+                                )
+                                """, Boolean.class, partitionName(projectId));
+                return Boolean.TRUE.equals(attached);
+        }
+
+        /**
+         * Remove all of a project's chunks. A dedicated partition is truncated,
+         * which takes an exclusive lock on it until the transaction ends, so
+         * call this from short transactions only.
+         */
+        @Transactional
+        public void clear(UUID projectId) {
+                if (hasDedicatedPartition(projectId)) {
+                        jdbcTemplate.execute("TRUNCATE " + partitionName(projectId));
+                } else {
+                        jdbcTemplate.update("DELETE FROM chunks WHERE project_id = ?", projectId);
+                }
+        }
+
+        /**
+         * Remove all of a project's chunks and its dedicated partition, if any.
+         * Dropping a partition briefly locks the whole chunks table.
+         */
+        @Transactional
+        public void drop(UUID projectId) {
+                if (hasDedicatedPartition(projectId)) {
+                        jdbcTemplate.execute("DROP TABLE " + partitionName(projectId));
+                        log.info("[ChunkPartitionRepository] Dropped partition of project {}", projectId);
+                } else {
+                        jdbcTemplate.update("DELETE FROM chunks WHERE project_id = ?", projectId);
+                }
+        }
+
+        /**
+         * Move a project's chunks out of chunks_default into a dedicated
+         * partition, in three transactions of their own, so it can be called
+         * after the caller's has committed:
+         *
+         * 1. A NOT VALID check on chunks_default keeps new rows of the project
+         *    out of it. Adding it locks chunks_default only for a moment; it
+         *    scans nothing.
+         * 2. The rows are moved into a new table, which gets its indexes and
+         *    primary key. The check is then validated, which scans
+         *    chunks_default but only takes a SHARE UPDATE EXCLUSIVE lock, so
+         *    searches and writes go on. Last, the table is attached.
+         *    A valid check proves chunks_default holds none of the project's rows,
+         *    so ATTACH skips its scan. The ACCESS EXCLUSIVE lock it takes on
+         *    chunks_default lasts until the commit that follows at once. The
+         *    check is redundant once attached and is dropped under that lock.
+         *    Until commit, other sessions keep reading the rows from
+         *    chunks_default.
+         * 3. If step 2 fails, the check is dropped again.
+         *
+         * While this runs, indexing the same project fails on the check.
+         *
+         * @return false if the project already has one
+         */
+        public boolean promote(UUID projectId) {
+                if (hasDedicatedPartition(projectId)) {
+                        return false;
+                }
+                String exclusion = exclusionName(projectId);
+                requiresNew.executeWithoutResult(tx -> jdbcTemplate.execute("ALTER TABLE chunks_default ADD CONSTRAINT "
+                                + exclusion + " CHECK (project_id <> '" + projectId + "') NOT VALID"));
+                try {
+                        requiresNew.executeWithoutResult(tx -> movePartition(projectId, exclusion));
+                        return true;
+                } catch (RuntimeException e) {
+                        requiresNew.executeWithoutResult(tx -> jdbcTemplate.execute(
+                                        "ALTER TABLE chunks_default DROP CONSTRAINT IF EXISTS " + exclusion));
+                        throw e;
+                }
+        }
+
+        private void movePartition(UUID projectId, String exclusion) {
+                long started = System.currentTimeMillis();
+                String partition = partitionName(projectId);
+                jdbcTemplate.execute("CREATE TABLE " + partition
+                                + " (LIKE chunks INCLUDING DEFAULTS INCLUDING GENERATED INCLUDING CONSTRAINTS)");
+                // Lets ATTACH skip scanning the new table for rows outside the partition
+                jdbcTemplate.execute("ALTER TABLE " + partition + " ADD CONSTRAINT " + partition
+                                + "_project CHECK (project_id = '" + projectId + "')");
+                int moved = jdbcTemplate.update("WITH moved AS (DELETE FROM chunks_default WHERE project_id = ? RETURNING "
+                                + COLUMNS + ") INSERT INTO " + partition + " (" + COLUMNS + ") SELECT " + COLUMNS
+                                + " FROM moved", projectId);
+
+                // Same definitions as the parent's indexes, so ATTACH adopts them instead of building its own.
+                // Indexes backing constraints are only adopted together with a matching constraint.
+                List<String> definitions = jdbcTemplate.queryForList("""
+                                SELECT pg_get_indexdef(i.indexrelid) FROM pg_index i
+                                WHERE i.indrelid = 'chunks'::regclass
+                                AND NOT EXISTS (SELECT 1 FROM pg_constraint c WHERE c.conindid = i.indexrelid)
+                                """, String.class);
+                for (String definition : definitions) {
+                        jdbcTemplate.execute(onPartition(definition, partition));
+                }
+                jdbcTemplate.execute("ALTER TABLE " + partition + " ADD PRIMARY KEY (id, project_id)");
+
+                jdbcTemplate.execute("ALTER TABLE chunks_default VALIDATE CONSTRAINT " + exclusion);
+                jdbcTemplate.execute("ALTER TABLE chunks ATTACH PARTITION " + partition + " FOR VALUES IN ('"
+                                + projectId + "')");
+                jdbcTemplate.execute("ALTER TABLE chunks_default DROP CONSTRAINT " + exclusion);
+                log.info("[ChunkPartitionRepository] Moved {} chunks of project {} into {} in {} ms", moved, projectId,
+                                partition, System.currentTimeMillis() - started);
+        }
+
+        /**
+         * Check on chunks_default excluding a project while it is promoted.
+         */
+        static String exclusionName(UUID projectId) {
+                return "chunks_default_not_" + projectId.toString().replace("-", "");
+        }
+
+        /**
+         * "CREATE [UNIQUE] INDEX name ON ONLY public.chunks USING ..." as an
+         * unnamed index on the partition; Postgres picks a unique name.
+         */
+        static String onPartition(String parentIndexDefinition, String partition) {
+                int on = parentIndexDefinition.indexOf(" ON ");
+                int using = parentIndexDefinition.indexOf(" USING ", on);
+                String create = parentIndexDefinition.startsWith("CREATE UNIQUE INDEX") ? "CREATE UNIQUE INDEX"
+                                : "CREATE INDEX";
+                return create + " ON " + partition + parentIndexDefinition.substring(using);
+        }
+}
@@ -7,6 +7,7 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.UUID;
 
@@ -23,6 +24,11 @@ public interface ChunkRepository extends JpaRepository<Chunk, UUID>, CustomChunk
     @Query("DELETE FROM Chunk c WHERE c.project.id = :projectId")
     void deleteByProjectId(@Param("projectId") UUID projectId);
 
+    @Modifying
+    @Query("DELETE FROM Chunk c WHERE c.project.id = :projectId AND c.filePath IN :filePaths")
+    void deleteByProjectIdAndFilePathIn(@Param("projectId") UUID projectId,
+            @Param("filePaths") Collection<String> filePaths);
+
     @Query("SELECT DISTINCT c.filePath FROM Chunk c WHERE c.project.id = :projectId")
     List<String> findDistinctFilePathsByProjectId(@Param("projectId") UUID projectId);
 
@@ -8,7 +8,28 @@ public interface CustomChunkRepository {
         List<ChunkHitDto> findSimilarChunks(UUID projectId, String embedding, int limit, String vectorColumn,
                         List<String> filePaths);
 
+        /**
+         * As above, with every statement cancelled by Postgres once it runs
+         * longer than {@code timeoutMs}; 0 keeps the server's statement_timeout.
+         */
+        List<ChunkHitDto> findSimilarChunks(UUID projectId, String embedding, int limit, String vectorColumn,
+                        List<String> filePaths, long timeoutMs);
+
         List<ChunkHitDto> findSimilarChunksAcrossProjects(UUID[] projectIds, String embedding, int limit,
                         String vectorColumn,
                         List<String> filePaths);
+
+        /**
+         * Top chunks by reciprocal rank fusion of the vector ranking and the
+         * full-text ranking for {@code lexicalQuery} (a to_tsquery expression).
+         */
+        List<ChunkHitDto> findHybridChunks(UUID[] projectIds, String embedding, String lexicalQuery, int limit,
+                        String vectorColumn, List<String> filePaths);
+
+        /**
+         * As above, with every statement cancelled by Postgres once it runs
+         * longer than {@code timeoutMs}; 0 keeps the server's statement_timeout.
+         */
+        List<ChunkHitDto> findHybridChunks(UUID[] projectIds, String embedding, String lexicalQuery, int limit,
+                        String vectorColumn, List<String> filePaths, long timeoutMs);
 }
@@ -1,82 +1,459 @@
 package com.ai.deepcode.repository;
 
 import com.ai.deepcode.dto.ChunkHitDto;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.Query;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 
 @Repository
 public class CustomChunkRepositoryImpl implements CustomChunkRepository {
 
+        private static final Logger log = LoggerFactory.getLogger(CustomChunkRepositoryImpl.class);
+
+        private static final Set<String> ITERATIVE_SCAN_MODES = Set.of("off", "strict_order", "relaxed_order");
+
+        /**
+         * How a vector ranking was produced; the tag of the search.vector timer.
+         */
+        enum Strategy {
+                /** In-JVM scan of a small project (ExactVectorIndex) */
+                MEMORY_EXACT("memory-exact"),
+                /** Local HNSW graph (HnswVectorIndex) */
+                MEMORY_HNSW("memory-hnsw"),
+                /** pgvector HNSW scan, no file filter */
+                ANN("ann"),
+                /** pgvector HNSW scan under a file filter, with a raised ef_search and iterative scan */
+                FILTERED_ANN("filtered-ann"),
+                /** Exact distances over the few rows a file filter leaves */
+                FILTERED_EXACT("filtered-exact");
+
+                final String tag;
+
+                Strategy(String tag) {
+                        this.tag = tag;
+                }
+        }
+
+        private record Ranking(List<VectorHit> hits, Strategy strategy) {
+        }
+
+        /**
+         * Chunks of the filtered files: by project_files id, or by path for
+         * chunks whose file has no manifest row (file_id NULL), which the
+         * in-memory backends would match by path as well.
+         */
+        static final String FILE_CONDITION = "(c.file_id = ANY(cast(:fileIds as uuid[]))"
+                        + " OR (c.file_id IS NULL AND c.file_path = ANY(cast(:filePaths as text[]))))";
+
+        /**
+         * A file filter's bind values: the manifest ids of the paths, plus the
+         * paths themselves for chunks without one.
+         */
+        record FileFilter(UUID[] fileIds, String[] filePaths) {
+
+                void bind(Query query) {
+                        query.setParameter("fileIds", fileIds).setParameter("filePaths", filePaths);
+                }
+        }
+
         @PersistenceContext
         private EntityManager entityManager;
 
+        private final ExactVectorIndex exactVectorIndex;
+        private final HnswVectorIndex hnswVectorIndex;
+        private final MeterRegistry meterRegistry;
+        private final int rrfK;
+        private final int hybridCandidates;
+        private final int filteredExactMaxRows;
+        private final int efSearch;
+        private final int maxEfSearch;
+        private final String iterativeScan;
+
+        public CustomChunkRepositoryImpl(ExactVectorIndex exactVectorIndex, HnswVectorIndex hnswVectorIndex,
+                        MeterRegistry meterRegistry,
+                        @Value("${search.hybrid.rrf-k:60}") int rrfK,
+                        @Value("${search.hybrid.candidates:50}") int hybridCandidates,
+                        @Value("${search.filtered.exact-max-rows:5000}") int filteredExactMaxRows,
+                        @Value("${search.filtered.ef-search:40}") int efSearch,
+                        @Value("${search.filtered.max-ef-search:400}") int maxEfSearch,
+                        @Value("${search.filtered.iterative-scan:relaxed_order}") String iterativeScan) {
+                this.exactVectorIndex = exactVectorIndex;
+                this.hnswVectorIndex = hnswVectorIndex;
+                this.meterRegistry = meterRegistry;
+                this.rrfK = rrfK;
+                this.hybridCandidates = hybridCandidates;
+                this.filteredExactMaxRows = filteredExactMaxRows;
+                this.efSearch = efSearch;
+                this.maxEfSearch = maxEfSearch;
+                if (!iterativeScan.isBlank() && !ITERATIVE_SCAN_MODES.contains(iterativeScan)) {
+                        throw new IllegalArgumentException("search.filtered.iterative-scan must be one of "
+                                        + ITERATIVE_SCAN_MODES + " or empty, was " + iterativeScan);
+                }
+                this.iterativeScan = iterativeScan;
+        }
+
         @Override
-        @SuppressWarnings("unchecked")
+        @Transactional(readOnly = true)
         public List<ChunkHitDto> findSimilarChunks(UUID projectId, String embedding, int limit, String vectorColumn,
                         List<String> filePaths) {
+                return findSimilarChunks(projectId, embedding, limit, vectorColumn, filePaths, 0);
+        }
 
-                String scoreExpr = String.format("1 - (c.%s <=> cast(:embedding as vector))", vectorColumn);
+        @Override
+        @Transactional(readOnly = true)
+        public List<ChunkHitDto> findSimilarChunks(UUID projectId, String embedding, int limit, String vectorColumn,
+                        List<String> filePaths, long timeoutMs) {
+                statementTimeout(timeoutMs);
+                UUID[] projectIds = {projectId};
+                return fetchHits(projectIds, rank(projectIds, embedding, limit, vectorColumn, filePaths).hits());
+        }
 
-                StringBuilder sql = new StringBuilder(String.format("""
-                                SELECT c.id, c.project_id, c.file_path, c.chunk_index, c.content, %s as score
-                                FROM chunks c
-                                WHERE c.project_id = :projectId
-                                AND c.%s IS NOT NULL
-                                """, scoreExpr, vectorColumn));
+        @Override
+        @Transactional(readOnly = true)
+        public List<ChunkHitDto> findSimilarChunksAcrossProjects(UUID[] projectIds, String embedding, int limit,
+                        String vectorColumn, List<String> filePaths) {
+                return fetchHits(projectIds, rank(projectIds, embedding, limit, vectorColumn, filePaths).hits());
+        }
 
-                if (filePaths != null && !filePaths.isEmpty()) {
-                        sql.append(" AND c.file_path IN (:filePaths)\n");
+        /**
+         * First phase of a vector search: ids and scores of the top
+         * {@code limit} chunks, from the first backend that can answer.
+         */
+        private Ranking rank(UUID[] projectIds, String embedding, int limit, String vectorColumn,
+                        List<String> filePaths) {
+                long started = System.nanoTime();
+                List<UUID> projects = Arrays.asList(projectIds);
+                Ranking ranking;
+                List<VectorHit> hits = exactVectorIndex.search(projects, vectorColumn, embedding, limit, filePaths);
+                if (hits != null) {
+                        ranking = new Ranking(hits, Strategy.MEMORY_EXACT);
+                } else if ((hits = hnswVectorIndex.search(projects, vectorColumn, embedding, limit,
+                                filePaths)) != null) {
+                        ranking = new Ranking(hits, Strategy.MEMORY_HNSW);
+                } else {
+                        ranking = nearestInDatabase(projectIds, embedding, limit, vectorColumn, filePaths);
                 }
+                record(ranking.strategy(), started);
+                return ranking;
+        }
 
-                sql.append(String.format(" ORDER BY c.%s <=> cast(:embedding as vector)\n", vectorColumn));
-                sql.append(" LIMIT :limit");
+        private void record(Strategy strategy, long startedNanos) {
+                Timer.builder("search.vector")
+                                .description("Vector ranking phase of chunk search, by strategy")
+                                .tag("strategy", strategy.tag)
+                                .register(meterRegistry)
+                                .record(System.nanoTime() - startedNanos, TimeUnit.NANOSECONDS);
+        }
 
-                var query = entityManager.createNativeQuery(sql.toString(), "ChunkHitMapping")
-                                .setParameter("projectId", projectId)
+        /**
+         * pgvector ranking: ids and distances only, so content is never read (or
+         * detoasted) for candidates the index scan passes over. The distance is
+         * computed once and ordered by its alias, which pgvector still serves
+         * from the HNSW index.
+         *
+         * An HNSW scan applies a file filter after fetching ef_search candidates,
+         * so a selective filter used to leave fewer than {@code limit} rows. A
+         * filter is therefore planned first (see {@link #planFilter}).
+         */
+        @SuppressWarnings("unchecked")
+        private Ranking nearestInDatabase(UUID[] projectIds, String embedding, int limit, String vectorColumn,
+                        List<String> filePaths) {
+                boolean filtered = filePaths != null && !filePaths.isEmpty();
+                FileFilter fileFilter = filtered ? fileFilter(projectIds, filePaths) : null;
+                Strategy strategy = filtered ? planFilter(projectIds, vectorColumn, fileFilter, limit) : Strategy.ANN;
+
+                String sql = String.format("""
+                                %1$s
+                                SELECT c.id, c.%2$s <=> cast(:embedding as vector) AS distance
+                                FROM %3$s c
+                                %4$s
+                                ORDER BY distance
+                                LIMIT :limit
+                                """,
+                                strategy == Strategy.FILTERED_EXACT ? filteredRows(vectorColumn) : "",
+                                vectorColumn,
+                                strategy == Strategy.FILTERED_EXACT ? "filtered" : "chunks",
+                                strategy == Strategy.FILTERED_EXACT ? "" : candidateCondition(vectorColumn, filtered));
+
+                var query = entityManager.createNativeQuery(sql)
+                                .setParameter("projectIds", projectIds)
                                 .setParameter("embedding", embedding)
                                 .setParameter("limit", limit);
+                if (filtered) {
+                        fileFilter.bind(query);
+                }
 
-                if (filePaths != null && !filePaths.isEmpty()) {
-                        query.setParameter("filePaths", filePaths);
+                List<Object[]> rows = query.getResultList();
+                List<VectorHit> hits = new ArrayList<>(rows.size());
+                for (Object[] row : rows) {
+                        hits.add(new VectorHit((UUID) row[0], (float) (1 - ((Number) row[1]).doubleValue())));
+                }
+                if (strategy == Strategy.FILTERED_ANN) {
+                        // relaxed_order may return rows slightly out of distance order
+                        hits.sort(Comparator.comparingDouble(VectorHit::score).reversed());
+                }
+                return new Ranking(hits, strategy);
+        }
+
+        private static String candidateCondition(String vectorColumn, boolean filtered) {
+                return String.format("WHERE c.project_id = ANY(cast(:projectIds as uuid[]))\nAND c.%s IS NOT NULL%s",
+                                vectorColumn, filtered ? "\nAND " + FILE_CONDITION : "");
+        }
+
+        /**
+         * The rows a file filter leaves, materialized so the outer ORDER BY
+         * computes exact distances over them instead of walking the HNSW graph.
+         */
+        private static String filteredRows(String vectorColumn) {
+                return String.format("""
+                                WITH filtered AS MATERIALIZED (
+                                    SELECT c.id, c.%1$s
+                                    FROM chunks c
+                                    %2$s
+                                )""", vectorColumn, candidateCondition(vectorColumn, true));
+        }
+
+        /**
+         * Choose how to rank under a file filter from its selectivity: an exact
+         * scan when it leaves at most search.filtered.exact-max-rows chunks,
+         * otherwise an HNSW scan with ef_search raised in proportion to how much
+         * the filter discards (limit / selectivity, within
+         * [ef-search, max-ef-search]) and pgvector's iterative scan, which keeps
+         * walking the graph until enough rows pass the filter. Settings are
+         * transaction-local.
+         */
+        private Strategy planFilter(UUID[] projectIds, String vectorColumn, FileFilter fileFilter, int limit) {
+                Query countQuery = entityManager.createNativeQuery(String.format("""
+                                SELECT (SELECT count(*) FROM chunks c
+                                        WHERE c.project_id = ANY(cast(:projectIds as uuid[]))
+                                        AND c.%s IS NOT NULL
+                                        AND %s) AS filtered,
+                                       (SELECT coalesce(sum(s.total_chunks), 0) FROM index_status s
+                                        WHERE s.project_id = ANY(cast(:projectIds as uuid[]))) AS total
+                                """, vectorColumn, FILE_CONDITION))
+                                .setParameter("projectIds", projectIds);
+                fileFilter.bind(countQuery);
+                Object[] counts = (Object[]) countQuery.getSingleResult();
+                long filteredRows = ((Number) counts[0]).longValue();
+                long totalRows = ((Number) counts[1]).longValue();
+                if (filteredRows <= filteredExactMaxRows) {
+                        return Strategy.FILTERED_EXACT;
                 }
 
-                return (List<ChunkHitDto>) query.getResultList();
+                int ef = efForSelectivity(limit, filteredRows, totalRows, efSearch, maxEfSearch);
+                setLocal("hnsw.ef_search", Integer.toString(ef));
+                if (!iterativeScan.isBlank()) {
+                        setLocal("hnsw.iterative_scan", iterativeScan);
+                }
+                log.debug("[VectorSearch] File filter keeps {} of {} chunks: ef_search={}, iterative_scan={}",
+                                filteredRows, totalRows, ef, iterativeScan);
+                return Strategy.FILTERED_ANN;
+        }
+
+        /**
+         * Resolve filtered paths to project_files ids once, so every query of
+         * the search binds the filter as two arrays whatever its size.
+         */
+        @SuppressWarnings("unchecked")
+        FileFilter fileFilter(UUID[] projectIds, List<String> filePaths) {
+                String[] paths = filePaths.toArray(String[]::new);
+                List<UUID> ids = entityManager.createNativeQuery("""
+                                SELECT f.id FROM project_files f
+                                WHERE f.project_id = ANY(cast(:projectIds as uuid[]))
+                                AND f.path = ANY(cast(:filePaths as text[]))
+                                """, UUID.class)
+                                .setParameter("projectIds", projectIds)
+                                .setParameter("filePaths", paths)
+                                .getResultList();
+                return new FileFilter(ids.toArray(UUID[]::new), paths);
+        }
+
+        static int efForSelectivity(int limit, long filteredRows, long totalRows, int minEf, int maxEf) {
+                double selectivity = totalRows > 0 ? Math.min(1.0, (double) filteredRows / totalRows) : 1.0;
+                double ef = Math.ceil(limit / Math.max(selectivity, 1e-6));
+                return (int) Math.max(minEf, Math.min(maxEf, ef));
+        }
+
+        /**
+         * Have Postgres cancel this transaction's statements after {@code timeoutMs},
+         * so a caller that gave up waiting does not leave them running.
+         */
+        private void statementTimeout(long timeoutMs) {
+                if (timeoutMs > 0) {
+                        setLocal("statement_timeout", Long.toString(timeoutMs));
+                }
+        }
+
+        private void setLocal(String name, String value) {
+                entityManager.createNativeQuery("SELECT set_config(:name, :value, true)")
+                                .setParameter("name", name)
+                                .setParameter("value", value)
+                                .getSingleResult();
         }
 
         @Override
         @SuppressWarnings("unchecked")
-        public List<ChunkHitDto> findSimilarChunksAcrossProjects(UUID[] projectIds, String embedding, int limit,
+        @Transactional(readOnly = true)
+        public List<ChunkHitDto> findHybridChunks(UUID[] projectIds, String embedding, String lexicalQuery, int limit,
                         String vectorColumn, List<String> filePaths) {
+                return findHybridChunks(projectIds, embedding, lexicalQuery, limit, vectorColumn, filePaths, 0);
+        }
 
-                String scoreExpr = String.format("1 - (c.%s <=> cast(:embedding as vector))", vectorColumn);
+        @Override
+        @SuppressWarnings("unchecked")
+        @Transactional(readOnly = true)
+        public List<ChunkHitDto> findHybridChunks(UUID[] projectIds, String embedding, String lexicalQuery, int limit,
+                        String vectorColumn, List<String> filePaths, long timeoutMs) {
 
-                StringBuilder sql = new StringBuilder(String.format("""
-                                SELECT c.id, c.project_id, c.file_path, c.chunk_index, c.content, %s as score
-                                FROM chunks c
-                                WHERE c.project_id = ANY(cast(:projectIds as uuid[]))
-                                AND c.%s IS NOT NULL
-                                """, scoreExpr, vectorColumn));
+                statementTimeout(timeoutMs);
+                long started = System.nanoTime();
+                int candidates = Math.max(limit, hybridCandidates);
+                List<UUID> projects = Arrays.asList(projectIds);
+                boolean filtered = filePaths != null && !filePaths.isEmpty();
+                FileFilter filter = filtered ? fileFilter(projectIds, filePaths) : null;
+                Strategy strategy = Strategy.MEMORY_EXACT;
+                List<VectorHit> memory = exactVectorIndex.search(projects, vectorColumn, embedding, candidates,
+                                filePaths);
+                if (memory == null) {
+                        strategy = Strategy.MEMORY_HNSW;
+                        memory = hnswVectorIndex.search(projects, vectorColumn, embedding, candidates, filePaths);
+                }
+                if (memory == null) {
+                        strategy = filtered ? planFilter(projectIds, vectorColumn, filter, candidates) : Strategy.ANN;
+                }
+                String fileFilter = filtered ? "\n            AND " + FILE_CONDITION : "";
 
-                if (filePaths != null && !filePaths.isEmpty()) {
-                        sql.append(" AND c.file_path IN (:filePaths)\n");
+                // Vector ranks come from memory when a backend there answered, else from pgvector.
+                // Each ranking is cut to its candidates inside a subquery so the vector one keeps
+                // its index scan; row_number() then runs over at most that many rows.
+                String vectorRanks;
+                if (memory != null) {
+                        vectorRanks = """
+                                    SELECT v.id, v.rank
+                                    FROM unnest(cast(:vectorIds as uuid[])) WITH ORDINALITY AS v(id, rank)
+                                """;
+                } else {
+                        // OFFSET 0 keeps the filter-only subquery from being flattened into an index scan
+                        String source = strategy == Strategy.FILTERED_EXACT
+                                        ? "(SELECT c.id, c." + vectorColumn + " FROM chunks c"
+                                                        + " WHERE c.project_id = ANY(cast(:projectIds as uuid[]))"
+                                                        + " AND c." + vectorColumn + " IS NOT NULL"
+                                                        + " AND " + FILE_CONDITION + " OFFSET 0)"
+                                        : "chunks";
+                        vectorRanks = String.format("""
+                                    SELECT v.id, row_number() OVER (ORDER BY v.distance) AS rank
+                                    FROM (
+                                        SELECT c.id, c.%1$s <=> cast(:embedding as vector) AS distance
+                                        FROM %3$s c
+                                        WHERE c.project_id = ANY(cast(:projectIds as uuid[]))
+                                        AND c.%1$s IS NOT NULL%2$s
+                                        ORDER BY distance
+                                        LIMIT :candidates
+                                    ) v
+                                """, vectorColumn, strategy == Strategy.FILTERED_EXACT ? "" : fileFilter, source);
                 }
 
-                sql.append(String.format(" ORDER BY c.%s <=> cast(:embedding as vector)\n", vectorColumn));
-                sql.append(" LIMIT :limit");
+                String sql = String.format("""
+                                WITH vec AS (
+                                %1$s),
+                                lex AS (
+                                    SELECT l.id, row_number() OVER (ORDER BY l.relevance DESC) AS rank
+                                    FROM (
+                                        SELECT c.id, ts_rank_cd(c.content_tsv, q.query) AS relevance
+                                        FROM chunks c, to_tsquery('simple', :lexicalQuery) AS q(query)
+                                        WHERE c.project_id = ANY(cast(:projectIds as uuid[]))
+                                        AND c.%2$s IS NOT NULL
+                                        AND c.content_tsv @@ q.query%3$s
+                                        ORDER BY relevance DESC
+                                        LIMIT :candidates
+                                    ) l
+                                ),
+                                fused AS (
+                                    SELECT id, sum(1.0 / (%4$d + rank)) AS score
+                                    FROM (SELECT id, rank FROM vec UNION ALL SELECT id, rank FROM lex) ranked
+                                    GROUP BY id
+                                )
+                                SELECT c.id, c.project_id, c.file_path, c.chunk_index, c.content, c.start_line, c.end_line,
+                                       cast(f.score as double precision) as score
+                                FROM fused f
+                                JOIN chunks c ON c.id = f.id AND c.project_id = ANY(cast(:projectIds as uuid[]))
+                                ORDER BY f.score DESC
+                                LIMIT :limit
+                                """, vectorRanks, vectorColumn, fileFilter, rrfK);
 
-                var query = entityManager.createNativeQuery(sql.toString(), "ChunkHitMapping")
+                var query = entityManager.createNativeQuery(sql, "ChunkHitMapping")
                                 .setParameter("projectIds", projectIds)
-                                .setParameter("embedding", embedding)
+                                .setParameter("lexicalQuery", lexicalQuery)
+                                .setParameter("candidates", candidates)
                                 .setParameter("limit", limit);
+                if (memory != null) {
+                        query.setParameter("vectorIds", memory.stream().map(VectorHit::id).toArray(UUID[]::new));
+                } else {
+                        query.setParameter("embedding", embedding);
+                }
+                if (filtered) {
+                        filter.bind(query);
+                }
 
-                if (filePaths != null && !filePaths.isEmpty()) {
-                        query.setParameter("filePaths", filePaths);
+                List<ChunkHitDto> hits = query.getResultList();
+                record(strategy, started);
+                return hits;
+        }
+
+        /**
+         * Second phase of every vector search: rows of the final hits, in hit
+         * order, with the scores computed in the first phase. Duplicate ids
+         * are returned once. Fetched by primary key, so content is read only
+         * for chunks that are returned; the project filter prunes the lookup
+         * to the projects' partitions.
+         */
+        @SuppressWarnings("unchecked")
+        private List<ChunkHitDto> fetchHits(UUID[] projectIds, List<VectorHit> hits) {
+                if (hits.isEmpty()) {
+                        return List.of();
                 }
+                List<UUID> ids = hits.stream().map(VectorHit::id).distinct().toList();
+                List<ChunkHitDto> rows = entityManager.createNativeQuery("""
+                                SELECT c.id, c.project_id, c.file_path, c.chunk_index, c.content, c.start_line, c.end_line,
+                                       cast(0 as double precision) as score
+                                FROM chunks c
+                                WHERE c.id IN (:ids)
+                                AND c.project_id = ANY(cast(:projectIds as uuid[]))
+                                """, "ChunkHitMapping")
+                                .setParameter("ids", ids)
+                                .setParameter("projectIds", projectIds)
+                                .getResultList();
 
-                return (List<ChunkHitDto>) query.getResultList();
+                Map<UUID, ChunkHitDto> byId = new HashMap<>();
+                for (ChunkHitDto row : rows) {
+                        byId.put(row.id(), row);
+                }
+                List<ChunkHitDto> ordered = new ArrayList<>(hits.size());
+                for (VectorHit hit : hits) {
+                        ChunkHitDto row = byId.remove(hit.id());
+                        // A row deleted since the hit was found is simply dropped
+                        if (row != null) {
+                                ordered.add(new ChunkHitDto(row.id(), row.projectId(), row.filePath(), row.chunkIndex(),
+                                                row.content(), row.startLine(), row.endLine(), hit.score()));
+                        }
+                }
+                return ordered;
         }
 }
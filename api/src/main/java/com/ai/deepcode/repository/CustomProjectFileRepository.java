@@ -0,0 +1,22 @@
+package com.ai.deepcode.repository;
+
+import com.ai.deepcode.dto.ManifestWriteResult;
+import com.ai.deepcode.dto.RagFileRef;
+
+import java.time.OffsetDateTime;
+import java.util.Collection;
+import java.util.UUID;
+
+public interface CustomProjectFileRepository {
+
+        /**
+         * Insert or update manifest entries in bulk, keyed by (project_id, path).
+         * Every written row gets {@code updated_at = seenAt}.
+         */
+        ManifestWriteResult upsertFiles(UUID projectId, Collection<RagFileRef> files, OffsetDateTime seenAt);
+
+        /**
+         * Delete every manifest entry of the project that was not written since {@code seenAt}.
+         */
+        int deleteFilesNotSeenSince(UUID projectId, OffsetDateTime seenAt);
+}
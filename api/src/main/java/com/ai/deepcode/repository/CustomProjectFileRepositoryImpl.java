@@ -0,0 +1,143 @@
+package com.ai.deepcode.repository;
+
+import com.ai.deepcode.dto.ManifestWriteResult;
+import com.ai.deepcode.dto.RagFileRef;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.OffsetDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+
+@Repository
+public class CustomProjectFileRepositoryImpl implements CustomProjectFileRepository {
+
+        /** Rows per statement; each batch is one round trip. */
+        private static final int BATCH_SIZE = 1000;
+
+        /**
+         * Set-based upsert: all rows of a batch are bound as parallel text arrays and
+         * expanded with unnest, so one statement writes the whole batch. xmax = 0 on
+         * the returned row means it was freshly inserted rather than updated. The same
+         * statement points already indexed chunks of these paths at their rows, for
+         * files indexed before they entered the manifest or re-added after a sweep.
+         */
+        private static final String UPSERT_SQL = """
+                        WITH upserted AS (
+                            INSERT INTO project_files (id, project_id, path, source, github_owner, github_repo,
+                                                       github_branch, github_sub_path, created_at, updated_at)
+                            SELECT gen_random_uuid(), ?, f.path, f.source, f.owner, f.repo, f.branch, f.sub_path, ?, ?
+                            FROM unnest(?::text[], ?::text[], ?::text[], ?::text[], ?::text[], ?::text[])
+                                 AS f(path, source, owner, repo, branch, sub_path)
+                            ON CONFLICT (project_id, path) DO UPDATE SET
+                                source = EXCLUDED.source,
+                                github_owner = EXCLUDED.github_owner,
+                                github_repo = EXCLUDED.github_repo,
+                                github_branch = EXCLUDED.github_branch,
+                                github_sub_path = EXCLUDED.github_sub_path,
+                                updated_at = EXCLUDED.updated_at
+                            RETURNING id, path, (xmax = 0) AS inserted
+                        ),
+                        linked AS (
+                            UPDATE chunks c SET file_id = u.id
+                            FROM upserted u
+                            WHERE c.project_id = ? AND c.file_path = u.path AND c.file_id IS DISTINCT FROM u.id
+                        )
+                        SELECT inserted FROM upserted
+                        """;
+
+        private final JdbcTemplate jdbcTemplate;
+
+        public CustomProjectFileRepositoryImpl(JdbcTemplate jdbcTemplate) {
+                this.jdbcTemplate = jdbcTemplate;
+        }
+
+        @Override
+        public ManifestWriteResult upsertFiles(UUID projectId, Collection<RagFileRef> files, OffsetDateTime seenAt) {
+                if (files == null || files.isEmpty()) {
+                        return ManifestWriteResult.EMPTY;
+                }
+
+                // ON CONFLICT cannot touch the same row twice in one statement, so collapse duplicates
+                Map<String, RagFileRef> byPath = new LinkedHashMap<>();
+                for (RagFileRef f : files) {
+                        if (f != null && f.path() != null) {
+                                byPath.put(f.path(), f);
+                        }
+                }
+
+                OffsetDateTime stamp = toDbPrecision(seenAt);
+                List<RagFileRef> unique = new ArrayList<>(byPath.values());
+                int inserted = 0;
+                int updated = 0;
+                for (int from = 0; from < unique.size(); from += BATCH_SIZE) {
+                        List<RagFileRef> batch = unique.subList(from, Math.min(from + BATCH_SIZE, unique.size()));
+                        int[] counts = upsertBatch(projectId, batch, stamp);
+                        inserted += counts[0];
+                        updated += counts[1];
+                }
+                return new ManifestWriteResult(inserted, updated, 0);
+        }
+
+        private int[] upsertBatch(UUID projectId, List<RagFileRef> batch, OffsetDateTime seenAt) {
+                int n = batch.size();
+                String[] paths = new String[n];
+                String[] sources = new String[n];
+                String[] owners = new String[n];
+                String[] repos = new String[n];
+                String[] branches = new String[n];
+                String[] subPaths = new String[n];
+                for (int i = 0; i < n; i++) {
+                        RagFileRef f = batch.get(i);
+                        paths[i] = f.path();
+                        sources[i] = f.source() != null ? f.source() : "device";
+                        if (f.github() != null) {
+                                owners[i] = f.github().owner();
+                                repos[i] = f.github().repo();
+                                branches[i] = f.github().branch();
+                                subPaths[i] = f.github().subPath();
+                        }
+                }
+
+                int[] counts = new int[2];
+                jdbcTemplate.query((Connection con) -> {
+                        PreparedStatement ps = con.prepareStatement(UPSERT_SQL);
+                        ps.setObject(1, projectId);
+                        ps.setObject(2, seenAt);
+                        ps.setObject(3, seenAt);
+                        ps.setArray(4, textArray(con, paths));
+                        ps.setArray(5, textArray(con, sources));
+                        ps.setArray(6, textArray(con, owners));
+                        ps.setArray(7, textArray(con, repos));
+                        ps.setArray(8, textArray(con, branches));
+                        ps.setArray(9, textArray(con, subPaths));
+                        ps.setObject(10, projectId);
+                        return ps;
+                }, rs -> {
+                        counts[rs.getBoolean(1) ? 0 : 1]++;
+                });
+                return counts;
+        }
+
+        @Override
+        public int deleteFilesNotSeenSince(UUID projectId, OffsetDateTime seenAt) {
+                return jdbcTemplate.update(
+                                "DELETE FROM project_files WHERE project_id = ? AND (updated_at IS NULL OR updated_at < ?)",
+                                projectId, toDbPrecision(seenAt));
+        }
+
+        /**
+         * Postgres keeps microseconds; truncate so the sweep compares against exactly what was stored.
+         */
+        private static OffsetDateTime toDbPrecision(OffsetDateTime t) {
+                return t.truncatedTo(ChronoUnit.MICROS);
+        }
+
+        private static Array textArray(Connection con, String[] values) throws SQLException {
+                return con.createArrayOf("text", values);
+        }
+}
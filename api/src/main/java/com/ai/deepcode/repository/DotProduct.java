@@ -0,0 +1,57 @@
+package com.ai.deepcode.repository;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Dot product of a query with one vector stored in a native-order buffer of
+ * packed floats.
+ */
+abstract class DotProduct {
+
+        private static final Logger log = LoggerFactory.getLogger(DotProduct.class);
+
+        abstract float dot(ByteBuffer vectors, int byteOffset, float[] query);
+
+        /**
+         * The Vector API kernel when the JVM was started with
+         * {@code --add-modules jdk.incubator.vector}, otherwise the scalar one.
+         */
+        static DotProduct best() {
+                if (ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()) {
+                        try {
+                                // Loaded reflectively so this class links without the module
+                                return (DotProduct) Class.forName("com.ai.deepcode.repository.SimdDotProduct")
+                                                .getDeclaredConstructor().newInstance();
+                        } catch (ReflectiveOperationException | LinkageError e) {
+                                log.warn("[DotProduct] Vector API unavailable, using scalar kernel: {}", e.toString());
+                        }
+                }
+                return new Scalar();
+        }
+
+        /**
+         * Four independent accumulators so the adds do not wait on each other.
+         */
+        static final class Scalar extends DotProduct {
+                @Override
+                float dot(ByteBuffer vectors, int byteOffset, float[] query) {
+                        float s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+                        int n = query.length;
+                        int i = 0;
+                        for (; i + 3 < n; i += 4) {
+                                int at = byteOffset + i * Float.BYTES;
+                                s0 += vectors.getFloat(at) * query[i];
+                                s1 += vectors.getFloat(at + 4) * query[i + 1];
+                                s2 += vectors.getFloat(at + 8) * query[i + 2];
+                                s3 += vectors.getFloat(at + 12) * query[i + 3];
+                        }
+                        for (; i < n; i++) {
+                                s0 += vectors.getFloat(byteOffset + i * Float.BYTES) * query[i];
+                        }
+                        return (s0 + s1) + (s2 + s3);
+                }
+        }
+}
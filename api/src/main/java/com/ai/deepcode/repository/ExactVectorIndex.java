@@ -0,0 +1,383 @@
+package com.ai.deepcode.repository;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Exact in-JVM similarity search for projects small enough to scan.
+ *
+ * A project's vectors for one embedding column are loaded on first query into
+ * a single off-heap buffer, normalized so cosine similarity is a dot product,
+ * and scanned in full for every query. Segments are evicted least recently
+ * used once their total size passes the memory budget; projects with more
+ * than {@code search.exact.max-chunks} chunks are left to pgvector.
+ *
+ * A segment is tagged with its project's index_status.updated_at, which every
+ * indexing run bumps when it writes chunks; a query that sees a different
+ * value reloads the segment. This keeps nodes that did not run the indexing
+ * current at the cost of one primary-key lookup per query.
+ */
+@Component
+public class ExactVectorIndex {
+
+        private static final Logger log = LoggerFactory.getLogger(ExactVectorIndex.class);
+
+        private record Key(UUID projectId, String column) {
+        }
+
+        private static final class Segment {
+                final OffsetDateTime stamp;
+                final int dim;
+                final int rows;
+                final long[] idHigh;
+                final long[] idLow;
+                final int[] fileOfRow;
+                final Map<String, Integer> fileIds;
+                final ByteBuffer vectors;
+
+                Segment(OffsetDateTime stamp, int dim, int rows, long[] idHigh, long[] idLow, int[] fileOfRow,
+                                Map<String, Integer> fileIds, ByteBuffer vectors) {
+                        this.stamp = stamp;
+                        this.dim = dim;
+                        this.rows = rows;
+                        this.idHigh = idHigh;
+                        this.idLow = idLow;
+                        this.fileOfRow = fileOfRow;
+                        this.fileIds = fileIds;
+                        this.vectors = vectors;
+                }
+
+                long bytes() {
+                        return (long) vectors.capacity() + rows * 20L;
+                }
+
+                /** Per-file flags for a path filter, or null for no filter. */
+                boolean[] allowedFiles(List<String> filePaths) {
+                        if (filePaths == null || filePaths.isEmpty()) {
+                                return null;
+                        }
+                        boolean[] allowed = new boolean[fileIds.size()];
+                        for (String path : filePaths) {
+                                Integer file = fileIds.get(path);
+                                if (file != null) {
+                                        allowed[file] = true;
+                                }
+                        }
+                        return allowed;
+                }
+        }
+
+        private final JdbcTemplate jdbcTemplate;
+        private final boolean enabled;
+        private final int maxChunks;
+        private final long budgetBytes;
+        private final DotProduct dotProduct = DotProduct.best();
+
+        /** Access-ordered: iteration starts at the least recently used segment */
+        private final LinkedHashMap<Key, Segment> segments = new LinkedHashMap<>(16, 0.75f, true);
+        /** Projects too large to hold, with the stamp they were measured at */
+        private final Map<Key, OffsetDateTime> tooLarge = new HashMap<>();
+        private long totalBytes;
+        private final Object loadLock = new Object();
+
+        public ExactVectorIndex(JdbcTemplate jdbcTemplate,
+                        @Value("${search.exact.enabled:true}") boolean enabled,
+                        @Value("${search.exact.max-chunks:10000}") int maxChunks,
+                        @Value("${search.exact.memory-budget-mb:512}") long budgetMb) {
+                this.jdbcTemplate = jdbcTemplate;
+                this.enabled = enabled;
+                this.maxChunks = maxChunks;
+                this.budgetBytes = budgetMb * 1024 * 1024;
+                if (enabled) {
+                        log.info("[ExactVectorIndex] Exact search for projects up to {} chunks, {} MB budget, {} kernel",
+                                        maxChunks, budgetMb, dotProduct instanceof DotProduct.Scalar ? "scalar" : "SIMD");
+                }
+        }
+
+        /**
+         * Top {@code limit} chunks of the given projects by cosine similarity to
+         * {@code embedding} (pgvector text form), best first. Returns null when
+         * any of the projects cannot be served from memory; the caller should
+         * then ask pgvector.
+         */
+        public List<VectorHit> search(List<UUID> projectIds, String vectorColumn, String embedding, int limit,
+                        List<String> filePaths) {
+                if (!enabled || projectIds.isEmpty() || limit <= 0) {
+                        return null;
+                }
+                Map<UUID, OffsetDateTime> stamps = indexStamps(projectIds);
+                List<Segment> scanned = new ArrayList<>(projectIds.size());
+                for (UUID projectId : projectIds) {
+                        OffsetDateTime stamp = stamps.get(projectId);
+                        if (stamp == null) {
+                                return null;
+                        }
+                        Segment segment = segment(new Key(projectId, vectorColumn), stamp);
+                        if (segment == null) {
+                                return null;
+                        }
+                        scanned.add(segment);
+                }
+
+                float[] query = parseVector(embedding);
+                if (query == null || !normalize(query)) {
+                        return null;
+                }
+                for (Segment segment : scanned) {
+                        if (segment.rows > 0 && segment.dim != query.length) {
+                                return null;
+                        }
+                }
+                return scan(scanned, query, limit, filePaths);
+        }
+
+        private List<VectorHit> scan(List<Segment> scanned, float[] query, int limit, List<String> filePaths) {
+                TopK top = new TopK(limit);
+                for (int s = 0; s < scanned.size(); s++) {
+                        Segment segment = scanned.get(s);
+                        boolean[] allowed = segment.allowedFiles(filePaths);
+                        ByteBuffer vectors = segment.vectors;
+                        int stride = segment.dim * Float.BYTES;
+                        long segmentRef = (long) s << 32;
+                        for (int row = 0; row < segment.rows; row++) {
+                                if (allowed != null && !allowed[segment.fileOfRow[row]]) {
+                                        continue;
+                                }
+                                top.offer(dotProduct.dot(vectors, row * stride, query), segmentRef | row);
+                        }
+                }
+
+                top.sortDescending();
+                List<VectorHit> hits = new ArrayList<>(top.size());
+                for (int i = 0; i < top.size(); i++) {
+                        long ref = top.ref(i);
+                        Segment segment = scanned.get((int) (ref >>> 32));
+                        int row = (int) ref;
+                        hits.add(new VectorHit(new UUID(segment.idHigh[row], segment.idLow[row]), top.score(i)));
+                }
+                return hits;
+        }
+
+        private Map<UUID, OffsetDateTime> indexStamps(List<UUID> projectIds) {
+                Map<UUID, OffsetDateTime> stamps = new HashMap<>();
+                jdbcTemplate.query("SELECT project_id, updated_at FROM index_status WHERE project_id = ANY(?)",
+                                rs -> {
+                                        stamps.put(rs.getObject("project_id", UUID.class),
+                                                        rs.getObject("updated_at", OffsetDateTime.class));
+                                },
+                                (Object) projectIds.toArray(new UUID[0]));
+                return stamps;
+        }
+
+        private Segment segment(Key key, OffsetDateTime stamp) {
+                Segment cached = cached(key, stamp);
+                if (cached != null) {
+                        return cached;
+                }
+                // One load at a time; searches over cached segments are not held up
+                synchronized (loadLock) {
+                        cached = cached(key, stamp);
+                        if (cached != null) {
+                                return cached;
+                        }
+                        synchronized (this) {
+                                if (stamp.equals(tooLarge.get(key))) {
+                                        return null;
+                                }
+                        }
+                        Segment loaded = load(key, stamp);
+                        synchronized (this) {
+                                if (loaded == null) {
+                                        tooLarge.put(key, stamp);
+                                } else {
+                                        tooLarge.remove(key);
+                                        put(key, loaded);
+                                }
+                        }
+                        return loaded;
+                }
+        }
+
+        private synchronized Segment cached(Key key, OffsetDateTime stamp) {
+                Segment segment = segments.get(key);
+                return segment != null && segment.stamp.equals(stamp) ? segment : null;
+        }
+
+        private void put(Key key, Segment segment) {
+                Segment previous = segments.put(key, segment);
+                if (previous != null) {
+                        totalBytes -= previous.bytes();
+                }
+                totalBytes += segment.bytes();
+                Iterator<Map.Entry<Key, Segment>> eldest = segments.entrySet().iterator();
+                while (totalBytes > budgetBytes && eldest.hasNext()) {
+                        Map.Entry<Key, Segment> entry = eldest.next();
+                        if (entry.getKey().equals(key)) {
+                                continue;
+                        }
+                        totalBytes -= entry.getValue().bytes();
+                        eldest.remove();
+                        log.debug("[ExactVectorIndex] Evicted {} {}", entry.getKey().projectId(), entry.getKey().column());
+                }
+        }
+
+        /**
+         * Read a project's vectors from the database, or null if they do not fit.
+         */
+        private Segment load(Key key, OffsetDateTime stamp) {
+                long started = System.currentTimeMillis();
+                String column = key.column();
+                Integer count = jdbcTemplate.queryForObject(
+                                "SELECT count(*) FROM chunks WHERE project_id = ? AND " + column + " IS NOT NULL",
+                                Integer.class, key.projectId());
+                int dim = dimensionOf(column);
+                long bytes = (long) (count != null ? count : 0) * dim * Float.BYTES;
+                if (count == null || count > maxChunks || bytes > budgetBytes || bytes > Integer.MAX_VALUE) {
+                        log.debug("[ExactVectorIndex] Project {} has {} chunks, left to pgvector", key.projectId(), count);
+                        return null;
+                }
+
+                SegmentBuilder builder = new SegmentBuilder(dim, count);
+                jdbcTemplate.query("SELECT id, file_path, " + column + "::text AS vec FROM chunks "
+                                + "WHERE project_id = ? AND " + column + " IS NOT NULL",
+                                rs -> {
+                                        builder.add(rs.getObject("id", UUID.class), rs.getString("file_path"),
+                                                        rs.getString("vec"));
+                                },
+                                key.projectId());
+                if (builder.rows > maxChunks) {
+                        return null;
+                }
+                Segment segment = builder.build(stamp);
+                log.info("[ExactVectorIndex] Loaded {} vectors of project {} ({} KB) in {} ms",
+                                segment.rows, key.projectId(), segment.bytes() / 1024, System.currentTimeMillis() - started);
+                return segment;
+        }
+
+        private static final class SegmentBuilder {
+                final int dim;
+                final float[] scratch;
+                final Map<String, Integer> fileIds = new HashMap<>();
+                long[] idHigh;
+                long[] idLow;
+                int[] fileOfRow;
+                ByteBuffer vectors;
+                int rows;
+
+                SegmentBuilder(int dim, int capacity) {
+                        this.dim = dim;
+                        this.scratch = new float[dim];
+                        allocate(Math.max(capacity, 1));
+                }
+
+                void add(UUID id, String filePath, String vectorText) {
+                        if (!parseVector(vectorText, scratch)) {
+                                return;
+                        }
+                        normalize(scratch);
+                        if (rows == idHigh.length) {
+                                allocate(rows * 2);
+                        }
+                        idHigh[rows] = id.getMostSignificantBits();
+                        idLow[rows] = id.getLeastSignificantBits();
+                        fileOfRow[rows] = fileIds.computeIfAbsent(filePath, p -> fileIds.size());
+                        int at = rows * dim * Float.BYTES;
+                        for (int i = 0; i < dim; i++) {
+                                vectors.putFloat(at + i * Float.BYTES, scratch[i]);
+                        }
+                        rows++;
+                }
+
+                private void allocate(int capacity) {
+                        ByteBuffer grown = ByteBuffer.allocateDirect(capacity * dim * Float.BYTES)
+                                        .order(ByteOrder.nativeOrder());
+                        if (vectors != null) {
+                                grown.put(vectors.duplicate().clear().limit(rows * dim * Float.BYTES)).clear();
+                        }
+                        vectors = grown;
+                        idHigh = idHigh == null ? new long[capacity] : Arrays.copyOf(idHigh, capacity);
+                        idLow = idLow == null ? new long[capacity] : Arrays.copyOf(idLow, capacity);
+                        fileOfRow = fileOfRow == null ? new int[capacity] : Arrays.copyOf(fileOfRow, capacity);
+                }
+
+                Segment build(OffsetDateTime stamp) {
+                        return new Segment(stamp, dim, rows, idHigh, idLow, fileOfRow, fileIds, vectors);
+                }
+        }
+
+        /** embedding_768 -> 768 */
+        static int dimensionOf(String vectorColumn) {
+                return Integer.parseInt(vectorColumn.substring(vectorColumn.lastIndexOf('_') + 1));
+        }
+
+        static float[] parseVector(String text) {
+                if (text == null) {
+                        return null;
+                }
+                int dim = 1;
+                for (int i = 0; i < text.length(); i++) {
+                        if (text.charAt(i) == ',') {
+                                dim++;
+                        }
+                }
+                float[] vector = new float[dim];
+                return parseVector(text, vector) ? vector : null;
+        }
+
+        /**
+         * Parse "[a,b,...]" into {@code into}; false if the element count differs.
+         */
+        static boolean parseVector(String text, float[] into) {
+                int start = text.indexOf('[') + 1;
+                int end = text.lastIndexOf(']');
+                if (end < start) {
+                        return false;
+                }
+                int n = 0;
+                int from = start;
+                for (int i = start; i <= end; i++) {
+                        if (i == end || text.charAt(i) == ',') {
+                                if (n == into.length) {
+                                        return false;
+                                }
+                                into[n++] = Float.parseFloat(text.substring(from, i).strip());
+                                from = i + 1;
+                        }
+                }
+                return n == into.length;
+        }
+
+        /**
+         * Scale to unit length in place; false for the zero vector, which has
+         * no cosine similarity.
+         */
+        static boolean normalize(float[] vector) {
+                double squares = 0;
+                for (float v : vector) {
+                        squares += (double) v * v;
+                }
+                if (squares == 0) {
+                        return false;
+                }
+                float scale = (float) (1 / Math.sqrt(squares));
+                for (int i = 0; i < vector.length; i++) {
+                        vector[i] *= scale;
+                }
+                return true;
+        }
+}
@@ -0,0 +1,710 @@
+package com.ai.deepcode.repository;
+
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.UUID;
+
+/**
+ * Hierarchical navigable small world graph (Malkov and Yashunin) over unit
+ * vectors, so similarity is a dot product. Lives in one directory:
+ *
+ * <pre>
+ *   vectors.f32      node -> dim floats
+ *   links0.i32       node -> neighbour count, then up to 2M neighbours on layer 0
+ *   nodes.bin        node -> chunk id (16 bytes), file id (4), level (1), deleted (1), padding (2)
+ *   upper.bin        neighbours on layers 1 and up; only ~1/M of nodes have any
+ *   files.txt        file id -> path, one per line
+ *   meta.properties  size, dimensions, parameters, entry point
+ * </pre>
+ *
+ * The first three are memory-mapped and written in place; {@link #flush()}
+ * forces them, then rewrites the small files, meta.properties last. After a
+ * crash the graph reopens at the last flushed size and links to nodes past it
+ * are dropped.
+ *
+ * Removal only marks a node deleted: it keeps routing searches but is never
+ * returned. Writers must be exclusive; searches may run concurrently with each
+ * other.
+ */
+final class HnswGraph implements Closeable {
+
+        private static final int NODE_BYTES = 24;
+        private static final int INITIAL_CAPACITY = 1024;
+        private static final int MAX_LEVEL = 16;
+
+        private static final DotProduct DOT = DotProduct.best();
+        private static final ThreadLocal<Visited> VISITED = ThreadLocal.withInitial(Visited::new);
+
+        private final Path dir;
+        private final int dim;
+        private final int m;
+        private final int m0;
+        private final int efConstruction;
+        private final double levelMultiplier;
+        private final SplittableRandom random = new SplittableRandom();
+
+        private FileChannel vectorsChannel;
+        private FileChannel linksChannel;
+        private FileChannel nodesChannel;
+        private MappedByteBuffer vectors;
+        private MappedByteBuffer links;
+        private MappedByteBuffer nodes;
+
+        private int size;
+        private int capacity;
+        private int entryPoint = -1;
+        private int maxLevel = -1;
+        private int deleted;
+        /** node -> links on layers 1..level, each [count, neighbours...] */
+        private final Map<Integer, int[][]> upper = new HashMap<>();
+        private final List<String> files = new ArrayList<>();
+        private final Map<String, Integer> fileIds = new HashMap<>();
+        /** Live (not deleted) nodes by chunk id */
+        private final Map<UUID, Integer> nodeOf = new HashMap<>();
+
+        /** Scratch for the vector of the node being linked; writers only */
+        private final float[] scratch;
+
+        private HnswGraph(Path dir, int dim, int m, int efConstruction) {
+                this.dir = dir;
+                this.dim = dim;
+                this.m = m;
+                this.m0 = 2 * m;
+                this.efConstruction = efConstruction;
+                this.levelMultiplier = 1 / Math.log(m);
+                this.scratch = new float[dim];
+        }
+
+        /**
+         * Open the graph stored in {@code dir}, or create an empty one there.
+         * Parameters of an existing graph come from its meta.properties.
+         */
+        static HnswGraph open(Path dir, int dim, int m, int efConstruction) throws IOException {
+                Path metaFile = dir.resolve("meta.properties");
+                if (!Files.exists(metaFile)) {
+                        Files.createDirectories(dir);
+                        HnswGraph graph = new HnswGraph(dir, dim, m, efConstruction);
+                        graph.map(INITIAL_CAPACITY);
+                        return graph;
+                }
+
+                Properties meta = new Properties();
+                try (InputStream in = Files.newInputStream(metaFile)) {
+                        meta.load(in);
+                }
+                HnswGraph graph = new HnswGraph(dir, Integer.parseInt(meta.getProperty("dim")),
+                                Integer.parseInt(meta.getProperty("m")),
+                                Integer.parseInt(meta.getProperty("efConstruction")));
+                if (graph.dim != dim) {
+                        throw new IOException("HNSW graph in " + dir + " has " + graph.dim + " dimensions, expected " + dim);
+                }
+                graph.size = Integer.parseInt(meta.getProperty("size"));
+                graph.entryPoint = Integer.parseInt(meta.getProperty("entryPoint"));
+                graph.maxLevel = Integer.parseInt(meta.getProperty("maxLevel"));
+                graph.map(Math.max(INITIAL_CAPACITY, Integer.highestOneBit(Math.max(graph.size, 1)) * 2));
+                graph.recover();
+                return graph;
+        }
+
+        /** Rebuild the in-memory tables from the files, dropping anything past {@code size}. */
+        private void recover() throws IOException {
+                Path filesFile = dir.resolve("files.txt");
+                if (Files.exists(filesFile)) {
+                        for (String path : Files.readAllLines(filesFile, StandardCharsets.UTF_8)) {
+                                fileIds.put(path, files.size());
+                                files.add(path);
+                        }
+                }
+                for (int node = 0; node < size; node++) {
+                        int at = node * NODE_BYTES;
+                        if (nodes.get(at + 21) != 0) {
+                                deleted++;
+                        } else {
+                                nodeOf.put(new UUID(nodes.getLong(at), nodes.getLong(at + 8)), node);
+                        }
+                        dropLinksPastSize(links, linkOffset(node));
+                }
+                Path upperFile = dir.resolve("upper.bin");
+                if (Files.exists(upperFile)) {
+                        try (DataInputStream in = new DataInputStream(
+                                        new BufferedInputStream(Files.newInputStream(upperFile)))) {
+                                int count = in.readInt();
+                                for (int i = 0; i < count; i++) {
+                                        int node = in.readInt();
+                                        int[][] layers = new int[in.readInt()][];
+                                        for (int l = 0; l < layers.length; l++) {
+                                                layers[l] = new int[m + 1];
+                                                int n = in.readInt();
+                                                for (int k = 0; k < n; k++) {
+                                                        int neighbour = in.readInt();
+                                                        if (neighbour < size) {
+                                                                layers[l][++layers[l][0]] = neighbour;
+                                                        }
+                                                }
+                                        }
+                                        if (node < size) {
+                                                upper.put(node, layers);
+                                        }
+                                }
+                        }
+                }
+        }
+
+        private void dropLinksPastSize(MappedByteBuffer buffer, int at) {
+                int count = buffer.getInt(at);
+                int kept = 0;
+                for (int i = 0; i < count; i++) {
+                        int neighbour = buffer.getInt(at + 4 + i * 4);
+                        if (neighbour < size) {
+                                buffer.putInt(at + 4 + kept++ * 4, neighbour);
+                        }
+                }
+                buffer.putInt(at, kept);
+        }
+
+        int dim() {
+                return dim;
+        }
+
+        int size() {
+                return size;
+        }
+
+        int liveCount() {
+                return size - deleted;
+        }
+
+        int deletedCount() {
+                return deleted;
+        }
+
+        boolean contains(UUID id) {
+                return nodeOf.containsKey(id);
+        }
+
+        /**
+         * Insert a chunk's unit vector. A chunk id already present is left as is.
+         */
+        void add(UUID id, String filePath, float[] unit) throws IOException {
+                if (nodeOf.containsKey(id)) {
+                        return;
+                }
+                if (size == capacity) {
+                        map(capacity * 2);
+                }
+                int node = size;
+                int level = randomLevel();
+                int vectorAt = node * dim * Float.BYTES;
+                for (int i = 0; i < dim; i++) {
+                        vectors.putFloat(vectorAt + i * Float.BYTES, unit[i]);
+                }
+                int at = node * NODE_BYTES;
+                nodes.putLong(at, id.getMostSignificantBits());
+                nodes.putLong(at + 8, id.getLeastSignificantBits());
+                nodes.putInt(at + 16, fileId(filePath));
+                nodes.put(at + 20, (byte) level);
+                nodes.put(at + 21, (byte) 0);
+                links.putInt(linkOffset(node), 0);
+                if (level > 0) {
+                        int[][] layers = new int[level][];
+                        for (int l = 0; l < level; l++) {
+                                layers[l] = new int[m + 1];
+                        }
+                        upper.put(node, layers);
+                }
+                size++;
+                nodeOf.put(id, node);
+
+                if (entryPoint < 0) {
+                        entryPoint = node;
+                        maxLevel = level;
+                        return;
+                }
+                int ep = entryPoint;
+                for (int l = maxLevel; l > level; l--) {
+                        ep = greedy(unit, ep, l);
+                }
+                for (int l = Math.min(level, maxLevel); l >= 0; l--) {
+                        TopK found = searchLayer(unit, ep, efConstruction, l);
+                        found.sortDescending();
+                        int[] selected = selectNeighbours(found, m);
+                        for (int neighbour : selected) {
+                                addLink(node, neighbour, l);
+                                addLink(neighbour, node, l);
+                        }
+                        ep = (int) found.ref(0);
+                }
+                if (level > maxLevel) {
+                        entryPoint = node;
+                        maxLevel = level;
+                }
+        }
+
+        void remove(UUID id) {
+                Integer node = nodeOf.remove(id);
+                if (node != null) {
+                        nodes.put(node * NODE_BYTES + 21, (byte) 1);
+                        deleted++;
+                }
+        }
+
+        /** Mark every node of these files deleted. */
+        void removeFiles(Collection<String> filePaths) {
+                Set<Integer> removed = new HashSet<>();
+                for (String path : filePaths) {
+                        Integer file = fileIds.get(path);
+                        if (file != null) {
+                                removed.add(file);
+                        }
+                }
+                if (removed.isEmpty()) {
+                        return;
+                }
+                for (int node = 0; node < size; node++) {
+                        int at = node * NODE_BYTES;
+                        if (nodes.get(at + 21) == 0 && removed.contains(nodes.getInt(at + 16))) {
+                                remove(new UUID(nodes.getLong(at), nodes.getLong(at + 8)));
+                        }
+                }
+        }
+
+        /** Mark every node whose chunk id is not in {@code ids} deleted. */
+        void retainAll(Set<UUID> ids) {
+                for (UUID id : new ArrayList<>(nodeOf.keySet())) {
+                        if (!ids.contains(id)) {
+                                remove(id);
+                        }
+                }
+        }
+
+        /**
+         * Up to {@code k} live nodes most similar to {@code unit}, best first,
+         * from a layer-0 beam of width {@code ef}. With {@code allowedFiles},
+         * nodes of other files still route the search but are not returned, so
+         * fewer than {@code k} hits may come back.
+         */
+        List<VectorHit> search(float[] unit, int k, int ef, boolean[] allowedFiles) {
+                if (entryPoint < 0 || k <= 0) {
+                        return List.of();
+                }
+                int ep = entryPoint;
+                for (int l = maxLevel; l > 0; l--) {
+                        ep = greedy(unit, ep, l);
+                }
+                TopK found = searchLayer(unit, ep, Math.max(ef, k), 0);
+                found.sortDescending();
+
+                List<VectorHit> hits = new ArrayList<>(k);
+                for (int i = 0; i < found.size() && hits.size() < k; i++) {
+                        int at = (int) found.ref(i) * NODE_BYTES;
+                        if (nodes.get(at + 21) != 0) {
+                                continue;
+                        }
+                        int file = nodes.getInt(at + 16);
+                        if (allowedFiles != null && (file >= allowedFiles.length || !allowedFiles[file])) {
+                                continue;
+                        }
+                        hits.add(new VectorHit(new UUID(nodes.getLong(at), nodes.getLong(at + 8)), found.score(i)));
+                }
+                return hits;
+        }
+
+        /** Per-file flags for a path filter, or null for no filter. */
+        boolean[] allowedFiles(List<String> filePaths) {
+                if (filePaths == null || filePaths.isEmpty()) {
+                        return null;
+                }
+                boolean[] allowed = new boolean[files.size()];
+                for (String path : filePaths) {
+                        Integer file = fileIds.get(path);
+                        if (file != null) {
+                                allowed[file] = true;
+                        }
+                }
+                return allowed;
+        }
+
+        // ---- graph construction and traversal ----
+
+        private int randomLevel() {
+                double u = 1.0 - random.nextDouble();
+                return Math.min((int) (-Math.log(u) * levelMultiplier), MAX_LEVEL);
+        }
+
+        /** Walk to the most similar node reachable on one layer. */
+        private int greedy(float[] query, int ep, int level) {
+                float best = similarity(query, ep);
+                boolean improved = true;
+                while (improved) {
+                        improved = false;
+                        int current = ep;
+                        int count = neighbourCount(current, level);
+                        for (int i = 0; i < count; i++) {
+                                int candidate = neighbour(current, level, i);
+                                float s = similarity(query, candidate);
+                                if (s > best) {
+                                        best = s;
+                                        ep = candidate;
+                                        improved = true;
+                                }
+                        }
+                }
+                return ep;
+        }
+
+        /** Beam search of width {@code ef} on one layer; refs of the result are node ids. */
+        private TopK searchLayer(float[] query, int ep, int ef, int level) {
+                Visited visited = VISITED.get();
+                visited.reset(size);
+                Candidates candidates = new Candidates();
+                TopK found = new TopK(ef);
+
+                visited.add(ep);
+                float s = similarity(query, ep);
+                candidates.push(s, ep);
+                found.offer(s, ep);
+                while (!candidates.isEmpty()) {
+                        float best = candidates.bestScore();
+                        int node = candidates.pop();
+                        if (found.isFull() && best < found.lowest()) {
+                                break;
+                        }
+                        int count = neighbourCount(node, level);
+                        for (int i = 0; i < count; i++) {
+                                int neighbour = neighbour(node, level, i);
+                                if (!visited.add(neighbour)) {
+                                        continue;
+                                }
+                                float ns = similarity(query, neighbour);
+                                if (!found.isFull() || ns > found.lowest()) {
+                                        candidates.push(ns, neighbour);
+                                        found.offer(ns, neighbour);
+                                }
+                        }
+                }
+                return found;
+        }
+
+        /**
+         * The paper's neighbour heuristic: take candidates best first, skipping
+         * any that is closer to an already selected neighbour than to the new
+         * node, so links spread in different directions.
+         */
+        private int[] selectNeighbours(TopK sortedCandidates, int max) {
+                int[] selected = new int[max];
+                int n = 0;
+                for (int i = 0; i < sortedCandidates.size() && n < max; i++) {
+                        int candidate = (int) sortedCandidates.ref(i);
+                        float toNode = sortedCandidates.score(i);
+                        loadVector(candidate, scratch);
+                        boolean keep = true;
+                        for (int j = 0; j < n && keep; j++) {
+                                keep = similarity(scratch, selected[j]) < toNode;
+                        }
+                        if (keep) {
+                                selected[n++] = candidate;
+                        }
+                }
+                return Arrays.copyOf(selected, n);
+        }
+
+        /**
+         * Link {@code from} to {@code to} on a layer; a full neighbour list is
+         * re-selected from its members plus the new one.
+         */
+        private void addLink(int from, int to, int level) {
+                int max = level == 0 ? m0 : m;
+                int count = neighbourCount(from, level);
+                for (int i = 0; i < count; i++) {
+                        if (neighbour(from, level, i) == to) {
+                                return;
+                        }
+                }
+                if (count < max) {
+                        setNeighbour(from, level, count, to);
+                        setNeighbourCount(from, level, count + 1);
+                        return;
+                }
+
+                float[] origin = new float[dim];
+                loadVector(from, origin);
+                TopK candidates = new TopK(count + 1);
+                candidates.offer(similarity(origin, to), to);
+                for (int i = 0; i < count; i++) {
+                        int neighbour = neighbour(from, level, i);
+                        candidates.offer(similarity(origin, neighbour), neighbour);
+                }
+                candidates.sortDescending();
+                int[] kept = selectNeighbours(candidates, max);
+                for (int i = 0; i < kept.length; i++) {
+                        setNeighbour(from, level, i, kept[i]);
+                }
+                setNeighbourCount(from, level, kept.length);
+        }
+
+        private float similarity(float[] query, int node) {
+                return DOT.dot(vectors, node * dim * Float.BYTES, query);
+        }
+
+        private void loadVector(int node, float[] into) {
+                int at = node * dim * Float.BYTES;
+                for (int i = 0; i < dim; i++) {
+                        into[i] = vectors.getFloat(at + i * Float.BYTES);
+                }
+        }
+
+        private int linkOffset(int node) {
+                return node * (m0 + 1) * Integer.BYTES;
+        }
+
+        private int neighbourCount(int node, int level) {
+                if (level == 0) {
+                        return links.getInt(linkOffset(node));
+                }
+                int[][] layers = upper.get(node);
+                return layers == null || layers.length < level ? 0 : layers[level - 1][0];
+        }
+
+        private int neighbour(int node, int level, int i) {
+                return level == 0
+                                ? links.getInt(linkOffset(node) + (i + 1) * Integer.BYTES)
+                                : upper.get(node)[level - 1][i + 1];
+        }
+
+        private void setNeighbour(int node, int level, int i, int neighbour) {
+                if (level == 0) {
+                        links.putInt(linkOffset(node) + (i + 1) * Integer.BYTES, neighbour);
+                } else {
+                        upper.get(node)[level - 1][i + 1] = neighbour;
+                }
+        }
+
+        private void setNeighbourCount(int node, int level, int count) {
+                if (level == 0) {
+                        links.putInt(linkOffset(node), count);
+                } else {
+                        upper.get(node)[level - 1][0] = count;
+                }
+        }
+
+        private int fileId(String filePath) {
+                Integer file = fileIds.get(filePath);
+                if (file == null) {
+                        file = files.size();
+                        files.add(filePath);
+                        fileIds.put(filePath, file);
+                }
+                return file;
+        }
+
+        // ---- persistence ----
+
+        /**
+         * Map the three node files for {@code newCapacity} nodes, growing them on
+         * disk. Mappings are limited to 2 GB each, which at 768 dimensions is
+         * about 700k chunks per project.
+         */
+        private void map(int newCapacity) throws IOException {
+                long vectorBytes = (long) newCapacity * dim * Float.BYTES;
+                if (vectorBytes > Integer.MAX_VALUE) {
+                        throw new IOException("HNSW graph in " + dir + " is full at " + capacity + " nodes");
+                }
+                if (vectorsChannel == null) {
+                        vectorsChannel = FileChannel.open(dir.resolve("vectors.f32"), StandardOpenOption.CREATE,
+                                        StandardOpenOption.READ, StandardOpenOption.WRITE);
+                        linksChannel = FileChannel.open(dir.resolve("links0.i32"), StandardOpenOption.CREATE,
+                                        StandardOpenOption.READ, StandardOpenOption.WRITE);
+                        nodesChannel = FileChannel.open(dir.resolve("nodes.bin"), StandardOpenOption.CREATE,
+                                        StandardOpenOption.READ, StandardOpenOption.WRITE);
+                }
+                vectors = mapping(vectorsChannel, vectorBytes);
+                links = mapping(linksChannel, (long) newCapacity * (m0 + 1) * Integer.BYTES);
+                nodes = mapping(nodesChannel, (long) newCapacity * NODE_BYTES);
+                capacity = newCapacity;
+        }
+
+        private static MappedByteBuffer mapping(FileChannel channel, long bytes) throws IOException {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, bytes);
+                buffer.order(ByteOrder.nativeOrder());
+                return buffer;
+        }
+
+        void flush() throws IOException {
+                vectors.force();
+                links.force();
+                nodes.force();
+
+                Path upperTmp = dir.resolve("upper.bin.tmp");
+                try (DataOutputStream out = new DataOutputStream(
+                                new BufferedOutputStream(Files.newOutputStream(upperTmp)))) {
+                        out.writeInt(upper.size());
+                        for (Map.Entry<Integer, int[][]> entry : upper.entrySet()) {
+                                out.writeInt(entry.getKey());
+                                out.writeInt(entry.getValue().length);
+                                for (int[] layer : entry.getValue()) {
+                                        out.writeInt(layer[0]);
+                                        for (int i = 1; i <= layer[0]; i++) {
+                                                out.writeInt(layer[i]);
+                                        }
+                                }
+                        }
+                }
+                Files.move(upperTmp, dir.resolve("upper.bin"), StandardCopyOption.REPLACE_EXISTING,
+                                StandardCopyOption.ATOMIC_MOVE);
+
+                Path filesTmp = dir.resolve("files.txt.tmp");
+                Files.write(filesTmp, files, StandardCharsets.UTF_8);
+                Files.move(filesTmp, dir.resolve("files.txt"), StandardCopyOption.REPLACE_EXISTING,
+                                StandardCopyOption.ATOMIC_MOVE);
+
+                Properties meta = new Properties();
+                meta.setProperty("dim", Integer.toString(dim));
+                meta.setProperty("m", Integer.toString(m));
+                meta.setProperty("efConstruction", Integer.toString(efConstruction));
+                meta.setProperty("size", Integer.toString(size));
+                meta.setProperty("entryPoint", Integer.toString(entryPoint));
+                meta.setProperty("maxLevel", Integer.toString(maxLevel));
+                Path metaTmp = dir.resolve("meta.properties.tmp");
+                try (OutputStream out = Files.newOutputStream(metaTmp)) {
+                        meta.store(out, "HNSW graph");
+                }
+                Files.move(metaTmp, dir.resolve("meta.properties"), StandardCopyOption.REPLACE_EXISTING,
+                                StandardCopyOption.ATOMIC_MOVE);
+        }
+
+        @Override
+        public void close() throws IOException {
+                if (vectorsChannel != null) {
+                        vectorsChannel.close();
+                        linksChannel.close();
+                        nodesChannel.close();
+                }
+        }
+
+        /** Delete a graph's directory; the graph must be closed. */
+        static void delete(Path dir) throws IOException {
+                if (!Files.exists(dir)) {
+                        return;
+                }
+                try (var paths = Files.list(dir)) {
+                        for (Path file : paths.toList()) {
+                                Files.delete(file);
+                        }
+                }
+                Files.delete(dir);
+        }
+
+        /**
+         * Visited marks for one search, reset in O(1) by bumping an epoch.
+         */
+        private static final class Visited {
+                private int[] marks = new int[0];
+                private int epoch;
+
+                void reset(int size) {
+                        if (marks.length < size) {
+                                marks = new int[Math.max(size, marks.length * 2)];
+                                epoch = 0;
+                        }
+                        if (++epoch == Integer.MAX_VALUE) {
+                                Arrays.fill(marks, 0);
+                                epoch = 1;
+                        }
+                }
+
+                /** Mark a node; false if it was already marked. */
+                boolean add(int node) {
+                        if (marks[node] == epoch) {
+                                return false;
+                        }
+                        marks[node] = epoch;
+                        return true;
+                }
+        }
+
+        /**
+         * Max-heap of (score, node) still to expand, best first.
+         */
+        private static final class Candidates {
+                private float[] scores = new float[64];
+                private int[] nodes = new int[64];
+                private int size;
+
+                boolean isEmpty() {
+                        return size == 0;
+                }
+
+                float bestScore() {
+                        return scores[0];
+                }
+
+                void push(float score, int node) {
+                        if (size == scores.length) {
+                                scores = Arrays.copyOf(scores, size * 2);
+                                nodes = Arrays.copyOf(nodes, size * 2);
+                        }
+                        int i = size++;
+                        while (i > 0) {
+                                int parent = (i - 1) >>> 1;
+                                if (scores[parent] >= score) {
+                                        break;
+                                }
+                                scores[i] = scores[parent];
+                                nodes[i] = nodes[parent];
+                                i = parent;
+                        }
+                        scores[i] = score;
+                        nodes[i] = node;
+                }
+
+                int pop() {
+                        int top = nodes[0];
+                        size--;
+                        float score = scores[size];
+                        int node = nodes[size];
+                        int i = 0;
+                        while (true) {
+                                int child = 2 * i + 1;
+                                if (child >= size) {
+                                        break;
+                                }
+                                if (child + 1 < size && scores[child + 1] > scores[child]) {
+                                        child++;
+                                }
+                                if (scores[child] <= score) {
+                                        break;
+                                }
+                                scores[i] = scores[child];
+                                nodes[i] = nodes[child];
+                                i = child;
+                        }
+                        scores[i] = score;
+                        nodes[i] = node;
+                        return top;
+                }
+        }
+}
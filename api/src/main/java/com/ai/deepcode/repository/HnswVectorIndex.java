@@ -0,0 +1,622 @@
+package com.ai.deepcode.repository;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+/**
+ * Approximate similarity search from per-project {@link HnswGraph}s kept on
+ * local disk under {@code search.hnsw.dir}, one per project and embedding
+ * column. Active when {@code search.backend} is {@code hnsw}; queries return
+ * chunk ids and scores without a database round trip and the caller fetches
+ * content by id.
+ *
+ * Chunks written through {@code IndexingService} are added or tombstoned once
+ * their transaction commits; a full index is reconciled as a whole. Writes this node did not see (other nodes,
+ * failed hooks) are caught by the same freshness stamp {@link ExactVectorIndex}
+ * uses: when a project's index_status.updated_at differs from the stamp the
+ * graph was last reconciled at, its chunk ids are compared with the graph in
+ * the background. A graph with too many tombstones is rebuilt.
+ *
+ * Queries never wait on a writer: while a graph is missing, being built or
+ * being reconciled, {@link #search} returns null and pgvector answers.
+ */
+@Component
+public class HnswVectorIndex {
+
+        private static final Logger log = LoggerFactory.getLogger(HnswVectorIndex.class);
+
+        private record Key(UUID projectId, String column) {
+        }
+
+        private static final class Entry {
+                final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+                /** Replaced under the write lock; null until built */
+                volatile HnswGraph graph;
+                OffsetDateTime stamp;
+                boolean dirty;
+                /** A build or reconcile is queued or running */
+                volatile boolean busy;
+        }
+
+        private final JdbcTemplate jdbcTemplate;
+        private final boolean enabled;
+        private final Path baseDir;
+        private final int m;
+        private final int efConstruction;
+        private final int efSearch;
+        private final double maxDeletedFraction;
+
+        private final Map<Key, Entry> entries = new ConcurrentHashMap<>();
+        private final ExecutorService builder = Executors.newSingleThreadExecutor(r -> {
+                Thread t = new Thread(r, "hnsw-build");
+                t.setDaemon(true);
+                return t;
+        });
+        private final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "hnsw-flush");
+                t.setDaemon(true);
+                return t;
+        });
+
+        public HnswVectorIndex(JdbcTemplate jdbcTemplate,
+                        @Value("${search.backend:pgvector}") String backend,
+                        @Value("${search.hnsw.dir:data/hnsw}") String dir,
+                        @Value("${search.hnsw.m:16}") int m,
+                        @Value("${search.hnsw.ef-construction:100}") int efConstruction,
+                        @Value("${search.hnsw.ef-search:64}") int efSearch,
+                        @Value("${search.hnsw.flush-interval-ms:2000}") long flushIntervalMs,
+                        @Value("${search.hnsw.max-deleted-fraction:0.3}") double maxDeletedFraction) {
+                this.jdbcTemplate = jdbcTemplate;
+                this.enabled = "hnsw".equalsIgnoreCase(backend);
+                this.baseDir = Paths.get(dir);
+                this.m = m;
+                this.efConstruction = efConstruction;
+                this.efSearch = efSearch;
+                this.maxDeletedFraction = maxDeletedFraction;
+                if (enabled) {
+                        flusher.scheduleWithFixedDelay(this::flushAll, flushIntervalMs, flushIntervalMs,
+                                        TimeUnit.MILLISECONDS);
+                        log.info("[HnswVectorIndex] HNSW search from {} (M={}, efConstruction={}, efSearch={})",
+                                        baseDir.toAbsolutePath(), m, efConstruction, efSearch);
+                }
+        }
+
+        public boolean isEnabled() {
+                return enabled;
+        }
+
+        /**
+         * Approximate top {@code limit} chunks of the given projects, best first,
+         * or null when any project has no usable graph yet or a file filter left
+         * fewer than {@code limit} hits; the caller should then ask pgvector.
+         */
+        public List<VectorHit> search(List<UUID> projectIds, String vectorColumn, String embedding, int limit,
+                        List<String> filePaths) {
+                if (!enabled || projectIds.isEmpty() || limit <= 0) {
+                        return null;
+                }
+                float[] query = ExactVectorIndex.parseVector(embedding);
+                if (query == null || !ExactVectorIndex.normalize(query)) {
+                        return null;
+                }
+                Map<UUID, OffsetDateTime> stamps = indexStamps(projectIds);
+
+                List<List<VectorHit>> perProject = new ArrayList<>(projectIds.size());
+                for (UUID projectId : projectIds) {
+                        OffsetDateTime stamp = stamps.get(projectId);
+                        if (stamp == null) {
+                                return null;
+                        }
+                        Key key = new Key(projectId, vectorColumn);
+                        Entry entry = entries.computeIfAbsent(key, k -> new Entry());
+                        List<VectorHit> hits = searchEntry(key, entry, stamp, query, limit, filePaths);
+                        if (hits == null) {
+                                return null;
+                        }
+                        perProject.add(hits);
+                }
+                return perProject.size() == 1 ? perProject.get(0) : merge(perProject, limit);
+        }
+
+        private List<VectorHit> searchEntry(Key key, Entry entry, OffsetDateTime stamp, float[] query, int limit,
+                        List<String> filePaths) {
+                if (!entry.lock.readLock().tryLock()) {
+                        return null;
+                }
+                List<VectorHit> hits;
+                boolean stale;
+                try {
+                        HnswGraph graph = entry.graph;
+                        if (graph == null) {
+                                hits = null;
+                                stale = true;
+                        } else if (graph.dim() != query.length) {
+                                return null;
+                        } else {
+                                hits = graph.search(query, limit, efSearch, graph.allowedFiles(filePaths));
+                                stale = !stamp.equals(entry.stamp);
+                        }
+                } finally {
+                        entry.lock.readLock().unlock();
+                }
+                if (stale) {
+                        // A slightly stale graph still answers; catching up happens in the background
+                        schedule(key, entry, stamp);
+                }
+                if (hits != null && filePaths != null && !filePaths.isEmpty() && hits.size() < limit) {
+                        return null;
+                }
+                return hits;
+        }
+
+        private static List<VectorHit> merge(List<List<VectorHit>> perProject, int limit) {
+                TopK top = new TopK(limit);
+                List<VectorHit> all = new ArrayList<>();
+                for (List<VectorHit> hits : perProject) {
+                        for (VectorHit hit : hits) {
+                                top.offer(hit.score(), all.size());
+                                all.add(hit);
+                        }
+                }
+                top.sortDescending();
+                List<VectorHit> merged = new ArrayList<>(top.size());
+                for (int i = 0; i < top.size(); i++) {
+                        merged.add(all.get((int) top.ref(i)));
+                }
+                return merged;
+        }
+
+        private Map<UUID, OffsetDateTime> indexStamps(List<UUID> projectIds) {
+                Map<UUID, OffsetDateTime> stamps = new HashMap<>();
+                jdbcTemplate.query("SELECT project_id, updated_at FROM index_status WHERE project_id = ANY(?)",
+                                rs -> {
+                                        stamps.put(rs.getObject("project_id", UUID.class),
+                                                        rs.getObject("updated_at", OffsetDateTime.class));
+                                },
+                                (Object) projectIds.toArray(new UUID[0]));
+                return stamps;
+        }
+
+        // ---- write hooks ----
+
+        /** A chunk row was inserted with this embedding. */
+        public void chunkInserted(UUID projectId, String vectorColumn, UUID chunkId, String filePath,
+                        float[] embedding) {
+                if (!enabled || inBulkUpdate(projectId)) {
+                        return;
+                }
+                float[] unit = embedding.clone();
+                if (!ExactVectorIndex.normalize(unit)) {
+                        return;
+                }
+                afterCommit(() -> write(new Key(projectId, vectorColumn), graph -> {
+                        if (graph.dim() == unit.length) {
+                                add(graph, chunkId, filePath, unit);
+                        }
+                }));
+        }
+
+        /** Chunk rows of a project were deleted by id. */
+        public void chunksDeleted(UUID projectId, Collection<UUID> chunkIds) {
+                if (!enabled || chunkIds.isEmpty() || inBulkUpdate(projectId)) {
+                        return;
+                }
+                List<UUID> ids = List.copyOf(chunkIds);
+                afterCommit(() -> writeAll(projectId, graph -> ids.forEach(graph::remove)));
+        }
+
+        /** All chunk rows of these files were deleted. */
+        public void filesDeleted(UUID projectId, Collection<String> filePaths) {
+                if (!enabled || filePaths.isEmpty() || inBulkUpdate(projectId)) {
+                        return;
+                }
+                List<String> paths = List.copyOf(filePaths);
+                afterCommit(() -> writeAll(projectId, graph -> graph.removeFiles(paths)));
+        }
+
+        /** All chunk rows of a project were deleted; its graphs are dropped. */
+        public void projectDeleted(UUID projectId) {
+                if (!enabled) {
+                        return;
+                }
+                afterCommit(() -> {
+                        for (Map.Entry<Key, Entry> e : entries.entrySet()) {
+                                if (e.getKey().projectId().equals(projectId)) {
+                                        drop(e.getKey(), e.getValue());
+                                }
+                        }
+                });
+        }
+
+        /**
+         * The current transaction rewrites a project's chunks in bulk (a full
+         * index). Its per-chunk hooks for the project are skipped rather than
+         * holding every vector until commit; after commit the project's graphs
+         * are reconciled from the database instead.
+         */
+        public void bulkUpdate(UUID projectId) {
+                if (!enabled) {
+                        return;
+                }
+                if (TransactionSynchronizationManager.isSynchronizationActive()) {
+                        pending().bulkProjects.add(projectId);
+                }
+                afterCommit(() -> {
+                        for (Map.Entry<Key, Entry> e : entries.entrySet()) {
+                                if (e.getKey().projectId().equals(projectId)) {
+                                        Entry entry = e.getValue();
+                                        entry.lock.writeLock().lock();
+                                        try {
+                                                entry.stamp = null;
+                                        } finally {
+                                                entry.lock.writeLock().unlock();
+                                        }
+                                }
+                        }
+                });
+        }
+
+        /** Changes of the current transaction, applied once it commits. */
+        private static final class Pending {
+                final List<Runnable> changes = new ArrayList<>();
+                /** Projects whose per-chunk hooks are skipped; see bulkUpdate */
+                final Set<UUID> bulkProjects = new HashSet<>();
+        }
+
+        private boolean inBulkUpdate(UUID projectId) {
+                if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+                        return false;
+                }
+                Pending pending = (Pending) TransactionSynchronizationManager.getResource(this);
+                return pending != null && pending.bulkProjects.contains(projectId);
+        }
+
+        /**
+         * Run {@code change} once the current transaction commits, in commit
+         * order with the transaction's other changes; immediately without one.
+         */
+        private void afterCommit(Runnable change) {
+                if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+                        change.run();
+                        return;
+                }
+                pending().changes.add(change);
+        }
+
+        private Pending pending() {
+                Pending pending = (Pending) TransactionSynchronizationManager.getResource(this);
+                if (pending == null) {
+                        Pending created = new Pending();
+                        TransactionSynchronizationManager.bindResource(this, created);
+                        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                                @Override
+                                public void afterCommit() {
+                                        created.changes.forEach(Runnable::run);
+                                }
+
+                                @Override
+                                public void afterCompletion(int status) {
+                                        TransactionSynchronizationManager.unbindResourceIfPossible(HnswVectorIndex.this);
+                                }
+                        });
+                        pending = created;
+                }
+                return pending;
+        }
+
+        private void writeAll(UUID projectId, Consumer<HnswGraph> change) {
+                for (Key key : entries.keySet()) {
+                        if (key.projectId().equals(projectId)) {
+                                write(key, change);
+                        }
+                }
+        }
+
+        /**
+         * Apply a change to a loaded graph. A graph that is not loaded will be
+         * reconciled from the database when it is.
+         */
+        private void write(Key key, Consumer<HnswGraph> change) {
+                Entry entry = entries.get(key);
+                if (entry == null) {
+                        return;
+                }
+                entry.lock.writeLock().lock();
+                try {
+                        if (entry.graph != null) {
+                                change.accept(entry.graph);
+                                entry.dirty = true;
+                        }
+                } catch (RuntimeException e) {
+                        log.warn("[HnswVectorIndex] Update of {} {} failed, will reconcile: {}",
+                                        key.projectId(), key.column(), e.getMessage());
+                        entry.stamp = null;
+                } finally {
+                        entry.lock.writeLock().unlock();
+                }
+        }
+
+        private static void add(HnswGraph graph, UUID id, String filePath, float[] unit) {
+                try {
+                        graph.add(id, filePath, unit);
+                } catch (IOException e) {
+                        throw new IllegalStateException(e.getMessage(), e);
+                }
+        }
+
+        // ---- building and reconciling ----
+
+        private void schedule(Key key, Entry entry, OffsetDateTime stamp) {
+                synchronized (entry) {
+                        if (entry.busy) {
+                                return;
+                        }
+                        entry.busy = true;
+                }
+                builder.execute(() -> {
+                        try {
+                                sync(key, entry, stamp);
+                        } catch (Exception e) {
+                                log.error("[HnswVectorIndex] Sync of {} {} failed: {}", key.projectId(), key.column(),
+                                                e.getMessage());
+                        } finally {
+                                entry.busy = false;
+                        }
+                });
+        }
+
+        /**
+         * Bring a graph to the database state: open it from disk if present,
+         * build it if not, then add and tombstone chunks by id difference.
+         */
+        private void sync(Key key, Entry entry, OffsetDateTime stamp) throws IOException {
+                Path dir = graphDir(key);
+                if (entry.graph == null && Files.exists(dir.resolve("meta.properties"))) {
+                        HnswGraph opened;
+                        try {
+                                opened = HnswGraph.open(dir, ExactVectorIndex.dimensionOf(key.column()), m,
+                                                efConstruction);
+                        } catch (IOException | RuntimeException e) {
+                                log.warn("[HnswVectorIndex] Discarding unreadable graph {}: {}", dir, e.getMessage());
+                                HnswGraph.delete(dir);
+                                opened = null;
+                        }
+                        if (opened != null) {
+                                entry.lock.writeLock().lock();
+                                try {
+                                        entry.graph = opened;
+                                        entry.stamp = readStamp(dir);
+                                } finally {
+                                        entry.lock.writeLock().unlock();
+                                }
+                                log.info("[HnswVectorIndex] Opened {} vectors of project {} from {}",
+                                                opened.liveCount(), key.projectId(), dir);
+                        }
+                }
+                if (entry.graph == null) {
+                        build(key, entry, stamp);
+                        return;
+                }
+                if (stamp.equals(entry.stamp)) {
+                        return;
+                }
+                reconcile(key, entry, stamp);
+                HnswGraph graph = entry.graph;
+                if (graph != null && graph.deletedCount() > maxDeletedFraction * graph.size()) {
+                        log.info("[HnswVectorIndex] Rebuilding project {}: {} of {} nodes deleted", key.projectId(),
+                                        graph.deletedCount(), graph.size());
+                        build(key, entry, stamp);
+                }
+        }
+
+        /**
+         * Build a fresh graph from the database next to the current one and swap
+         * it in; queries keep using the current graph meanwhile.
+         */
+        private void build(Key key, Entry entry, OffsetDateTime stamp) throws IOException {
+                long started = System.currentTimeMillis();
+                Path dir = graphDir(key);
+                Path building = dir.resolveSibling(dir.getFileName() + ".building");
+                HnswGraph.delete(building);
+                int dim = ExactVectorIndex.dimensionOf(key.column());
+                HnswGraph graph = HnswGraph.open(building, dim, m, efConstruction);
+                float[] scratch = new float[dim];
+                try {
+                        jdbcTemplate.query("SELECT id, file_path, " + key.column() + "::text AS vec FROM chunks "
+                                        + "WHERE project_id = ? AND " + key.column() + " IS NOT NULL",
+                                        rs -> {
+                                                if (ExactVectorIndex.parseVector(rs.getString("vec"), scratch)
+                                                                && ExactVectorIndex.normalize(scratch)) {
+                                                        add(graph, rs.getObject("id", UUID.class),
+                                                                        rs.getString("file_path"), scratch);
+                                                }
+                                        },
+                                        key.projectId());
+                        graph.flush();
+                        graph.close();
+                } catch (RuntimeException | IOException e) {
+                        graph.close();
+                        HnswGraph.delete(building);
+                        throw e;
+                }
+
+                entry.lock.writeLock().lock();
+                try {
+                        if (entry.graph != null) {
+                                entry.graph.close();
+                                entry.graph = null;
+                        }
+                        HnswGraph.delete(dir);
+                        Files.move(building, dir);
+                        entry.graph = HnswGraph.open(dir, dim, m, efConstruction);
+                        // Writes that committed during the build are found by the next reconcile
+                        entry.stamp = stamp;
+                        writeStamp(dir, stamp);
+                        entry.dirty = false;
+                } finally {
+                        entry.lock.writeLock().unlock();
+                }
+                log.info("[HnswVectorIndex] Built graph of {} vectors for project {} {} in {} ms",
+                                graph.liveCount(), key.projectId(), key.column(),
+                                System.currentTimeMillis() - started);
+        }
+
+        /**
+         * Compare the project's chunk ids with the graph: add the missing ones,
+         * tombstone the ones gone. Holds the write lock, so queries fall back to
+         * pgvector until it finishes.
+         */
+        private void reconcile(Key key, Entry entry, OffsetDateTime stamp) throws IOException {
+                entry.lock.writeLock().lock();
+                try {
+                        HnswGraph graph = entry.graph;
+                        Set<UUID> stored = new HashSet<>();
+                        List<UUID> missing = new ArrayList<>();
+                        jdbcTemplate.query("SELECT id FROM chunks WHERE project_id = ? AND " + key.column()
+                                        + " IS NOT NULL",
+                                        rs -> {
+                                                UUID id = rs.getObject("id", UUID.class);
+                                                stored.add(id);
+                                                if (!graph.contains(id)) {
+                                                        missing.add(id);
+                                                }
+                                        },
+                                        key.projectId());
+                        int removed = graph.liveCount() + missing.size() - stored.size();
+                        if (removed > 0) {
+                                graph.retainAll(stored);
+                        }
+                        if (!missing.isEmpty()) {
+                                float[] scratch = new float[graph.dim()];
+                                jdbcTemplate.query("SELECT id, file_path, " + key.column() + "::text AS vec FROM chunks "
+                                                + "WHERE project_id = ? AND id = ANY(?)",
+                                                rs -> {
+                                                        if (ExactVectorIndex.parseVector(rs.getString("vec"), scratch)
+                                                                        && ExactVectorIndex.normalize(scratch)) {
+                                                                add(graph, rs.getObject("id", UUID.class),
+                                                                                rs.getString("file_path"), scratch);
+                                                        }
+                                                },
+                                                key.projectId(), missing.toArray(new UUID[0]));
+                        }
+                        graph.flush();
+                        writeStamp(graphDir(key), stamp);
+                        entry.stamp = stamp;
+                        entry.dirty = false;
+                        if (removed > 0 || !missing.isEmpty()) {
+                                log.debug("[HnswVectorIndex] Reconciled project {}: {} added, {} removed",
+                                                key.projectId(), missing.size(), removed);
+                        }
+                } finally {
+                        entry.lock.writeLock().unlock();
+                }
+        }
+
+        private void drop(Key key, Entry entry) {
+                entry.lock.writeLock().lock();
+                try {
+                        if (entry.graph != null) {
+                                entry.graph.close();
+                                entry.graph = null;
+                        }
+                        entry.stamp = null;
+                        HnswGraph.delete(graphDir(key));
+                } catch (IOException e) {
+                        log.warn("[HnswVectorIndex] Could not delete graph of project {}: {}", key.projectId(),
+                                        e.getMessage());
+                } finally {
+                        entry.lock.writeLock().unlock();
+                }
+        }
+
+        // ---- persistence ----
+
+        private Path graphDir(Key key) {
+                return baseDir.resolve(key.projectId().toString()).resolve(key.column());
+        }
+
+        private static OffsetDateTime readStamp(Path dir) {
+                try {
+                        Path file = dir.resolve("stamp.txt");
+                        return Files.exists(file)
+                                        ? OffsetDateTime.parse(Files.readString(file, StandardCharsets.UTF_8).strip())
+                                        : null;
+                } catch (IOException | RuntimeException e) {
+                        return null;
+                }
+        }
+
+        private static void writeStamp(Path dir, OffsetDateTime stamp) throws IOException {
+                Files.writeString(dir.resolve("stamp.txt"), stamp.toString(), StandardCharsets.UTF_8);
+        }
+
+        /**
+         * Persist graphs changed by write hooks. Their stamp is not advanced: the
+         * index_status row they belong to may change again in the same run.
+         */
+        private void flushAll() {
+                for (Map.Entry<Key, Entry> e : entries.entrySet()) {
+                        Entry entry = e.getValue();
+                        // Read lock: flushing does not change the graph, and queries may continue
+                        entry.lock.readLock().lock();
+                        try {
+                                if (entry.graph != null && entry.dirty) {
+                                        entry.graph.flush();
+                                        entry.dirty = false;
+                                }
+                        } catch (IOException | RuntimeException ex) {
+                                log.warn("[HnswVectorIndex] Flush of project {} failed: {}", e.getKey().projectId(),
+                                                ex.getMessage());
+                        } finally {
+                                entry.lock.readLock().unlock();
+                        }
+                }
+        }
+
+        @PreDestroy
+        void shutdown() {
+                builder.shutdownNow();
+                flusher.shutdownNow();
+                flushAll();
+                for (Entry entry : entries.values()) {
+                        entry.lock.writeLock().lock();
+                        try {
+                                if (entry.graph != null) {
+                                        entry.graph.close();
+                                }
+                        } catch (IOException e) {
+                                log.warn("[HnswVectorIndex] Close failed: {}", e.getMessage());
+                        } finally {
+                                entry.lock.writeLock().unlock();
+                        }
+                }
+        }
+}
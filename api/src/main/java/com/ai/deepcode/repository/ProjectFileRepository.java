@@ -2,14 +2,37 @@ package com.ai.deepcode.repository;
 
 import com.ai.deepcode.entity.ProjectFile;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
 
 @Repository
-public interface ProjectFileRepository extends JpaRepository<ProjectFile, UUID> {
+public interface ProjectFileRepository extends JpaRepository<ProjectFile, UUID>, CustomProjectFileRepository {
     List<ProjectFile> findByProjectId(UUID projectId);
 
+    Optional<ProjectFile> findFirstByProjectId(UUID projectId);
+
+    long countByProjectId(UUID projectId);
+
     void deleteByProjectId(UUID projectId);
+
+    /**
+     * Paths of the project's .gitignore and .ragignore files.
+     */
+    @Query("SELECT pf.path FROM ProjectFile pf WHERE pf.project.id = :projectId"
+            + " AND (pf.path IN ('.gitignore', '.ragignore')"
+            + " OR pf.path LIKE '%/.gitignore' OR pf.path LIKE '%/.ragignore')")
+    List<String> findIgnoreFilePaths(@Param("projectId") UUID projectId);
+
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM ProjectFile pf WHERE pf.project.id = :projectId AND pf.path IN :paths")
+    void deleteByProjectIdAndPathIn(@Param("projectId") UUID projectId, @Param("paths") Collection<String> paths);
 }
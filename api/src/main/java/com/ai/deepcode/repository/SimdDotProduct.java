@@ -0,0 +1,35 @@
+package com.ai.deepcode.repository;
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Dot product on the widest SIMD registers the CPU offers. Only referenced
+ * through {@link DotProduct#best()}.
+ */
+final class SimdDotProduct extends DotProduct {
+
+        private static final VectorSpecies<Float> SPECIES = FloatVector.SPECIES_PREFERRED;
+
+        @Override
+        float dot(ByteBuffer vectors, int byteOffset, float[] query) {
+                FloatVector acc = FloatVector.zero(SPECIES);
+                int n = query.length;
+                int bound = SPECIES.loopBound(n);
+                int i = 0;
+                for (; i < bound; i += SPECIES.length()) {
+                        FloatVector v = FloatVector.fromByteBuffer(SPECIES, vectors, byteOffset + i * Float.BYTES,
+                                        ByteOrder.nativeOrder());
+                        acc = v.fma(FloatVector.fromArray(SPECIES, query, i), acc);
+                }
+                float sum = acc.reduceLanes(VectorOperators.ADD);
+                for (; i < n; i++) {
+                        sum += vectors.getFloat(byteOffset + i * Float.BYTES) * query[i];
+                }
+                return sum;
+        }
+}
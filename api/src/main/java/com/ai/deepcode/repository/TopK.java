@@ -0,0 +1,93 @@
+package com.ai.deepcode.repository;
+
+/**
+ * The k highest-scoring references seen so far, kept in a min-heap of
+ * primitive arrays so offering a candidate allocates nothing.
+ */
+final class TopK {
+
+        private final float[] scores;
+        private final long[] refs;
+        private int size;
+
+        TopK(int k) {
+                scores = new float[Math.max(k, 1)];
+                refs = new long[scores.length];
+        }
+
+        void offer(float score, long ref) {
+                if (size < scores.length) {
+                        int i = size++;
+                        while (i > 0) {
+                                int parent = (i - 1) >>> 1;
+                                if (scores[parent] <= score) {
+                                        break;
+                                }
+                                scores[i] = scores[parent];
+                                refs[i] = refs[parent];
+                                i = parent;
+                        }
+                        scores[i] = score;
+                        refs[i] = ref;
+                } else if (score > scores[0]) {
+                        siftDown(score, ref, size);
+                }
+        }
+
+        int size() {
+                return size;
+        }
+
+        boolean isFull() {
+                return size == scores.length;
+        }
+
+        /** Lowest score held; only meaningful when not empty. */
+        float lowest() {
+                return scores[0];
+        }
+
+        /**
+         * Empties the heap into best-first order; afterwards {@link #score(int)}
+         * and {@link #ref(int)} read position i of that order.
+         */
+        void sortDescending() {
+                for (int end = size - 1; end > 0; end--) {
+                        float score = scores[end];
+                        long ref = refs[end];
+                        scores[end] = scores[0];
+                        refs[end] = refs[0];
+                        siftDown(score, ref, end);
+                }
+        }
+
+        float score(int i) {
+                return scores[i];
+        }
+
+        long ref(int i) {
+                return refs[i];
+        }
+
+        /** Put (score, ref) at the root of heap[0, n) and restore the heap order. */
+        private void siftDown(float score, long ref, int n) {
+                int i = 0;
+                while (true) {
+                        int child = 2 * i + 1;
+                        if (child >= n) {
+                                break;
+                        }
+                        if (child + 1 < n && scores[child + 1] < scores[child]) {
+                                child++;
+                        }
+                        if (scores[child] >= score) {
+                                break;
+                        }
+                        scores[i] = scores[child];
+                        refs[i] = refs[child];
+                        i = child;
+                }
+                scores[i] = score;
+                refs[i] = ref;
+        }
+}
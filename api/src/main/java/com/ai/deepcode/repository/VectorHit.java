@@ -0,0 +1,9 @@
+package com.ai.deepcode.repository;
+
+import java.util.UUID;
+
+/**
+ * A chunk found by an in-process vector index, with its cosine similarity to the query.
+ */
+public record VectorHit(UUID id, float score) {
+}
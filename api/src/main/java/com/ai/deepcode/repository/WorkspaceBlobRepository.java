@@ -0,0 +1,156 @@
+package com.ai.deepcode.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Shared workspace file storage in Postgres (workspace_files + workspace_file_chunks).
+ * Every write assigns a new version from a sequence, so nodes can tell whether
+ * their local copy is current with a primary-key lookup.
+ */
+@Repository
+public class WorkspaceBlobRepository {
+
+        /** Content is written and read in pieces of this size. */
+        private static final int CHUNK_BYTES = 1024 * 1024;
+
+        private static final String UPSERT_FILE_SQL = """
+                        INSERT INTO workspace_files (project_id, path, version, size_bytes, updated_at)
+                        VALUES (?, ?, nextval('workspace_file_version_seq'), ?, now())
+                        ON CONFLICT (project_id, path) DO UPDATE SET
+                            version = EXCLUDED.version,
+                            size_bytes = EXCLUDED.size_bytes,
+                            updated_at = EXCLUDED.updated_at
+                        RETURNING version
+                        """;
+
+        private final JdbcTemplate jdbcTemplate;
+
+        public WorkspaceBlobRepository(JdbcTemplate jdbcTemplate) {
+                this.jdbcTemplate = jdbcTemplate;
+        }
+
+        /**
+         * Content of one file at its current version.
+         */
+        public record Blob(long version, byte[] content) {
+        }
+
+        /**
+         * Replace a file's content with {@code size} bytes read from {@code content}.
+         * Each chunk is sent as soon as it is read, so only one chunk is held in
+         * memory. Returns the new version.
+         *
+         * @throws IllegalStateException if the stream does not hold exactly {@code size} bytes
+         */
+        @Transactional
+        public long save(UUID projectId, String path, long size, InputStream content) {
+                Long version = jdbcTemplate.queryForObject(UPSERT_FILE_SQL, Long.class, projectId, path, size);
+                jdbcTemplate.update("DELETE FROM workspace_file_chunks WHERE project_id = ? AND path = ?",
+                                projectId, path);
+
+                byte[] buf = new byte[(int) Math.min(CHUNK_BYTES, Math.max(size, 1))];
+                long written = 0;
+                int seq = 0;
+                try {
+                        int n;
+                        do {
+                                n = content.readNBytes(buf, 0, buf.length);
+                                if (n == 0 && seq > 0) {
+                                        break;
+                                }
+                                int length = n;
+                                int chunkSeq = seq++;
+                                jdbcTemplate.update(
+                                                "INSERT INTO workspace_file_chunks (project_id, path, seq, data) VALUES (?, ?, ?, ?)",
+                                                ps -> {
+                                                        ps.setObject(1, projectId);
+                                                        ps.setString(2, path);
+                                                        ps.setInt(3, chunkSeq);
+                                                        ps.setBinaryStream(4, new ByteArrayInputStream(buf, 0, length), length);
+                                                });
+                                written += n;
+                        } while (n == buf.length);
+                } catch (IOException e) {
+                        // Unchecked so the transaction rolls back
+                        throw new UncheckedIOException("Failed to read workspace file " + path, e);
+                }
+                if (written != size) {
+                        throw new IllegalStateException("Workspace file " + path + " changed while being saved: expected "
+                                        + size + " bytes, read " + written);
+                }
+                return version;
+        }
+
+        /**
+         * Current version of a file, or null if it is not stored.
+         */
+        public Long version(UUID projectId, String path) {
+                List<Long> versions = jdbcTemplate.queryForList(
+                                "SELECT version FROM workspace_files WHERE project_id = ? AND path = ?",
+                                Long.class, projectId, path);
+                return versions.isEmpty() ? null : versions.get(0);
+        }
+
+        /**
+         * Read a file's chunks in one statement, so version and content come from the
+         * same snapshot. Returns null if the file is not stored.
+         */
+        public Blob load(UUID projectId, String path) {
+                long[] version = { -1 };
+                byte[][] content = { null };
+                int[] filled = { 0 };
+                jdbcTemplate.query("""
+                                SELECT f.version, f.size_bytes, c.data
+                                FROM workspace_files f
+                                JOIN workspace_file_chunks c ON c.project_id = f.project_id AND c.path = f.path
+                                WHERE f.project_id = ? AND f.path = ?
+                                ORDER BY c.seq
+                                """, rs -> {
+                        if (content[0] == null) {
+                                version[0] = rs.getLong(1);
+                                content[0] = new byte[(int) rs.getLong(2)];
+                        }
+                        byte[] data = rs.getBytes(3);
+                        System.arraycopy(data, 0, content[0], filled[0], data.length);
+                        filled[0] += data.length;
+                }, projectId, path);
+                return content[0] == null ? null : new Blob(version[0], content[0]);
+        }
+
+        public List<String> findPaths(UUID projectId) {
+                return jdbcTemplate.queryForList(
+                                "SELECT path FROM workspace_files WHERE project_id = ? ORDER BY path",
+                                String.class, projectId);
+        }
+
+        public long count(UUID projectId) {
+                Long n = jdbcTemplate.queryForObject(
+                                "SELECT count(*) FROM workspace_files WHERE project_id = ?", Long.class, projectId);
+                return n != null ? n : 0;
+        }
+
+        /**
+         * Drop the given files of a project; chunks go with them via ON DELETE CASCADE.
+         */
+        public int deletePaths(UUID projectId, Collection<String> paths) {
+                return jdbcTemplate.update("DELETE FROM workspace_files WHERE project_id = ? AND path = ANY(?)",
+                                projectId, paths.toArray(new String[0]));
+        }
+
+        /**
+         * Drop every file of a project; chunks go with them via ON DELETE CASCADE.
+         */
+        public int deleteProject(UUID projectId) {
+                return jdbcTemplate.update("DELETE FROM workspace_files WHERE project_id = ?", projectId);
+        }
+}
@@ -0,0 +1,479 @@
+package com.ai.deepcode.service;
+
+import com.ai.deepcode.dto.ArchiveUploadResult;
+import com.ai.deepcode.dto.DeviceUploadResult.FileResult;
+import com.ai.deepcode.dto.ManifestWriteResult;
+import com.ai.deepcode.dto.RagFileRef;
+import com.ai.deepcode.entity.IndexStatus;
+import com.ai.deepcode.entity.Project;
+import com.ai.deepcode.repository.ProjectFileRepository;
+import com.ai.deepcode.repository.ProjectRepository;
+import jakarta.annotation.PreDestroy;
+import org.apache.commons.compress.archivers.ArchiveEntry;
+import org.apache.commons.compress.archivers.ArchiveInputStream;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import org.apache.commons.compress.archivers.zip.ZipArchiveInputStream;
+import org.apache.commons.compress.compressors.gzip.GzipCompressorInputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.BufferedInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Ingests a whole device project from one zip, tar or tar.gz request body.
+ *
+ * The archive is unpacked as it streams in: each eligible entry is copied into
+ * the project's workspace and its path is handed to a background indexing worker
+ * immediately, so embedding runs while the rest of the archive is still
+ * uploading. Only paths cross the queue; the worker reads content back from the
+ * store, so a slow embedder never holds file bodies on the heap.
+ *
+ * The previous index and workspace stay in place until the archive has been
+ * read to the end: files it no longer contains are only removed then, so a
+ * truncated or oversized upload never wipes a good project.
+ */
+@Service
+public class ArchiveUploadService {
+
+    private static final Logger log = LoggerFactory.getLogger(ArchiveUploadService.class);
+
+    private static final int MANIFEST_BATCH_SIZE = 1000;
+    private static final String END_OF_ARCHIVE = "\0end";
+    private static final String DEFAULT_EMBED_MODEL = "nomic-embed-text";
+    private static final int DEFAULT_CHUNK_SIZE = 500;
+    private static final int DEFAULT_CHUNK_OVERLAP = 50;
+    private static final int TAR_BLOCK = 512;
+    private static final int ZIP_EOCD_BYTES = 22;
+    // End record plus the longest zip comment
+    private static final int TAIL_BYTES = ZIP_EOCD_BYTES + 0xffff;
+
+    private final WorkspaceService workspaceService;
+    private final DeviceUploadService deviceUploadService;
+    private final FileContentService fileContentService;
+    private final IndexingService indexingService;
+    private final ProjectRepository projectRepository;
+    private final ProjectFileRepository projectFileRepository;
+    private final long maxRequestBytes;
+
+    private final ExecutorService indexWorkers;
+
+    public ArchiveUploadService(WorkspaceService workspaceService,
+            DeviceUploadService deviceUploadService,
+            FileContentService fileContentService,
+            IndexingService indexingService,
+            ProjectRepository projectRepository,
+            ProjectFileRepository projectFileRepository,
+            @Value("${workspace.upload.max-request-bytes:1073741824}") long maxRequestBytes,
+            @Value("${workspace.archive.index-workers:2}") int indexWorkers) {
+        this.workspaceService = workspaceService;
+        this.deviceUploadService = deviceUploadService;
+        this.fileContentService = fileContentService;
+        this.indexingService = indexingService;
+        this.projectRepository = projectRepository;
+        this.projectFileRepository = projectFileRepository;
+        this.maxRequestBytes = maxRequestBytes;
+        this.indexWorkers = Executors.newFixedThreadPool(indexWorkers, r -> {
+            Thread t = new Thread(r, "archive-index");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Unpack an archive into the workspace and index it as a device project.
+     *
+     * @param stripComponents leading path segments to drop from every entry (like tar --strip-components)
+     */
+    public ArchiveUploadResult upload(UUID projectId, InputStream body, long contentLength, int stripComponents,
+            String embedModel, Integer chunkSize, Integer chunkOverlap) {
+        try (DeviceUploadService.Reservation ignored = deviceUploadService.reserve(contentLength)) {
+            LimitedInputStream limited = new LimitedInputStream(body, maxRequestBytes);
+            BufferedInputStream in = new BufferedInputStream(limited, 64 * 1024);
+            String format = detectFormat(in);
+
+            Project project = ensureProject(projectId);
+            IndexStatus status = indexingService.beginStreamingIndex(project.getId(),
+                    embedModel != null ? embedModel : DEFAULT_EMBED_MODEL,
+                    chunkSize != null ? chunkSize : DEFAULT_CHUNK_SIZE,
+                    chunkOverlap != null ? chunkOverlap : DEFAULT_CHUNK_OVERLAP);
+
+            IndexFeed feed = new IndexFeed(status);
+            indexWorkers.execute(feed);
+
+            OffsetDateTime seenAt = OffsetDateTime.now();
+            List<RagFileRef> batch = new ArrayList<>();
+            List<FileResult> failures = new ArrayList<>();
+            ManifestWriteResult manifest = ManifestWriteResult.EMPTY;
+            int stored = 0;
+            int skipped = 0;
+            long bytes = 0;
+            long started = System.currentTimeMillis();
+
+            try (TailInputStream raw = new TailInputStream(format.equals("tar.gz")
+                    ? new GzipCompressorInputStream(in, true)
+                    : in);
+                    ArchiveInputStream<?> archive = open(format, raw)) {
+                ArchiveEntry entry;
+                while ((entry = archive.getNextEntry()) != null) {
+                    if (entry.isDirectory() || !archive.canReadEntryData(entry)) {
+                        continue;
+                    }
+                    String path = entryPath(entry.getName(), stripComponents);
+                    // Ignore files are kept for their rules even though they are not indexed
+                    if (path == null
+                            || !(fileContentService.isTextEligible(path) || IgnoreMatcher.isIgnoreFile(path))) {
+                        skipped++;
+                        continue;
+                    }
+                    try {
+                        bytes += workspaceService.storeFile(project.getId(), path, archive,
+                                deviceUploadService.getMaxFileBytes());
+                    } catch (IllegalArgumentException e) {
+                        failures.add(FileResult.failed(path, "FILE_TOO_LARGE: " + e.getMessage()));
+                        continue;
+                    }
+                    stored++;
+                    feed.offer(path);
+
+                    batch.add(new RagFileRef("device", path, null));
+                    if (batch.size() >= MANIFEST_BATCH_SIZE) {
+                        manifest = manifest.plus(projectFileRepository.upsertFiles(project.getId(), batch, seenAt));
+                        batch.clear();
+                    }
+                }
+                // A body cut off between two entries reads as a shorter archive
+                // rather than failing; only its end-of-archive record tells
+                raw.transferTo(OutputStream.nullOutputStream());
+                if (!isComplete(format, raw.tail())) {
+                    throw new IOException("Truncated " + format + " archive");
+                }
+            } catch (LimitExceededException e) {
+                feed.fail("Upload exceeds " + maxRequestBytes + " bytes");
+                throw new ResponseStatusException(HttpStatus.PAYLOAD_TOO_LARGE,
+                        "UPLOAD_TOO_LARGE: Upload exceeds " + maxRequestBytes + " bytes");
+            } catch (IOException e) {
+                feed.fail(e.getMessage());
+                log.error("[ArchiveUpload] Project {} failed after {} files: {}", projectId, stored, e.getMessage());
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                        "ARCHIVE_UNREADABLE: " + e.getMessage());
+            } catch (RuntimeException e) {
+                // Not the archive's fault (e.g. the database is down): surfaces as a 5xx
+                feed.fail(e.getMessage());
+                log.error("[ArchiveUpload] Project {} failed after {} files: {}", projectId, stored, e.getMessage());
+                throw e;
+            } finally {
+                feed.close();
+            }
+
+            if (!batch.isEmpty()) {
+                manifest = manifest.plus(projectFileRepository.upsertFiles(project.getId(), batch, seenAt));
+            }
+            // The archive is a full snapshot: anything it did not contain is gone
+            manifest = manifest.withDeleted(projectFileRepository.deleteFilesNotSeenSince(project.getId(), seenAt));
+            int removed = workspaceService.retainOnly(project.getId(), feed.stored);
+            if (removed > 0) {
+                log.info("[ArchiveUpload] Project {}: removed {} workspace files not in the archive", projectId, removed);
+            }
+            project.setFileCount((int) projectFileRepository.countByProjectId(project.getId()));
+            project.setRevision("archive-" + System.currentTimeMillis());
+            projectRepository.save(project);
+
+            log.info("[ArchiveUpload] Project {} ({}): {} files stored ({} bytes), {} skipped, {} failed in {} ms",
+                    projectId, format, stored, bytes, skipped, failures.size(), System.currentTimeMillis() - started);
+            return new ArchiveUploadResult(project.getId(), format, stored, skipped, bytes, failures, manifest);
+        } catch (IOException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "ARCHIVE_UNREADABLE: " + e.getMessage());
+        }
+    }
+
+    private Project ensureProject(UUID projectId) {
+        return projectRepository.findById(projectId).orElseGet(() -> {
+            Project project = new Project();
+            project.setId(projectId);
+            project.setName(projectId.toString());
+            project.setDisplayName("Project " + projectId.toString().substring(0, 8));
+            project.setSource("device");
+            return projectRepository.save(project);
+        });
+    }
+
+    /**
+     * Identify the archive by its magic bytes rather than trusting the Content-Type.
+     */
+    static String detectFormat(BufferedInputStream in) throws IOException {
+        in.mark(512);
+        byte[] head = in.readNBytes(262);
+        in.reset();
+
+        if (head.length >= 4 && head[0] == 'P' && head[1] == 'K' && head[2] == 3 && head[3] == 4) {
+            return "zip";
+        }
+        if (head.length >= 2 && (head[0] & 0xff) == 0x1f && (head[1] & 0xff) == 0x8b) {
+            return "tar.gz";
+        }
+        if (head.length >= 262 && new String(head, 257, 5, StandardCharsets.US_ASCII).equals("ustar")) {
+            return "tar";
+        }
+        throw new ResponseStatusException(HttpStatus.UNSUPPORTED_MEDIA_TYPE,
+                "ARCHIVE_UNSUPPORTED: Expected a zip, tar or tar.gz archive");
+    }
+
+    /**
+     * @param in archive bytes, already decompressed for tar.gz
+     */
+    private static ArchiveInputStream<?> open(String format, InputStream in) {
+        return format.equals("zip")
+                ? new ZipArchiveInputStream(in, "UTF-8", true, true)
+                : new TarArchiveInputStream(in);
+    }
+
+    /**
+     * Whether {@code tail}, the last bytes of an archive, holds its end record: a
+     * zip end-of-central-directory record (whose comment runs to the end), or the
+     * zero block that closes a tar.
+     */
+    static boolean isComplete(String format, byte[] tail) {
+        if (!format.equals("zip")) {
+            if (tail.length < TAR_BLOCK) {
+                return false;
+            }
+            for (int i = tail.length - TAR_BLOCK; i < tail.length; i++) {
+                if (tail[i] != 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        for (int p = tail.length - ZIP_EOCD_BYTES; p >= 0; p--) {
+            if (tail[p] == 'P' && tail[p + 1] == 'K' && tail[p + 2] == 5 && tail[p + 3] == 6) {
+                int commentLength = (tail[p + 20] & 0xff) | (tail[p + 21] & 0xff) << 8;
+                if (p + ZIP_EOCD_BYTES + commentLength == tail.length) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Normalize an entry name into a workspace path, or null if it should be
+     * ignored (escapes the root, or has nothing left after stripping).
+     */
+    static String entryPath(String name, int stripComponents) {
+        String[] parts = name.replace("\\", "/").split("/");
+        StringBuilder sb = new StringBuilder();
+        int dropped = 0;
+        for (String part : parts) {
+            if (part.isEmpty() || part.equals(".")) {
+                continue;
+            }
+            if (part.equals("..")) {
+                return null;
+            }
+            if (dropped < stripComponents) {
+                dropped++;
+                continue;
+            }
+            if (sb.length() > 0) {
+                sb.append('/');
+            }
+            sb.append(part);
+        }
+        return sb.length() == 0 ? null : sb.toString();
+    }
+
+    @PreDestroy
+    void shutdown() {
+        indexWorkers.shutdownNow();
+    }
+
+    /**
+     * Background consumer that indexes stored paths in arrival order. Ignore
+     * rules apply from the moment their file arrives; files indexed before that
+     * are dropped when the index completes.
+     */
+    private final class IndexFeed implements Runnable {
+        private final IndexStatus status;
+        private final BlockingQueue<String> paths = new LinkedBlockingQueue<>();
+        private final AtomicInteger discovered = new AtomicInteger();
+        // Written by the uploading thread only; handed over through the queue
+        private final Set<String> stored = new HashSet<>();
+        private volatile String failure;
+
+        IndexFeed(IndexStatus status) {
+            this.status = status;
+        }
+
+        void offer(String path) {
+            if (!IgnoreMatcher.isIgnoreFile(path)) {
+                discovered.incrementAndGet();
+            }
+            stored.add(path);
+            paths.add(path);
+        }
+
+        void fail(String message) {
+            failure = message != null ? message : "Archive upload failed";
+        }
+
+        void close() {
+            paths.add(END_OF_ARCHIVE);
+        }
+
+        @Override
+        public void run() {
+            UUID projectId = status.getProject().getId();
+            Map<String, String> ruleFiles = new HashMap<>();
+            IgnoreMatcher ignore = IgnoreMatcher.NONE;
+            try {
+                String path;
+                while (!(path = paths.take()).equals(END_OF_ARCHIVE)) {
+                    String content = workspaceService.getFileAsString(projectId, path);
+                    if (IgnoreMatcher.isIgnoreFile(path)) {
+                        // Rules only; ignore files are not embedded
+                        if (content != null) {
+                            ruleFiles.put(path, content);
+                            ignore = IgnoreMatcher.fromFiles(ruleFiles);
+                        }
+                        continue;
+                    }
+                    if (content == null || content.isEmpty() || content.indexOf('\0') >= 0) {
+                        // Empty or mislabeled binary; not worth embedding
+                        continue;
+                    }
+                    indexingService.indexStreamedFile(status, path, content, discovered.get(), ignore);
+                }
+                if (failure != null) {
+                    indexingService.updateStatusToError(projectId, "Archive upload failed: " + failure);
+                } else {
+                    indexingService.completeStreamingIndex(status, status.getIndexedFiles() + status.getFailedFiles(),
+                            stored, ignore);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                log.error("[ArchiveUpload] Indexing failed for project {}: {}", projectId, e.getMessage());
+                indexingService.updateStatusToError(projectId, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Remembers the last {@link #TAIL_BYTES} bytes read through it.
+     */
+    private static final class TailInputStream extends FilterInputStream {
+        private final byte[] ring = new byte[TAIL_BYTES];
+        private long count;
+
+        TailInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                ring[(int) (count++ % ring.length)] = (byte) b;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            for (int i = 0; i < n; i++) {
+                ring[(int) (count++ % ring.length)] = b[off + i];
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            // Read instead, so skipped bytes reach the ring
+            byte[] buf = new byte[8192];
+            long skipped = 0;
+            int r;
+            while (skipped < n && (r = read(buf, 0, (int) Math.min(buf.length, n - skipped))) > 0) {
+                skipped += r;
+            }
+            return skipped;
+        }
+
+        byte[] tail() {
+            int length = (int) Math.min(count, ring.length);
+            byte[] tail = new byte[length];
+            int start = (int) ((count - length) % ring.length);
+            for (int i = 0; i < length; i++) {
+                tail[i] = ring[(start + i) % ring.length];
+            }
+            return tail;
+        }
+    }
+
+    private static final class LimitExceededException extends IOException {
+        LimitExceededException(long limit) {
+            super("Request body exceeds " + limit + " bytes");
+        }
+    }
+
+    /**
+     * Counts request body bytes and fails once the per-request cap is passed;
+     * needed for chunked uploads that declare no Content-Length.
+     */
+    private static final class LimitedInputStream extends FilterInputStream {
+        private final long limit;
+        private long count;
+
+        LimitedInputStream(InputStream in, long limit) {
+            super(in);
+            this.limit = limit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                advance(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                advance(n);
+            }
+            return n;
+        }
+
+        private void advance(long n) throws LimitExceededException {
+            count += n;
+            if (count > limit) {
+                throw new LimitExceededException(limit);
+            }
+        }
+    }
+}
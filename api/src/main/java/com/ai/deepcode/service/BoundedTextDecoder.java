@@ -0,0 +1,120 @@
+package com.ai.deepcode.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Decodes a byte stream as UTF-8 text with a hard size limit.
+ *
+ * Bytes are decoded as they are read, so the only full-size copies are the
+ * char buffer and the resulting String. The size limit is checked against the
+ * declared length before anything is buffered, and again while reading for
+ * streams without one. A NUL byte in the first {@value #SNIFF_BYTES} bytes marks
+ * the stream as binary (the same heuristic git uses) and stops reading early.
+ */
+public final class BoundedTextDecoder {
+
+    static final int SNIFF_BYTES = 8000;
+    private static final int READ_BUFFER = 8192;
+
+    public enum Status {
+        TEXT,
+        BINARY,
+        TOO_LARGE
+    }
+
+    /**
+     * @param text  Decoded text, only set when status is TEXT
+     * @param bytes Bytes consumed before decoding finished or stopped
+     */
+    public record Result(Status status, String text, long bytes) {
+
+        public boolean isText() {
+            return status == Status.TEXT;
+        }
+    }
+
+    private BoundedTextDecoder() {
+    }
+
+    /**
+     * @param in             Stream to decode; not closed by this method
+     * @param declaredLength Content length if known, otherwise -1
+     * @param maxBytes       Maximum number of bytes accepted
+     */
+    public static Result decode(InputStream in, long declaredLength, long maxBytes) throws IOException {
+        if (declaredLength > maxBytes) {
+            return new Result(Status.TOO_LARGE, null, 0);
+        }
+
+        CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+        // UTF-8 never yields more chars than bytes, so a known length sizes the buffer exactly
+        int initialChars = declaredLength >= 0 ? (int) Math.max(declaredLength, 16) : READ_BUFFER;
+        CharBuffer out = CharBuffer.allocate(initialChars);
+        ByteBuffer bytes = ByteBuffer.allocate(READ_BUFFER);
+        long total = 0;
+
+        while (true) {
+            int n = in.read(bytes.array(), bytes.position(), bytes.remaining());
+            if (n < 0) {
+                break;
+            }
+            if (total < SNIFF_BYTES && containsNul(bytes.array(), bytes.position(),
+                    (int) Math.min(n, SNIFF_BYTES - total))) {
+                return new Result(Status.BINARY, null, total + n);
+            }
+            total += n;
+            if (total > maxBytes) {
+                return new Result(Status.TOO_LARGE, null, total);
+            }
+            bytes.position(bytes.position() + n);
+            bytes.flip();
+            out = decodeInto(decoder, bytes, out, false);
+            bytes.compact();
+        }
+
+        bytes.flip();
+        out = decodeInto(decoder, bytes, out, true);
+        while (decoder.flush(out).isOverflow()) {
+            out = grow(out);
+        }
+        out.flip();
+        return new Result(Status.TEXT, out.toString(), total);
+    }
+
+    private static CharBuffer decodeInto(CharsetDecoder decoder, ByteBuffer in, CharBuffer out, boolean endOfInput) {
+        while (true) {
+            CoderResult result = decoder.decode(in, out, endOfInput);
+            if (result.isOverflow()) {
+                out = grow(out);
+            } else {
+                return out;
+            }
+        }
+    }
+
+    private static CharBuffer grow(CharBuffer out) {
+        CharBuffer bigger = CharBuffer.allocate(Math.max(16, out.capacity() * 2));
+        out.flip();
+        bigger.put(out);
+        return bigger;
+    }
+
+    private static boolean containsNul(byte[] buf, int offset, int length) {
+        for (int i = offset; i < offset + length; i++) {
+            if (buf[i] == 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,96 @@
+package com.ai.deepcode.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Fixed-size sliding windows with overlap, nudged back to a newline or space in
+ * the second half of the window. Works for any text; used for prose, config
+ * files and as the fallback for code the syntax chunker cannot split.
+ */
+@Component
+@Order(Integer.MAX_VALUE)
+public class CharacterChunker implements Chunker {
+
+    private static final Logger log = LoggerFactory.getLogger(CharacterChunker.class);
+    private static final int MAX_CHUNKS = 10000;
+
+    @Override
+    public String name() {
+        return "character";
+    }
+
+    @Override
+    public boolean supports(String filePath) {
+        return true;
+    }
+
+    @Override
+    public List<Span> split(String filePath, String content, int budget, int overlap) {
+        return split(content, 0, content.length(), budget, overlap);
+    }
+
+    /**
+     * Window over content[from, to) only; spans are absolute offsets into content.
+     */
+    static List<Span> split(String content, int from, int to, int budget, int overlap) {
+        List<Span> spans = new ArrayList<>();
+        if (budget <= 0) {
+            budget = 500;
+        }
+        if (overlap < 0 || overlap >= budget) {
+            overlap = (int) (budget * 0.1); // Default 10% overlap
+        }
+
+        if (to - from <= budget) {
+            addTrimmed(content, from, to, spans);
+            return spans;
+        }
+
+        int start = from;
+        int step = budget - overlap;
+        while (start < to) {
+            int end = Math.min(start + budget, to);
+
+            // Try to break at a natural boundary (newline or space) if not at end
+            if (end < to) {
+                int lastNewline = content.lastIndexOf('\n', end - 1);
+                int lastSpace = content.lastIndexOf(' ', end - 1);
+
+                // Prefer newline break if it's in the latter half of the window
+                if (lastNewline - start > budget / 2) {
+                    end = lastNewline + 1;
+                } else if (lastSpace - start > budget / 2) {
+                    end = lastSpace + 1;
+                }
+            }
+
+            addTrimmed(content, start, end, spans);
+            start += step;
+
+            // Safety check to prevent infinite loops
+            if (spans.size() > MAX_CHUNKS) {
+                log.warn("[CharacterChunker] Too many chunks, stopping at {}", MAX_CHUNKS);
+                break;
+            }
+        }
+        return spans;
+    }
+
+    static void addTrimmed(String content, int start, int end, List<Span> spans) {
+        while (start < end && Character.isWhitespace(content.charAt(start))) {
+            start++;
+        }
+        while (end > start && Character.isWhitespace(content.charAt(end - 1))) {
+            end--;
+        }
+        if (end > start) {
+            spans.add(new Span(start, end));
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.ai.deepcode.service;
+
+import java.util.List;
+
+/**
+ * Strategy for splitting file content into chunks. Implementations return spans
+ * into the source rather than copies, so callers decide when to materialize text.
+ */
+public interface Chunker {
+
+    /**
+     * Half-open character range [start, end) of the source.
+     */
+    record Span(int start, int end) {
+        public int length() {
+            return end - start;
+        }
+    }
+
+    /**
+     * Value of indexing.chunker that selects this chunker.
+     */
+    String name();
+
+    /**
+     * Whether this chunker understands the given file (usually by extension).
+     */
+    boolean supports(String filePath);
+
+    /**
+     * Split {@code content} of {@code filePath} into spans of at most roughly
+     * {@code budget} characters. Spans are trimmed of surrounding whitespace and
+     * never empty.
+     */
+    List<Span> split(String filePath, String content, int budget, int overlap);
+}
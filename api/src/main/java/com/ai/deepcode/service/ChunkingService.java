@@ -2,21 +2,75 @@ package com.ai.deepcode.service;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 
 /**
- * Service for splitting text content into overlapping chunks.
- * Uses character-based chunking with configurable size and overlap.
+ * Service for splitting text content into chunks.
+ *
+ * indexing.chunker picks the {@link Chunker} by name: "syntax" (default) splits
+ * known languages at declarations with {@link CodeChunker}, "cdc" cuts every
+ * file at content-defined boundaries with {@link ContentDefinedChunker}, and
+ * "character" uses overlapping windows. Files the selected chunker does not
+ * support fall back to character windows.
  */
 @Service
 public class ChunkingService {
 
     private static final Logger log = LoggerFactory.getLogger(ChunkingService.class);
 
-    public record ChunkResult(String content, int index, int tokenEstimate) {}
+    /**
+     * A chunk as offsets into its source file; {@link #content()} materializes
+     * the text (header included) only when it is embedded or stored. Lines are
+     * 1-based and inclusive; tokenCount comes from {@link TokenCounter}.
+     */
+    public record ChunkResult(String source, String header, int start, int end, int startLine, int endLine,
+            int index, int tokenCount) {
+
+        public String content() {
+            return new StringBuilder(header.length() + end - start)
+                    .append(header)
+                    .append(source, start, end)
+                    .toString();
+        }
+
+        public int length() {
+            return header.length() + end - start;
+        }
+    }
+
+    /**
+     * Several small files embedded together. {@code text} is what gets embedded;
+     * each member's span of it is that file's own header and content.
+     */
+    public record FilePack(String text, List<PackedFile> files, int tokenCount) {}
+
+    /**
+     * One file of a {@link FilePack}: text[start, end), spanning lines 1..lineCount of the file.
+     */
+    public record PackedFile(String filePath, int start, int end, int lineCount, int tokenCount) {}
+
+    /** Chunks this short are never split further for the token limit */
+    private static final int MIN_SPLIT_CHARS = 16;
+
+    private final List<Chunker> chunkers;
+    private final TokenCounter tokenCounter;
+    private final String mode;
+
+    public ChunkingService(List<Chunker> chunkers, TokenCounter tokenCounter,
+            @Value("${indexing.chunker:syntax}") String mode) {
+        this.chunkers = chunkers;
+        this.tokenCounter = tokenCounter;
+        this.mode = mode;
+    }
 
     /**
      * Split content into overlapping chunks.
@@ -30,84 +84,177 @@ public class ChunkingService {
         if (content == null || content.isBlank()) {
             return List.of();
         }
+        List<ChunkResult> chunks = toResults("", content,
+                CharacterChunker.split(content, 0, content.length(), chunkSize, overlap));
+
+        log.debug("[ChunkingService] Split {} chars into {} chunks (size={}, overlap={})",
+            content.length(), chunks.size(), chunkSize, overlap);
+
+        return chunks;
+    }
 
+    /**
+     * Chunk file content with file path prepended for context. The header is
+     * carried by the first chunk and never copied onto the file itself.
+     */
+    public List<ChunkResult> chunkFileContent(String filePath, String content, int chunkSize, int overlap) {
+        if (content == null || content.isBlank()) {
+            return List.of();
+        }
+        String header = fileHeader(filePath);
         if (chunkSize <= 0) {
             chunkSize = 500;
         }
-        if (overlap < 0 || overlap >= chunkSize) {
-            overlap = (int) (chunkSize * 0.1); // Default 10% overlap
-        }
+        int budget = Math.max(chunkSize - header.length(), chunkSize / 2);
 
-        List<ChunkResult> chunks = new ArrayList<>();
-        int contentLength = content.length();
+        Chunker chunker = chunkerFor(filePath);
+        List<Chunker.Span> spans = chunker != null
+                ? chunker.split(filePath, content, budget, overlap)
+                : CharacterChunker.split(content, 0, content.length(), budget, overlap);
+        List<ChunkResult> chunks = toResults(header, content, spans);
 
-        if (contentLength <= chunkSize) {
-            // Content fits in single chunk
-            chunks.add(new ChunkResult(content, 0, estimateTokens(content)));
-            return chunks;
-        }
-
-        int start = 0;
-        int chunkIndex = 0;
-        int step = chunkSize - overlap;
+        log.debug("[ChunkingService] {} split {} chars of {} into {} chunks (size={}, overlap={})",
+            chunker != null ? chunker.getClass().getSimpleName() : "CharacterChunker",
+            content.length(), filePath, chunks.size(), chunkSize, overlap);
 
-        while (start < contentLength) {
-            int end = Math.min(start + chunkSize, contentLength);
-            String chunkContent = content.substring(start, end);
+        return chunks;
+    }
 
-            // Try to break at a natural boundary (newline or space) if not at end
-            if (end < contentLength) {
-                int lastNewline = chunkContent.lastIndexOf('\n');
-                int lastSpace = chunkContent.lastIndexOf(' ');
+    /**
+     * Pack small sibling files (same directory, at most {@code maxFileTokens}
+     * each) into shared embedding inputs up to the model's token limit. Packs
+     * have at least two files; files that do not end up in one are returned
+     * untouched in {@code unpacked}, to be chunked on their own.
+     */
+    public List<FilePack> packSmallFiles(Map<String, String> files, int maxFileTokens, Map<String, String> unpacked) {
+        Map<String, List<String>> smallByDir = new TreeMap<>();
+        Map<String, Integer> tokensByPath = new HashMap<>();
+        for (Map.Entry<String, String> entry : files.entrySet()) {
+            String path = entry.getKey();
+            String content = entry.getValue();
+            int tokens = content == null || content.isBlank() ? -1 : tokenCounter.count(fileHeader(path) + content);
+            if (tokens < 0 || tokens > maxFileTokens) {
+                unpacked.put(path, content);
+                continue;
+            }
+            tokensByPath.put(path, tokens);
+            int slash = path.lastIndexOf('/');
+            smallByDir.computeIfAbsent(slash < 0 ? "" : path.substring(0, slash), d -> new ArrayList<>()).add(path);
+        }
 
-                // Prefer newline break if it's in the latter half of the chunk
-                if (lastNewline > chunkSize / 2) {
-                    chunkContent = chunkContent.substring(0, lastNewline + 1);
-                } else if (lastSpace > chunkSize / 2) {
-                    chunkContent = chunkContent.substring(0, lastSpace + 1);
+        int limit = tokenCounter.maxContentTokens();
+        List<FilePack> packs = new ArrayList<>();
+        for (List<String> siblings : smallByDir.values()) {
+            Collections.sort(siblings);
+            List<String> current = new ArrayList<>();
+            int currentTokens = 0;
+            for (String path : siblings) {
+                int tokens = tokensByPath.get(path);
+                if (!current.isEmpty() && currentTokens + tokens > limit) {
+                    addPack(current, files, tokensByPath, packs, unpacked);
+                    current = new ArrayList<>();
+                    currentTokens = 0;
                 }
+                current.add(path);
+                currentTokens += tokens;
             }
+            addPack(current, files, tokensByPath, packs, unpacked);
+        }
+        return packs;
+    }
 
-            chunks.add(new ChunkResult(
-                chunkContent.trim(),
-                chunkIndex,
-                estimateTokens(chunkContent)
-            ));
+    private static void addPack(List<String> paths, Map<String, String> files, Map<String, Integer> tokensByPath,
+            List<FilePack> packs, Map<String, String> unpacked) {
+        if (paths.size() < 2) {
+            paths.forEach(p -> unpacked.put(p, files.get(p)));
+            return;
+        }
+        StringBuilder text = new StringBuilder();
+        List<PackedFile> members = new ArrayList<>(paths.size());
+        int tokens = 0;
+        for (String path : paths) {
+            if (text.length() > 0) {
+                text.append("\n\n");
+            }
+            String content = files.get(path).stripTrailing();
+            int start = text.length();
+            text.append(fileHeader(path)).append(content);
+            members.add(new PackedFile(path, start, text.length(), lineStarts(content).length, tokensByPath.get(path)));
+            tokens += tokensByPath.get(path);
+        }
+        packs.add(new FilePack(text.toString(), members, tokens));
+    }
 
-            start += step;
-            chunkIndex++;
+    static String fileHeader(String filePath) {
+        return "File: " + filePath + "\n---\n";
+    }
 
-            // Safety check to prevent infinite loops
-            if (chunkIndex > 10000) {
-                log.warn("[ChunkingService] Too many chunks, stopping at 10000");
-                break;
+    private Chunker chunkerFor(String filePath) {
+        for (Chunker chunker : chunkers) {
+            if (chunker.name().equalsIgnoreCase(mode) && !(chunker instanceof CharacterChunker)
+                    && chunker.supports(filePath)) {
+                return chunker;
             }
         }
+        return null;
+    }
 
-        log.debug("[ChunkingService] Split {} chars into {} chunks (size={}, overlap={})",
-            contentLength, chunks.size(), chunkSize, overlap);
-
+    private List<ChunkResult> toResults(String header, String content, List<Chunker.Span> spans) {
+        List<ChunkResult> chunks = new ArrayList<>(spans.size());
+        int[] lineStarts = lineStarts(content);
+        int headerTokens = header.isEmpty() ? 0 : tokenCounter.count(header);
+        for (Chunker.Span span : spans) {
+            addWithinTokenLimit(chunks, content, header, headerTokens, span.start(), span.end(), lineStarts);
+        }
         return chunks;
     }
 
     /**
-     * Chunk file content with file path prepended for context.
+     * Add content[start, end) as a chunk, splitting it into smaller windows first
+     * if it exceeds the embedding model's token limit (Ollama would silently
+     * truncate it). Only enforced with a real vocabulary; the length heuristic
+     * is too coarse to split on.
      */
-    public List<ChunkResult> chunkFileContent(String filePath, String content, int chunkSize, int overlap) {
-        // Prepend file path as context
-        String header = "File: " + filePath + "\n---\n";
-        String fullContent = header + content;
+    private void addWithinTokenLimit(List<ChunkResult> chunks, String content, String header, int headerTokens,
+            int start, int end, int[] lineStarts) {
+        String chunkHeader = chunks.isEmpty() ? header : "";
+        int tokens = tokenCounter.count(content, start, end) + (chunkHeader.isEmpty() ? 0 : headerTokens);
+        int limit = tokenCounter.maxContentTokens();
+
+        if (tokenCounter.isExact() && tokens > limit && end - start > MIN_SPLIT_CHARS) {
+            // Scale the window to the chunk's observed chars-per-token, with 10% headroom
+            int budget = (int) Math.max(MIN_SPLIT_CHARS, (long) (end - start) * limit * 9 / (10L * tokens));
+            for (Chunker.Span piece : CharacterChunker.split(content, start, end, budget, 0)) {
+                addWithinTokenLimit(chunks, content, header, headerTokens, piece.start(), piece.end(), lineStarts);
+            }
+            return;
+        }
 
-        return chunkContent(fullContent, chunkSize, overlap);
+        chunks.add(new ChunkResult(content, chunkHeader, start, end,
+                lineOf(lineStarts, start), lineOf(lineStarts, end - 1), chunks.size(), tokens));
     }
 
     /**
-     * Rough token estimate (approximately 4 characters per token for English text).
+     * Offsets at which each line starts; line i (0-based) starts at [i].
      */
-    private int estimateTokens(String text) {
-        if (text == null || text.isEmpty()) {
-            return 0;
+    static int[] lineStarts(String content) {
+        int count = 1;
+        for (int i = content.indexOf('\n'); i >= 0; i = content.indexOf('\n', i + 1)) {
+            count++;
         }
-        return (int) Math.ceil(text.length() / 4.0);
+        int[] starts = new int[count];
+        int line = 1;
+        for (int i = content.indexOf('\n'); i >= 0; i = content.indexOf('\n', i + 1)) {
+            starts[line++] = i + 1;
+        }
+        return starts;
+    }
+
+    /**
+     * 1-based line containing the character at offset.
+     */
+    static int lineOf(int[] lineStarts, int offset) {
+        int i = Arrays.binarySearch(lineStarts, offset);
+        return (i >= 0 ? i : -i - 2) + 1;
     }
 }
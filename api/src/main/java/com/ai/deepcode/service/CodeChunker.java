@@ -0,0 +1,390 @@
+package com.ai.deepcode.service;
+
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Syntax-aware chunker for source code.
+ *
+ * A single pass scans the file and records, per line, the nesting depth it
+ * starts at: bracket depth for C-like languages (Java, TypeScript/JavaScript,
+ * Go, ...), indentation for Python. Strings and comments are skipped, and
+ * lines that start inside a string, comment or open parenthesis are marked as
+ * continuations so they never start a chunk.
+ *
+ * Lines starting at the outermost depth begin a sibling unit (a type, function,
+ * field, import block); leading comments, annotations and decorators stick to
+ * the unit that follows them. Siblings are packed greedily up to the budget, so
+ * small declarations share a chunk and no declaration is cut in half unless it
+ * alone exceeds the budget. Oversized units are split again one level deeper
+ * (class -> members, function -> statements); anything that still does not fit
+ * falls back to {@link CharacterChunker} windows.
+ *
+ * Because chunks follow declaration boundaries, no overlap is added between
+ * them; {@code overlap} only applies to the character fallback.
+ */
+@Component
+@Order(0)
+public class CodeChunker implements Chunker {
+
+    /** Line starts inside a string, comment or bracket continuation */
+    private static final int CONTINUATION = Integer.MAX_VALUE;
+
+    enum Syntax { BRACES, INDENT }
+
+    @Override
+    public String name() {
+        return "syntax";
+    }
+
+    @Override
+    public boolean supports(String filePath) {
+        return syntaxOf(filePath) != null;
+    }
+
+    @Override
+    public List<Span> split(String filePath, String content, int budget, int overlap) {
+        return split(content, syntaxOf(filePath), budget, overlap);
+    }
+
+    static Syntax syntaxOf(String filePath) {
+        if (filePath == null) {
+            return null;
+        }
+        int dot = filePath.lastIndexOf('.');
+        if (dot < 0 || dot < filePath.lastIndexOf('/')) {
+            return null;
+        }
+        return switch (filePath.substring(dot + 1).toLowerCase(Locale.ROOT)) {
+            case "java", "kt", "kts", "scala", "groovy", "cs",
+                 "ts", "tsx", "js", "jsx", "mjs", "cjs",
+                 "go", "c", "h", "cpp", "cc", "hpp", "swift" -> Syntax.BRACES;
+            case "py" -> Syntax.INDENT;
+            default -> null;
+        };
+    }
+
+    private List<Span> split(String content, Syntax syntax, int budget, int overlap) {
+        if (budget <= 0) {
+            budget = 500;
+        }
+        List<Span> spans = new ArrayList<>();
+        if (content.isEmpty()) {
+            return spans;
+        }
+        if (syntax == null) {
+            return CharacterChunker.split(content, 0, content.length(), budget, overlap);
+        }
+        Lines lines = scan(content, syntax);
+        new Packer(content, lines, budget, overlap, spans).split(0, lines.count(), minDepth(lines, 0, lines.count()));
+        return spans;
+    }
+
+    // -- packing ----------------------------------------------------------------
+
+    private static final class Packer {
+        private final String content;
+        private final Lines lines;
+        private final int budget;
+        private final int overlap;
+        private final List<Span> out;
+
+        Packer(String content, Lines lines, int budget, int overlap, List<Span> out) {
+            this.content = content;
+            this.lines = lines;
+            this.budget = budget;
+            this.overlap = overlap;
+            this.out = out;
+        }
+
+        /** Piece being packed, as character offsets; shared across levels so tails merge with what follows */
+        private int pieceStart = -1;
+        private int pieceEnd = -1;
+
+        /**
+         * Chunk lines [from, to), treating lines that start at depth <= level as
+         * unit boundaries.
+         */
+        void split(int from, int to, int level) {
+            splitUnits(from, to, level);
+            flush();
+        }
+
+        private void splitUnits(int from, int to, int level) {
+            for (int[] unit : units(from, to, level)) {
+                int uStart = lines.start(unit[0]);
+                int uEnd = lines.start(unit[1]);
+                if (uEnd - uStart > budget) {
+                    splitOversized(unit[0], unit[1], level);
+                } else if (pieceStart < 0) {
+                    pieceStart = uStart;
+                    pieceEnd = uEnd;
+                } else if (uEnd - pieceStart <= budget) {
+                    pieceEnd = uEnd;
+                } else {
+                    flush();
+                    pieceStart = uStart;
+                    pieceEnd = uEnd;
+                }
+            }
+        }
+
+        private void splitOversized(int from, int to, int level) {
+            // Depth of the body, measured below the declaration line (past leading comments/annotations)
+            int head = from;
+            while (head < to - 1 && lines.trivia(head)) {
+                head++;
+            }
+            int inner = minDepth(lines, head + 1, to);
+            if (head + 1 < to && inner != CONTINUATION && inner > level) {
+                splitUnits(from, to, inner);
+            } else {
+                flush();
+                out.addAll(CharacterChunker.split(content, lines.start(from), lines.start(to), budget, overlap));
+            }
+        }
+
+        /**
+         * Sibling units as [fromLine, toLine). Comment/annotation/blank lines are
+         * glued onto the unit that follows them.
+         */
+        private List<int[]> units(int from, int to, int level) {
+            List<int[]> units = new ArrayList<>();
+            int start = from;
+            boolean triviaOnly = lines.trivia(from);
+            for (int i = from + 1; i < to; i++) {
+                if (lines.depth(i) <= level && !triviaOnly) {
+                    units.add(new int[]{start, i});
+                    start = i;
+                    triviaOnly = lines.trivia(i);
+                } else if (triviaOnly && !lines.trivia(i)) {
+                    triviaOnly = false;
+                }
+            }
+            units.add(new int[]{start, to});
+            return units;
+        }
+
+        private void flush() {
+            if (pieceStart >= 0) {
+                CharacterChunker.addTrimmed(content, pieceStart, pieceEnd, out);
+                pieceStart = -1;
+            }
+        }
+    }
+
+    static int minDepth(Lines lines, int from, int to) {
+        int min = CONTINUATION;
+        for (int i = from; i < to; i++) {
+            if (!lines.blank(i)) {
+                min = Math.min(min, lines.depth(i));
+            }
+        }
+        return min;
+    }
+
+    // -- scanning ---------------------------------------------------------------
+
+    /**
+     * Per-line start offset, start depth and whether the line is only a comment,
+     * annotation/decorator or blank.
+     */
+    static final class Lines {
+        private final String content;
+        private int[] starts = new int[64];
+        private int[] depths = new int[64];
+        private int count;
+
+        Lines(String content) {
+            this.content = content;
+        }
+
+        void add(int start, int depth) {
+            if (count == starts.length) {
+                starts = Arrays.copyOf(starts, count * 2);
+                depths = Arrays.copyOf(depths, count * 2);
+            }
+            starts[count] = start;
+            depths[count] = depth;
+            count++;
+        }
+
+        int count() {
+            return count;
+        }
+
+        /** Start offset of line i; i == count() maps to the end of the content. */
+        int start(int i) {
+            return i >= count ? content.length() : starts[i];
+        }
+
+        int depth(int i) {
+            return blank(i) ? CONTINUATION : depths[i];
+        }
+
+        boolean blank(int i) {
+            return firstNonSpace(i) < 0;
+        }
+
+        boolean trivia(int i) {
+            if (depths[i] == CONTINUATION) {
+                return false;
+            }
+            int p = firstNonSpace(i);
+            if (p < 0) {
+                return true;
+            }
+            char c = content.charAt(p);
+            char n = p + 1 < content.length() ? content.charAt(p + 1) : 0;
+            return c == '@' || c == '#' || (c == '/' && (n == '/' || n == '*'));
+        }
+
+        private int firstNonSpace(int i) {
+            int end = start(i + 1);
+            for (int p = starts[i]; p < end; p++) {
+                if (!Character.isWhitespace(content.charAt(p))) {
+                    return p;
+                }
+            }
+            return -1;
+        }
+    }
+
+    static Lines scan(String s, Syntax syntax) {
+        Lines lines = new Lines(s);
+        int n = s.length();
+        int brackets = 0;
+        // Multi-line constructs the next line may start inside of
+        boolean inBlockComment = false;
+        String openString = null;
+
+        int lineStart = 0;
+        while (lineStart < n) {
+            boolean continuation = inBlockComment || openString != null || (syntax == Syntax.INDENT && brackets > 0);
+            int depth;
+            if (continuation) {
+                depth = CONTINUATION;
+            } else if (syntax == Syntax.INDENT) {
+                depth = indent(s, lineStart);
+            } else {
+                depth = brackets;
+            }
+            lines.add(lineStart, depth);
+
+            int i = lineStart;
+            while (i < n && s.charAt(i) != '\n') {
+                char c = s.charAt(i);
+                if (inBlockComment) {
+                    if (c == '*' && i + 1 < n && s.charAt(i + 1) == '/') {
+                        inBlockComment = false;
+                        i += 2;
+                    } else {
+                        i++;
+                    }
+                    continue;
+                }
+                if (openString != null) {
+                    if (c == '\\') {
+                        i += 2;
+                    } else if (s.startsWith(openString, i)) {
+                        i += openString.length();
+                        openString = null;
+                    } else {
+                        i++;
+                    }
+                    continue;
+                }
+
+                if (syntax == Syntax.INDENT && c == '#') {
+                    i = endOfLine(s, i);
+                    break;
+                }
+                if (syntax == Syntax.BRACES && c == '/' && i + 1 < n) {
+                    char next = s.charAt(i + 1);
+                    if (next == '/') {
+                        i = endOfLine(s, i);
+                        break;
+                    }
+                    if (next == '*') {
+                        inBlockComment = true;
+                        i += 2;
+                        continue;
+                    }
+                }
+                if (c == '"' || c == '\'' || c == '`') {
+                    String triple = String.valueOf(c).repeat(3);
+                    if (c != '`' && s.startsWith(triple, i)) {
+                        openString = triple;
+                        i += 3;
+                        continue;
+                    }
+                    if (c == '`') {
+                        // JS template literal / Go raw string: may span lines
+                        openString = "`";
+                        i++;
+                        continue;
+                    }
+                    i = skipLineString(s, i + 1, c);
+                    continue;
+                }
+                if (c == '{' || c == '(' || c == '[') {
+                    brackets++;
+                } else if ((c == '}' || c == ')' || c == ']') && brackets > 0) {
+                    brackets--;
+                }
+                i++;
+            }
+            lineStart = i + 1;
+        }
+        return lines;
+    }
+
+    /**
+     * Skip a single-line quoted literal starting after its opening quote; an
+     * unterminated literal ends at the newline so one stray quote cannot swallow
+     * the rest of the file.
+     */
+    private static int skipLineString(String s, int i, char quote) {
+        int n = s.length();
+        while (i < n) {
+            char c = s.charAt(i);
+            if (c == '\n') {
+                return i;
+            }
+            if (c == '\\') {
+                i += 2;
+                continue;
+            }
+            i++;
+            if (c == quote) {
+                return i;
+            }
+        }
+        return n;
+    }
+
+    private static int endOfLine(String s, int i) {
+        int nl = s.indexOf('\n', i);
+        return nl < 0 ? s.length() : nl;
+    }
+
+    private static int indent(String s, int i) {
+        int width = 0;
+        for (; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == ' ') {
+                width++;
+            } else if (c == '\t') {
+                width += 4;
+            } else {
+                break;
+            }
+        }
+        return width;
+    }
+}
@@ -0,0 +1,195 @@
+package com.ai.deepcode.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Decides, from the content itself, whether a file is worth embedding.
+ *
+ * Extension checks ({@link FileContentService#isTextEligible}) let through
+ * lockfiles, minified bundles, generated sources, large data fixtures and
+ * binaries with a text extension; any one of them can cost thousands of
+ * chunks. Checks run cheapest first and only look at a bounded prefix of the
+ * content.
+ */
+@Component
+public class ContentClassifier {
+
+    public enum SkipReason {
+        IGNORED,
+        LOCKFILE,
+        TOO_LARGE,
+        BINARY,
+        MINIFIED,
+        GENERATED,
+        HIGH_ENTROPY;
+
+        public String key() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    private static final Set<String> LOCKFILES = Set.of(
+            "package-lock.json", "npm-shrinkwrap.json", "yarn.lock", "pnpm-lock.yaml", "bun.lockb",
+            "composer.lock", "gemfile.lock", "cargo.lock", "poetry.lock", "pipfile.lock", "go.sum",
+            "packages.lock.json", "gradle.lockfile", "flake.lock");
+
+    private static final Set<String> DATA_EXTENSIONS = Set.of("json", "yml", "yaml", "xml", "csv", "tsv", "svg");
+
+    private static final String[] GENERATED_MARKERS = {
+            "@generated", "do not edit", "code generated by", "auto-generated", "autogenerated",
+            "this file was generated", "generated by the protocol buffer compiler" };
+
+    /** Only this much of a file is sniffed for binary content, entropy and line shape */
+    private static final int SNIFF_CHARS = 64 * 1024;
+    private static final int HEADER_CHARS = 1024;
+
+    private final boolean enabled;
+    private final int maxFileChars;
+    private final int maxDataFileChars;
+    private final int maxLineLength;
+    private final double maxEntropyBits;
+
+    public ContentClassifier(@Value("${indexing.filter.enabled:true}") boolean enabled,
+            @Value("${indexing.filter.max-file-chars:1048576}") int maxFileChars,
+            @Value("${indexing.filter.max-data-file-chars:262144}") int maxDataFileChars,
+            @Value("${indexing.filter.max-line-length:1000}") int maxLineLength,
+            @Value("${indexing.filter.max-entropy-bits:5.8}") double maxEntropyBits) {
+        this.enabled = enabled;
+        this.maxFileChars = maxFileChars;
+        this.maxDataFileChars = maxDataFileChars;
+        this.maxLineLength = maxLineLength;
+        this.maxEntropyBits = maxEntropyBits;
+    }
+
+    /**
+     * Whether the ignore rules keep {@code path} out of the index.
+     */
+    public boolean isIgnored(String path, IgnoreMatcher ignore) {
+        return enabled && ignore.isIgnored(path);
+    }
+
+    /**
+     * Why the file should not be embedded, or null if it should.
+     */
+    public SkipReason classify(String path, String content, IgnoreMatcher ignore) {
+        if (!enabled || content == null) {
+            return null;
+        }
+        String name = path.substring(path.lastIndexOf('/') + 1).toLowerCase(Locale.ROOT);
+        if (isIgnored(path, ignore) || name.equals(".ragignore")) {
+            return SkipReason.IGNORED;
+        }
+        if (LOCKFILES.contains(name)) {
+            return SkipReason.LOCKFILE;
+        }
+        if (name.endsWith(".min.js") || name.endsWith(".min.css") || name.endsWith(".bundle.js")) {
+            return SkipReason.MINIFIED;
+        }
+        int dot = name.lastIndexOf('.');
+        boolean data = dot >= 0 && DATA_EXTENSIONS.contains(name.substring(dot + 1));
+        if (content.length() > (data ? maxDataFileChars : maxFileChars)) {
+            return SkipReason.TOO_LARGE;
+        }
+        if (looksBinary(content)) {
+            return SkipReason.BINARY;
+        }
+        if (looksMinified(content)) {
+            return SkipReason.MINIFIED;
+        }
+        if (hasGeneratedHeader(content)) {
+            return SkipReason.GENERATED;
+        }
+        if (entropyBits(content) > maxEntropyBits) {
+            return SkipReason.HIGH_ENTROPY;
+        }
+        return null;
+    }
+
+    /**
+     * NUL characters, or many U+FFFD replacement/control characters, mean the
+     * bytes were not really text.
+     */
+    static boolean looksBinary(String content) {
+        int n = Math.min(content.length(), SNIFF_CHARS);
+        int suspicious = 0;
+        for (int i = 0; i < n; i++) {
+            char c = content.charAt(i);
+            if (c == 0) {
+                return true;
+            }
+            if (c == '�' || (c < 32 && c != '\n' && c != '\r' && c != '\t' && c != '\f')) {
+                suspicious++;
+            }
+        }
+        return n > 0 && suspicious * 20 > n;
+    }
+
+    /**
+     * Minified or machine-written: most of the text sits on lines longer than
+     * {@code maxLineLength}.
+     */
+    boolean looksMinified(String content) {
+        int n = Math.min(content.length(), SNIFF_CHARS);
+        if (n < 2 * maxLineLength) {
+            return false;
+        }
+        int longLineChars = 0;
+        int lineStart = 0;
+        for (int i = 0; i <= n; i++) {
+            if (i == n || content.charAt(i) == '\n') {
+                int length = i - lineStart;
+                if (length > maxLineLength) {
+                    longLineChars += length;
+                }
+                lineStart = i + 1;
+            }
+        }
+        return longLineChars * 2 > n;
+    }
+
+    static boolean hasGeneratedHeader(String content) {
+        String head = content.substring(0, Math.min(content.length(), HEADER_CHARS)).toLowerCase(Locale.ROOT);
+        for (String marker : GENERATED_MARKERS) {
+            if (head.contains(marker)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Shannon entropy in bits per character over the sniffed prefix. Source
+     * code sits around 4.5-5.3; base64 blobs and encoded data run near 6.
+     * Mostly non-ASCII text (CJK prose) is exempt since its alphabet is larger.
+     */
+    static double entropyBits(String content) {
+        int n = Math.min(content.length(), SNIFF_CHARS);
+        if (n < 256) {
+            return 0;
+        }
+        int[] counts = new int[128];
+        int ascii = 0;
+        for (int i = 0; i < n; i++) {
+            char c = content.charAt(i);
+            if (c < 128) {
+                counts[c]++;
+                ascii++;
+            }
+        }
+        if (ascii * 10 < n * 9) {
+            return 0;
+        }
+        double bits = 0;
+        for (int count : counts) {
+            if (count > 0) {
+                double p = (double) count / ascii;
+                bits -= p * (Math.log(p) / Math.log(2));
+            }
+        }
+        return bits;
+    }
+}
@@ -0,0 +1,94 @@
+package com.ai.deepcode.service;
+
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Content-defined chunking: boundaries are chosen by a rolling (gear) hash of
+ * the text itself rather than by position, so an edit only changes the chunks
+ * around it. Chunks after the edit keep their exact text, and with it their
+ * content hash, which lets re-indexing skip them.
+ *
+ * The gear hash shifts one bit per character, so its value depends only on the
+ * last 64 characters. A boundary is taken at the end of the line where
+ * {@code hash & mask == 0}, once the chunk has reached an eighth of the
+ * budget; the mask expects a hit about every quarter budget. A small minimum
+ * lets boundary chains resynchronize within a chunk or two after an edit. A
+ * chunk that reaches the budget is cut at its last newline.
+ *
+ * Chunks never overlap; {@code overlap} is ignored.
+ */
+@Component
+@Order(1)
+public class ContentDefinedChunker implements Chunker {
+
+    private static final long[] GEAR = new long[256];
+
+    static {
+        // Fixed seed: boundaries must be identical across restarts and nodes
+        SplittableRandom random = new SplittableRandom(0x6465657063646563L);
+        for (int i = 0; i < GEAR.length; i++) {
+            GEAR[i] = random.nextLong();
+        }
+    }
+
+    @Override
+    public String name() {
+        return "cdc";
+    }
+
+    @Override
+    public boolean supports(String filePath) {
+        return true;
+    }
+
+    @Override
+    public List<Span> split(String filePath, String content, int budget, int overlap) {
+        if (budget <= 0) {
+            budget = 500;
+        }
+        int minSize = Math.min(budget, Math.max(64, budget / 8));
+        // 2^bits ~ budget/4 expected characters between minSize and the hash hit
+        int bits = 31 - Integer.numberOfLeadingZeros(Math.max(16, budget / 4));
+        long mask = (1L << bits) - 1;
+
+        List<Span> spans = new ArrayList<>();
+        int n = content.length();
+        int start = 0;
+        long hash = 0;
+        int lastNewline = -1;
+        boolean cutAtNewline = false;
+        for (int i = 0; i < n; i++) {
+            char c = content.charAt(i);
+            hash = (hash << 1) + GEAR[(c ^ (c >>> 8)) & 0xFF];
+            int size = i + 1 - start;
+            if (!cutAtNewline && size >= minSize && (hash & mask) == 0) {
+                cutAtNewline = true;
+            }
+
+            int end = -1;
+            if (c == '\n') {
+                lastNewline = i;
+                if (cutAtNewline) {
+                    end = i + 1;
+                }
+            }
+            if (end < 0 && size >= budget) {
+                end = lastNewline >= start + minSize ? lastNewline + 1 : i + 1;
+            }
+            if (end > 0) {
+                CharacterChunker.addTrimmed(content, start, end, spans);
+                start = end;
+                cutAtNewline = false;
+            }
+        }
+        if (start < n) {
+            CharacterChunker.addTrimmed(content, start, n, spans);
+        }
+        return spans;
+    }
+}
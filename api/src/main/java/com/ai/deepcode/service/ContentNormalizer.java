@@ -0,0 +1,307 @@
+package com.ai.deepcode.service;
+
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Rewrites chunk text into the form that is embedded. The stored chunk keeps
+ * its original text for display; only the vector is computed from this.
+ *
+ * License headers and package declarations are the same across a project and
+ * the file header already names the file, so both are dropped. A run of
+ * import lines is collapsed to one {@code imports: A, B, C} line that keeps the
+ * imported names, which still say what the code depends on, without the
+ * package paths. Unknown languages only lose a leading license comment.
+ */
+@Component
+public class ContentNormalizer {
+
+    private static final Pattern LICENSE = Pattern.compile("copyright|licen[cs]e|spdx-license-identifier");
+
+    private enum Language {
+        JVM(Pattern.compile("^package\\s+[\\w.]+;?$"), false),
+        GO(Pattern.compile("^package\\s+\\w+$"), false),
+        PYTHON(null, true),
+        SCRIPT(null, false),
+        C(null, false),
+        CSHARP(null, false),
+        RUST(null, false),
+        HASH_COMMENTED(null, true),
+        OTHER(null, false);
+
+        final Pattern packageLine;
+        final boolean hashComments;
+
+        Language(Pattern packageLine, boolean hashComments) {
+            this.packageLine = packageLine;
+            this.hashComments = hashComments;
+        }
+    }
+
+    private static final Pattern JVM_IMPORT = Pattern.compile("^import\\s+(?:static\\s+)?([\\w.]+?)(\\.\\*)?;?(?:\\s+as\\s+\\w+)?$");
+    private static final Pattern GO_IMPORT = Pattern.compile("^(?:import\\s+)?(?:[\\w.]+\\s+)?\"([^\"]+)\"$");
+    private static final Pattern PY_IMPORT = Pattern.compile("^import\\s+([\\w., ]+)$");
+    private static final Pattern PY_FROM = Pattern.compile("^from\\s+[\\w.]+\\s+import\\s+(.+)$");
+    private static final Pattern JS_IMPORT = Pattern.compile("^import\\s+(?:type\\s+)?(.+?)\\s+from\\s+['\"][^'\"]+['\"];?$");
+    private static final Pattern JS_SIDE_EFFECT_IMPORT = Pattern.compile("^import\\s+['\"][^'\"]+['\"];?$");
+    private static final Pattern C_INCLUDE = Pattern.compile("^#\\s*include\\s*[<\"]([^>\"]+)[>\"]$");
+    private static final Pattern CS_USING = Pattern.compile("^(?:global\\s+)?using\\s+(?:static\\s+)?([\\w.]+);$");
+    private static final Pattern RUST_USE = Pattern.compile("^(?:pub\\s+)?use\\s+(.+);$");
+
+    /**
+     * Normalized form of a chunk's text, without its file header.
+     *
+     * @param atFileStart whether the text starts at the beginning of the file;
+     *                    only then can a leading comment be its license header
+     * @return the text to embed; the original text if nothing would be left
+     */
+    public String normalize(String filePath, String text, boolean atFileStart) {
+        Language language = languageOf(filePath);
+        String[] lines = text.split("\n", -1);
+        List<String> out = new ArrayList<>(lines.length);
+        int i = 0;
+        if (atFileStart) {
+            i = skipLicenseHeader(lines, language, out);
+        }
+
+        Set<String> imported = new LinkedHashSet<>();
+        int importLine = -1;
+        while (i < lines.length) {
+            String line = lines[i].strip();
+            if (language.packageLine != null && language.packageLine.matcher(line).matches()) {
+                i++;
+                continue;
+            }
+            int next = importRun(lines, i, language, imported);
+            if (next > i) {
+                if (importLine < 0) {
+                    importLine = out.size();
+                    out.add(null);
+                }
+                i = next;
+                continue;
+            }
+            if (line.isEmpty() && importLine >= 0 && importLine == out.size() - 1) {
+                // Blank lines between imports belong to the run
+                i++;
+                continue;
+            }
+            if (importLine >= 0) {
+                out.set(importLine, importsLine(imported));
+                imported.clear();
+                importLine = -1;
+            }
+            out.add(lines[i]);
+            i++;
+        }
+        if (importLine >= 0) {
+            out.set(importLine, importsLine(imported));
+        }
+
+        String normalized = String.join("\n", out).strip();
+        return normalized.isEmpty() ? text : normalized;
+    }
+
+    private static String importsLine(Set<String> names) {
+        return names.isEmpty() ? "" : "imports: " + String.join(", ", names);
+    }
+
+    /**
+     * Copy a shebang, then drop the first comment block if it reads like a
+     * license. Returns the index of the first line not consumed.
+     */
+    private static int skipLicenseHeader(String[] lines, Language language, List<String> out) {
+        int i = 0;
+        while (i < lines.length && lines[i].isBlank()) {
+            i++;
+        }
+        if (i < lines.length && lines[i].startsWith("#!")) {
+            out.add(lines[i]);
+            i++;
+            while (i < lines.length && lines[i].isBlank()) {
+                i++;
+            }
+        }
+        if (i >= lines.length) {
+            return i;
+        }
+
+        int end = i;
+        String first = lines[i].strip();
+        if (first.startsWith("/*")) {
+            while (end < lines.length && !lines[end].contains("*/")) {
+                end++;
+            }
+            end = Math.min(end + 1, lines.length);
+        } else if (first.startsWith("//") || (language.hashComments && first.startsWith("#"))) {
+            String marker = first.startsWith("//") ? "//" : "#";
+            while (end < lines.length && lines[end].strip().startsWith(marker)) {
+                end++;
+            }
+        } else {
+            return i;
+        }
+
+        StringBuilder comment = new StringBuilder();
+        for (int k = i; k < end; k++) {
+            comment.append(lines[k]).append('\n');
+        }
+        if (!LICENSE.matcher(comment.toString().toLowerCase(Locale.ROOT)).find()) {
+            return i;
+        }
+        while (end < lines.length && lines[end].isBlank()) {
+            end++;
+        }
+        return end;
+    }
+
+    /**
+     * If an import statement starts at line {@code i}, add its names and return
+     * the index after it; otherwise return {@code i}.
+     */
+    private static int importRun(String[] lines, int i, Language language, Set<String> names) {
+        String line = lines[i].strip();
+        Matcher m;
+        switch (language) {
+            case JVM -> {
+                if ((m = JVM_IMPORT.matcher(line)).matches()) {
+                    String path = m.group(1);
+                    names.add(m.group(2) != null ? path + ".*" : path.substring(path.lastIndexOf('.') + 1));
+                    return i + 1;
+                }
+            }
+            case GO -> {
+                if (line.equals("import (")) {
+                    int k = i + 1;
+                    for (; k < lines.length && !lines[k].strip().equals(")"); k++) {
+                        if ((m = GO_IMPORT.matcher(lines[k].strip())).matches()) {
+                            names.add(lastSegment(m.group(1), '/'));
+                        }
+                    }
+                    return Math.min(k + 1, lines.length);
+                }
+                if (line.startsWith("import ") && (m = GO_IMPORT.matcher(line)).matches()) {
+                    names.add(lastSegment(m.group(1), '/'));
+                    return i + 1;
+                }
+            }
+            case PYTHON -> {
+                if ((m = PY_IMPORT.matcher(line)).matches()) {
+                    addAll(names, m.group(1));
+                    return i + 1;
+                }
+                if ((m = PY_FROM.matcher(line)).matches()) {
+                    String imported = m.group(1);
+                    int k = i;
+                    if (imported.startsWith("(") && !imported.contains(")")) {
+                        StringBuilder joined = new StringBuilder(imported);
+                        while (++k < lines.length && !lines[k].contains(")")) {
+                            joined.append(lines[k]);
+                        }
+                        if (k < lines.length) {
+                            joined.append(lines[k]);
+                        }
+                        imported = joined.toString();
+                    }
+                    addAll(names, imported.replace("(", "").replace(")", ""));
+                    return Math.min(k + 1, lines.length);
+                }
+            }
+            case SCRIPT -> {
+                if (JS_SIDE_EFFECT_IMPORT.matcher(line).matches()) {
+                    return i + 1;
+                }
+                String statement = line;
+                int k = i;
+                if (line.startsWith("import ") && line.endsWith("{")) {
+                    // import {\n  a,\n  b\n} from "x";
+                    StringBuilder joined = new StringBuilder(line);
+                    while (++k < lines.length && !lines[k].contains("from")) {
+                        joined.append(' ').append(lines[k].strip());
+                    }
+                    if (k >= lines.length) {
+                        return i;
+                    }
+                    statement = joined.append(' ').append(lines[k].strip()).toString();
+                }
+                if ((m = JS_IMPORT.matcher(statement)).matches()) {
+                    addAll(names, m.group(1).replace("{", ",").replace("}", ",").replace("* as ", ""));
+                    return k + 1;
+                }
+            }
+            case C -> {
+                if ((m = C_INCLUDE.matcher(line)).matches()) {
+                    names.add(lastSegment(m.group(1), '/'));
+                    return i + 1;
+                }
+            }
+            case CSHARP -> {
+                if ((m = CS_USING.matcher(line)).matches()) {
+                    names.add(m.group(1));
+                    return i + 1;
+                }
+            }
+            case RUST -> {
+                if ((m = RUST_USE.matcher(line)).matches()) {
+                    String path = m.group(1);
+                    int brace = path.indexOf('{');
+                    if (brace >= 0) {
+                        addAll(names, path.substring(brace + 1).replace("}", ""));
+                    } else {
+                        names.add(path.substring(path.lastIndexOf("::") + 1).replace(":", ""));
+                    }
+                    return i + 1;
+                }
+            }
+            default -> {
+            }
+        }
+        return i;
+    }
+
+    /**
+     * Add comma-separated names, dropping aliases ("x as y" keeps x) and type-only markers.
+     */
+    private static void addAll(Set<String> names, String list) {
+        for (String part : list.split(",")) {
+            String name = part.strip();
+            if (name.startsWith("type ")) {
+                name = name.substring(5).strip();
+            }
+            int alias = name.indexOf(" as ");
+            if (alias >= 0) {
+                name = name.substring(0, alias).strip();
+            }
+            if (!name.isEmpty()) {
+                names.add(name);
+            }
+        }
+    }
+
+    private static String lastSegment(String path, char separator) {
+        return path.substring(path.lastIndexOf(separator) + 1);
+    }
+
+    private static Language languageOf(String filePath) {
+        String name = filePath.substring(filePath.lastIndexOf('/') + 1).toLowerCase(Locale.ROOT);
+        String ext = name.substring(name.lastIndexOf('.') + 1);
+        return switch (ext) {
+            case "java", "kt", "kts", "scala", "groovy" -> Language.JVM;
+            case "go" -> Language.GO;
+            case "py" -> Language.PYTHON;
+            case "js", "jsx", "mjs", "cjs", "ts", "tsx" -> Language.SCRIPT;
+            case "c", "h", "cc", "cpp", "hpp" -> Language.C;
+            case "cs" -> Language.CSHARP;
+            case "rs" -> Language.RUST;
+            case "sh", "bash", "rb", "pl", "r", "yml", "yaml", "toml", "properties" -> Language.HASH_COMMENTED;
+            default -> Language.OTHER;
+        };
+    }
+}
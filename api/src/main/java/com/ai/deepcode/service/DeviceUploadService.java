@@ -0,0 +1,200 @@
+package com.ai.deepcode.service;
+
+import com.ai.deepcode.dto.DeviceUploadResult;
+import com.ai.deepcode.dto.DeviceUploadResult.FileResult;
+import jakarta.servlet.http.HttpServletRequest;
+import org.apache.commons.fileupload2.core.FileItemInput;
+import org.apache.commons.fileupload2.core.FileItemInputIterator;
+import org.apache.commons.fileupload2.core.FileUploadException;
+import org.apache.commons.fileupload2.core.FileUploadSizeException;
+import org.apache.commons.fileupload2.jakarta.servlet6.JakartaServletFileUpload;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Streams multipart device uploads part by part into a project's workspace.
+ *
+ * Multipart resolution is disabled for the application (spring.servlet.multipart.enabled=false),
+ * so file bodies are never spooled by the servlet container; each part is copied
+ * from the request stream into a workspace segment as it arrives.
+ *
+ * Two byte budgets apply: a per-request cap, and a global cap on bytes admitted
+ * across all uploads in flight. A request that would exceed the global cap is
+ * rejected up front with 503 instead of queueing.
+ */
+@Service
+public class DeviceUploadService {
+
+    private static final Logger log = LoggerFactory.getLogger(DeviceUploadService.class);
+
+    private static final String FIELD_FILES = "files";
+    private static final String FIELD_PATHS = "paths";
+    private static final int MAX_PATH_BYTES = 4096;
+
+    private final WorkspaceService workspaceService;
+    private final long maxRequestBytes;
+    private final long maxFileBytes;
+    private final long maxInFlightBytes;
+    private final AtomicLong inFlightBytes = new AtomicLong();
+
+    public DeviceUploadService(WorkspaceService workspaceService,
+            @Value("${workspace.upload.max-request-bytes:1073741824}") long maxRequestBytes,
+            @Value("${workspace.upload.max-file-bytes:52428800}") long maxFileBytes,
+            @Value("${workspace.upload.max-in-flight-bytes:2147483648}") long maxInFlightBytes) {
+        this.workspaceService = workspaceService;
+        this.maxRequestBytes = maxRequestBytes;
+        this.maxFileBytes = maxFileBytes;
+        this.maxInFlightBytes = maxInFlightBytes;
+    }
+
+    public long getMaxFileBytes() {
+        return maxFileBytes;
+    }
+
+    /**
+     * Store every file part of a multipart request.
+     *
+     * Each "files" part is named by the most recent unconsumed "paths" field, so
+     * clients send the path before its file. When no path is queued, the part's
+     * submitted filename is used instead.
+     *
+     * @param projectId owning project, or null for the unscoped namespace
+     */
+    public DeviceUploadResult upload(UUID projectId, HttpServletRequest request) {
+        if (!JakartaServletFileUpload.isMultipartContent(request)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "UPLOAD_NOT_MULTIPART: Expected a multipart/form-data request");
+        }
+
+        try (Reservation ignored = reserve(request.getContentLengthLong())) {
+            JakartaServletFileUpload<?, ?> upload = new JakartaServletFileUpload<>();
+            upload.setSizeMax(maxRequestBytes);
+
+            List<FileResult> results = new ArrayList<>();
+            Deque<String> pendingPaths = new ArrayDeque<>();
+            long started = System.currentTimeMillis();
+
+            FileItemInputIterator items = upload.getItemIterator(request);
+            while (items.hasNext()) {
+                FileItemInput item = items.next();
+                if (item.isFormField()) {
+                    if (FIELD_PATHS.equals(item.getFieldName())) {
+                        pendingPaths.addLast(readField(item));
+                    }
+                    continue;
+                }
+                if (!FIELD_FILES.equals(item.getFieldName())) {
+                    continue;
+                }
+
+                String path = pendingPaths.pollFirst();
+                if (path == null) {
+                    path = item.getName();
+                }
+                results.add(storePart(projectId, path, item));
+            }
+
+            DeviceUploadResult result = DeviceUploadResult.of(results);
+            log.info("[DeviceUpload] Stored {} files ({} bytes), {} failed in {} ms",
+                    result.uploaded(), result.bytes(), result.failed(), System.currentTimeMillis() - started);
+            return result;
+        } catch (FileUploadSizeException e) {
+            throw new ResponseStatusException(HttpStatus.PAYLOAD_TOO_LARGE,
+                    "UPLOAD_TOO_LARGE: Upload exceeds " + maxRequestBytes + " bytes");
+        } catch (FileUploadException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "UPLOAD_MALFORMED: " + e.getMessage());
+        } catch (IOException e) {
+            // Client disconnects surface here; whatever was stored before stays stored
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "UPLOAD_INTERRUPTED: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Admit {@code contentLength} bytes (or the per-request cap when the length is
+     * unknown) against the global in-flight budget.
+     */
+    public Reservation reserve(long contentLength) {
+        if (contentLength > maxRequestBytes) {
+            throw new ResponseStatusException(HttpStatus.PAYLOAD_TOO_LARGE,
+                    "UPLOAD_TOO_LARGE: Upload exceeds " + maxRequestBytes + " bytes");
+        }
+        long bytes = contentLength >= 0 ? contentLength : maxRequestBytes;
+        long now = inFlightBytes.addAndGet(bytes);
+        if (now > maxInFlightBytes && now != bytes) {
+            // Always admit a lone request so a single large upload cannot starve forever
+            inFlightBytes.addAndGet(-bytes);
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE,
+                    "UPLOAD_BUSY: Too many uploads in progress, retry shortly");
+        }
+        return new Reservation(bytes);
+    }
+
+    private FileResult storePart(UUID projectId, String path, FileItemInput item) throws FileUploadSizeException {
+        String cleanPath = normalizePath(path);
+        if (cleanPath == null) {
+            return FileResult.failed(path, "MISSING_PATH: No path for uploaded file");
+        }
+        try (InputStream in = item.getInputStream()) {
+            long bytes = workspaceService.storeFile(projectId, cleanPath, in, maxFileBytes);
+            return FileResult.stored(cleanPath, bytes);
+        } catch (IllegalArgumentException e) {
+            return FileResult.failed(cleanPath, "FILE_TOO_LARGE: " + e.getMessage());
+        } catch (FileUploadSizeException e) {
+            // The request as a whole went over budget; stop processing
+            throw e;
+        } catch (IOException e) {
+            log.warn("[DeviceUpload] Failed to store {}: {}", cleanPath, e.getMessage());
+            return FileResult.failed(cleanPath, "STORE_FAILED: " + e.getMessage());
+        }
+    }
+
+    private static String readField(FileItemInput item) throws IOException {
+        try (InputStream in = item.getInputStream()) {
+            byte[] bytes = in.readNBytes(MAX_PATH_BYTES + 1);
+            if (bytes.length > MAX_PATH_BYTES) {
+                throw new FileUploadException("Path field longer than " + MAX_PATH_BYTES + " bytes");
+            }
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+
+    private static String normalizePath(String path) {
+        if (path == null) {
+            return null;
+        }
+        String clean = path.trim().replace("\\", "/").replaceAll("^/+", "");
+        return clean.isEmpty() ? null : clean;
+    }
+
+    /**
+     * Bytes admitted against the in-flight budget, returned on close.
+     */
+    public final class Reservation implements AutoCloseable {
+        private final long bytes;
+
+        private Reservation(long bytes) {
+            this.bytes = bytes;
+        }
+
+        @Override
+        public void close() {
+            inFlightBytes.addAndGet(-bytes);
+        }
+    }
+}
@@ -13,7 +13,7 @@ public class FileContentService {
 
     private static final Logger log = LoggerFactory.getLogger(FileContentService.class);
 
-    private final WorkspaceStore workspaceStore;
+    private final WorkspaceService workspaceService;
     private final GithubFileService githubFileService;
 
     // Binary extensions to skip
@@ -25,8 +25,8 @@ public class FileContentService {
             "mp3", "mp4", "avi", "mov", "wav",
             "ttf", "otf", "woff", "woff2", "eot");
 
-    public FileContentService(WorkspaceStore workspaceStore, GithubFileService githubFileService) {
-        this.workspaceStore = workspaceStore;
+    public FileContentService(WorkspaceService workspaceService, GithubFileService githubFileService) {
+        this.workspaceService = workspaceService;
         this.githubFileService = githubFileService;
     }
 
@@ -45,6 +45,15 @@ public class FileContentService {
      * @return File content as string, or null if not eligible/available
      */
     public String fetchContent(RagFileRef file, Authentication auth) {
+        return fetchContent(null, file, auth);
+    }
+
+    /**
+     * Fetch content for a file reference of a given project. Device files are read
+     * from that project's workspace, falling back to the unscoped namespace for
+     * uploads that were made before the project existed.
+     */
+    public String fetchContent(UUID projectId, RagFileRef file, Authentication auth) {
         if (file == null || file.path() == null)
             return null;
 
@@ -66,7 +75,11 @@ public class FileContentService {
                     file.github().subPath(),
                     auth);
         } else if ("device".equalsIgnoreCase(file.source())) {
-            return workspaceStore.getFileAsString(file.path());
+            String content = workspaceService.getFileAsString(projectId, file.path());
+            if (content == null && projectId != null) {
+                content = workspaceService.getFileAsString(WorkspaceService.UNSCOPED, file.path());
+            }
+            return content;
         }
 
         return null;
@@ -98,7 +111,7 @@ public class FileContentService {
 
         List<String> validExtensions = List.of(
                 "md", "txt", "java", "ts", "js", "json", "yml", "yaml", "xml",
-                "properties", "env", "gitignore", "py", "c", "cpp", "h", "hpp",
+                "properties", "env", "gitignore", "ragignore", "py", "c", "cpp", "h", "hpp",
                 "cs", "sh", "bash", "sql", "css", "html", "kt", "rs", "go");
 
         return validExtensions.contains(ext);
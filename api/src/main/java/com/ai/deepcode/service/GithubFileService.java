@@ -3,6 +3,7 @@ package com.ai.deepcode.service;
 import com.ai.deepcode.api.GithubApiClient;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
@@ -11,7 +12,9 @@ import org.springframework.stereotype.Service;
 import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.server.ResponseStatusException;
 
-import java.nio.charset.StandardCharsets;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.Base64;
 import java.util.Map;
 
@@ -20,12 +23,20 @@ public class GithubFileService {
 
     private static final Logger log = LoggerFactory.getLogger(GithubFileService.class);
 
+    private static final String FETCH_MODE_JSON = "json";
+
     private final GithubTokenService tokenService;
     private final GithubApiClient githubClient;
+    private final String fetchMode;
+    private final long maxFileBytes;
 
-    public GithubFileService(GithubTokenService tokenService, GithubApiClient githubClient) {
+    public GithubFileService(GithubTokenService tokenService, GithubApiClient githubClient,
+            @Value("${github.fetch-mode:raw}") String fetchMode,
+            @Value("${github.max-file-bytes:1048576}") long maxFileBytes) {
         this.tokenService = tokenService;
         this.githubClient = githubClient;
+        this.fetchMode = fetchMode;
+        this.maxFileBytes = maxFileBytes;
     }
 
     /**
@@ -45,17 +56,16 @@ public class GithubFileService {
      * @param branch  Branch/ref (can be null for default)
      * @param subPath Optional subPath prefix that was used during import
      * @param auth    Authentication object (must be OAuth2AuthenticationToken for GitHub)
-     * @return File content as String
+     * @return File content as String, or null if the file is binary or too large
      * @throws ResponseStatusException with 401 if GitHub auth is missing or expired
      * @throws ResponseStatusException with 500 for other errors
      */
     public String getFileContent(String owner, String repo, String path, String branch, String subPath,
             Authentication auth) {
-        log.info("[GithubFileService] === START getFileContent ===");
-        log.info("[GithubFileService] Input: owner={}, repo={}, path={}, branch={}, subPath={}",
+        log.debug("[GithubFileService] getFileContent owner={}, repo={}, path={}, branch={}, subPath={}",
                 owner, repo, path, branch, subPath);
 
-        log.info("[GithubFileService] Authentication: present={}, type={}",
+        log.debug("[GithubFileService] Authentication: present={}, type={}",
                 auth != null,
                 auth != null ? auth.getClass().getSimpleName() : "null");
 
@@ -77,7 +87,7 @@ public class GithubFileService {
         String token;
         try {
             token = tokenService.getAccessToken(auth);
-            log.info("[GithubFileService] Token retrieved: length={}", token != null ? token.length() : 0);
+            log.debug("[GithubFileService] Token retrieved: length={}", token != null ? token.length() : 0);
         } catch (Exception e) {
             log.error("[GithubFileService] FAIL: Could not get access token: {}", e.getMessage());
             throw new ResponseStatusException(HttpStatus.UNAUTHORIZED,
@@ -90,17 +100,29 @@ public class GithubFileService {
                     "GITHUB_TOKEN_EXPIRED: GitHub session expired. Please reconnect your GitHub account.");
         }
 
+        return getFileContentWithToken(owner, repo, path, branch, subPath, token);
+    }
+
+    /**
+     * Fetch file content from GitHub using an explicit access token.
+     * Used by server-initiated flows (e.g. push webhooks) that have no user session.
+     *
+     * @return File content, or null if the file is binary or larger than github.max-file-bytes
+     */
+    public String getFileContentWithToken(String owner, String repo, String path, String branch, String subPath,
+            String token) {
         // Build the full path
         String fullPath = buildFullPath(subPath, path);
-        log.info("[GithubFileService] Full path built: {}", fullPath);
-
-        // Step 5: Call GitHub API
-        log.info("[GithubFileService] Calling GitHub API: GET /repos/{}/{}/contents/{}?ref={}",
-                owner, repo, fullPath, branch);
+        log.debug("[GithubFileService] GET /repos/{}/{}/contents/{}?ref={} (mode={})",
+                owner, repo, fullPath, branch, fetchMode);
 
-        Map<String, Object> response;
         try {
-            response = githubClient.getFile(token, owner, repo, fullPath, branch);
+            if (FETCH_MODE_JSON.equalsIgnoreCase(fetchMode)) {
+                return fetchViaJson(token, owner, repo, fullPath, branch);
+            }
+            return fetchRaw(token, owner, repo, fullPath, branch);
+        } catch (ResponseStatusException e) {
+            throw e;
         } catch (HttpClientErrorException.Unauthorized e) {
             log.error("[GithubFileService] FAIL: GitHub API returned 401 Unauthorized");
             throw new ResponseStatusException(HttpStatus.UNAUTHORIZED,
@@ -119,6 +141,44 @@ public class GithubFileService {
             throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR,
                     "GITHUB_API_ERROR: Failed to fetch file from GitHub: " + e.getMessage());
         }
+    }
+
+    /**
+     * Raw media fetch: the body is decoded as it streams in, with the size limit
+     * enforced from Content-Length before any buffering.
+     */
+    private String fetchRaw(String token, String owner, String repo, String fullPath, String branch) {
+        BoundedTextDecoder.Result result = githubClient.streamRawFile(token, owner, repo, fullPath, branch,
+                (body, length) -> BoundedTextDecoder.decode(body, length, maxFileBytes));
+
+        if (result == null) {
+            log.error("[GithubFileService] FAIL: GitHub API returned empty response for {}", fullPath);
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR,
+                    "GITHUB_API_ERROR: GitHub API returned empty response");
+        }
+
+        return switch (result.status()) {
+            case TEXT -> {
+                log.debug("[GithubFileService] Fetched {}/{}/{} ({} bytes)", owner, repo, fullPath, result.bytes());
+                yield result.text();
+            }
+            case BINARY -> {
+                log.info("[GithubFileService] Skipping binary file {}/{}/{}", owner, repo, fullPath);
+                yield null;
+            }
+            case TOO_LARGE -> {
+                log.info("[GithubFileService] Skipping {}/{}/{}: larger than {} bytes", owner, repo, fullPath,
+                        maxFileBytes);
+                yield null;
+            }
+        };
+    }
+
+    /**
+     * Legacy contents-API fetch (base64 inside a JSON envelope).
+     */
+    private String fetchViaJson(String token, String owner, String repo, String fullPath, String branch) {
+        Map<String, Object> response = githubClient.getFile(token, owner, repo, fullPath, branch);
 
         if (response == null) {
             log.error("[GithubFileService] FAIL: GitHub API returned null response");
@@ -126,15 +186,9 @@ public class GithubFileService {
                     "GITHUB_API_ERROR: GitHub API returned empty response");
         }
 
-        log.info("[GithubFileService] GitHub API response keys: {}", response.keySet());
-
-        // Step 6: Extract and decode content
         String content = (String) response.get("content");
         String encoding = (String) response.get("encoding");
 
-        log.info("[GithubFileService] Response: encoding={}, content.length={}",
-                encoding, content != null ? content.length() : 0);
-
         if (content == null) {
             log.error("[GithubFileService] FAIL: No 'content' field in GitHub response. Keys present: {}",
                     response.keySet());
@@ -148,16 +202,15 @@ public class GithubFileService {
                     "GITHUB_API_ERROR: Unexpected file encoding from GitHub");
         }
 
-        // Step 7: Decode base64 content
-        String cleanContent = content.replaceAll("\\s", "");
-        byte[] decoded = Base64.getDecoder().decode(cleanContent);
-        String result = new String(decoded, StandardCharsets.UTF_8);
-
-        log.info("[GithubFileService] SUCCESS: Fetched {}/{}/{} ({} chars, first 80: '{}')",
-                owner, repo, fullPath, result.length(),
-                result.substring(0, Math.min(80, result.length())).replace("\n", "\\n"));
-
-        return result;
+        // The MIME decoder skips the line breaks GitHub inserts, so no whitespace-stripped copy is needed
+        byte[] decoded = Base64.getMimeDecoder().decode(content);
+        try {
+            BoundedTextDecoder.Result result = BoundedTextDecoder.decode(
+                    new ByteArrayInputStream(decoded), decoded.length, maxFileBytes);
+            return result.isText() ? result.text() : null;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
     }
 
     private String buildFullPath(String subPath, String filePath) {
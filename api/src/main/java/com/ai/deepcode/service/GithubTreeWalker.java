@@ -0,0 +1,239 @@
+package com.ai.deepcode.service;
+
+import com.ai.deepcode.api.GithubApiClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * Walks a GitHub repository tree and streams blob paths to a consumer.
+ *
+ * The recursive trees API is tried first. GitHub truncates that listing for very
+ * large repositories, in which case the walker lists the root non-recursively and
+ * descends into each subtree in parallel (bounded by github.tree.max-concurrency).
+ * Each subtree is again tried recursively and only expanded level by level if it
+ * is itself truncated, which keeps the request count low for typical monorepos.
+ */
+@Service
+public class GithubTreeWalker {
+
+    private static final Logger log = LoggerFactory.getLogger(GithubTreeWalker.class);
+
+    private final GithubApiClient github;
+    private final int maxConcurrency;
+
+    public GithubTreeWalker(GithubApiClient github,
+            @Value("${github.tree.max-concurrency:8}") int maxConcurrency) {
+        this.github = github;
+        this.maxConcurrency = Math.max(1, maxConcurrency);
+    }
+
+    /**
+     * Summary of a completed walk.
+     *
+     * @param rootSha      SHA of the root tree that was walked
+     * @param files        Number of blob paths emitted
+     * @param truncated    Whether the initial recursive listing was truncated
+     * @param treeRequests Number of trees API calls made
+     */
+    public record WalkResult(String rootSha, int files, boolean truncated, int treeRequests) {
+    }
+
+    /**
+     * Walk the tree at {@code ref} and pass every blob path to {@code sink}.
+     * The sink may be called from several walker threads at once and must be
+     * thread-safe; it should return quickly, as a tree response stays open
+     * while it runs.
+     */
+    public WalkResult walk(String token, String owner, String repo, String ref, Consumer<String> sink) {
+        Walk walk = new Walk(token, owner, repo, sink);
+
+        Listed root = walk.listRecursive("", ref, null);
+        if (!root.truncated()) {
+            return new WalkResult(root.sha(), walk.files.get(), false, walk.requests.get());
+        }
+
+        log.info("[GithubTreeWalker] Tree for {}/{}@{} truncated after {} files, walking subtrees (concurrency={})",
+                owner, repo, ref, walk.files.get(), maxConcurrency);
+
+        ExecutorService pool = Executors.newFixedThreadPool(maxConcurrency, r -> {
+            Thread t = new Thread(r, "github-tree-walk");
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            walk.pool = pool;
+            walk.pending.incrementAndGet();
+            try {
+                // Pin the fallback to the tree we already started listing
+                walk.expand("", root.sha() != null ? root.sha() : ref, root.last());
+            } finally {
+                walk.finishOne();
+            }
+            walk.await();
+        } finally {
+            pool.shutdownNow();
+        }
+
+        log.info("[GithubTreeWalker] Walk of {}/{}@{} complete: {} files, {} tree requests",
+                owner, repo, ref, walk.files.get(), walk.requests.get());
+        return new WalkResult(root.sha(), walk.files.get(), true, walk.requests.get());
+    }
+
+    private static String join(String prefix, String path) {
+        return prefix.isEmpty() ? path : prefix + "/" + path;
+    }
+
+    /**
+     * Git's tree order for full paths: byte order of their UTF-8 encoding, which
+     * is code point order. Sorting tree names as if they ended in "/" makes the
+     * recursive listing a pre-order walk in exactly this order.
+     */
+    static int compareTreeOrder(String a, String b) {
+        int i = 0;
+        int j = 0;
+        while (i < a.length() && j < b.length()) {
+            int ca = a.codePointAt(i);
+            int cb = b.codePointAt(j);
+            if (ca != cb) {
+                return Integer.compare(ca, cb);
+            }
+            i += Character.charCount(ca);
+            j += Character.charCount(cb);
+        }
+        return Integer.compare(a.length() - i, b.length() - j);
+    }
+
+    /**
+     * Outcome of one recursive listing.
+     *
+     * @param last Last path listed (or already emitted) in tree order; a truncated
+     *             listing has emitted every path up to it
+     */
+    private record Listed(String sha, boolean truncated, String last) {
+    }
+
+    /**
+     * State of one walk. A truncated listing returns a prefix of the tree in tree
+     * order, so its last path is all the fallback expansion needs to skip what was
+     * already emitted; no set of paths is kept.
+     */
+    private class Walk {
+        final String token;
+        final String owner;
+        final String repo;
+        final Consumer<String> sink;
+        final AtomicInteger files = new AtomicInteger();
+        final AtomicInteger requests = new AtomicInteger();
+        final AtomicInteger pending = new AtomicInteger();
+        final CountDownLatch done = new CountDownLatch(1);
+        final AtomicReference<RuntimeException> failure = new AtomicReference<>();
+        ExecutorService pool;
+
+        Walk(String token, String owner, String repo, Consumer<String> sink) {
+            this.token = token;
+            this.owner = owner;
+            this.repo = repo;
+            this.sink = sink;
+        }
+
+        void emit(String path) {
+            files.incrementAndGet();
+            sink.accept(path);
+        }
+
+        /**
+         * Recursive listing of one subtree. Paths up to {@code emittedUpTo} (in tree
+         * order) came from a truncated listing above and are skipped.
+         */
+        Listed listRecursive(String prefix, String sha, String emittedUpTo) {
+            requests.incrementAndGet();
+            String[] last = { emittedUpTo };
+            GithubApiClient.TreeListing listing = github.streamTree(token, owner, repo, sha, true, entry -> {
+                if (entry.path() == null) {
+                    return;
+                }
+                String path = join(prefix, entry.path());
+                if (emittedUpTo != null && compareTreeOrder(path, emittedUpTo) <= 0) {
+                    return;
+                }
+                last[0] = path;
+                if ("blob".equals(entry.type())) {
+                    emit(path);
+                }
+            });
+            return new Listed(listing.sha(), listing.truncated(), last[0]);
+        }
+
+        /**
+         * Non-recursive listing of one level; subtrees are scheduled on the pool.
+         * Subtrees wholly before {@code emittedUpTo} are skipped, and only the one
+         * it falls inside is told to skip part of its paths.
+         */
+        void expand(String prefix, String sha, String emittedUpTo) {
+            requests.incrementAndGet();
+            github.streamTree(token, owner, repo, sha, false, entry -> {
+                if (entry.path() == null) {
+                    return;
+                }
+                String path = join(prefix, entry.path());
+                if ("blob".equals(entry.type())) {
+                    if (emittedUpTo == null || compareTreeOrder(path, emittedUpTo) > 0) {
+                        emit(path);
+                    }
+                } else if ("tree".equals(entry.type())) {
+                    String dir = path + "/";
+                    if (emittedUpTo == null || compareTreeOrder(emittedUpTo, dir) < 0) {
+                        submit(path, entry.sha(), null);
+                    } else if (emittedUpTo.startsWith(dir)) {
+                        submit(path, entry.sha(), emittedUpTo);
+                    }
+                }
+            });
+        }
+
+        void submit(String prefix, String sha, String emittedUpTo) {
+            pending.incrementAndGet();
+            pool.execute(() -> {
+                try {
+                    if (failure.get() == null) {
+                        Listed listed = listRecursive(prefix, sha, emittedUpTo);
+                        if (listed.truncated()) {
+                            expand(prefix, sha, listed.last());
+                        }
+                    }
+                } catch (RuntimeException e) {
+                    failure.compareAndSet(null, e);
+                } finally {
+                    finishOne();
+                }
+            });
+        }
+
+        void finishOne() {
+            if (pending.decrementAndGet() == 0) {
+                done.countDown();
+            }
+        }
+
+        void await() {
+            try {
+                done.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while walking GitHub tree", e);
+            }
+            if (failure.get() != null) {
+                throw failure.get();
+            }
+        }
+    }
+}
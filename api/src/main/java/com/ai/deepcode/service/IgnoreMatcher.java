@@ -0,0 +1,235 @@
+package com.ai.deepcode.service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * .gitignore / .ragignore rules compiled to regular expressions.
+ *
+ * Follows gitignore semantics: rules from shallower ignore files are applied
+ * first and the last matching rule wins; "!" re-includes; a trailing "/"
+ * matches directories only; a pattern containing "/" is anchored to the
+ * directory of its ignore file, otherwise it matches at any depth; "**" spans
+ * directories. A file inside an ignored directory stays ignored, as in git.
+ *
+ * Rules that name a file ("node_modules") or an extension ("*.log") without
+ * a "/" are looked up by the path's last segment, so a check only runs the
+ * regular expressions of the remaining rules.
+ */
+public final class IgnoreMatcher {
+
+    public static final IgnoreMatcher NONE = new IgnoreMatcher(List.of());
+
+    private static final List<String> IGNORE_FILE_NAMES = List.of(".gitignore", ".ragignore");
+
+    /**
+     * One rule; {@code name} or {@code suffix} is set when the rule matches
+     * a last path segment equal to, or ending with, a literal.
+     */
+    private record Rule(int order, String baseDir, Pattern pattern, String name, String suffix, boolean negated,
+            boolean dirOnly) {
+
+        boolean matches(String path, String fileName, boolean isDir) {
+            if ((dirOnly && !isDir) || !path.startsWith(baseDir) || path.length() == baseDir.length()) {
+                return false;
+            }
+            if (name != null) {
+                return fileName.equals(name);
+            }
+            if (suffix != null) {
+                return fileName.endsWith(suffix);
+            }
+            return pattern.matcher(path.substring(baseDir.length())).matches();
+        }
+    }
+
+    private final boolean empty;
+    private final Map<String, List<Rule>> byName = new HashMap<>();
+    private final Map<String, List<Rule>> byExtension = new HashMap<>();
+    private final List<Rule> others = new ArrayList<>();
+
+    private IgnoreMatcher(List<Rule> rules) {
+        this.empty = rules.isEmpty();
+        for (Rule rule : rules) {
+            if (rule.name != null) {
+                byName.computeIfAbsent(rule.name, k -> new ArrayList<>()).add(rule);
+            } else if (rule.suffix != null) {
+                byExtension.computeIfAbsent(extension(rule.suffix), k -> new ArrayList<>()).add(rule);
+            } else {
+                others.add(rule);
+            }
+        }
+    }
+
+    public static boolean isIgnoreFile(String path) {
+        return IGNORE_FILE_NAMES.contains(fileName(path));
+    }
+
+    /**
+     * Compile the rules of every ignore file among {@code files} (path -> content).
+     */
+    public static IgnoreMatcher fromFiles(Map<String, String> files) {
+        List<String> ignoreFiles = files.keySet().stream()
+                .filter(IgnoreMatcher::isIgnoreFile)
+                .sorted(Comparator.comparingInt((String p) -> p.split("/").length).thenComparing(p -> p))
+                .toList();
+        if (ignoreFiles.isEmpty()) {
+            return NONE;
+        }
+        List<Rule> rules = new ArrayList<>();
+        for (String path : ignoreFiles) {
+            String content = files.get(path);
+            if (content == null) {
+                continue;
+            }
+            int slash = path.lastIndexOf('/');
+            String baseDir = slash < 0 ? "" : path.substring(0, slash + 1);
+            for (String line : content.split("\r?\n")) {
+                Rule rule = parse(rules.size(), baseDir, line);
+                if (rule != null) {
+                    rules.add(rule);
+                }
+            }
+        }
+        return new IgnoreMatcher(rules);
+    }
+
+    public boolean isIgnored(String path) {
+        if (empty || path == null) {
+            return false;
+        }
+        for (int slash = path.indexOf('/'); slash > 0; slash = path.indexOf('/', slash + 1)) {
+            if (matches(path.substring(0, slash), true)) {
+                return true;
+            }
+        }
+        return matches(path, false);
+    }
+
+    /**
+     * Whether the last rule matching {@code path} ignores it.
+     */
+    private boolean matches(String path, boolean isDir) {
+        String name = fileName(path);
+        Rule last = lastMatch(byName.get(name), path, name, isDir, null);
+        last = lastMatch(byExtension.get(extension(name)), path, name, isDir, last);
+        last = lastMatch(others, path, name, isDir, last);
+        return last != null && !last.negated;
+    }
+
+    /**
+     * The latest rule of {@code rules} (in rule order) that matches and comes
+     * after {@code last}, else {@code last}.
+     */
+    private static Rule lastMatch(List<Rule> rules, String path, String name, boolean isDir, Rule last) {
+        if (rules == null) {
+            return last;
+        }
+        for (int i = rules.size() - 1; i >= 0; i--) {
+            Rule rule = rules.get(i);
+            if (last != null && rule.order < last.order) {
+                break;
+            }
+            if (rule.matches(path, name, isDir)) {
+                return rule;
+            }
+        }
+        return last;
+    }
+
+    private static Rule parse(int order, String baseDir, String line) {
+        String pattern = line.stripTrailing();
+        if (pattern.isEmpty() || pattern.startsWith("#")) {
+            return null;
+        }
+        boolean negated = pattern.startsWith("!");
+        if (negated) {
+            pattern = pattern.substring(1);
+        } else if (pattern.startsWith("\\")) {
+            pattern = pattern.substring(1);
+        }
+        boolean dirOnly = pattern.endsWith("/");
+        if (dirOnly) {
+            pattern = pattern.substring(0, pattern.length() - 1);
+        }
+        boolean anchored = pattern.contains("/");
+        if (pattern.startsWith("/")) {
+            pattern = pattern.substring(1);
+        }
+        if (pattern.isEmpty()) {
+            return null;
+        }
+        String regex = (anchored ? "" : "(?:.*/)?") + globToRegex(pattern);
+        String name = null;
+        String suffix = null;
+        if (!anchored && isLiteral(pattern)) {
+            name = pattern;
+        } else if (!anchored && pattern.startsWith("*") && isLiteral(pattern.substring(1))
+                && pattern.indexOf('.') > 0) {
+            suffix = pattern.substring(1);
+        }
+        return new Rule(order, baseDir, Pattern.compile(regex), name, suffix, negated, dirOnly);
+    }
+
+    private static boolean isLiteral(String glob) {
+        for (int i = 0; i < glob.length(); i++) {
+            if ("*?[\\".indexOf(glob.charAt(i)) >= 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Text after the last '.', or "" without one. */
+    private static String extension(String name) {
+        int dot = name.lastIndexOf('.');
+        return dot < 0 ? "" : name.substring(dot + 1);
+    }
+
+    static String globToRegex(String glob) {
+        StringBuilder regex = new StringBuilder();
+        int n = glob.length();
+        for (int i = 0; i < n; i++) {
+            char c = glob.charAt(i);
+            if (c == '*') {
+                boolean doubleStar = i + 1 < n && glob.charAt(i + 1) == '*';
+                if (doubleStar && i + 2 < n && glob.charAt(i + 2) == '/') {
+                    regex.append("(?:.*/)?");
+                    i += 2;
+                } else if (doubleStar) {
+                    regex.append(".*");
+                    i++;
+                } else {
+                    regex.append("[^/]*");
+                }
+            } else if (c == '?') {
+                regex.append("[^/]");
+            } else if (c == '[') {
+                int close = glob.indexOf(']', i + 1);
+                if (close < 0) {
+                    regex.append("\\[");
+                    continue;
+                }
+                String set = glob.substring(i + 1, close);
+                if (set.startsWith("!")) {
+                    set = "^" + set.substring(1);
+                }
+                regex.append('[').append(set.replace("\\", "\\\\")).append(']');
+                i = close;
+            } else if ("\\.^$+{}()|".indexOf(c) >= 0) {
+                regex.append('\\').append(c);
+            } else {
+                regex.append(c);
+            }
+        }
+        return regex.toString();
+    }
+
+    private static String fileName(String path) {
+        return path == null ? "" : path.substring(path.lastIndexOf('/') + 1);
+    }
+}
@@ -4,19 +4,36 @@ import com.ai.deepcode.entity.Chunk;
 import com.ai.deepcode.entity.IndexStatus;
 import com.ai.deepcode.entity.IndexingStatus;
 import com.ai.deepcode.entity.Project;
+import com.ai.deepcode.repository.ChunkPartitionRepository;
 import com.ai.deepcode.repository.ChunkRepository;
+import com.ai.deepcode.repository.HnswVectorIndex;
 import com.ai.deepcode.repository.IndexStatusRepository;
 import com.ai.deepcode.repository.ProjectRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.OffsetDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
 
@@ -27,27 +44,57 @@ import java.util.concurrent.CompletableFuture;
 public class IndexingService {
 
     private static final Logger log = LoggerFactory.getLogger(IndexingService.class);
+    private static final String DEFAULT_EMBED_MODEL = "nomic-embed-text";
+    private static final int DEFAULT_CHUNK_SIZE = 500;
+    private static final int DEFAULT_CHUNK_OVERLAP = 50;
 
     private final ProjectRepository projectRepository;
     private final IndexStatusRepository indexStatusRepository;
     private final ChunkRepository chunkRepository;
+    private final ChunkPartitionRepository chunkPartitionRepository;
     private final ChunkingService chunkingService;
     private final EmbeddingService embeddingService;
     private final JdbcTemplate jdbcTemplate;
+    private final ContentClassifier contentClassifier;
+    private final ContentNormalizer contentNormalizer;
+    private final TokenCounter tokenCounter;
+    private final HnswVectorIndex hnswVectorIndex;
+    private final boolean normalizeByDefault;
+    private final boolean coalesceSmallFiles;
+    private final int coalesceMaxFileTokens;
+    private final int partitionMinChunks;
 
     public IndexingService(
             ProjectRepository projectRepository,
             IndexStatusRepository indexStatusRepository,
             ChunkRepository chunkRepository,
+            ChunkPartitionRepository chunkPartitionRepository,
             ChunkingService chunkingService,
             EmbeddingService embeddingService,
-            JdbcTemplate jdbcTemplate) {
+            JdbcTemplate jdbcTemplate,
+            ContentClassifier contentClassifier,
+            ContentNormalizer contentNormalizer,
+            TokenCounter tokenCounter,
+            HnswVectorIndex hnswVectorIndex,
+            @Value("${indexing.normalize.enabled:false}") boolean normalizeByDefault,
+            @Value("${indexing.coalesce.enabled:false}") boolean coalesceSmallFiles,
+            @Value("${indexing.coalesce.max-file-tokens:128}") int coalesceMaxFileTokens,
+            @Value("${indexing.partition.min-chunks:10000}") int partitionMinChunks) {
         this.projectRepository = projectRepository;
         this.indexStatusRepository = indexStatusRepository;
         this.chunkRepository = chunkRepository;
+        this.chunkPartitionRepository = chunkPartitionRepository;
         this.chunkingService = chunkingService;
         this.embeddingService = embeddingService;
         this.jdbcTemplate = jdbcTemplate;
+        this.contentClassifier = contentClassifier;
+        this.contentNormalizer = contentNormalizer;
+        this.tokenCounter = tokenCounter;
+        this.hnswVectorIndex = hnswVectorIndex;
+        this.normalizeByDefault = normalizeByDefault;
+        this.coalesceSmallFiles = coalesceSmallFiles;
+        this.coalesceMaxFileTokens = coalesceMaxFileTokens;
+        this.partitionMinChunks = partitionMinChunks;
     }
 
     /**
@@ -71,7 +118,7 @@ public class IndexingService {
     }
 
     /**
-     * Index a project's files synchronously.
+     * Index a project's files synchronously, keeping the project's normalization setting.
      */
     @Transactional
     public void indexProject(
@@ -80,10 +127,29 @@ public class IndexingService {
             String embedModel,
             int chunkSize,
             int chunkOverlap) {
+        indexProject(projectId, fileContents, embedModel, chunkSize, chunkOverlap, null);
+    }
+
+    /**
+     * Index a project's files synchronously. Chunks whose content is unchanged
+     * keep their stored embedding; files no longer present lose their chunks.
+     *
+     * @param normalize whether to embed chunks without license headers, package
+     *                  lines and full import paths (see {@link ContentNormalizer});
+     *                  null keeps the project's current setting
+     */
+    @Transactional
+    public void indexProject(
+            UUID projectId,
+            Map<String, String> discoveredContents,
+            String embedModel,
+            int chunkSize,
+            int chunkOverlap,
+            Boolean normalize) {
 
         log.info("╔══════════════════════════════════════════════════════════════════════════════");
         log.info("║ [INDEXING START] Project: {}", projectId);
-        log.info("║   Total files discovered: {}", fileContents.size());
+        log.info("║   Total files discovered: {}", discoveredContents.size());
         log.info("║   Embedding model: {}", embedModel);
         log.info("║   Chunk size: {}, Overlap: {}", chunkSize, chunkOverlap);
         log.info("╚══════════════════════════════════════════════════════════════════════════════");
@@ -102,6 +168,13 @@ public class IndexingService {
                     return newStatus;
                 });
 
+        // Leave out lockfiles, minified/generated/binary content and ignored paths
+        status.clearSkips();
+        Map<String, String> fileContents = embeddableFiles(discoveredContents,
+                IgnoreMatcher.fromFiles(discoveredContents), status);
+        log.info("[INDEXING] {} files to embed, {} skipped by content filter {}",
+                fileContents.size(), status.getSkippedFiles(), status.getSkipReasons());
+
         status.setStatus(IndexingStatus.IN_PROGRESS);
         status.setTotalFiles(fileContents.size());
         status.setIndexedFiles(0);
@@ -110,60 +183,68 @@ public class IndexingService {
         status.setEmbedModel(embedModel);
         status.setChunkSize(chunkSize);
         status.setChunkOverlap(chunkOverlap);
+        status.setNormalizeContent(normalize != null ? normalize : normalizeEnabled(status));
+        status.setTokensSaved(0L);
         status.setStartedAt(OffsetDateTime.now());
         status.setErrorMessage(null);
         indexStatusRepository.save(status);
 
-        // Clear existing chunks for this project
-        log.info("[INDEXING] Clearing existing chunks for project {}", projectId);
-        chunkRepository.deleteByProjectId(projectId);
+        // Keep what is already embedded: chunks whose content hash is stored keep
+        // their row and vector (see indexFile and indexPack), and only paths no
+        // longer indexed lose theirs. Searches keep seeing the previous index
+        // until this transaction commits
+        // Every chunk may change: the HNSW graph catches up once after commit
+        // instead of queueing a hook per chunk
+        hnswVectorIndex.bulkUpdate(projectId);
+        Set<String> leftoverPaths = new HashSet<>(chunkRepository.findDistinctFilePathsByProjectId(projectId));
+        leftoverPaths.removeAll(fileContents.keySet());
+        if (!leftoverPaths.isEmpty()) {
+            log.info("[INDEXING] Removing chunks of {} files no longer indexed", leftoverPaths.size());
+            chunkRepository.deleteByProjectIdAndFilePathIn(projectId, leftoverPaths);
+            hnswVectorIndex.filesDeleted(projectId, leftoverPaths);
+        }
 
         int indexedFiles = 0;
         int failedFiles = 0;
         int totalChunks = 0;
         int totalFilesToIndex = fileContents.size();
 
-        log.info("[INDEXING] Beginning file processing loop for {} files", totalFilesToIndex);
+        // Small sibling files share one embedding call; the rest are chunked one by one
+        Map<String, String> singleFiles = fileContents;
+        if (coalesceSmallFiles) {
+            singleFiles = new LinkedHashMap<>();
+            List<ChunkingService.FilePack> packs = chunkingService.packSmallFiles(fileContents,
+                    coalesceMaxFileTokens, singleFiles);
+            log.info("[INDEXING] Coalesced {} small files into {} shared embeddings",
+                    fileContents.size() - singleFiles.size(), packs.size());
+
+            for (ChunkingService.FilePack pack : packs) {
+                try {
+                    totalChunks += indexPack(status, pack);
+                    indexedFiles += pack.files().size();
+                    status.setIndexedFiles(indexedFiles);
+                    status.setTotalChunks(totalChunks);
+                    indexStatusRepository.save(status);
+                } catch (Exception e) {
+                    failedFiles += pack.files().size();
+                    log.error("[INDEXING ERROR] Failed to index {} coalesced files starting at {}: {}",
+                            pack.files().size(), pack.files().get(0).filePath(), e.getMessage());
+                    deleteFiles(projectId, pack.files().stream().map(ChunkingService.PackedFile::filePath).toList());
+                    status.setFailedFiles(failedFiles);
+                    indexStatusRepository.save(status);
+                }
+            }
+        }
 
-        for (Map.Entry<String, String> entry : fileContents.entrySet()) {
+        log.info("[INDEXING] Beginning file processing loop for {} files", singleFiles.size());
+
+        for (Map.Entry<String, String> entry : singleFiles.entrySet()) {
             String filePath = entry.getKey();
             String content = entry.getValue();
 
             try {
-                // Chunk the file content
-                List<ChunkingService.ChunkResult> chunks = chunkingService.chunkFileContent(
-                        filePath, content, chunkSize, chunkOverlap);
-
-                int fileChunkCount = 0;
-
-                // Generate embeddings and save chunks
-                for (ChunkingService.ChunkResult chunkResult : chunks) {
-                    float[] embedding = embeddingService.generateEmbedding(chunkResult.content(), embedModel);
-
-                    String vectorCol = "embedding_768";
-                    if (embedding.length == 384)
-                        vectorCol = "embedding_384";
-                    else if (embedding.length == 1024)
-                        vectorCol = "embedding_1024";
-
-                    // Use JdbcTemplate for native insert with vector cast
-                    jdbcTemplate.update(
-                            String.format(
-                                    "INSERT INTO chunks (id, project_id, file_path, chunk_index, content, token_count, %s, created_at) "
-                                            +
-                                            "VALUES (?, ?, ?, ?, ?, ?, cast(? as vector), NOW())",
-                                    vectorCol),
-                            UUID.randomUUID(),
-                            projectId,
-                            filePath,
-                            chunkResult.index(),
-                            chunkResult.content(),
-                            chunkResult.tokenEstimate(),
-                            EmbeddingService.toVectorString(embedding));
-
-                    totalChunks++;
-                    fileChunkCount++;
-                }
+                int fileChunkCount = indexFile(status, filePath, content, true);
+                totalChunks += fileChunkCount;
 
                 indexedFiles++;
 
@@ -181,6 +262,8 @@ public class IndexingService {
             } catch (Exception e) {
                 failedFiles++;
                 log.error("[INDEXING ERROR] Failed to index file {}: {}", filePath, e.getMessage());
+                // Do not leave a mix of old and new chunks behind
+                deleteFiles(projectId, List.of(filePath));
                 status.setFailedFiles(failedFiles);
                 indexStatusRepository.save(status);
             }
@@ -197,6 +280,7 @@ public class IndexingService {
 
         status.setCompletedAt(OffsetDateTime.now());
         indexStatusRepository.save(status);
+        promoteWhenLarge(projectId, totalChunks);
 
         log.info("╔══════════════════════════════════════════════════════════════════════════════");
         log.info("║ [INDEXING COMPLETE] Project: {}", projectId);
@@ -204,11 +288,464 @@ public class IndexingService {
         log.info("║   Files indexed: {}/{}", indexedFiles, totalFilesToIndex);
         log.info("║   Failed files: {}", failedFiles);
         log.info("║   Total chunks created: {}", totalChunks);
+        if (status.getNormalizeContent()) {
+            log.info("║   Tokens saved by normalization: {}", status.getTokensSaved());
+        }
         log.info("║   Embedding model used: {}", embedModel);
         log.info("║   DB inserts confirmed: {} rows in chunks table", totalChunks);
         log.info("╚══════════════════════════════════════════════════════════════════════════════");
     }
 
+    /**
+     * Incrementally re-index a subset of a project's files.
+     * Only chunks belonging to changed or removed paths are replaced; the rest of
+     * the index is left untouched. Within a changed file, chunks whose content
+     * hash is already stored are kept rather than embedded again. Embedding settings are taken from the last
+     * recorded index status so that new chunks match the existing ones.
+     *
+     * @param ignoreFiles the project's .gitignore/.ragignore files (path -> content); changed
+     *                    ones are taken from {@code changedContents} instead
+     */
+    @Transactional
+    public void reindexFiles(UUID projectId, Map<String, String> changedContents, Collection<String> removedPaths,
+            Map<String, String> ignoreFiles) {
+        Project project = projectRepository.findById(projectId).orElse(null);
+        if (project == null) {
+            log.error("[IndexingService] Project not found in database: {}", projectId);
+            throw new IllegalArgumentException("Project not found: " + projectId);
+        }
+
+        IndexStatus status = indexStatusRepository.findByProjectId(projectId)
+                .orElseGet(() -> {
+                    IndexStatus newStatus = new IndexStatus();
+                    newStatus.setProject(project);
+                    return newStatus;
+                });
+
+        String embedModel = status.getEmbedModel() != null ? status.getEmbedModel() : DEFAULT_EMBED_MODEL;
+        int chunkSize = status.getChunkSize() != null ? status.getChunkSize() : DEFAULT_CHUNK_SIZE;
+        int chunkOverlap = status.getChunkOverlap() != null ? status.getChunkOverlap() : DEFAULT_CHUNK_OVERLAP;
+        status.setEmbedModel(embedModel);
+        status.setChunkSize(chunkSize);
+        status.setChunkOverlap(chunkOverlap);
+        status.setNormalizeContent(normalizeEnabled(status));
+        status.setTokensSaved(0L);
+
+        log.info("[INCREMENTAL INDEX] Project {}: {} changed, {} removed (model={}, chunkSize={}, overlap={})",
+                projectId, changedContents.size(), removedPaths.size(), embedModel, chunkSize, chunkOverlap);
+
+        // Changed files keep chunks whose content is unchanged; see indexFile.
+        // Files the content filter now rejects lose their chunks like removed ones.
+        Map<String, String> ruleFiles = new HashMap<>(ignoreFiles);
+        changedContents.forEach((path, content) -> {
+            if (IgnoreMatcher.isIgnoreFile(path)) {
+                ruleFiles.put(path, content);
+            }
+        });
+        removedPaths.forEach(ruleFiles::remove);
+        Map<String, String> embeddable = embeddableFiles(changedContents, IgnoreMatcher.fromFiles(ruleFiles), status);
+        Set<String> stalePaths = new HashSet<>(removedPaths);
+        stalePaths.addAll(changedContents.keySet());
+        stalePaths.removeAll(embeddable.keySet());
+        if (!stalePaths.isEmpty()) {
+            chunkRepository.deleteByProjectIdAndFilePathIn(projectId, stalePaths);
+            hnswVectorIndex.filesDeleted(projectId, stalePaths);
+        }
+
+        int indexedFiles = 0;
+        int failedFiles = 0;
+        for (Map.Entry<String, String> entry : embeddable.entrySet()) {
+            try {
+                indexFile(status, entry.getKey(), entry.getValue(), true);
+                indexedFiles++;
+            } catch (Exception e) {
+                failedFiles++;
+                log.error("[INCREMENTAL INDEX] Failed to index file {}: {}", entry.getKey(), e.getMessage());
+                // Do not leave a mix of old and new chunks behind
+                deleteFiles(projectId, List.of(entry.getKey()));
+            }
+        }
+
+        status.setTotalFiles(chunkRepository.findDistinctFilePathsByProjectId(projectId).size() + failedFiles);
+        status.setIndexedFiles(status.getTotalFiles() - failedFiles);
+        status.setFailedFiles(failedFiles);
+        status.setTotalChunks((int) chunkRepository.countByProjectId(projectId));
+        status.setStatus(failedFiles > 0 ? IndexingStatus.COMPLETED_WITH_ERRORS : IndexingStatus.COMPLETED);
+        status.setCompletedAt(OffsetDateTime.now());
+        indexStatusRepository.save(status);
+        promoteWhenLarge(projectId, status.getTotalChunks());
+
+        log.info("[INCREMENTAL INDEX] Project {} done: {} files re-embedded, {} failed, {} paths removed",
+                projectId, indexedFiles, failedFiles, removedPaths.size());
+    }
+
+    /**
+     * Start an index whose files arrive one at a time (e.g. while an archive is
+     * still being unpacked). The status is reset but existing chunks stay
+     * searchable: each streamed file replaces its own chunks, and only
+     * {@link #completeStreamingIndex} drops paths the stream did not contain, so
+     * a stream that fails part way never leaves the project without an index.
+     * Feed files with {@link #indexStreamedFile}.
+     */
+    @Transactional
+    public IndexStatus beginStreamingIndex(UUID projectId, String embedModel, int chunkSize, int chunkOverlap) {
+        Project project = projectRepository.findById(projectId).orElse(null);
+        if (project == null) {
+            log.error("[IndexingService] Project not found in database: {}", projectId);
+            throw new IllegalArgumentException("Project not found: " + projectId);
+        }
+
+        IndexStatus status = indexStatusRepository.findByProjectId(projectId)
+                .orElseGet(() -> {
+                    IndexStatus newStatus = new IndexStatus();
+                    newStatus.setProject(project);
+                    return newStatus;
+                });
+
+        status.setStatus(IndexingStatus.IN_PROGRESS);
+        status.setTotalFiles(0);
+        status.setIndexedFiles(0);
+        status.setFailedFiles(0);
+        status.setTotalChunks(0);
+        status.setEmbedModel(embedModel);
+        status.setChunkSize(chunkSize);
+        status.setChunkOverlap(chunkOverlap);
+        status.setStartedAt(OffsetDateTime.now());
+        status.setCompletedAt(null);
+        status.setErrorMessage(null);
+        status.setNormalizeContent(normalizeEnabled(status));
+        status.setTokensSaved(0L);
+        status.clearSkips();
+
+        log.info("[STREAMING INDEX] Project {} started (model={}, chunkSize={}, overlap={})",
+                projectId, embedModel, chunkSize, chunkOverlap);
+        return indexStatusRepository.save(status);
+    }
+
+    /**
+     * Index one file of a streaming index and record it on the status.
+     *
+     * @param discoveredFiles files seen so far by the producer; used as the running total
+     * @param ignore          rules of the ignore files streamed so far
+     */
+    public void indexStreamedFile(IndexStatus status, String filePath, String content, int discoveredFiles,
+            IgnoreMatcher ignore) {
+        UUID projectId = status.getProject().getId();
+        ContentClassifier.SkipReason skip = contentClassifier.classify(filePath, content, ignore);
+        if (skip != null) {
+            log.debug("[STREAMING INDEX] Skipping {} ({})", filePath, skip.key());
+            status.recordSkip(filePath, skip.key());
+            deleteFiles(projectId, List.of(filePath));
+            status.setTotalFiles(discoveredFiles - status.getSkippedFiles());
+            indexStatusRepository.save(status);
+            return;
+        }
+        try {
+            int chunks = indexFile(status, filePath, content, true);
+            status.setIndexedFiles(status.getIndexedFiles() + 1);
+            status.setTotalChunks(status.getTotalChunks() + chunks);
+        } catch (Exception e) {
+            log.error("[STREAMING INDEX] Failed to index file {}: {}", filePath, e.getMessage());
+            status.setFailedFiles(status.getFailedFiles() + 1);
+            // Do not leave a mix of old and new chunks behind
+            deleteFiles(projectId, List.of(filePath));
+        }
+        status.setTotalFiles(discoveredFiles - status.getSkippedFiles());
+        indexStatusRepository.save(status);
+    }
+
+    /**
+     * Finish a streaming index: drop chunks of paths the stream did not contain,
+     * and of files indexed before an ignore rule covering them arrived.
+     *
+     * @param totalFiles    files that count towards progress (indexed plus failed); skipped files are
+     *                      reported separately and must not be included
+     * @param streamedPaths every path the stream contained
+     * @param ignore        rules of all streamed ignore files
+     */
+    public void completeStreamingIndex(IndexStatus status, int totalFiles, Set<String> streamedPaths,
+            IgnoreMatcher ignore) {
+        UUID projectId = status.getProject().getId();
+        Set<String> leftoverPaths = new HashSet<>();
+        int lateIgnored = 0;
+        for (String path : chunkRepository.findDistinctFilePathsByProjectId(projectId)) {
+            if (!streamedPaths.contains(path)) {
+                leftoverPaths.add(path);
+            } else if (contentClassifier.isIgnored(path, ignore)) {
+                leftoverPaths.add(path);
+                status.recordSkip(path, ContentClassifier.SkipReason.IGNORED.key());
+                lateIgnored++;
+            }
+        }
+        if (!leftoverPaths.isEmpty()) {
+            log.info("[STREAMING INDEX] Removing chunks of {} files no longer indexed ({} ignored)",
+                    leftoverPaths.size(), lateIgnored);
+            deleteFiles(projectId, leftoverPaths);
+        }
+
+        int indexedFiles = status.getIndexedFiles() - lateIgnored;
+        status.setIndexedFiles(indexedFiles);
+        status.setTotalFiles(totalFiles - lateIgnored);
+        status.setTotalChunks((int) chunkRepository.countByProjectId(projectId));
+        if (status.getFailedFiles() > 0) {
+            status.setStatus(indexedFiles == 0 ? IndexingStatus.FAILED : IndexingStatus.COMPLETED_WITH_ERRORS);
+            if (indexedFiles == 0)
+                status.setErrorMessage("All files failed to index");
+        } else {
+            status.setStatus(IndexingStatus.COMPLETED);
+        }
+        status.setCompletedAt(OffsetDateTime.now());
+        indexStatusRepository.save(status);
+        promoteWhenLarge(projectId, status.getTotalChunks());
+
+        log.info("[STREAMING INDEX] Project {} done: {}/{} files indexed, {} failed, {} skipped, {} chunks",
+                projectId, indexedFiles, status.getTotalFiles(), status.getFailedFiles(),
+                status.getSkippedFiles(), status.getTotalChunks());
+    }
+
+    /**
+     * Files worth embedding, in input order. The rest are recorded on the status
+     * with the reason they were skipped.
+     */
+    private Map<String, String> embeddableFiles(Map<String, String> files, IgnoreMatcher ignore, IndexStatus status) {
+        Map<String, String> embeddable = new LinkedHashMap<>();
+        for (Map.Entry<String, String> entry : files.entrySet()) {
+            ContentClassifier.SkipReason skip = contentClassifier.classify(entry.getKey(), entry.getValue(), ignore);
+            if (skip != null) {
+                log.debug("[INDEXING] Skipping {} ({})", entry.getKey(), skip.key());
+                status.recordSkip(entry.getKey(), skip.key());
+            } else {
+                embeddable.put(entry.getKey(), entry.getValue());
+            }
+        }
+        return embeddable;
+    }
+
+    /**
+     * Chunk, embed and insert a single file with the model, chunk settings and
+     * normalization recorded on {@code status}. With {@code reuseExisting},
+     * chunks whose content hash is already stored for the file keep their row
+     * and embedding (only their position and text are updated), and the file's
+     * remaining old rows are deleted; only new chunk hashes are sent to the
+     * embedder.
+     *
+     * @return number of chunks the file now has
+     */
+    private int indexFile(IndexStatus status, String filePath, String content, boolean reuseExisting) {
+        UUID projectId = status.getProject().getId();
+        String embedModel = status.getEmbedModel();
+        // Chunk the file content
+        List<ChunkingService.ChunkResult> chunks = chunkingService.chunkFileContent(
+                filePath, content, status.getChunkSize(), status.getChunkOverlap());
+
+        Set<UUID> staleIds = new HashSet<>();
+        Map<String, Deque<UUID>> storedByHash = reuseExisting
+                ? storedChunkHashes(projectId, filePath, staleIds)
+                : Map.of();
+        int embedded = 0;
+
+        // Generate embeddings and save chunks
+        for (ChunkingService.ChunkResult chunkResult : chunks) {
+            String chunkText = chunkResult.content();
+            String embedText = status.getNormalizeContent()
+                    ? chunkResult.header() + contentNormalizer.normalize(filePath,
+                            chunkResult.source().substring(chunkResult.start(), chunkResult.end()),
+                            chunkResult.index() == 0)
+                    : chunkText;
+            // The hash identifies the embedded text: chunks differing only in
+            // normalized-away lines share a vector
+            String contentHash = contentHash(embedModel, embedText);
+
+            Deque<UUID> sameContent = storedByHash.get(contentHash);
+            UUID reusedId = sameContent != null ? sameContent.poll() : null;
+            if (reusedId != null) {
+                staleIds.remove(reusedId);
+                jdbcTemplate.update(
+                        "UPDATE chunks SET chunk_index = ?, content = ?, start_line = ?, end_line = ?, token_count = ? WHERE id = ? AND project_id = ?",
+                        chunkResult.index(),
+                        chunkText,
+                        chunkResult.startLine(),
+                        chunkResult.endLine(),
+                        chunkResult.tokenCount(),
+                        reusedId,
+                        projectId);
+                continue;
+            }
+
+            if (status.getNormalizeContent() && !embedText.equals(chunkText)) {
+                status.addTokensSaved(chunkResult.tokenCount() - tokenCounter.count(embedText));
+            }
+            float[] embedding = embeddingService.generateEmbedding(embedText, embedModel);
+            insertChunk(projectId, filePath, chunkResult.index(), chunkText, chunkResult.tokenCount(),
+                    chunkResult.startLine(), chunkResult.endLine(), contentHash, embedding);
+
+            embedded++;
+        }
+
+        deleteChunks(projectId, staleIds);
+        if (reuseExisting) {
+            log.debug("[INCREMENTAL INDEX] {}: {} chunks, {} embedded, {} reused, {} removed",
+                    filePath, chunks.size(), embedded, chunks.size() - embedded, staleIds.size());
+        }
+
+        return chunks.size();
+    }
+
+    /**
+     * Embed a pack of small files once and store one row per file, each holding
+     * that file's own text and lines with the shared vector, so search hits and
+     * file filters still resolve to individual files. When every member is
+     * already stored with the pack's content hash, its rows are kept and
+     * nothing is embedded.
+     *
+     * @return number of chunk rows written
+     */
+    private int indexPack(IndexStatus status, ChunkingService.FilePack pack) {
+        UUID projectId = status.getProject().getId();
+        String embedModel = status.getEmbedModel();
+        String embedText = status.getNormalizeContent() ? normalizedPackText(pack) : pack.text();
+        String contentHash = contentHash(embedModel, embedText);
+
+        // Members stored from the same pack text share its vector already
+        Map<String, UUID> reusable = new HashMap<>();
+        List<UUID> staleIds = new ArrayList<>();
+        jdbcTemplate.query("SELECT id, file_path, content_hash FROM chunks WHERE project_id = ? AND file_path = ANY(?)",
+                rs -> {
+                    UUID id = rs.getObject("id", UUID.class);
+                    if (!contentHash.equals(rs.getString("content_hash"))
+                            || reusable.putIfAbsent(rs.getString("file_path"), id) != null) {
+                        staleIds.add(id);
+                    }
+                },
+                projectId, pack.files().stream().map(ChunkingService.PackedFile::filePath).toArray(String[]::new));
+        if (reusable.size() == pack.files().size()) {
+            for (ChunkingService.PackedFile file : pack.files()) {
+                jdbcTemplate.update(
+                        "UPDATE chunks SET chunk_index = 0, content = ?, start_line = 1, end_line = ?, token_count = ? WHERE id = ? AND project_id = ?",
+                        pack.text().substring(file.start(), file.end()),
+                        file.lineCount(),
+                        file.tokenCount(),
+                        reusable.get(file.filePath()),
+                        projectId);
+            }
+            deleteChunks(projectId, staleIds);
+            return pack.files().size();
+        }
+        staleIds.addAll(reusable.values());
+        deleteChunks(projectId, staleIds);
+
+        if (status.getNormalizeContent()) {
+            status.addTokensSaved(pack.tokenCount() - tokenCounter.count(embedText));
+        }
+        float[] embedding = embeddingService.generateEmbedding(embedText, embedModel);
+        for (ChunkingService.PackedFile file : pack.files()) {
+            insertChunk(projectId, file.filePath(), 0, pack.text().substring(file.start(), file.end()),
+                    file.tokenCount(), 1, file.lineCount(), contentHash, embedding);
+        }
+        return pack.files().size();
+    }
+
+    /**
+     * Pack text with every member's content normalized and its header kept.
+     */
+    private String normalizedPackText(ChunkingService.FilePack pack) {
+        String text = pack.text();
+        StringBuilder normalized = new StringBuilder(text.length());
+        int copied = 0;
+        for (ChunkingService.PackedFile file : pack.files()) {
+            int contentStart = file.start() + ChunkingService.fileHeader(file.filePath()).length();
+            normalized.append(text, copied, contentStart)
+                    .append(contentNormalizer.normalize(file.filePath(), text.substring(contentStart, file.end()), true));
+            copied = file.end();
+        }
+        return normalized.append(text, copied, text.length()).toString();
+    }
+
+    private void deleteChunks(UUID projectId, Collection<UUID> chunkIds) {
+        if (!chunkIds.isEmpty()) {
+            jdbcTemplate.update("DELETE FROM chunks WHERE project_id = ? AND id = ANY(?)",
+                    projectId, chunkIds.toArray(new UUID[0]));
+            hnswVectorIndex.chunksDeleted(projectId, chunkIds);
+        }
+    }
+
+    private void deleteFiles(UUID projectId, Collection<String> filePaths) {
+        chunkRepository.deleteByProjectIdAndFilePathIn(projectId, filePaths);
+        hnswVectorIndex.filesDeleted(projectId, filePaths);
+    }
+
+    private boolean normalizeEnabled(IndexStatus status) {
+        return status.getNormalizeContent() != null ? status.getNormalizeContent() : normalizeByDefault;
+    }
+
+    private void insertChunk(UUID projectId, String filePath, int chunkIndex, String content, int tokenCount,
+            int startLine, int endLine, String contentHash, float[] embedding) {
+        String vectorCol = "embedding_768";
+        if (embedding.length == 384)
+            vectorCol = "embedding_384";
+        else if (embedding.length == 1024)
+            vectorCol = "embedding_1024";
+
+        // Use JdbcTemplate for native insert with vector cast
+        UUID id = UUID.randomUUID();
+        jdbcTemplate.update(
+                String.format(
+                        "INSERT INTO chunks (id, project_id, file_path, file_id, chunk_index, content, token_count, start_line, end_line, content_hash, %s, created_at) "
+                                +
+                                "VALUES (?, ?, ?, (SELECT f.id FROM project_files f WHERE f.project_id = ? AND f.path = ?), "
+                                + "?, ?, ?, ?, ?, ?, cast(? as vector), NOW())",
+                        vectorCol),
+                id,
+                projectId,
+                filePath,
+                projectId,
+                filePath,
+                chunkIndex,
+                content,
+                tokenCount,
+                startLine,
+                endLine,
+                contentHash,
+                EmbeddingService.toVectorString(embedding));
+        hnswVectorIndex.chunkInserted(projectId, vectorCol, id, filePath, embedding);
+    }
+
+    /**
+     * Stored chunk ids of a file grouped by content hash. Every id is also added
+     * to {@code allIds}; rows without a hash (indexed before hashing) can only
+     * be replaced.
+     */
+    private Map<String, Deque<UUID>> storedChunkHashes(UUID projectId, String filePath, Set<UUID> allIds) {
+        Map<String, Deque<UUID>> byHash = new HashMap<>();
+        jdbcTemplate.query("SELECT id, content_hash FROM chunks WHERE project_id = ? AND file_path = ?",
+                rs -> {
+                    UUID id = rs.getObject("id", UUID.class);
+                    String hash = rs.getString("content_hash");
+                    allIds.add(id);
+                    if (hash != null) {
+                        byHash.computeIfAbsent(hash, h -> new ArrayDeque<>()).add(id);
+                    }
+                },
+                projectId, filePath);
+        return byHash;
+    }
+
+    /**
+     * Identity of an embedded chunk: the model is part of it, so switching
+     * models never reuses vectors from another embedding space.
+     */
+    static String contentHash(String embedModel, String chunkText) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(embedModel.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(chunkText.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
     public IndexStatus getStatus(UUID projectId) {
         return indexStatusRepository.findByProjectId(projectId).orElse(null);
     }
@@ -222,9 +759,40 @@ public class IndexingService {
         });
     }
 
+    /**
+     * Give a project that has grown past indexing.partition.min-chunks its own
+     * chunk partition, once the current transaction (if any) has committed:
+     * the move must see the chunks just written. A failure leaves the chunks in
+     * the shared partition, where they are searched as before.
+     */
+    private void promoteWhenLarge(UUID projectId, int totalChunks) {
+        if (totalChunks < partitionMinChunks) {
+            return;
+        }
+        Runnable promote = () -> {
+            try {
+                chunkPartitionRepository.promote(projectId);
+            } catch (RuntimeException e) {
+                log.warn("[IndexingService] Could not move project {} into its own partition: {}",
+                        projectId, e.getMessage());
+            }
+        };
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    promote.run();
+                }
+            });
+        } else {
+            promote.run();
+        }
+    }
+
     @Transactional
     public void deleteProjectIndex(UUID projectId) {
-        chunkRepository.deleteByProjectId(projectId);
+        chunkPartitionRepository.drop(projectId);
+        hnswVectorIndex.projectDeleted(projectId);
         indexStatusRepository.findByProjectId(projectId)
                 .ifPresent(indexStatusRepository::delete);
     }
@@ -0,0 +1,169 @@
+package com.ai.deepcode.service;
+
+import com.ai.deepcode.dto.FileNode;
+import com.ai.deepcode.dto.FileTreePage;
+import com.ai.deepcode.entity.Project;
+import com.ai.deepcode.repository.ProjectRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Serves a project's file tree one directory level at a time from project_files.
+ *
+ * The directory index of a project is built once per manifest revision and kept
+ * in a small LRU cache, so paging through a monorepo does not re-scan the
+ * manifest. Node IDs are name-based UUIDs of (project, path), which keeps them
+ * stable across requests and avoids SecureRandom on every node.
+ */
+@Service
+public class ProjectTreeService {
+
+    private static final Logger log = LoggerFactory.getLogger(ProjectTreeService.class);
+
+    private final ProjectRepository projectRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final Map<String, DirectoryIndex> cache;
+
+    public ProjectTreeService(ProjectRepository projectRepository, JdbcTemplate jdbcTemplate,
+            @Value("${tree.cache.max-projects:32}") int maxCachedTrees) {
+        this.projectRepository = projectRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, DirectoryIndex> eldest) {
+                return size() > maxCachedTrees;
+            }
+        };
+    }
+
+    /**
+     * Deterministic node ID for a path within a project.
+     */
+    public static String nodeId(UUID projectId, String path) {
+        return UUID.nameUUIDFromBytes((projectId + ":" + path).getBytes(StandardCharsets.UTF_8)).toString();
+    }
+
+    /**
+     * Current manifest revision of a project, or null if the project does not exist.
+     * Projects without a recorded revision fall back to their last update time.
+     */
+    public String currentRevision(UUID projectId) {
+        return projectRepository.findById(projectId)
+                .map(ProjectTreeService::revisionOf)
+                .orElse(null);
+    }
+
+    private static String revisionOf(Project project) {
+        if (project.getRevision() != null && !project.getRevision().isBlank()) {
+            return project.getRevision();
+        }
+        return project.getUpdatedAt() != null ? "t" + project.getUpdatedAt().toInstant().toEpochMilli() : "t0";
+    }
+
+    /**
+     * List one page of the children of {@code path}.
+     */
+    public FileTreePage listDirectory(UUID projectId, String revision, String path, int offset, int limit) {
+        String dir = normalize(path);
+        DirectoryIndex index = indexFor(projectId, revision);
+
+        List<FileNode> children = index.children.getOrDefault(dir, List.of());
+        int from = Math.min(Math.max(offset, 0), children.size());
+        int to = Math.min(from + Math.max(limit, 0), children.size());
+
+        return new FileTreePage(projectId, revision, dir, children.subList(from, to), from, children.size());
+    }
+
+    private DirectoryIndex indexFor(UUID projectId, String revision) {
+        String key = projectId + "@" + revision;
+        synchronized (cache) {
+            DirectoryIndex cached = cache.get(key);
+            if (cached != null) {
+                return cached;
+            }
+        }
+
+        DirectoryIndex built = build(projectId);
+        synchronized (cache) {
+            // Older revisions of the same project can never be requested again
+            String prefix = projectId + "@";
+            cache.keySet().removeIf(k -> k.startsWith(prefix) && !k.equals(key));
+            cache.put(key, built);
+        }
+        return built;
+    }
+
+    private DirectoryIndex build(UUID projectId) {
+        long start = System.currentTimeMillis();
+        // dir -> (child name -> isFolder)
+        Map<String, TreeMap<String, Boolean>> dirs = new HashMap<>();
+        int[] files = { 0 };
+
+        jdbcTemplate.query("SELECT path FROM project_files WHERE project_id = ?", rs -> {
+            addPath(dirs, rs.getString(1));
+            files[0]++;
+        }, projectId);
+
+        Map<String, List<FileNode>> children = new HashMap<>(dirs.size() * 2);
+        for (Map.Entry<String, TreeMap<String, Boolean>> dir : dirs.entrySet()) {
+            String parent = dir.getKey();
+            List<FileNode> nodes = new ArrayList<>(dir.getValue().size());
+            for (Map.Entry<String, Boolean> child : dir.getValue().entrySet()) {
+                String childPath = parent.isEmpty() ? child.getKey() : parent + "/" + child.getKey();
+                nodes.add(new FileNode(
+                        nodeId(projectId, childPath),
+                        child.getKey(),
+                        child.getValue() ? "folder" : "file",
+                        childPath,
+                        null,
+                        false));
+            }
+            children.put(parent, List.copyOf(nodes));
+        }
+
+        log.info("[ProjectTreeService] Built tree index for project {}: {} files, {} directories in {} ms",
+                projectId, files[0], children.size(), System.currentTimeMillis() - start);
+        return new DirectoryIndex(children);
+    }
+
+    private static void addPath(Map<String, TreeMap<String, Boolean>> dirs, String path) {
+        if (path == null || path.isBlank()) {
+            return;
+        }
+        int segmentStart = 0;
+        while (true) {
+            int slash = path.indexOf('/', segmentStart);
+            boolean isLast = slash < 0;
+            int segmentEnd = isLast ? path.length() : slash;
+            if (segmentEnd > segmentStart) {
+                String parent = segmentStart == 0 ? "" : path.substring(0, segmentStart - 1);
+                String name = path.substring(segmentStart, segmentEnd);
+                dirs.computeIfAbsent(parent, k -> new TreeMap<>()).merge(name, !isLast, Boolean::logicalOr);
+            }
+            if (isLast) {
+                return;
+            }
+            segmentStart = slash + 1;
+        }
+    }
+
+    private static String normalize(String p) {
+        if (p == null)
+            return "";
+        String x = p.trim().replace("\\", "/");
+        while (x.startsWith("/"))
+            x = x.substring(1);
+        while (x.endsWith("/"))
+            x = x.substring(0, x.length() - 1);
+        return x;
+    }
+
+    private record DirectoryIndex(Map<String, List<FileNode>> children) {
+    }
+}
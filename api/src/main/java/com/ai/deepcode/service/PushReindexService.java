@@ -0,0 +1,316 @@
+package com.ai.deepcode.service;
+
+import com.ai.deepcode.dto.GithubPushEvent;
+import com.ai.deepcode.dto.GithubRef;
+import com.ai.deepcode.dto.RagFileRef;
+import com.ai.deepcode.entity.Project;
+import com.ai.deepcode.entity.ProjectFile;
+import com.ai.deepcode.repository.ProjectFileRepository;
+import com.ai.deepcode.repository.ProjectRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.OffsetDateTime;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Turns GitHub push events into debounced, incremental reindex runs.
+ *
+ * Pushes for the same project are coalesced into one pending change set and the
+ * run is delayed until no new push has arrived for the debounce window, so a
+ * burst of pushes yields a single reindex. A steady stream of pushes still runs
+ * once indexing.push.max-delay-ms has passed since the first push of the
+ * batch. At most one run per project is in flight; pushes arriving during a
+ * run are queued for the next one.
+ */
+@Service
+public class PushReindexService {
+
+    private static final Logger log = LoggerFactory.getLogger(PushReindexService.class);
+
+    private final ProjectRepository projectRepository;
+    private final ProjectFileRepository projectFileRepository;
+    private final IndexingService indexingService;
+    private final GithubFileService githubFileService;
+    private final FileContentService fileContentService;
+    private final String webhookToken;
+    private final long debounceMs;
+    private final long maxDelayMs;
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "push-debounce");
+        t.setDaemon(true);
+        return t;
+    });
+    private final ExecutorService runner = Executors.newFixedThreadPool(2, r -> {
+        Thread t = new Thread(r, "push-reindex");
+        t.setDaemon(true);
+        return t;
+    });
+
+    // Guarded by "this"
+    private final Map<UUID, PendingPush> pending = new HashMap<>();
+    private final Set<UUID> running = new HashSet<>();
+
+    public PushReindexService(ProjectRepository projectRepository,
+            ProjectFileRepository projectFileRepository,
+            IndexingService indexingService,
+            GithubFileService githubFileService,
+            FileContentService fileContentService,
+            @Value("${github.webhook.token:}") String webhookToken,
+            @Value("${indexing.push.debounce-ms:5000}") long debounceMs,
+            @Value("${indexing.push.max-delay-ms:60000}") long maxDelayMs) {
+        this.projectRepository = projectRepository;
+        this.projectFileRepository = projectFileRepository;
+        this.indexingService = indexingService;
+        this.githubFileService = githubFileService;
+        this.fileContentService = fileContentService;
+        this.webhookToken = webhookToken;
+        this.debounceMs = debounceMs;
+        this.maxDelayMs = maxDelayMs;
+    }
+
+    public boolean isFetchConfigured() {
+        return webhookToken != null && !webhookToken.isBlank();
+    }
+
+    /**
+     * Resolve the project a push belongs to. Imports without an explicit branch
+     * are stored as "HEAD", so pushes to the default branch fall back to that.
+     */
+    public Optional<Project> resolveProject(GithubPushEvent event) {
+        if (event.repository() == null || event.repository().owner() == null || event.branch() == null) {
+            return Optional.empty();
+        }
+        String owner = event.repository().owner().effectiveLogin();
+        String repo = event.repository().name();
+        String branch = event.branch();
+
+        Optional<Project> project = projectRepository.findByGithubOwnerAndGithubRepoAndGithubBranch(owner, repo,
+                branch);
+        if (project.isEmpty() && branch.equals(event.repository().defaultBranch())) {
+            project = projectRepository.findByGithubOwnerAndGithubRepoAndGithubBranch(owner, repo, "HEAD");
+        }
+        return project;
+    }
+
+    /**
+     * Merge a push into the project's pending change set and (re)arm its debounce
+     * timer, never past the batch's max delay.
+     *
+     * @return number of paths currently pending for the project
+     */
+    public synchronized int submit(Project project, GithubPushEvent event) {
+        PendingPush batch = pending.computeIfAbsent(project.getId(), id -> new PendingPush(System.nanoTime()));
+        batch.headSha = event.after();
+        batch.pushes++;
+
+        if (event.commits() != null) {
+            for (GithubPushEvent.Commit commit : event.commits()) {
+                batch.markChanged(commit.added());
+                batch.markChanged(commit.modified());
+                batch.markRemoved(commit.removed());
+            }
+        }
+
+        long waitedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - batch.firstPushAt);
+        schedule(project.getId(), batch, Math.max(0, Math.min(debounceMs, maxDelayMs - waitedMs)));
+        log.info("[PushReindex] Push queued for project {} (pushes={}, changed={}, removed={})",
+                project.getId(), batch.pushes, batch.changed.size(), batch.removed.size());
+        return batch.changed.size() + batch.removed.size();
+    }
+
+    private void schedule(UUID projectId, PendingPush batch, long delayMs) {
+        if (batch.timer != null) {
+            batch.timer.cancel(false);
+        }
+        batch.timer = scheduler.schedule(() -> fire(projectId), delayMs, TimeUnit.MILLISECONDS);
+    }
+
+    private synchronized void fire(UUID projectId) {
+        PendingPush batch = pending.get(projectId);
+        if (batch == null) {
+            return;
+        }
+        if (running.contains(projectId)) {
+            // A run is still in flight; keep collecting and try again after another window
+            schedule(projectId, batch, debounceMs);
+            return;
+        }
+        pending.remove(projectId);
+        running.add(projectId);
+        runner.execute(() -> {
+            try {
+                run(projectId, batch);
+            } catch (Exception e) {
+                log.error("[PushReindex] Reindex failed for project {}: {}", projectId, e.getMessage(), e);
+            } finally {
+                synchronized (this) {
+                    running.remove(projectId);
+                }
+            }
+        });
+    }
+
+    private void run(UUID projectId, PendingPush batch) {
+        Project project = projectRepository.findById(projectId).orElse(null);
+        if (project == null) {
+            log.warn("[PushReindex] Project {} disappeared before reindex", projectId);
+            return;
+        }
+
+        String subPath = projectFileRepository.findFirstByProjectId(projectId)
+                .map(ProjectFile::getGithubSubPath)
+                .map(PushReindexService::normalize)
+                .orElse(null);
+        String ref = batch.headSha != null ? batch.headSha : project.getGithubBranch();
+
+        log.info("[PushReindex] START project={} pushes={} changed={} removed={} ref={}",
+                projectId, batch.pushes, batch.changed.size(), batch.removed.size(), ref);
+
+        Map<String, String> contents = new HashMap<>();
+        List<String> removed = new ArrayList<>();
+        List<String> added = new ArrayList<>();
+
+        for (String repoPath : batch.removed) {
+            String path = relativize(repoPath, subPath);
+            if (path != null) {
+                removed.add(path);
+            }
+        }
+
+        for (String repoPath : batch.changed) {
+            String path = relativize(repoPath, subPath);
+            if (path == null) {
+                continue;
+            }
+            added.add(path);
+            if (!fileContentService.isTextEligible(path)) {
+                continue;
+            }
+            try {
+                String content = githubFileService.getFileContentWithToken(project.getGithubOwner(),
+                        project.getGithubRepo(), path, ref, subPath, webhookToken);
+                if (content != null && !content.isEmpty()) {
+                    contents.put(path, content);
+                }
+            } catch (Exception e) {
+                log.warn("[PushReindex] Failed to fetch {}: {}", path, e.getMessage());
+            }
+        }
+
+        updateManifest(project, subPath, added, removed, batch.headSha);
+
+        // Rules of every ignore file apply, not only of those changed by the push
+        Map<String, String> ignoreFiles = new HashMap<>();
+        for (String path : projectFileRepository.findIgnoreFilePaths(projectId)) {
+            if (contents.containsKey(path)) {
+                continue;
+            }
+            try {
+                String content = githubFileService.getFileContentWithToken(project.getGithubOwner(),
+                        project.getGithubRepo(), path, ref, subPath, webhookToken);
+                if (content != null) {
+                    ignoreFiles.put(path, content);
+                }
+            } catch (Exception e) {
+                log.warn("[PushReindex] Failed to fetch ignore file {}: {}", path, e.getMessage());
+            }
+        }
+        indexingService.reindexFiles(projectId, contents, removed, ignoreFiles);
+
+        log.info("[PushReindex] DONE project={} embedded={} removed={}", projectId, contents.size(), removed.size());
+    }
+
+    private void updateManifest(Project project, String subPath, List<String> added, List<String> removed,
+            String headSha) {
+        if (!removed.isEmpty()) {
+            projectFileRepository.deleteByProjectIdAndPathIn(project.getId(), removed);
+        }
+        GithubRef ref = new GithubRef(project.getGithubOwner(), project.getGithubRepo(), project.getGithubBranch(),
+                subPath);
+        List<RagFileRef> files = added.stream().map(p -> new RagFileRef("github", p, ref)).toList();
+        projectFileRepository.upsertFiles(project.getId(), files, OffsetDateTime.now());
+
+        project.setFileCount((int) projectFileRepository.countByProjectId(project.getId()));
+        if (headSha != null && (!added.isEmpty() || !removed.isEmpty())) {
+            project.setRevision(headSha);
+        }
+        projectRepository.save(project);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        scheduler.shutdownNow();
+        runner.shutdown();
+    }
+
+    // ---- helpers ----
+    private static String normalize(String p) {
+        if (p == null)
+            return null;
+        String x = p.trim().replace("\\", "/");
+        while (x.startsWith("/"))
+            x = x.substring(1);
+        while (x.endsWith("/"))
+            x = x.substring(0, x.length() - 1);
+        return x.isBlank() ? null : x;
+    }
+
+    /**
+     * Map a repository path to a project path, or null if it lies outside the imported sub-path.
+     */
+    private static String relativize(String repoPath, String subPath) {
+        if (repoPath == null || repoPath.isBlank())
+            return null;
+        if (subPath == null)
+            return repoPath;
+        if (!repoPath.startsWith(subPath + "/"))
+            return null;
+        return repoPath.substring(subPath.length() + 1);
+    }
+
+    /**
+     * Change set accumulated across coalesced pushes. Later pushes win, so a
+     * file modified and then removed ends up only in {@link #removed}.
+     */
+    static class PendingPush {
+        final Set<String> changed = new LinkedHashSet<>();
+        final Set<String> removed = new LinkedHashSet<>();
+        /** System.nanoTime() of the batch's first push */
+        final long firstPushAt;
+        String headSha;
+        int pushes;
+        ScheduledFuture<?> timer;
+
+        PendingPush(long firstPushAt) {
+            this.firstPushAt = firstPushAt;
+        }
+
+        void markChanged(List<String> paths) {
+            if (paths == null)
+                return;
+            for (String p : paths) {
+                removed.remove(p);
+                changed.add(p);
+            }
+        }
+
+        void markRemoved(List<String> paths) {
+            if (paths == null)
+                return;
+            for (String p : paths) {
+                changed.remove(p);
+                removed.add(p);
+            }
+        }
+    }
+}
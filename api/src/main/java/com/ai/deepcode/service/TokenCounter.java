@@ -0,0 +1,306 @@
+package com.ai.deepcode.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Counts embedding-model tokens for chunk sizing and chunks.token_count.
+ *
+ * The embedding models served by Ollama here (nomic-embed-text, all-minilm,
+ * mxbai-embed-large) use BERT WordPiece vocabularies. Point
+ * indexing.tokenizer.vocab-path at the model's vocab.txt and counts follow the
+ * BERT basic tokenizer: split on whitespace, punctuation and CJK characters,
+ * then greedy longest-match WordPiece with "##" continuations. Accents are not
+ * stripped, so counts for non-ASCII text can differ slightly from the model's.
+ *
+ * Without a vocabulary the counter falls back to ~4 characters per token.
+ *
+ * Counting walks a trie held in primitive arrays and allocates nothing per call.
+ */
+@Component
+public class TokenCounter {
+
+    private static final Logger log = LoggerFactory.getLogger(TokenCounter.class);
+
+    /** BERT's max_input_chars_per_word: longer words become a single [UNK] */
+    private static final int MAX_WORD_CHARS = 100;
+
+    /** [CLS] and [SEP] added by the model around every input */
+    static final int SPECIAL_TOKENS = 2;
+
+    private final Vocab vocab;
+    private final boolean lowercase;
+    private final int maxTokens;
+
+    public TokenCounter(@Value("${indexing.tokenizer.vocab-path:}") String vocabPath,
+            @Value("${indexing.tokenizer.lowercase:true}") boolean lowercase,
+            @Value("${indexing.tokenizer.max-tokens:512}") int maxTokens) {
+        this.vocab = loadVocab(vocabPath);
+        this.lowercase = lowercase;
+        this.maxTokens = maxTokens;
+    }
+
+    TokenCounter(Vocab vocab, boolean lowercase, int maxTokens) {
+        this.vocab = vocab;
+        this.lowercase = lowercase;
+        this.maxTokens = maxTokens;
+    }
+
+    /**
+     * Whether counts come from a real vocabulary rather than the length heuristic.
+     */
+    public boolean isExact() {
+        return vocab != null;
+    }
+
+    /**
+     * Tokens the embedding model accepts per input, special tokens excluded.
+     */
+    public int maxContentTokens() {
+        return maxTokens - SPECIAL_TOKENS;
+    }
+
+    public int count(CharSequence text) {
+        return count(text, 0, text.length());
+    }
+
+    /**
+     * Tokens in text[start, end), without special tokens. Counts are additive
+     * across whitespace boundaries, so line ranges can be summed.
+     */
+    public int count(CharSequence text, int start, int end) {
+        if (vocab == null) {
+            return (int) Math.ceil((end - start) / 4.0);
+        }
+        int tokens = 0;
+        int wordStart = -1;
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            if (Character.isWhitespace(c) || Character.isISOControl(c)) {
+                if (wordStart >= 0) {
+                    tokens += countWord(text, wordStart, i);
+                    wordStart = -1;
+                }
+            } else if (isPunctuation(c) || isCjk(c)) {
+                if (wordStart >= 0) {
+                    tokens += countWord(text, wordStart, i);
+                    wordStart = -1;
+                }
+                tokens++;
+            } else if (wordStart < 0) {
+                wordStart = i;
+            }
+        }
+        if (wordStart >= 0) {
+            tokens += countWord(text, wordStart, end);
+        }
+        return tokens;
+    }
+
+    /**
+     * Greedy longest-match-first WordPiece; a word with an unmatched remainder
+     * is a single [UNK], as in BERT.
+     */
+    private int countWord(CharSequence text, int start, int end) {
+        if (end - start > MAX_WORD_CHARS) {
+            return 1;
+        }
+        int tokens = 0;
+        int pos = start;
+        int root = Vocab.WORD_ROOT;
+        while (pos < end) {
+            int node = root;
+            int matchEnd = -1;
+            for (int i = pos; i < end; i++) {
+                char c = text.charAt(i);
+                node = vocab.child(node, lowercase ? Character.toLowerCase(c) : c);
+                if (node < 0) {
+                    break;
+                }
+                if (vocab.terminal(node)) {
+                    matchEnd = i + 1;
+                }
+            }
+            if (matchEnd < 0) {
+                return 1;
+            }
+            tokens++;
+            pos = matchEnd;
+            root = Vocab.CONTINUATION_ROOT;
+        }
+        return tokens;
+    }
+
+    private static boolean isPunctuation(char c) {
+        if ((c >= 33 && c <= 47) || (c >= 58 && c <= 64) || (c >= 91 && c <= 96) || (c >= 123 && c <= 126)) {
+            return true;
+        }
+        if (c < 128) {
+            return false;
+        }
+        int type = Character.getType(c);
+        return type == Character.CONNECTOR_PUNCTUATION || type == Character.DASH_PUNCTUATION
+                || type == Character.START_PUNCTUATION || type == Character.END_PUNCTUATION
+                || type == Character.INITIAL_QUOTE_PUNCTUATION || type == Character.FINAL_QUOTE_PUNCTUATION
+                || type == Character.OTHER_PUNCTUATION;
+    }
+
+    private static boolean isCjk(char c) {
+        return (c >= 0x4E00 && c <= 0x9FFF) || (c >= 0x3400 && c <= 0x4DBF) || (c >= 0xF900 && c <= 0xFAFF);
+    }
+
+    private static Vocab loadVocab(String vocabPath) {
+        if (vocabPath == null || vocabPath.isBlank()) {
+            log.info("[TokenCounter] No tokenizer vocabulary configured, estimating 4 chars per token");
+            return null;
+        }
+        try {
+            Vocab vocab = Vocab.load(Path.of(vocabPath));
+            log.info("[TokenCounter] Loaded WordPiece vocabulary {} ({} entries)", vocabPath, vocab.size());
+            return vocab;
+        } catch (IOException e) {
+            log.warn("[TokenCounter] Could not read vocabulary {}, estimating 4 chars per token: {}",
+                    vocabPath, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * WordPiece vocabulary as a character trie. Word-initial pieces hang off
+     * node 0, "##" continuation pieces off node 1. Edges live in an
+     * open-addressing table keyed by (node, char).
+     */
+    static final class Vocab {
+        static final int WORD_ROOT = 0;
+        static final int CONTINUATION_ROOT = 1;
+
+        private long[] edgeKeys = new long[1 << 16];
+        private int[] edgeNodes = new int[1 << 16];
+        private int edges;
+        private boolean[] terminal = new boolean[1 << 14];
+        private int nodes = 2;
+        private int size;
+
+        static Vocab load(Path path) throws IOException {
+            Vocab vocab = new Vocab();
+            try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    vocab.add(line.strip());
+                }
+            }
+            return vocab;
+        }
+
+        static Vocab of(String... pieces) {
+            Vocab vocab = new Vocab();
+            for (String piece : pieces) {
+                vocab.add(piece);
+            }
+            return vocab;
+        }
+
+        int size() {
+            return size;
+        }
+
+        void add(String piece) {
+            if (piece.isEmpty()) {
+                return;
+            }
+            int node = WORD_ROOT;
+            int from = 0;
+            if (piece.startsWith("##") && piece.length() > 2) {
+                node = CONTINUATION_ROOT;
+                from = 2;
+            }
+            for (int i = from; i < piece.length(); i++) {
+                char c = piece.charAt(i);
+                int next = child(node, c);
+                if (next < 0) {
+                    next = newNode();
+                    putEdge(node, c, next);
+                }
+                node = next;
+            }
+            if (!terminal[node]) {
+                terminal[node] = true;
+                size++;
+            }
+        }
+
+        int child(int node, char c) {
+            long key = key(node, c);
+            int mask = edgeKeys.length - 1;
+            for (int slot = hash(key) & mask; ; slot = (slot + 1) & mask) {
+                long k = edgeKeys[slot];
+                if (k == 0) {
+                    return -1;
+                }
+                if (k == key) {
+                    return edgeNodes[slot];
+                }
+            }
+        }
+
+        boolean terminal(int node) {
+            return terminal[node];
+        }
+
+        private int newNode() {
+            if (nodes == terminal.length) {
+                terminal = Arrays.copyOf(terminal, nodes * 2);
+            }
+            return nodes++;
+        }
+
+        private void putEdge(int node, char c, int child) {
+            if ((edges + 1) * 2 > edgeKeys.length) {
+                rehash();
+            }
+            insert(edgeKeys, edgeNodes, key(node, c), child);
+            edges++;
+        }
+
+        private void rehash() {
+            long[] keys = new long[edgeKeys.length * 2];
+            int[] values = new int[keys.length];
+            for (int i = 0; i < edgeKeys.length; i++) {
+                if (edgeKeys[i] != 0) {
+                    insert(keys, values, edgeKeys[i], edgeNodes[i]);
+                }
+            }
+            edgeKeys = keys;
+            edgeNodes = values;
+        }
+
+        private static void insert(long[] keys, int[] values, long key, int value) {
+            int mask = keys.length - 1;
+            int slot = hash(key) & mask;
+            while (keys[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = key;
+            values[slot] = value;
+        }
+
+        /** Never 0, which marks an empty slot */
+        private static long key(int node, char c) {
+            return ((long) (node + 1) << 16) | c;
+        }
+
+        private static int hash(long key) {
+            long h = key * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32));
+        }
+    }
+}
@@ -2,12 +2,29 @@ package com.ai.deepcode.service;
 
 import com.ai.deepcode.dto.ChunkHitDto;
 import com.ai.deepcode.repository.ChunkRepository;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.PriorityQueue;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 /**
  * Service for performing vector similarity search on indexed chunks.
@@ -17,23 +34,61 @@ public class VectorSearchService {
 
     private static final Logger log = LoggerFactory.getLogger(VectorSearchService.class);
     private static final int DEFAULT_TOP_K = 5;
+    private static final int MAX_LEXICAL_TERMS = 16;
+    private static final Pattern WORD = Pattern.compile("_*[A-Za-z0-9][A-Za-z0-9_]*");
+    private static final Set<String> STOP_WORDS = Set.of(
+            "the", "and", "for", "are", "was", "were", "has", "have", "had", "does", "did", "can", "could",
+            "should", "would", "will", "what", "where", "which", "when", "who", "why", "how", "this", "that",
+            "these", "those", "there", "with", "from", "into", "about", "any", "all", "some", "not", "but",
+            "you", "your", "our", "its", "then", "than", "them", "they", "use", "used", "uses", "using",
+            "code", "file", "files", "show", "find", "explain", "tell", "please");
 
     private final ChunkRepository chunkRepository;
     private final EmbeddingService embeddingService;
+    private final boolean hybridEnabled;
+    private final long fanOutTimeoutMs;
 
-    public VectorSearchService(ChunkRepository chunkRepository, EmbeddingService embeddingService) {
+    /** Per-project searches of multi-project queries; its size caps the connections they hold. */
+    private final ExecutorService fanOut;
+
+    public VectorSearchService(ChunkRepository chunkRepository, EmbeddingService embeddingService,
+            @Value("${search.hybrid.enabled:true}") boolean hybridEnabled,
+            @Value("${search.fan-out.max-concurrency:4}") int fanOutConcurrency,
+            @Value("${search.fan-out.timeout-ms:5000}") long fanOutTimeoutMs) {
         this.chunkRepository = chunkRepository;
         this.embeddingService = embeddingService;
+        this.hybridEnabled = hybridEnabled;
+        this.fanOutTimeoutMs = fanOutTimeoutMs;
+        this.fanOut = Executors.newFixedThreadPool(fanOutConcurrency, r -> {
+            Thread t = new Thread(r, "search-fan-out");
+            t.setDaemon(true);
+            return t;
+        });
     }
 
     /**
-     * Search result containing chunk content and metadata.
+     * Search result containing chunk content and metadata. Line numbers are
+     * 1-based and inclusive, null for chunks indexed without them.
      */
     public record SearchResult(
             String filePath,
             int chunkIndex,
             String content,
-            UUID projectId) {
+            UUID projectId,
+            Integer startLine,
+            Integer endLine) {
+
+        public SearchResult(String filePath, int chunkIndex, String content, UUID projectId) {
+            this(filePath, chunkIndex, content, projectId, null, null);
+        }
+    }
+
+    /**
+     * Results of a multi-project search. {@code partial} is set when some
+     * projects did not answer before the deadline or failed; their results
+     * are missing.
+     */
+    public record MultiProjectResults(List<SearchResult> results, boolean partial, List<UUID> missingProjects) {
     }
 
     /**
@@ -70,20 +125,24 @@ public class VectorSearchService {
         else if (queryEmbedding.length == 1024)
             vectorColumn = "embedding_1024";
 
-        // Perform vector similarity search
-        List<ChunkHitDto> similarChunks = chunkRepository.findSimilarChunks(projectId, vectorString, limit,
-                vectorColumn,
-                filePaths);
+        // Perform vector similarity search, fused with full-text ranks when the query has terms
+        String lexicalQuery = hybridEnabled ? lexicalQuery(query) : null;
+        List<ChunkHitDto> similarChunks = lexicalQuery != null
+                ? chunkRepository.findHybridChunks(new UUID[]{projectId}, vectorString, lexicalQuery, limit,
+                        vectorColumn, filePaths)
+                : chunkRepository.findSimilarChunks(projectId, vectorString, limit, vectorColumn, filePaths);
 
-        log.info("[VectorSearchService] Found {} similar chunks (model={}, dims={}, col={})",
-                similarChunks.size(), embedModel, queryEmbedding.length, vectorColumn);
+        log.info("[VectorSearchService] Found {} similar chunks (model={}, dims={}, col={}, lexical={})",
+                similarChunks.size(), embedModel, queryEmbedding.length, vectorColumn, lexicalQuery);
 
         return similarChunks.stream()
                 .map(hit -> new SearchResult(
                         hit.filePath(),
                         hit.chunkIndex(),
                         hit.content(),
-                        hit.projectId()))
+                        hit.projectId(),
+                        hit.startLine(),
+                        hit.endLine()))
                 .toList();
     }
 
@@ -91,17 +150,21 @@ public class VectorSearchService {
      * Search across multiple projects.
      */
     public List<SearchResult> searchAcrossProjects(List<UUID> projectIds, String query, int topK, String embedModel) {
-        return searchAcrossProjects(projectIds, query, topK, embedModel, null);
+        return searchAcrossProjects(projectIds, query, topK, embedModel, null).results();
     }
 
     /**
-     * Search across multiple projects with optional file filters.
+     * Search across multiple projects with optional file filters. Each project
+     * is searched on its own, concurrently, so every query uses that project's
+     * partition and indexes; the best {@code topK} of all are kept. Projects
+     * that have not answered within search.fan-out.timeout-ms are cancelled, their
+     * statements included, and the results are flagged partial.
      */
-    public List<SearchResult> searchAcrossProjects(List<UUID> projectIds, String query, int topK, String embedModel,
+    public MultiProjectResults searchAcrossProjects(List<UUID> projectIds, String query, int topK, String embedModel,
             List<String> filePaths) {
         if (projectIds == null || projectIds.isEmpty() || query == null || query.isBlank()) {
             log.warn("[VectorSearchService] Empty query or project list");
-            return List.of();
+            return new MultiProjectResults(List.of(), false, List.of());
         }
 
         int limit = topK > 0 ? topK : DEFAULT_TOP_K;
@@ -120,20 +183,144 @@ public class VectorSearchService {
         else if (queryEmbedding.length == 1024)
             vectorColumn = "embedding_1024";
 
-        // Perform vector similarity search
-        UUID[] projectIdsArray = projectIds.toArray(new UUID[0]);
-        List<ChunkHitDto> similarChunks = chunkRepository.findSimilarChunksAcrossProjects(
-                projectIdsArray, vectorString, limit, vectorColumn, filePaths);
+        String lexicalQuery = hybridEnabled ? lexicalQuery(query) : null;
+        String column = vectorColumn;
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(fanOutTimeoutMs);
+        List<Callable<List<ChunkHitDto>>> searches = projectIds.stream()
+                .<Callable<List<ChunkHitDto>>>map(projectId -> () -> {
+                    // Interrupting the task does not stop its JDBC statement; Postgres
+                    // cancels it itself once the time left before the deadline is up
+                    long timeoutMs = Math.max(1, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime()));
+                    return lexicalQuery != null
+                            ? chunkRepository.findHybridChunks(new UUID[]{projectId}, vectorString, lexicalQuery,
+                                    limit, column, filePaths, timeoutMs)
+                            : chunkRepository.findSimilarChunks(projectId, vectorString, limit, column, filePaths,
+                                    timeoutMs);
+                })
+                .toList();
 
-        log.info("[VectorSearchService] Found {} similar chunks across projects", similarChunks.size());
+        // invokeAll cancels whatever has not completed by the deadline
+        List<Future<List<ChunkHitDto>>> futures;
+        try {
+            futures = fanOut.invokeAll(searches, fanOutTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return new MultiProjectResults(List.of(), true, projectIds);
+        }
 
-        return similarChunks.stream()
+        List<List<ChunkHitDto>> perProject = new ArrayList<>(futures.size());
+        List<UUID> missing = new ArrayList<>();
+        for (int i = 0; i < futures.size(); i++) {
+            try {
+                perProject.add(futures.get(i).get());
+            } catch (CancellationException e) {
+                log.warn("[VectorSearchService] Search of project {} missed the {} ms deadline", projectIds.get(i),
+                        fanOutTimeoutMs);
+                missing.add(projectIds.get(i));
+            } catch (ExecutionException e) {
+                log.error("[VectorSearchService] Search of project {} failed: {}", projectIds.get(i),
+                        e.getCause().getMessage());
+                missing.add(projectIds.get(i));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                missing.add(projectIds.get(i));
+            }
+        }
+        List<ChunkHitDto> similarChunks = mergeTopK(perProject, limit);
+
+        log.info("[VectorSearchService] Found {} similar chunks across {} projects (lexical={}, missing={})",
+                similarChunks.size(), projectIds.size(), lexicalQuery, missing.size());
+
+        List<SearchResult> results = similarChunks.stream()
                 .map(hit -> new SearchResult(
                         hit.filePath(),
                         hit.chunkIndex(),
                         hit.content(),
-                        hit.projectId()))
+                        hit.projectId(),
+                        hit.startLine(),
+                        hit.endLine()))
                 .toList();
+        return new MultiProjectResults(results, !missing.isEmpty(), missing);
+    }
+
+    /**
+     * Best {@code limit} hits of all lists by score, highest first, through a
+     * min-heap that never holds more than {@code limit} of them.
+     */
+    static List<ChunkHitDto> mergeTopK(List<List<ChunkHitDto>> lists, int limit) {
+        Comparator<ChunkHitDto> byScore = Comparator.comparingDouble(ChunkHitDto::score);
+        PriorityQueue<ChunkHitDto> heap = new PriorityQueue<>(limit + 1, byScore);
+        for (List<ChunkHitDto> hits : lists) {
+            for (ChunkHitDto hit : hits) {
+                if (heap.size() < limit) {
+                    heap.add(hit);
+                } else if (hit.score() > heap.peek().score()) {
+                    heap.poll();
+                    heap.add(hit);
+                }
+            }
+        }
+        List<ChunkHitDto> merged = new ArrayList<>(heap);
+        merged.sort(byScore.reversed());
+        return merged;
+    }
+
+    /**
+     * Full-text query for the lexical half of hybrid search: the question's
+     * terms OR-ed together, as a to_tsquery expression for the 'simple'
+     * configuration. When the question names identifiers (camelCase,
+     * snake_case, containing digits, or in backticks), only those are kept,
+     * since they are what embeddings match poorly; otherwise its words minus
+     * stop words.
+     *
+     * @return the expression, or null if no term is left
+     */
+    static String lexicalQuery(String question) {
+        Set<String> identifiers = new LinkedHashSet<>();
+        Set<String> words = new LinkedHashSet<>();
+        boolean quoted = false;
+        int from = 0;
+        Matcher m = WORD.matcher(question);
+        while (m.find()) {
+            for (int i = from; i < m.start(); i++) {
+                if (question.charAt(i) == '`') {
+                    quoted = !quoted;
+                }
+            }
+            from = m.end();
+            String word = m.group();
+            String term = word.toLowerCase(Locale.ROOT);
+            if (quoted || isIdentifier(word)) {
+                identifiers.add(term);
+            } else if (term.length() >= 3 && !STOP_WORDS.contains(term)) {
+                words.add(term);
+            }
+        }
+        Set<String> terms = identifiers.isEmpty() ? words : identifiers;
+        if (terms.isEmpty()) {
+            return null;
+        }
+        return String.join(" | ", terms.stream().limit(MAX_LEXICAL_TERMS).toList());
+    }
+
+    private static boolean isIdentifier(String word) {
+        if (word.length() < 2) {
+            return false;
+        }
+        boolean letter = false;
+        boolean digit = false;
+        for (int i = 0; i < word.length(); i++) {
+            char c = word.charAt(i);
+            if (c == '_' && i > 0 && i < word.length() - 1) {
+                return true;
+            }
+            if (i > 0 && Character.isUpperCase(c) && Character.isLowerCase(word.charAt(i - 1))) {
+                return true;
+            }
+            letter |= Character.isLetter(c);
+            digit |= Character.isDigit(c);
+        }
+        return letter && digit;
     }
 
     /**
@@ -149,7 +336,12 @@ public class VectorSearchService {
 
         for (int i = 0; i < results.size(); i++) {
             SearchResult result = results.get(i);
-            context.append(String.format("[%d] %s (chunk %d):\n", i + 1, result.filePath(), result.chunkIndex()));
+            if (result.startLine() != null && result.endLine() != null) {
+                context.append(String.format("[%d] %s (lines %d-%d):\n", i + 1, result.filePath(),
+                        result.startLine(), result.endLine()));
+            } else {
+                context.append(String.format("[%d] %s (chunk %d):\n", i + 1, result.filePath(), result.chunkIndex()));
+            }
             context.append("```\n");
             context.append(result.content());
             context.append("\n```\n\n");
@@ -157,4 +349,9 @@ public class VectorSearchService {
 
         return context.toString();
     }
+
+    @PreDestroy
+    void shutdown() {
+        fanOut.shutdownNow();
+    }
 }
@@ -0,0 +1,254 @@
+package com.ai.deepcode.service;
+
+import com.ai.deepcode.repository.WorkspaceBlobRepository;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Project-scoped device workspace.
+ *
+ * Files are keyed by (projectId, path). With workspace.shared-backend=postgres
+ * (the default) Postgres holds the authoritative copy, so every API node behind
+ * a load balancer sees the same uploads; the node-local {@link WorkspaceStore}
+ * acts as a read-through cache. A local copy is trusted for
+ * workspace.cache.revalidate-ms after it was written or checked, then its
+ * version is compared against Postgres again.
+ *
+ * Uploads made without a project id land in {@link #UNSCOPED}.
+ */
+@Service
+public class WorkspaceService {
+
+    private static final Logger log = LoggerFactory.getLogger(WorkspaceService.class);
+
+    /** Namespace for uploads that are not attached to a project. */
+    public static final UUID UNSCOPED = new UUID(0, 0);
+
+    private final WorkspaceStore localStore;
+    private final WorkspaceBlobRepository blobRepository;
+    private final boolean shared;
+    private final long revalidateMs;
+
+    /** local key -> version of the local copy and when it was last known current */
+    private final Map<String, LocalCopy> localCopies = new ConcurrentHashMap<>();
+
+    public WorkspaceService(WorkspaceStore localStore, WorkspaceBlobRepository blobRepository,
+            @Value("${workspace.shared-backend:postgres}") String sharedBackend,
+            @Value("${workspace.cache.revalidate-ms:30000}") long revalidateMs) {
+        this.localStore = localStore;
+        this.blobRepository = blobRepository;
+        this.shared = "postgres".equalsIgnoreCase(sharedBackend);
+        this.revalidateMs = revalidateMs;
+    }
+
+    /**
+     * Move files stored before workspaces were project-scoped (plain path keys)
+     * into the unscoped namespace, so they stay reachable.
+     */
+    @PostConstruct
+    void adoptLegacyFiles() {
+        List<String> legacy = localStore.getAllPaths().stream().filter(k -> !isScopedKey(k)).toList();
+        if (legacy.isEmpty()) {
+            return;
+        }
+        try {
+            for (String path : legacy) {
+                byte[] content = localStore.getFile(path);
+                if (content != null) {
+                    storeFile(UNSCOPED, path, content);
+                }
+                localStore.removeFile(path);
+            }
+            log.info("[Workspace] Moved {} legacy files into the unscoped namespace", legacy.size());
+        } catch (RuntimeException e) {
+            log.warn("[Workspace] Could not adopt legacy workspace files yet: {}", e.getMessage());
+        }
+    }
+
+    public static UUID scope(UUID projectId) {
+        return projectId != null ? projectId : UNSCOPED;
+    }
+
+    /**
+     * Stream a file into the workspace. It is written locally first, then copied
+     * to the shared backend.
+     *
+     * @return uncompressed bytes stored
+     * @throws IllegalArgumentException if the stream exceeds {@code maxBytes}
+     */
+    public long storeFile(UUID projectId, String path, InputStream in, long maxBytes) throws IOException {
+        String key = key(projectId, path);
+        long bytes = localStore.storeFile(key, in, maxBytes);
+        publishShared(projectId, path, key);
+        return bytes;
+    }
+
+    public void storeFile(UUID projectId, String path, byte[] content) {
+        String key = key(projectId, path);
+        localStore.storeFile(key, content);
+        publishShared(projectId, path, key);
+    }
+
+    /**
+     * Text of a workspace file, or null if the project has no such file.
+     */
+    public String getFileAsString(UUID projectId, String path) {
+        String key = key(projectId, path);
+        if (!shared) {
+            return localStore.getFileAsString(key);
+        }
+
+        LocalCopy copy = localCopies.get(key);
+        long now = System.currentTimeMillis();
+        if (copy != null && now - copy.checkedAt < revalidateMs && localStore.hasFile(key)) {
+            return localStore.getFileAsString(key);
+        }
+
+        Long version = blobRepository.version(scope(projectId), path);
+        if (version == null) {
+            // Deleted elsewhere (or never shared); drop any stale local copy
+            localCopies.remove(key);
+            localStore.removeFile(key);
+            return null;
+        }
+        if (copy != null && copy.version == version && localStore.hasFile(key)) {
+            localCopies.put(key, new LocalCopy(version, now));
+            return localStore.getFileAsString(key);
+        }
+
+        WorkspaceBlobRepository.Blob blob = blobRepository.load(scope(projectId), path);
+        if (blob == null) {
+            return null;
+        }
+        localStore.storeFile(key, blob.content());
+        localCopies.put(key, new LocalCopy(blob.version(), now));
+        log.debug("[Workspace] Filled local cache for {} v{} ({} bytes)", key, blob.version(), blob.content().length);
+        return new String(blob.content(), StandardCharsets.UTF_8);
+    }
+
+    public boolean hasFile(UUID projectId, String path) {
+        if (!shared) {
+            return localStore.hasFile(key(projectId, path));
+        }
+        return blobRepository.version(scope(projectId), path) != null;
+    }
+
+    /**
+     * Paths of a project's workspace files. Never includes other projects' files.
+     */
+    public Collection<String> getAllPaths(UUID projectId) {
+        if (shared) {
+            return blobRepository.findPaths(scope(projectId));
+        }
+        String prefix = prefix(projectId);
+        List<String> paths = new ArrayList<>();
+        for (String key : localStore.getAllPaths()) {
+            if (key.startsWith(prefix)) {
+                paths.add(key.substring(prefix.length()));
+            }
+        }
+        return paths;
+    }
+
+    public int getFileCount(UUID projectId) {
+        return shared ? (int) blobRepository.count(scope(projectId)) : getAllPaths(projectId).size();
+    }
+
+    /**
+     * Remove every workspace file of a project, shared and local.
+     *
+     * @return number of files removed
+     */
+    public int clear(UUID projectId) {
+        String prefix = prefix(projectId);
+        localCopies.keySet().removeIf(k -> k.startsWith(prefix));
+        int local = localStore.removeByPrefix(prefix);
+        return shared ? blobRepository.deleteProject(scope(projectId)) : local;
+    }
+
+    /**
+     * Remove every workspace file of a project whose path is not in {@code keep},
+     * shared and local.
+     *
+     * @return number of files removed
+     */
+    public int retainOnly(UUID projectId, Set<String> keep) {
+        String prefix = prefix(projectId);
+        int removed = 0;
+        for (String key : List.copyOf(localStore.getAllPaths())) {
+            if (key.startsWith(prefix) && !keep.contains(key.substring(prefix.length()))) {
+                localCopies.remove(key);
+                if (localStore.removeFile(key)) {
+                    removed++;
+                }
+            }
+        }
+        if (!shared) {
+            return removed;
+        }
+        List<String> stale = blobRepository.findPaths(scope(projectId)).stream()
+                .filter(path -> !keep.contains(path))
+                .toList();
+        return stale.isEmpty() ? 0 : blobRepository.deletePaths(scope(projectId), stale);
+    }
+
+    public WorkspaceStore.Stats stats() {
+        return localStore.stats();
+    }
+
+    private void publishShared(UUID projectId, String path, String key) {
+        if (!shared) {
+            return;
+        }
+        WorkspaceStore.Content content = localStore.openFile(key);
+        if (content == null) {
+            // Removed again before it could be shared
+            return;
+        }
+        long version;
+        try (InputStream in = content.stream()) {
+            version = blobRepository.save(scope(projectId), path, content.length(), in);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to share workspace file " + path, e);
+        }
+        localCopies.put(key, new LocalCopy(version, System.currentTimeMillis()));
+    }
+
+    private static String prefix(UUID projectId) {
+        return scope(projectId) + "/";
+    }
+
+    private static String key(UUID projectId, String path) {
+        return prefix(projectId) + path;
+    }
+
+    private static boolean isScopedKey(String key) {
+        if (key.length() <= 37 || key.charAt(36) != '/') {
+            return false;
+        }
+        try {
+            UUID.fromString(key.substring(0, 36));
+            return true;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    private record LocalCopy(long version, long checkedAt) {
+    }
+}
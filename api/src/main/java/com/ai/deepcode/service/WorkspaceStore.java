@@ -1,43 +1,1053 @@
 package com.ai.deepcode.service;
 
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
 
+/**
+ * Disk-backed store for uploaded device files.
+ *
+ * File contents are appended to segment files under workspace.storage-dir and
+ * located through an in-memory index (path -> segment, offset, length). Reads go
+ * through read-only memory mappings of the segments, so stored bytes live in the
+ * page cache rather than on the Java heap. The index is rebuilt by replaying the
+ * segments on startup, which makes uploads survive restarts.
+ *
+ * Records are Deflate-compressed unless workspace.compression is "none" or the
+ * data does not shrink. Decoded text is kept in an LRU cache bounded by
+ * workspace.cache.max-bytes, so hot files skip inflation while cold ones only
+ * cost their compressed size on disk.
+ *
+ * Overwrites leave the previous record behind as dead space; once dead space
+ * dominates, a background thread rewrites the live records into fresh segments
+ * while appends and reads carry on. clear() drops all segments.
+ */
 @Service
 public class WorkspaceStore {
 
-    private final ConcurrentHashMap<String, byte[]> deviceFiles = new ConcurrentHashMap<>();
+    private static final Logger log = LoggerFactory.getLogger(WorkspaceStore.class);
+
+    // v1: magic(int) op(byte) pathLen(int) contentLen(int) path content
+    private static final int MAGIC_V1 = 0x57535331; // "WSS1"
+    private static final int HEADER_BYTES_V1 = 4 + 1 + 4 + 4;
+    // v2: magic(int) op(byte) codec(byte) pathLen(int) storedLen(int) rawLen(int) path content
+    private static final int MAGIC = 0x57535332; // "WSS2"
+    private static final int HEADER_BYTES = 4 + 1 + 1 + 4 + 4 + 4;
+    private static final int STORED_LENGTH_OFFSET = 4 + 1 + 1 + 4;
+
+    private static final byte OP_PUT = 1;
+    private static final byte OP_DELETE = 2;
+    private static final byte CODEC_NONE = 0;
+    private static final byte CODEC_DEFLATE = 1;
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".dat";
+    private static final int STREAM_BUFFER_BYTES = 64 * 1024;
+    /** Below this, Deflate framing outweighs any saving. */
+    private static final int MIN_COMPRESS_BYTES = 128;
+
+    private final Path storageDir;
+    private final long segmentMaxBytes;
+    private final long compactMinDeadBytes;
+    private final boolean compress;
+    private final int compressionLevel;
+
+    private final Map<String, Location> index = new ConcurrentHashMap<>();
+    private final List<Segment> segments = new ArrayList<>();
+    private final ContentCache cache;
+
+    /** Serializes appends, clear, and the start and end of a compaction. */
+    private final ReentrantLock appendLock = new ReentrantLock();
+    /** Readers hold the read lock while touching a mapping; compaction and clear swap segments under the write lock. */
+    private final ReentrantReadWriteLock segmentLock = new ReentrantReadWriteLock();
+    private final ExecutorService compactor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "workspace-compact");
+        t.setDaemon(true);
+        return t;
+    });
+
+    // Guarded by appendLock
+    private int lastSegmentId;
+    private long clearCount;
+    private volatile boolean compacting;
+
+    // Written under appendLock; volatile so stats() can read them without it
+    private volatile long liveBytes;
+    private volatile long deadBytes;
+    private volatile long rawBytes;
+
+    public WorkspaceStore(@Value("${workspace.storage-dir:data/workspace}") String storageDir,
+            @Value("${workspace.segment-max-bytes:1073741824}") long segmentMaxBytes,
+            @Value("${workspace.compact-min-dead-bytes:67108864}") long compactMinDeadBytes,
+            @Value("${workspace.compression:deflate}") String compression,
+            @Value("${workspace.compression-level:1}") int compressionLevel,
+            @Value("${workspace.cache.max-bytes:67108864}") long cacheMaxBytes) {
+        this.storageDir = Path.of(storageDir);
+        this.segmentMaxBytes = Math.min(segmentMaxBytes, Integer.MAX_VALUE);
+        this.compactMinDeadBytes = compactMinDeadBytes;
+        this.compress = !"none".equalsIgnoreCase(compression);
+        this.compressionLevel = compressionLevel;
+        this.cache = new ContentCache(cacheMaxBytes);
+        try {
+            Files.createDirectories(this.storageDir);
+            recover();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open workspace storage at " + this.storageDir, e);
+        }
+    }
 
     public void storeFile(String path, byte[] content) {
-        deviceFiles.put(path, content);
+        byte[] pathBytes = path.getBytes(StandardCharsets.UTF_8);
+        byte codec = CODEC_NONE;
+        byte[] stored = content;
+        int storedLength = content.length;
+        if (compress && content.length >= MIN_COMPRESS_BYTES) {
+            byte[] deflated = new byte[deflateBound(content.length)];
+            Deflater deflater = new Deflater(compressionLevel);
+            try {
+                deflater.setInput(content);
+                deflater.finish();
+                int n = deflater.deflate(deflated);
+                if (deflater.finished() && n < content.length) {
+                    codec = CODEC_DEFLATE;
+                    stored = deflated;
+                    storedLength = n;
+                }
+            } finally {
+                deflater.end();
+            }
+        }
+
+        long recordBytes = (long) HEADER_BYTES + pathBytes.length + storedLength;
+        if (recordBytes > segmentMaxBytes) {
+            throw new IllegalArgumentException("File too large for workspace storage: " + path);
+        }
+
+        ByteBuffer record = ByteBuffer.allocate((int) recordBytes);
+        record.putInt(MAGIC).put(OP_PUT).put(codec).putInt(pathBytes.length).putInt(storedLength)
+                .putInt(content.length).put(pathBytes).put(stored, 0, storedLength).flip();
+
+        appendLock.lock();
+        try {
+            Segment segment = segmentFor(recordBytes);
+            long offset = segment.size;
+            writeFully(segment.channel, record, offset);
+            segment.size += recordBytes;
+            publish(path, new Location(segment.id, offset, offset + HEADER_BYTES + pathBytes.length,
+                    storedLength, content.length, codec));
+            maybeCompact();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to store workspace file " + path, e);
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    /**
+     * Stream a file straight into the tail segment without buffering it on the heap,
+     * compressing on the way when enabled. The record header is written with a
+     * placeholder length that is patched once the body is complete, so a crash
+     * mid-stream leaves a torn tail that recovery discards. The record takes the
+     * tail's remaining room and only moves to a new segment if it outgrows it.
+     *
+     * @return number of uncompressed content bytes stored
+     * @throws IllegalArgumentException if the stream exceeds {@code maxBytes}; nothing is kept
+     */
+    public long storeFile(String path, InputStream in, long maxBytes) throws IOException {
+        byte[] pathBytes = path.getBytes(StandardCharsets.UTF_8);
+        long room = segmentMaxBytes - HEADER_BYTES - pathBytes.length;
+        // Leave headroom for Deflate's worst-case expansion of incompressible input
+        long limit = Math.min(maxBytes, compress ? room - (room >> 10) - 64 : room);
+        byte codec = compress ? CODEC_DEFLATE : CODEC_NONE;
+        int headBytes = HEADER_BYTES + pathBytes.length;
+
+        appendLock.lock();
+        try {
+            StreamedRecord record = new StreamedRecord(headBytes);
+            long raw = 0;
+            long stored = 0;
+            Deflater deflater = compress ? new Deflater(compressionLevel) : null;
+            try {
+                ByteBuffer head = ByteBuffer.allocate(headBytes);
+                head.putInt(MAGIC).put(OP_PUT).put(codec).putInt(pathBytes.length).putInt(-1).putInt(-1)
+                        .put(pathBytes).flip();
+                record.append(head);
+
+                byte[] buf = new byte[STREAM_BUFFER_BYTES];
+                byte[] out = new byte[STREAM_BUFFER_BYTES];
+                ByteBuffer chunk = ByteBuffer.wrap(buf);
+                ByteBuffer outChunk = ByteBuffer.wrap(out);
+                int n;
+                while ((n = in.read(buf)) != -1) {
+                    if (raw + n > limit) {
+                        throw new IllegalArgumentException("File exceeds " + limit + " bytes: " + path);
+                    }
+                    raw += n;
+                    if (deflater == null) {
+                        chunk.clear().limit(n);
+                        record.append(chunk);
+                        stored += n;
+                        continue;
+                    }
+                    deflater.setInput(buf, 0, n);
+                    while (!deflater.needsInput()) {
+                        int c = deflater.deflate(out);
+                        outChunk.clear().limit(c);
+                        record.append(outChunk);
+                        stored += c;
+                    }
+                }
+                if (deflater != null) {
+                    deflater.finish();
+                    while (!deflater.finished()) {
+                        int c = deflater.deflate(out);
+                        outChunk.clear().limit(c);
+                        record.append(outChunk);
+                        stored += c;
+                    }
+                }
+                ByteBuffer lengths = ByteBuffer.allocate(8).putInt((int) stored).putInt((int) raw).flip();
+                record.patch(lengths, STORED_LENGTH_OFFSET);
+            } catch (IOException | RuntimeException e) {
+                // Drop the partial record; nothing was published for it
+                record.discard();
+                throw e;
+            } finally {
+                if (deflater != null) {
+                    deflater.end();
+                }
+            }
+            Segment segment = record.segment;
+            long offset = record.offset;
+            segment.size = offset + record.written;
+            publish(path, new Location(segment.id, offset, offset + headBytes, (int) stored, (int) raw, codec));
+            maybeCompact();
+            return raw;
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    /**
+     * Remove a file by appending a tombstone; the space is reclaimed by compaction.
+     *
+     * @return true if the file existed
+     */
+    public boolean removeFile(String path) {
+        if (!index.containsKey(path)) {
+            return false;
+        }
+        byte[] pathBytes = path.getBytes(StandardCharsets.UTF_8);
+        int recordBytes = HEADER_BYTES + pathBytes.length;
+        ByteBuffer record = ByteBuffer.allocate(recordBytes);
+        record.putInt(MAGIC).put(OP_DELETE).put(CODEC_NONE).putInt(pathBytes.length).putInt(0).putInt(0)
+                .put(pathBytes).flip();
+
+        appendLock.lock();
+        try {
+            Segment segment = segmentFor(recordBytes);
+            writeFully(segment.channel, record, segment.size);
+            segment.size += recordBytes;
+            boolean existed = unpublish(path, recordBytes);
+            maybeCompact();
+            return existed;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to remove workspace file " + path, e);
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    /**
+     * Remove every file whose path starts with {@code prefix}.
+     *
+     * @return number of files removed
+     */
+    public int removeByPrefix(String prefix) {
+        int removed = 0;
+        for (String path : List.copyOf(index.keySet())) {
+            if (path.startsWith(prefix) && removeFile(path)) {
+                removed++;
+            }
+        }
+        return removed;
     }
 
     public byte[] getFile(String path) {
-        return deviceFiles.get(path);
+        segmentLock.readLock().lock();
+        try {
+            // Looked up under the lock so compaction cannot move the record underneath us
+            Location loc = index.get(path);
+            if (loc == null) return null;
+            return readRaw(loc);
+        } finally {
+            segmentLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Uncompressed content of a stored file as a stream, inflated straight out of
+     * the segment mapping. The stream keeps its mapping alive, so it stays readable
+     * after compaction moves the record. Returns null if the file is not stored.
+     */
+    public Content openFile(String path) {
+        segmentLock.readLock().lock();
+        try {
+            Location loc = index.get(path);
+            if (loc == null) return null;
+            return new Content(loc.rawLength, new RecordStream(view(loc), loc.codec == CODEC_DEFLATE));
+        } finally {
+            segmentLock.readLock().unlock();
+        }
     }
 
+    /**
+     * A stored file opened for streaming; close the stream to release its inflater.
+     */
+    public record Content(long length, InputStream stream) {
+    }
+
+    /**
+     * Decoded text of a stored file. Served from the cache when hot; uncompressed
+     * records are decoded straight from their mapping without a byte[] copy.
+     */
     public String getFileAsString(String path) {
-        byte[] bytes = deviceFiles.get(path);
-        if (bytes == null) return null;
-        return new String(bytes, StandardCharsets.UTF_8);
+        segmentLock.readLock().lock();
+        try {
+            Location loc = index.get(path);
+            if (loc == null) return null;
+
+            String cached = cache.get(path, loc);
+            if (cached != null) {
+                return cached;
+            }
+            String text = loc.codec == CODEC_NONE
+                    ? StandardCharsets.UTF_8.decode(view(loc)).toString()
+                    : new String(readRaw(loc), StandardCharsets.UTF_8);
+            cache.put(path, loc, text);
+            return text;
+        } finally {
+            segmentLock.readLock().unlock();
+        }
     }
 
     public boolean hasFile(String path) {
-        return deviceFiles.containsKey(path);
+        return index.containsKey(path);
     }
 
     public Collection<String> getAllPaths() {
-        return deviceFiles.keySet();
+        return index.keySet();
     }
 
     public int getFileCount() {
-        return deviceFiles.size();
+        return index.size();
     }
 
     public void clear() {
-        deviceFiles.clear();
+        appendLock.lock();
+        segmentLock.writeLock().lock();
+        try {
+            index.clear();
+            cache.clear();
+            for (Segment segment : segments) {
+                segment.close();
+                Files.deleteIfExists(segment.file);
+            }
+            segments.clear();
+            clearCount++;
+            liveBytes = 0;
+            deadBytes = 0;
+            rawBytes = 0;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to clear workspace storage", e);
+        } finally {
+            segmentLock.writeLock().unlock();
+            appendLock.unlock();
+        }
+    }
+
+    /**
+     * Point-in-time storage figures, exported as gauges by WorkspaceMetrics.
+     */
+    public Stats stats() {
+        return new Stats(index.size(), rawBytes, liveBytes, deadBytes, cache.residentBytes(), cache.evictions(),
+                cache.hits(), cache.misses());
+    }
+
+    public record Stats(
+            int files,
+            long rawBytes,
+            long storedBytes,
+            long deadBytes,
+            long residentBytes,
+            long evictions,
+            long cacheHits,
+            long cacheMisses) {
+
+        /** Uncompressed over on-disk size of live records; 1.0 when nothing is stored. */
+        public double compressionRatio() {
+            return storedBytes == 0 ? 1.0 : (double) rawBytes / storedBytes;
+        }
+    }
+
+    @PreDestroy
+    void close() {
+        compactor.shutdown();
+        try {
+            compactor.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        appendLock.lock();
+        segmentLock.writeLock().lock();
+        try {
+            for (Segment segment : segments) {
+                segment.close();
+            }
+        } finally {
+            segmentLock.writeLock().unlock();
+            appendLock.unlock();
+        }
+    }
+
+    // ---- storage engine ----
+
+    /**
+     * Register a freshly written record and account the record it replaces as dead space.
+     * Caller holds appendLock.
+     */
+    private void publish(String path, Location loc) {
+        Location previous = index.put(path, loc);
+        liveBytes += loc.recordBytes();
+        rawBytes += loc.rawLength;
+        if (previous != null) {
+            liveBytes -= previous.recordBytes();
+            deadBytes += previous.recordBytes();
+            rawBytes -= previous.rawLength;
+            cache.invalidate(path);
+        }
+    }
+
+    /**
+     * Drop a file from the index after its tombstone was written; both the old record
+     * and the tombstone count as dead space. Caller holds appendLock.
+     */
+    private boolean unpublish(String path, long tombstoneBytes) {
+        deadBytes += tombstoneBytes;
+        Location previous = index.remove(path);
+        if (previous == null) {
+            return false;
+        }
+        liveBytes -= previous.recordBytes();
+        deadBytes += previous.recordBytes();
+        rawBytes -= previous.rawLength;
+        cache.invalidate(path);
+        return true;
+    }
+
+    /**
+     * Segment with room for {@code recordBytes}, rolling over to a new one if needed.
+     * Caller holds appendLock.
+     */
+    private Segment segmentFor(long recordBytes) throws IOException {
+        Segment tail = segments.isEmpty() ? null : segments.get(segments.size() - 1);
+        if (tail != null && tail.size + recordBytes <= segmentMaxBytes) {
+            return tail;
+        }
+        return rollOver(tail);
+    }
+
+    /**
+     * Open the segment after {@code tail} (or after every id used so far) and make it
+     * the tail. Caller holds appendLock.
+     */
+    private Segment rollOver(Segment tail) throws IOException {
+        return addSegment((tail == null ? lastSegmentId : tail.id) + 1);
+    }
+
+    /**
+     * Open segment {@code id} as the new tail. Caller holds appendLock.
+     */
+    private Segment addSegment(int id) throws IOException {
+        Segment segment = Segment.open(storageDir.resolve(segmentName(id)), id);
+        lastSegmentId = Math.max(lastSegmentId, id);
+        segmentLock.writeLock().lock();
+        try {
+            segments.add(segment);
+        } finally {
+            segmentLock.writeLock().unlock();
+        }
+        return segment;
+    }
+
+    /**
+     * Uncompressed bytes of a record. Caller holds the segment read lock.
+     */
+    private byte[] readRaw(Location loc) {
+        ByteBuffer stored = view(loc);
+        byte[] raw = new byte[loc.rawLength];
+        if (loc.codec == CODEC_NONE) {
+            stored.get(raw);
+            return raw;
+        }
+        Inflater inflater = new Inflater();
+        try {
+            // Inflate straight out of the mapping; the compressed bytes are never copied
+            inflater.setInput(stored);
+            int off = 0;
+            while (off < raw.length) {
+                int n = inflater.inflate(raw, off, raw.length - off);
+                if (n == 0 && (inflater.finished() || inflater.needsInput())) {
+                    break;
+                }
+                off += n;
+            }
+            if (off != raw.length) {
+                throw new IllegalStateException("Workspace record truncated: expected " + raw.length + " bytes, got " + off);
+            }
+            return raw;
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Corrupt workspace record in segment " + loc.segmentId, e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    /**
+     * Read-only view of a record's stored content. Caller holds the segment read lock.
+     */
+    private ByteBuffer view(Location loc) {
+        Segment segment = segmentById(loc.segmentId);
+        MappedByteBuffer mapping = segment.mappingCovering(loc.contentOffset + loc.storedLength);
+        return mapping.duplicate()
+                .position((int) loc.contentOffset)
+                .limit((int) (loc.contentOffset + loc.storedLength))
+                .slice();
+    }
+
+    private Segment segmentById(int id) {
+        for (Segment segment : segments) {
+            if (segment.id == id) {
+                return segment;
+            }
+        }
+        throw new IllegalStateException("Workspace segment " + id + " is missing");
+    }
+
+    /**
+     * Start a background compaction once dead space outweighs live data.
+     * Caller holds appendLock.
+     */
+    private void maybeCompact() {
+        if (compacting || deadBytes == 0 || deadBytes < compactMinDeadBytes || deadBytes < liveBytes) {
+            return;
+        }
+        compacting = true;
+        try {
+            compactor.execute(this::compact);
+        } catch (RejectedExecutionException e) {
+            // Shutting down
+            compacting = false;
+        }
+    }
+
+    /**
+     * Rewrite the live records into new segments. Appends move to a fresh tail
+     * first and continue while the records are copied; the locks are only taken
+     * to seal the old segments and to switch the index over to the copies. An
+     * index entry overwritten or removed during the copy keeps its newer record.
+     */
+    private void compact() {
+        long started = System.currentTimeMillis();
+        List<Segment> old;
+        Map<String, Location> live;
+        long sealedDeadBytes;
+        long sealedClearCount;
+        int nextId;
+        int tailId;
+        appendLock.lock();
+        try {
+            old = new ArrayList<>(segments);
+            if (old.isEmpty()) {
+                compacting = false;
+                return;
+            }
+            // The copies take the ids between the sealed segments and the new tail,
+            // so replaying after a crash mid-compaction still applies newer records
+            // last. Dead space outweighs live data, so the copies fit in
+            // old.size() + 1 segments.
+            nextId = old.get(old.size() - 1).id + 1;
+            tailId = nextId + old.size() + 1;
+            addSegment(tailId);
+            live = new HashMap<>(index);
+            sealedDeadBytes = deadBytes;
+            sealedClearCount = clearCount;
+        } catch (IOException e) {
+            compacting = false;
+            log.warn("[WorkspaceStore] Could not start compaction: {}", e.getMessage());
+            return;
+        } finally {
+            appendLock.unlock();
+        }
+
+        // Sealed segments are only closed by clear(), which the swap below detects
+        Map<Integer, Segment> sealed = new HashMap<>();
+        for (Segment segment : old) {
+            sealed.put(segment.id, segment);
+        }
+        List<Segment> fresh = new ArrayList<>();
+        Map<String, Location> moved = new HashMap<>();
+        try {
+            Segment out = null;
+            for (Map.Entry<String, Location> entry : live.entrySet()) {
+                Location loc = entry.getValue();
+                long recordBytes = loc.recordBytes();
+                if (out == null || out.size + recordBytes > segmentMaxBytes) {
+                    if (nextId >= tailId) {
+                        throw new IllegalStateException("Compacted records do not fit below segment " + tailId);
+                    }
+                    out = Segment.open(storageDir.resolve(segmentName(nextId)), nextId++);
+                    fresh.add(out);
+                }
+                // Copy the whole record (header + path + content) verbatim, whatever its version
+                Segment from = sealed.get(loc.segmentId);
+                ByteBuffer record = from.mappingCovering(loc.recordOffset + recordBytes).duplicate()
+                        .position((int) loc.recordOffset)
+                        .limit((int) (loc.recordOffset + recordBytes))
+                        .slice();
+                long offset = out.size;
+                writeFully(out.channel, record, offset);
+                out.size += recordBytes;
+                moved.put(entry.getKey(), new Location(out.id, offset, offset + (loc.contentOffset - loc.recordOffset),
+                        loc.storedLength, loc.rawLength, loc.codec));
+            }
+        } catch (IOException | RuntimeException e) {
+            log.warn("[WorkspaceStore] Compaction failed, keeping the current segments: {}", e.getMessage());
+            discard(fresh);
+            compacting = false;
+            return;
+        }
+
+        appendLock.lock();
+        segmentLock.writeLock().lock();
+        try {
+            if (clearCount != sealedClearCount) {
+                discard(fresh);
+                return;
+            }
+            for (Map.Entry<String, Location> entry : moved.entrySet()) {
+                index.replace(entry.getKey(), live.get(entry.getKey()), entry.getValue());
+            }
+            segments.removeAll(old);
+            segments.addAll(0, fresh);
+            // Records replaced during the copy left dead copies of the same size behind
+            deadBytes -= sealedDeadBytes;
+            discard(old);
+        } finally {
+            compacting = false;
+            segmentLock.writeLock().unlock();
+            appendLock.unlock();
+        }
+
+        log.info("[WorkspaceStore] Compacted {} files, reclaimed {} bytes in {} ms",
+                moved.size(), sealedDeadBytes, System.currentTimeMillis() - started);
+    }
+
+    /**
+     * Wait until no compaction is running or due.
+     */
+    void awaitCompaction() throws InterruptedException, ExecutionException {
+        while (true) {
+            compactor.submit(() -> {
+            }).get();
+            appendLock.lock();
+            try {
+                // Records replaced during the last run may call for another
+                maybeCompact();
+                if (!compacting) {
+                    return;
+                }
+            } finally {
+                appendLock.unlock();
+            }
+        }
+    }
+
+    private static void discard(List<Segment> segments) {
+        for (Segment segment : segments) {
+            segment.close();
+            try {
+                Files.deleteIfExists(segment.file);
+            } catch (IOException e) {
+                log.warn("[WorkspaceStore] Failed to delete segment {}: {}", segment.file, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Rebuild the index by replaying every segment in order. A torn record at the
+     * tail of a segment (e.g. after a crash mid-write) is truncated away. Both the
+     * original uncompressed (v1) and the current (v2) record layouts are accepted.
+     */
+    private void recover() throws IOException {
+        List<Path> files;
+        try (Stream<Path> listing = Files.list(storageDir)) {
+            files = listing
+                    .filter(p -> p.getFileName().toString().startsWith(SEGMENT_PREFIX)
+                            && p.getFileName().toString().endsWith(SEGMENT_SUFFIX))
+                    .sorted()
+                    .toList();
+        }
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        for (Path file : files) {
+            String name = file.getFileName().toString();
+            int id = Integer.parseInt(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+            Segment segment = Segment.open(file, id);
+            segments.add(segment);
+            lastSegmentId = id;
+
+            long pos = 0;
+            long fileSize = segment.channel.size();
+            while (pos + HEADER_BYTES_V1 <= fileSize) {
+                header.clear().limit((int) Math.min(HEADER_BYTES, fileSize - pos));
+                readFully(segment.channel, header, pos);
+                header.flip();
+                int magic = header.getInt();
+                byte op = header.get();
+                byte codec;
+                int headerBytes;
+                int pathLen;
+                int storedLen;
+                int rawLen;
+                if (magic == MAGIC_V1) {
+                    codec = CODEC_NONE;
+                    headerBytes = HEADER_BYTES_V1;
+                    pathLen = header.getInt();
+                    storedLen = header.getInt();
+                    rawLen = storedLen;
+                } else if (magic == MAGIC && header.remaining() >= HEADER_BYTES - 5) {
+                    codec = header.get();
+                    headerBytes = HEADER_BYTES;
+                    pathLen = header.getInt();
+                    storedLen = header.getInt();
+                    rawLen = header.getInt();
+                } else {
+                    break;
+                }
+                long recordBytes = (long) headerBytes + pathLen + storedLen;
+                if ((op != OP_PUT && op != OP_DELETE) || pathLen <= 0 || storedLen < 0 || rawLen < 0
+                        || (codec != CODEC_NONE && codec != CODEC_DEFLATE)
+                        || pos + recordBytes > fileSize) {
+                    break;
+                }
+                ByteBuffer pathBuf = ByteBuffer.allocate(pathLen);
+                readFully(segment.channel, pathBuf, pos + headerBytes);
+                String path = new String(pathBuf.array(), StandardCharsets.UTF_8);
+                if (op == OP_DELETE) {
+                    unpublish(path, recordBytes);
+                } else {
+                    publish(path, new Location(id, pos, pos + headerBytes + pathLen, storedLen, rawLen, codec));
+                }
+                pos += recordBytes;
+            }
+            if (pos < fileSize) {
+                log.warn("[WorkspaceStore] Truncating torn tail of {} at offset {} (size {})", file, pos, fileSize);
+                segment.channel.truncate(pos);
+            }
+            segment.size = pos;
+        }
+
+        if (!index.isEmpty()) {
+            log.info("[WorkspaceStore] Recovered {} files ({} live bytes, {} raw, {} dead) from {} segments in {}",
+                    index.size(), liveBytes, rawBytes, deadBytes, segments.size(), storageDir);
+        }
+    }
+
+    /**
+     * zlib's compressBound: the most Deflate can emit for {@code len} input bytes.
+     */
+    private static int deflateBound(long len) {
+        return (int) Math.min(Integer.MAX_VALUE, len + (len >> 12) + (len >> 14) + (len >> 25) + 13);
+    }
+
+    private static String segmentName(int id) {
+        return SEGMENT_PREFIX + String.format("%06d", id) + SEGMENT_SUFFIX;
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buf, long position) throws IOException {
+        while (buf.hasRemaining()) {
+            position += channel.write(buf, position);
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buf, long position) throws IOException {
+        while (buf.hasRemaining()) {
+            int n = channel.read(buf, position);
+            if (n < 0) {
+                throw new IOException("Unexpected end of workspace segment");
+            }
+            position += n;
+        }
+    }
+
+    /**
+     * Where a file's current record lives.
+     */
+    private record Location(int segmentId, long recordOffset, long contentOffset, int storedLength, int rawLength,
+            byte codec) {
+        long recordBytes() {
+            return contentOffset - recordOffset + storedLength;
+        }
+    }
+
+    /**
+     * A record being streamed onto the tail segment, whose final size is unknown
+     * until the body ends. If it would run past segment-max-bytes, the bytes
+     * written so far move to a new segment, where the record is finished; a
+     * fresh segment always fits a record within the streaming limit. Used under
+     * appendLock.
+     */
+    private final class StreamedRecord {
+        Segment segment;
+        long offset;
+        long written;
+
+        StreamedRecord(long headBytes) throws IOException {
+            segment = segmentFor(headBytes);
+            offset = segment.size;
+        }
+
+        void append(ByteBuffer buf) throws IOException {
+            int length = buf.remaining();
+            if (offset > 0 && offset + written + length > segmentMaxBytes) {
+                moveToNewSegment();
+            }
+            writeFully(segment.channel, buf, offset + written);
+            written += length;
+        }
+
+        /** Overwrite already appended bytes at {@code position} within the record. */
+        void patch(ByteBuffer buf, long position) throws IOException {
+            writeFully(segment.channel, buf, offset + position);
+        }
+
+        void discard() throws IOException {
+            segment.channel.truncate(offset);
+        }
+
+        private void moveToNewSegment() throws IOException {
+            Segment next = rollOver(segment);
+            long copied = 0;
+            while (copied < written) {
+                copied += segment.channel.transferTo(offset + copied, written - copied, next.channel);
+            }
+            segment.channel.truncate(offset);
+            segment = next;
+            offset = 0;
+        }
+    }
+
+    /**
+     * LRU of decoded file text, weighted by uncompressed size. Entries remember the
+     * record they were decoded from so a racing overwrite can never serve stale text.
+     */
+    private static final class ContentCache {
+        private final long maxBytes;
+        private final LinkedHashMap<String, Cached> entries = new LinkedHashMap<>(256, 0.75f, true);
+        private long residentBytes;
+        private long evictions;
+        private long hits;
+        private long misses;
+
+        ContentCache(long maxBytes) {
+            this.maxBytes = maxBytes;
+        }
+
+        synchronized String get(String path, Location loc) {
+            Cached cached = entries.get(path);
+            if (cached != null && cached.loc.equals(loc)) {
+                hits++;
+                return cached.text;
+            }
+            misses++;
+            return null;
+        }
+
+        synchronized void put(String path, Location loc, String text) {
+            long weight = loc.rawLength;
+            if (weight > maxBytes / 4) {
+                // Never let one file flush the whole cache
+                return;
+            }
+            Cached previous = entries.put(path, new Cached(loc, text));
+            if (previous != null) {
+                residentBytes -= previous.loc.rawLength;
+            }
+            residentBytes += weight;
+            var it = entries.values().iterator();
+            while (residentBytes > maxBytes && it.hasNext()) {
+                residentBytes -= it.next().loc.rawLength;
+                it.remove();
+                evictions++;
+            }
+        }
+
+        synchronized void invalidate(String path) {
+            Cached removed = entries.remove(path);
+            if (removed != null) {
+                residentBytes -= removed.loc.rawLength;
+            }
+        }
+
+        synchronized void clear() {
+            entries.clear();
+            residentBytes = 0;
+        }
+
+        synchronized long residentBytes() { return residentBytes; }
+        synchronized long evictions() { return evictions; }
+        synchronized long hits() { return hits; }
+        synchronized long misses() { return misses; }
+
+        private record Cached(Location loc, String text) {
+        }
+    }
+
+    /**
+     * Reads a record's stored bytes, inflating them on the way when compressed.
+     */
+    private static final class RecordStream extends InputStream {
+        private final ByteBuffer stored;
+        private final Inflater inflater;
+
+        RecordStream(ByteBuffer stored, boolean deflated) {
+            this.stored = stored;
+            this.inflater = deflated ? new Inflater() : null;
+            if (inflater != null) {
+                inflater.setInput(stored);
+            }
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) == -1 ? -1 : one[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (inflater == null) {
+                if (!stored.hasRemaining()) {
+                    return -1;
+                }
+                int n = Math.min(len, stored.remaining());
+                stored.get(b, off, n);
+                return n;
+            }
+            try {
+                int n;
+                while ((n = inflater.inflate(b, off, len)) == 0) {
+                    if (inflater.finished() || inflater.needsInput() || inflater.needsDictionary()) {
+                        return -1;
+                    }
+                }
+                return n;
+            } catch (DataFormatException e) {
+                throw new IOException("Corrupt workspace record", e);
+            }
+        }
+
+        @Override
+        public void close() {
+            if (inflater != null) {
+                inflater.end();
+            }
+        }
+    }
+
+    /**
+     * One append-only segment file and its current read mapping. The mapping is
+     * widened lazily when a read reaches past it.
+     */
+    private static final class Segment {
+        final Path file;
+        final int id;
+        final FileChannel channel;
+        volatile long size;
+        private volatile MappedByteBuffer mapping;
+
+        private Segment(Path file, int id, FileChannel channel) {
+            this.file = file;
+            this.id = id;
+            this.channel = channel;
+        }
+
+        static Segment open(Path file, int id) throws IOException {
+            FileChannel channel = FileChannel.open(file,
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            Segment segment = new Segment(file, id, channel);
+            segment.size = channel.size();
+            return segment;
+        }
+
+        MappedByteBuffer mappingCovering(long end) {
+            MappedByteBuffer current = mapping;
+            if (current != null && current.capacity() >= end) {
+                return current;
+            }
+            synchronized (this) {
+                if (mapping == null || mapping.capacity() < end) {
+                    try {
+                        mapping = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.max(end, size));
+                    } catch (IOException e) {
+                        throw new UncheckedIOException("Failed to map workspace segment " + file, e);
+                    }
+                }
+                return mapping;
+            }
+        }
+
+        void close() {
+            mapping = null;
+            try {
+                channel.close();
+            } catch (IOException e) {
+                log.warn("[WorkspaceStore] Failed to close segment {}: {}", file, e.getMessage());
+            }
+        }
     }
 }
@@ -0,0 +1,4 @@
+-- SHA-256 (hex) of the embedding model and the embedded chunk text. Re-indexing a
+-- file keeps rows whose hash is unchanged instead of embedding them again.
+-- Lookups go through idx_chunks_project_file.
+ALTER TABLE chunks ADD COLUMN content_hash VARCHAR(64);
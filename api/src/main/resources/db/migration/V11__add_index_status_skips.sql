@@ -0,0 +1,6 @@
+-- Files left out of an index by the content filter (lockfiles, minified,
+-- generated, binary, ignored, ...): a count per reason and a capped sample of
+-- path -> reason.
+ALTER TABLE index_status ADD COLUMN skipped_files INTEGER DEFAULT 0;
+ALTER TABLE index_status ADD COLUMN skip_reasons JSONB;
+ALTER TABLE index_status ADD COLUMN skipped_paths JSONB;
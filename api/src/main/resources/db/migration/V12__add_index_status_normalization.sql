@@ -0,0 +1,4 @@
+-- Per-project choice to embed normalized chunk text (license headers, package
+-- lines and import paths removed) and the embedding tokens that saved.
+ALTER TABLE index_status ADD COLUMN normalize_content BOOLEAN;
+ALTER TABLE index_status ADD COLUMN tokens_saved BIGINT DEFAULT 0;
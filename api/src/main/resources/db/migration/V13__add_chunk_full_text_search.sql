@@ -0,0 +1,7 @@
+-- Lexical side of hybrid search. The 'simple' configuration only lowercases:
+-- no stemming or stop words, so identifiers such as findByGithubOwner stay one
+-- searchable token. Generated, so every insert path keeps it current.
+ALTER TABLE chunks ADD COLUMN content_tsv tsvector
+    GENERATED ALWAYS AS (to_tsvector('simple', content)) STORED;
+
+CREATE INDEX idx_chunks_content_tsv ON chunks USING gin (content_tsv);
@@ -0,0 +1,52 @@
+-- Partition chunks by project. Small projects share chunks_default; large ones
+-- are moved into a dedicated partition of their own (ChunkPartitionRepository),
+-- which gets its own HNSW graphs, is searched without filtering other projects'
+-- vectors out, and is truncated or dropped instead of deleted row by row.
+--
+-- The primary key must contain the partition key, so it becomes (id, project_id).
+-- Nothing references chunks by foreign key.
+ALTER TABLE chunks RENAME TO chunks_unpartitioned;
+ALTER TABLE chunks_unpartitioned RENAME CONSTRAINT chunks_pkey TO chunks_unpartitioned_pkey;
+DROP INDEX idx_chunks_embedding_768;
+DROP INDEX idx_chunks_embedding_384;
+DROP INDEX idx_chunks_embedding_1024;
+DROP INDEX idx_chunks_project_id;
+DROP INDEX idx_chunks_file_path;
+DROP INDEX idx_chunks_project_file;
+DROP INDEX idx_chunks_content_tsv;
+
+CREATE TABLE chunks (
+    id UUID NOT NULL DEFAULT gen_random_uuid(),
+    project_id UUID NOT NULL REFERENCES projects(id) ON DELETE CASCADE,
+    file_path VARCHAR(1024) NOT NULL,
+    chunk_index INT NOT NULL,
+    content TEXT NOT NULL,
+    embedding_768 vector(768),
+    token_count INT,
+    created_at TIMESTAMP WITH TIME ZONE DEFAULT NOW(),
+    embedding_384 vector(384),
+    embedding_1024 vector(1024),
+    start_line INT,
+    end_line INT,
+    content_hash VARCHAR(64),
+    content_tsv tsvector GENERATED ALWAYS AS (to_tsvector('simple', content)) STORED,
+    PRIMARY KEY (id, project_id)
+) PARTITION BY LIST (project_id);
+
+CREATE TABLE chunks_default PARTITION OF chunks DEFAULT;
+
+INSERT INTO chunks (id, project_id, file_path, chunk_index, content, embedding_768, token_count, created_at,
+                    embedding_384, embedding_1024, start_line, end_line, content_hash)
+SELECT id, project_id, file_path, chunk_index, content, embedding_768, token_count, created_at,
+       embedding_384, embedding_1024, start_line, end_line, content_hash
+FROM chunks_unpartitioned;
+
+DROP TABLE chunks_unpartitioned;
+
+-- Created on the parent, so every partition gets its own copy
+CREATE INDEX idx_chunks_embedding_768 ON chunks USING hnsw (embedding_768 vector_cosine_ops);
+CREATE INDEX idx_chunks_embedding_384 ON chunks USING hnsw (embedding_384 vector_cosine_ops);
+CREATE INDEX idx_chunks_embedding_1024 ON chunks USING hnsw (embedding_1024 vector_cosine_ops);
+CREATE INDEX idx_chunks_project_file ON chunks(project_id, file_path);
+CREATE INDEX idx_chunks_file_path ON chunks(file_path);
+CREATE INDEX idx_chunks_content_tsv ON chunks USING gin (content_tsv);
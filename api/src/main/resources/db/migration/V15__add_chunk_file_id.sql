@@ -0,0 +1,15 @@
+-- Chunks reference their project_files row, so file filters bind one uuid[]
+-- parameter instead of a list of paths. Set on insert and by every manifest
+-- upsert (whichever comes first); chunks of files outside the manifest keep
+-- NULL. No foreign key: each manifest sweep would then have to search chunks
+-- for references to the rows it deletes.
+ALTER TABLE chunks ADD COLUMN file_id UUID;
+
+UPDATE chunks c SET file_id = f.id
+FROM project_files f
+WHERE f.project_id = c.project_id AND f.path = c.file_path;
+
+CREATE INDEX idx_chunks_project_file_id ON chunks(project_id, file_id);
+
+-- Every path lookup also filters on project_id (idx_chunks_project_file)
+DROP INDEX idx_chunks_file_path;
@@ -0,0 +1,8 @@
+-- Track when a manifest entry was last written so re-imports can upsert in bulk
+-- and sweep stale paths with a single statement.
+ALTER TABLE project_files ADD COLUMN updated_at TIMESTAMP WITH TIME ZONE DEFAULT CURRENT_TIMESTAMP;
+
+UPDATE project_files SET updated_at = created_at WHERE updated_at IS NULL;
+
+-- The id column had no default; bulk inserts generate it server-side.
+ALTER TABLE project_files ALTER COLUMN id SET DEFAULT gen_random_uuid();
@@ -0,0 +1,3 @@
+-- Revision (commit/tree SHA, or a local stamp for device uploads) of the
+-- persisted file manifest. Used to key cached file trees and ETags.
+ALTER TABLE projects ADD COLUMN revision VARCHAR(64);
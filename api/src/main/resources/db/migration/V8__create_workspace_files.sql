@@ -0,0 +1,24 @@
+-- Shared, project-scoped storage for device workspace files so every API node
+-- sees the same uploads. Content is split into fixed-size bytea chunks so large
+-- files are written and read in bounded pieces.
+-- project_id is not a foreign key: uploads made before a project exists live
+-- under the nil UUID namespace.
+CREATE SEQUENCE workspace_file_version_seq;
+
+CREATE TABLE workspace_files (
+    project_id UUID NOT NULL,
+    path VARCHAR(1024) NOT NULL,
+    version BIGINT NOT NULL,
+    size_bytes BIGINT NOT NULL,
+    updated_at TIMESTAMP WITH TIME ZONE DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (project_id, path)
+);
+
+CREATE TABLE workspace_file_chunks (
+    project_id UUID NOT NULL,
+    path VARCHAR(1024) NOT NULL,
+    seq INTEGER NOT NULL,
+    data BYTEA NOT NULL,
+    PRIMARY KEY (project_id, path, seq),
+    FOREIGN KEY (project_id, path) REFERENCES workspace_files (project_id, path) ON DELETE CASCADE
+);
@@ -0,0 +1,4 @@
+-- Source line range (1-based, inclusive) each chunk was cut from, so search
+-- hits can point at exact lines. NULL for chunks indexed before this column.
+ALTER TABLE chunks ADD COLUMN start_line INT;
+ALTER TABLE chunks ADD COLUMN end_line INT;
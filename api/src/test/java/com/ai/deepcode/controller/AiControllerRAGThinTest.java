@@ -9,6 +9,7 @@ import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.springframework.security.core.Authentication;
 
 import java.util.*;
 
@@ -21,7 +22,7 @@ public class AiControllerRAGThinTest {
     @Mock
     private OllamaService ollamaService;
     @Mock
-    private WorkspaceStore workspaceStore;
+    private WorkspaceService workspaceService;
     @Mock
     private FileContentService fileContentService;
     @Mock
@@ -37,6 +38,9 @@ public class AiControllerRAGThinTest {
     @Mock
     private ChunkRepository chunkRepository;
 
+    @Mock
+    private Authentication auth;
+
     @InjectMocks
     private AiController aiController;
 
@@ -63,25 +67,26 @@ public class AiControllerRAGThinTest {
                 1000,
                 200);
 
-        when(fileContentService.fetchContent(any())).thenReturn("public class App {}");
+        when(fileContentService.fetchContent(eq(projectId), any(), eq(auth))).thenReturn("public class App {}");
         when(vectorSearchService.searchAcrossProjects(any(), any(), anyInt(), any(), any()))
-                .thenReturn(List.of(new VectorSearchService.SearchResult("src/main/App.java", 0, "public class App {}",
-                        projectId)));
+                .thenReturn(new VectorSearchService.MultiProjectResults(List.of(new VectorSearchService.SearchResult(
+                        "src/main/App.java", 0, "public class App {}", projectId)), false, List.of()));
         when(vectorSearchService.buildContextFromResults(any())).thenReturn("Context from App.java");
         when(ollamaService.generate(any(), any())).thenReturn("This app has an App class.");
 
         // Act
-        RagChatResponse response = aiController.chatWithRag(request);
+        RagChatResponse response = aiController.chatWithRag(request, auth);
 
         // Assert
         assertNotNull(response);
         assertEquals("This app has an App class.", response.answer());
         assertNotNull(response.rag());
         assertFalse(response.rag().usedExisting());
+        assertFalse(response.rag().partial());
         assertTrue(response.rag().messageLog().contains("Triggering automatic indexing..."));
 
         verify(indexingService).indexProject(eq(projectId), anyMap(), anyString(), anyInt(), anyInt());
-        verify(fileContentService).fetchContent(any());
+        verify(fileContentService).fetchContent(projectId, fileRef, auth);
     }
 
     @Test
@@ -111,14 +116,14 @@ public class AiControllerRAGThinTest {
         when(projectFileRepository.findByProjectId(projectId)).thenReturn(Collections.emptyList());
         when(projectRepository.findById(projectId)).thenReturn(Optional.of(project));
         when(chunkRepository.findDistinctFilePathsByProjectId(projectId)).thenReturn(List.of("src/App.java"));
-        when(fileContentService.fetchContent(any())).thenReturn("content");
+        when(fileContentService.fetchContent(eq(projectId), any(), eq(auth))).thenReturn("content");
         when(vectorSearchService.searchAcrossProjects(any(), any(), anyInt(), any(), any()))
-                .thenReturn(Collections.emptyList());
+                .thenReturn(new VectorSearchService.MultiProjectResults(List.of(), false, List.of()));
         when(vectorSearchService.buildContextFromResults(any())).thenReturn("");
         when(ollamaService.generate(any(), any())).thenReturn("Answer");
 
         // Act
-        RagChatResponse response = aiController.chatWithRag(request);
+        RagChatResponse response = aiController.chatWithRag(request, auth);
 
         // Assert
         assertNotNull(response);
@@ -141,6 +146,82 @@ public class AiControllerRAGThinTest {
                 null, null);
 
         // Act & Assert
-        assertThrows(Exception.class, () -> aiController.chatWithRag(request));
+        assertThrows(Exception.class, () -> aiController.chatWithRag(request, auth));
+    }
+
+    @Test
+    void testChatWithRag_DeviceProjectRecoversFromUnscopedWorkspace() {
+        // Arrange
+        UUID projectId = UUID.randomUUID();
+        RagChatRequest request = new RagChatRequest(
+                "query",
+                List.of(projectId),
+                null, null, null,
+                "reindex",
+                "all",
+                null, null, null);
+
+        Project project = new Project();
+        project.setId(projectId);
+        project.setSource("device");
+
+        // Uploaded before the project id was sent along
+        when(projectFileRepository.findByProjectId(projectId)).thenReturn(Collections.emptyList());
+        when(projectRepository.findById(projectId)).thenReturn(Optional.of(project));
+        when(workspaceService.getAllPaths(projectId)).thenReturn(List.of());
+        when(workspaceService.getAllPaths(WorkspaceService.UNSCOPED)).thenReturn(List.of("notes.md"));
+        when(fileContentService.fetchContent(eq(projectId), any(), eq(auth))).thenReturn("# Notes");
+        when(vectorSearchService.searchAcrossProjects(any(), any(), anyInt(), any(), any()))
+                .thenReturn(new VectorSearchService.MultiProjectResults(List.of(), false, List.of()));
+        when(ollamaService.generate(any(), any())).thenReturn("Answer");
+
+        // Act
+        RagChatResponse response = aiController.chatWithRag(request, auth);
+
+        // Assert
+        assertTrue(response.rag().messageLog().contains("Recovered 1 files from the unscoped workspace."));
+        verify(fileContentService).fetchContent(projectId, new RagFileRef("device", "notes.md", null), auth);
+        verify(indexingService).indexProject(eq(projectId), eq(Map.of("notes.md", "# Notes")), anyString(),
+                anyInt(), anyInt());
+    }
+
+    @Test
+    void testChatWithRag_ReportsPartialResults() {
+        // Arrange
+        UUID projectId = UUID.randomUUID();
+        UUID slowProjectId = UUID.randomUUID();
+        RagChatRequest request = new RagChatRequest(
+                "query",
+                List.of(projectId, slowProjectId),
+                null,
+                "nomic-embed-text",
+                5,
+                "use_existing",
+                "all",
+                null,
+                1000,
+                200);
+
+        IndexStatus status = new IndexStatus();
+        status.setStatus(IndexingStatus.COMPLETED);
+        status.setEmbedModel("nomic-embed-text");
+        status.setChunkSize(1000);
+        status.setChunkOverlap(200);
+        status.setTotalChunks(3);
+        when(indexStatusRepository.findByProjectId(projectId)).thenReturn(Optional.of(status));
+        when(vectorSearchService.searchAcrossProjects(any(), any(), anyInt(), any(), any()))
+                .thenReturn(new VectorSearchService.MultiProjectResults(List.of(new VectorSearchService.SearchResult(
+                        "src/App.java", 0, "public class App {}", projectId)), true, List.of(slowProjectId)));
+        when(ollamaService.generate(any(), any())).thenReturn("Answer");
+
+        // Act
+        RagChatResponse response = aiController.chatWithRag(request, auth);
+
+        // Assert
+        assertTrue(response.rag().usedExisting());
+        assertTrue(response.rag().partial());
+        assertEquals(1, response.rag().chunksUsed());
+        assertTrue(response.rag().messageLog().stream().anyMatch(l -> l.contains("context is partial")));
+        verify(indexingService, never()).indexProject(any(), anyMap(), anyString(), anyInt(), anyInt());
     }
 }
@@ -0,0 +1,59 @@
+package com.ai.deepcode.controller;
+
+import com.ai.deepcode.dto.FileTreePage;
+import com.ai.deepcode.repository.ProjectRepository;
+import com.ai.deepcode.service.ProjectTreeService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+public class ProjectControllerTreeTest {
+
+    private final UUID projectId = UUID.randomUUID();
+    private ProjectTreeService treeService;
+    private MockMvc mvc;
+
+    @BeforeEach
+    void setUp() {
+        treeService = mock(ProjectTreeService.class);
+        mvc = MockMvcBuilders.standaloneSetup(new ProjectController(mock(ProjectRepository.class), treeService))
+                .build();
+    }
+
+    @Test
+    void testGetTreeLevel_AnswersNotModifiedForTheSameRevision() throws Exception {
+        when(treeService.currentRevision(projectId)).thenReturn("rev1");
+        when(treeService.listDirectory(eq(projectId), eq("rev1"), eq("src"), eq(0), eq(500)))
+                .thenReturn(new FileTreePage(projectId, "rev1", "src", List.of(), 0, 0));
+
+        String etag = mvc.perform(get("/api/projects/{id}/tree", projectId).param("path", "src"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.revision").value("rev1"))
+                .andReturn().getResponse().getHeader("ETag");
+
+        mvc.perform(get("/api/projects/{id}/tree", projectId).param("path", "src").header("If-None-Match", etag))
+                .andExpect(status().isNotModified());
+
+        // A new manifest revision changes the tag
+        when(treeService.currentRevision(projectId)).thenReturn("rev2");
+        when(treeService.listDirectory(eq(projectId), eq("rev2"), eq("src"), eq(0), eq(500)))
+                .thenReturn(new FileTreePage(projectId, "rev2", "src", List.of(), 0, 0));
+        mvc.perform(get("/api/projects/{id}/tree", projectId).param("path", "src").header("If-None-Match", etag))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void testGetTreeLevel_UnknownProjectIsNotFound() throws Exception {
+        when(treeService.currentRevision(projectId)).thenReturn(null);
+        mvc.perform(get("/api/projects/{id}/tree", projectId)).andExpect(status().isNotFound());
+    }
+}
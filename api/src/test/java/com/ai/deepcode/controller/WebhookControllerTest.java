@@ -0,0 +1,56 @@
+package com.ai.deepcode.controller;
+
+import com.ai.deepcode.service.PushReindexService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.util.HexFormat;
+
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+public class WebhookControllerTest {
+
+    private static final byte[] PING = "{\"zen\":\"Keep it logically awesome.\"}".getBytes(StandardCharsets.UTF_8);
+
+    private final PushReindexService pushReindexService = mock(PushReindexService.class);
+
+    private MockMvc mvc(String secret) {
+        return MockMvcBuilders.standaloneSetup(new WebhookController(pushReindexService, new ObjectMapper(), secret))
+                .build();
+    }
+
+    @Test
+    void testGithubWebhook_RejectedWhenNoSecretIsConfigured() throws Exception {
+        mvc("").perform(post("/api/webhooks/github").header("X-GitHub-Event", "push").content(PING))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(jsonPath("$.code").value("GITHUB_WEBHOOK_SECRET_MISSING"));
+        verifyNoInteractions(pushReindexService);
+    }
+
+    @Test
+    void testGithubWebhook_RequiresAValidSignature() throws Exception {
+        MockMvc mvc = mvc("s3cret");
+        mvc.perform(post("/api/webhooks/github").header("X-GitHub-Event", "ping").content(PING))
+                .andExpect(status().isUnauthorized());
+        mvc.perform(post("/api/webhooks/github").header("X-GitHub-Event", "ping")
+                .header("X-Hub-Signature-256", sign("other", PING)).content(PING))
+                .andExpect(status().isUnauthorized());
+        mvc.perform(post("/api/webhooks/github").header("X-GitHub-Event", "ping")
+                .header("X-Hub-Signature-256", sign("s3cret", PING)).content(PING))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.pong").value(true));
+    }
+
+    private static String sign(String secret, byte[] body) throws Exception {
+        Mac mac = Mac.getInstance("HmacSHA256");
+        mac.init(new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+        return "sha256=" + HexFormat.of().formatHex(mac.doFinal(body));
+    }
+}
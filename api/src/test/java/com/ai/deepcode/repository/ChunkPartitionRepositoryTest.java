@@ -0,0 +1,37 @@
+package com.ai.deepcode.repository;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ChunkPartitionRepositoryTest {
+
+    @Test
+    void testPartitionName_FitsPostgresIdentifierLimit() {
+        String name = ChunkPartitionRepository.partitionName(UUID.fromString("0f8fad5b-d9cb-469f-a165-70867728950e"));
+        assertEquals("chunks_p_0f8fad5bd9cb469fa16570867728950e", name);
+        assertTrue(name.length() <= 63);
+    }
+
+    @Test
+    void testExclusionName_FitsPostgresIdentifierLimit() {
+        String name = ChunkPartitionRepository.exclusionName(UUID.fromString("0f8fad5b-d9cb-469f-a165-70867728950e"));
+        assertEquals("chunks_default_not_0f8fad5bd9cb469fa16570867728950e", name);
+        assertTrue(name.length() <= 63);
+    }
+
+    @Test
+    void testOnPartition_RewritesParentIndexDefinitions() {
+        assertEquals("CREATE INDEX ON chunks_p_1 USING hnsw (embedding_768 vector_cosine_ops)",
+                ChunkPartitionRepository.onPartition(
+                        "CREATE INDEX idx_chunks_embedding_768 ON ONLY public.chunks USING hnsw (embedding_768 vector_cosine_ops)",
+                        "chunks_p_1"));
+        // The primary key's index is skipped and recreated as a constraint; plain unique indexes are copied
+        assertEquals("CREATE UNIQUE INDEX ON chunks_p_1 USING btree (project_id, file_path, chunk_index)",
+                ChunkPartitionRepository.onPartition(
+                        "CREATE UNIQUE INDEX idx_chunks_position ON ONLY public.chunks USING btree (project_id, file_path, chunk_index)",
+                        "chunks_p_1"));
+    }
+}
@@ -0,0 +1,60 @@
+package com.ai.deepcode.repository;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.Query;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+public class CustomChunkRepositoryImplTest {
+
+    @Test
+    void testEfForSelectivity_GrowsAsTheFilterNarrows() {
+        // Unfiltered-sized sets keep the floor
+        assertEquals(40, CustomChunkRepositoryImpl.efForSelectivity(10, 90_000, 100_000, 40, 400));
+        // 5% of the chunks pass: 10 / 0.05
+        assertEquals(200, CustomChunkRepositoryImpl.efForSelectivity(10, 5_000, 100_000, 40, 400));
+        assertEquals(400, CustomChunkRepositoryImpl.efForSelectivity(10, 100, 100_000, 40, 400));
+    }
+
+    @Test
+    void testEfForSelectivity_WithoutStatus_UsesTheFloor() {
+        assertEquals(40, CustomChunkRepositoryImpl.efForSelectivity(10, 5_000, 0, 40, 400));
+    }
+
+    @Test
+    void testFileFilter_ResolvesPathsToManifestIdsAndKeepsThePaths() {
+        UUID projectId = UUID.randomUUID();
+        UUID fileId = UUID.randomUUID();
+        EntityManager entityManager = mock(EntityManager.class);
+        Query query = mock(Query.class, RETURNS_SELF);
+        when(entityManager.createNativeQuery(contains("FROM project_files"), eq(UUID.class))).thenReturn(query);
+        when(query.getResultList()).thenReturn(List.of(fileId));
+
+        CustomChunkRepositoryImpl repository = new CustomChunkRepositoryImpl(null, null, new SimpleMeterRegistry(),
+                60, 50, 5000, 40, 400, "relaxed_order");
+        ReflectionTestUtils.setField(repository, "entityManager", entityManager);
+
+        // The second path has no manifest row; its chunks are matched by path
+        CustomChunkRepositoryImpl.FileFilter filter = repository.fileFilter(new UUID[]{projectId},
+                List.of("src/App.java", "src/Unlisted.java"));
+
+        assertArrayEquals(new UUID[]{fileId}, filter.fileIds());
+        assertArrayEquals(new String[]{"src/App.java", "src/Unlisted.java"}, filter.filePaths());
+        verify(query).setParameter("projectIds", new UUID[]{projectId});
+        verify(query).setParameter("filePaths", new String[]{"src/App.java", "src/Unlisted.java"});
+
+        Query search = mock(Query.class, RETURNS_SELF);
+        filter.bind(search);
+        verify(search).setParameter("fileIds", new UUID[]{fileId});
+        verify(search).setParameter("filePaths", new String[]{"src/App.java", "src/Unlisted.java"});
+        assertTrue(CustomChunkRepositoryImpl.FILE_CONDITION.contains("c.file_id IS NULL"));
+    }
+}
@@ -0,0 +1,86 @@
+package com.ai.deepcode.repository;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of one exact top-10 scan as {@link ExactVectorIndex} runs it, over
+ * random unit vectors.
+ *
+ * Run after test-compile:
+ *   java --add-modules jdk.incubator.vector \
+ *        -cp "target/test-classes:target/classes:$(mvn -q dependency:build-classpath -Dmdep.outputFile=/dev/stdout)" \
+ *        com.ai.deepcode.repository.ExactScanBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+public class ExactScanBenchmark {
+
+    @Param({"5000", "50000"})
+    public int rows;
+
+    @Param({"768"})
+    public int dim;
+
+    private ByteBuffer vectors;
+    private float[] query;
+    private final DotProduct scalar = new DotProduct.Scalar();
+    private final DotProduct best = DotProduct.best();
+
+    @Setup
+    public void setup() {
+        Random random = new Random(1);
+        vectors = ByteBuffer.allocateDirect(rows * dim * Float.BYTES).order(ByteOrder.nativeOrder());
+        float[] row = new float[dim];
+        for (int r = 0; r < rows; r++) {
+            for (int i = 0; i < dim; i++) {
+                row[i] = (float) random.nextGaussian();
+            }
+            ExactVectorIndex.normalize(row);
+            for (int i = 0; i < dim; i++) {
+                vectors.putFloat((r * dim + i) * Float.BYTES, row[i]);
+            }
+        }
+        query = new float[dim];
+        for (int i = 0; i < dim; i++) {
+            query[i] = (float) random.nextGaussian();
+        }
+        ExactVectorIndex.normalize(query);
+        System.out.printf("%nkernel=%s%n", best.getClass().getSimpleName());
+    }
+
+    private long scan(DotProduct kernel) {
+        TopK top = new TopK(10);
+        int stride = dim * Float.BYTES;
+        for (int r = 0; r < rows; r++) {
+            top.offer(kernel.dot(vectors, r * stride, query), r);
+        }
+        top.sortDescending();
+        return top.ref(0);
+    }
+
+    @Benchmark
+    public long scalar() {
+        return scan(scalar);
+    }
+
+    @Benchmark
+    public long simd() {
+        return scan(best);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(ExactScanBenchmark.class.getSimpleName()).build()).run();
+    }
+}
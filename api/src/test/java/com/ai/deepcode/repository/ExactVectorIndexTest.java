@@ -0,0 +1,75 @@
+package com.ai.deepcode.repository;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ExactVectorIndexTest {
+
+    @Test
+    void testTopK_KeepsHighestScoresBestFirst() {
+        Random random = new Random(7);
+        float[] scores = new float[1000];
+        TopK top = new TopK(10);
+        for (int i = 0; i < scores.length; i++) {
+            scores[i] = random.nextFloat();
+            top.offer(scores[i], i);
+        }
+        top.sortDescending();
+
+        float[] expected = scores.clone();
+        Arrays.sort(expected);
+        assertEquals(10, top.size());
+        for (int i = 0; i < 10; i++) {
+            assertEquals(expected[expected.length - 1 - i], top.score(i));
+            assertEquals(top.score(i), scores[(int) top.ref(i)]);
+        }
+    }
+
+    @Test
+    void testTopK_FewerCandidatesThanK() {
+        TopK top = new TopK(5);
+        top.offer(0.2f, 1);
+        top.offer(0.9f, 2);
+        top.sortDescending();
+        assertEquals(2, top.size());
+        assertEquals(2, top.ref(0));
+        assertEquals(1, top.ref(1));
+    }
+
+    @Test
+    void testDotProduct_KernelsAgreeIncludingTail() {
+        int dim = 771;
+        Random random = new Random(3);
+        float[] query = new float[dim];
+        ByteBuffer vectors = ByteBuffer.allocateDirect(2 * dim * Float.BYTES).order(ByteOrder.nativeOrder());
+        double expected = 0;
+        for (int i = 0; i < dim; i++) {
+            query[i] = random.nextFloat() - 0.5f;
+            float v = random.nextFloat() - 0.5f;
+            vectors.putFloat((dim + i) * Float.BYTES, v);
+            expected += (double) v * query[i];
+        }
+        int offset = dim * Float.BYTES;
+
+        assertEquals(expected, new DotProduct.Scalar().dot(vectors, offset, query), 1e-4);
+        assertEquals(expected, DotProduct.best().dot(vectors, offset, query), 1e-4);
+    }
+
+    @Test
+    void testParseVector_PgvectorTextForm() {
+        assertArrayEquals(new float[]{0.5f, -1.25f, 3e-3f}, ExactVectorIndex.parseVector("[0.5,-1.25,0.003]"));
+        assertFalse(ExactVectorIndex.parseVector("[1,2,3]", new float[2]));
+        assertEquals(768, ExactVectorIndex.dimensionOf("embedding_768"));
+
+        float[] v = {3, 4};
+        assertTrue(ExactVectorIndex.normalize(v));
+        assertArrayEquals(new float[]{0.6f, 0.8f}, v, 1e-6f);
+        assertFalse(ExactVectorIndex.normalize(new float[3]));
+    }
+}
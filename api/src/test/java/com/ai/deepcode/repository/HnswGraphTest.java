@@ -0,0 +1,107 @@
+package com.ai.deepcode.repository;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HnswGraphTest {
+
+    private static final int DIM = 32;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void testSearch_RecallAgainstExactScan() throws Exception {
+        float[][] data = HnswRecallHarness.clustered(2000, DIM, 20, new Random(1));
+        UUID[] ids = new UUID[data.length];
+        try (HnswGraph graph = HnswGraph.open(dir, DIM, 16, 100)) {
+            for (int i = 0; i < data.length; i++) {
+                ids[i] = new UUID(0, i);
+                graph.add(ids[i], "f" + (i % 10), data[i]);
+            }
+
+            float[][] queries = HnswRecallHarness.clustered(50, DIM, 20, new Random(2));
+            double recall = 0;
+            for (float[] query : queries) {
+                Set<UUID> expected = HnswRecallHarness.exactTop(data, ids, query, 10);
+                for (VectorHit hit : graph.search(query, 10, 64, null)) {
+                    recall += expected.contains(hit.id()) ? 1 : 0;
+                }
+            }
+            recall /= queries.length * 10.0;
+            assertTrue(recall > 0.9, "recall@10 was " + recall);
+        }
+    }
+
+    @Test
+    void testFlush_ReopensWithSameResults() throws Exception {
+        float[][] data = HnswRecallHarness.clustered(500, DIM, 5, new Random(3));
+        float[] query = data[17];
+        List<VectorHit> before;
+        try (HnswGraph graph = HnswGraph.open(dir, DIM, 8, 50)) {
+            for (int i = 0; i < data.length; i++) {
+                graph.add(new UUID(0, i), "f", data[i]);
+            }
+            graph.flush();
+            before = graph.search(query, 5, 32, null);
+            // Added after the flush, so lost on reopen
+            graph.add(new UUID(1, 1), "g", data[18]);
+        }
+
+        try (HnswGraph reopened = HnswGraph.open(dir, DIM, 16, 100)) {
+            assertEquals(500, reopened.size());
+            assertFalse(reopened.contains(new UUID(1, 1)));
+            assertEquals(before, reopened.search(query, 5, 32, null));
+            assertEquals(new UUID(0, 17), before.get(0).id());
+
+            reopened.add(new UUID(1, 2), "g", data[19]);
+            assertTrue(reopened.contains(new UUID(1, 2)));
+        }
+    }
+
+    @Test
+    void testRemove_TombstonesAreNotReturned() throws Exception {
+        float[][] data = HnswRecallHarness.clustered(300, DIM, 3, new Random(4));
+        try (HnswGraph graph = HnswGraph.open(dir, DIM, 8, 50)) {
+            for (int i = 0; i < data.length; i++) {
+                graph.add(new UUID(0, i), i < 100 ? "a" : "b", data[i]);
+            }
+            graph.remove(new UUID(0, 5));
+            graph.removeFiles(List.of("b"));
+            graph.retainAll(Set.of(new UUID(0, 1), new UUID(0, 2), new UUID(0, 5), new UUID(0, 150)));
+
+            assertEquals(2, graph.liveCount());
+            assertEquals(298, graph.deletedCount());
+            Set<UUID> found = new HashSet<>();
+            for (VectorHit hit : graph.search(data[5], 10, 300, null)) {
+                found.add(hit.id());
+            }
+            assertEquals(Set.of(new UUID(0, 1), new UUID(0, 2)), found);
+        }
+    }
+
+    @Test
+    void testSearch_FileFilter() throws Exception {
+        float[][] data = HnswRecallHarness.clustered(400, DIM, 4, new Random(5));
+        try (HnswGraph graph = HnswGraph.open(dir, DIM, 8, 50)) {
+            for (int i = 0; i < data.length; i++) {
+                graph.add(new UUID(0, i), "f" + (i % 4), data[i]);
+            }
+            List<VectorHit> hits = graph.search(data[0], 10, 400, graph.allowedFiles(List.of("f1")));
+            assertEquals(10, hits.size());
+            for (VectorHit hit : hits) {
+                assertEquals(1, hit.id().getLeastSignificantBits() % 4);
+            }
+            assertTrue(graph.search(data[0], 10, 64, graph.allowedFiles(List.of("missing"))).isEmpty());
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.ai.deepcode.repository;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Recall and latency of {@link HnswGraph} against an exact scan of the same
+ * vectors, at several ef values. Vectors are drawn around random centres,
+ * which is closer to code embeddings than uniform noise.
+ *
+ * Run after test-compile, optionally with the vector count and dimensions:
+ *   java --add-modules jdk.incubator.vector \
+ *        -cp "target/test-classes:target/classes:$(mvn -q dependency:build-classpath -Dmdep.outputFile=/dev/stdout)" \
+ *        com.ai.deepcode.repository.HnswRecallHarness 50000 768
+ */
+public class HnswRecallHarness {
+
+    private static final int K = 10;
+    private static final int QUERIES = 200;
+
+    public static void main(String[] args) throws Exception {
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+        int dim = args.length > 1 ? Integer.parseInt(args[1]) : 768;
+        Random random = new Random(42);
+        float[][] data = clustered(rows, dim, Math.max(rows / 200, 1), random);
+        float[][] queries = clustered(QUERIES, dim, Math.max(rows / 200, 1), new Random(43));
+        UUID[] ids = new UUID[rows];
+
+        Path dir = Files.createTempDirectory("hnsw-harness");
+        try (HnswGraph graph = HnswGraph.open(dir, dim, 16, 100)) {
+            long started = System.nanoTime();
+            for (int i = 0; i < rows; i++) {
+                ids[i] = new UUID(0, i);
+                graph.add(ids[i], "f", data[i]);
+            }
+            graph.flush();
+            System.out.printf("built %d x %d in %d ms%n", rows, dim, (System.nanoTime() - started) / 1_000_000);
+
+            List<Set<UUID>> expected = new java.util.ArrayList<>();
+            started = System.nanoTime();
+            for (float[] query : queries) {
+                expected.add(exactTop(data, ids, query, K));
+            }
+            System.out.printf("exact scan: %.3f ms/query%n", (System.nanoTime() - started) / 1e6 / QUERIES);
+
+            for (int ef : new int[]{16, 32, 64, 128, 256}) {
+                // Warm up, then measure
+                for (float[] query : queries) {
+                    graph.search(query, K, ef, null);
+                }
+                int found = 0;
+                started = System.nanoTime();
+                for (int q = 0; q < QUERIES; q++) {
+                    for (VectorHit hit : graph.search(queries[q], K, ef, null)) {
+                        found += expected.get(q).contains(hit.id()) ? 1 : 0;
+                    }
+                }
+                double ms = (System.nanoTime() - started) / 1e6 / QUERIES;
+                System.out.printf("ef=%-4d recall@%d=%.3f  %.3f ms/query%n", ef, K, found / (double) (QUERIES * K), ms);
+            }
+        } finally {
+            HnswGraph.delete(dir);
+        }
+    }
+
+    /** Unit vectors scattered around {@code centres} random unit centres. */
+    static float[][] clustered(int rows, int dim, int centres, Random random) {
+        Random centreRandom = new Random(centres * 31L + dim);
+        float[][] centre = new float[centres][dim];
+        for (float[] c : centre) {
+            for (int i = 0; i < dim; i++) {
+                c[i] = (float) centreRandom.nextGaussian();
+            }
+            ExactVectorIndex.normalize(c);
+        }
+        float[][] data = new float[rows][dim];
+        for (int r = 0; r < rows; r++) {
+            float[] c = centre[random.nextInt(centres)];
+            for (int i = 0; i < dim; i++) {
+                data[r][i] = c[i] + (float) (random.nextGaussian() * 0.6 / Math.sqrt(dim) * 4);
+            }
+            ExactVectorIndex.normalize(data[r]);
+        }
+        return data;
+    }
+
+    static Set<UUID> exactTop(float[][] data, UUID[] ids, float[] query, int k) {
+        TopK top = new TopK(k);
+        for (int i = 0; i < data.length; i++) {
+            float s = 0;
+            for (int d = 0; d < query.length; d++) {
+                s += data[i][d] * query[d];
+            }
+            top.offer(s, i);
+        }
+        Set<UUID> result = new HashSet<>();
+        for (int i = 0; i < top.size(); i++) {
+            result.add(ids[(int) top.ref(i)]);
+        }
+        return result;
+    }
+}
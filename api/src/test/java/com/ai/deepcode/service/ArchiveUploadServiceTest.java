@@ -0,0 +1,223 @@
+package com.ai.deepcode.service;
+
+import com.ai.deepcode.dto.ArchiveUploadResult;
+import com.ai.deepcode.dto.ManifestWriteResult;
+import com.ai.deepcode.dto.RagFileRef;
+import com.ai.deepcode.entity.IndexStatus;
+import com.ai.deepcode.entity.Project;
+import com.ai.deepcode.repository.ProjectFileRepository;
+import com.ai.deepcode.repository.ProjectRepository;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+public class ArchiveUploadServiceTest {
+
+    private final WorkspaceService workspaceService = mock(WorkspaceService.class);
+    private final FileContentService fileContentService = mock(FileContentService.class);
+    private final IndexingService indexingService = mock(IndexingService.class);
+    private final ProjectRepository projectRepository = mock(ProjectRepository.class);
+    private final ProjectFileRepository projectFileRepository = mock(ProjectFileRepository.class);
+    private final Map<String, String> workspace = new ConcurrentHashMap<>();
+    private final UUID projectId = UUID.randomUUID();
+    private final IndexStatus status = new IndexStatus();
+    private final ArchiveUploadService service = new ArchiveUploadService(workspaceService,
+            new DeviceUploadService(workspaceService, 1 << 20, 64 * 1024, 4 << 20), fileContentService,
+            indexingService, projectRepository, projectFileRepository, 1 << 20, 1);
+
+    @AfterEach
+    void shutdown() {
+        service.shutdown();
+    }
+
+    @Test
+    void testEntryPath_StripsComponentsAndRejectsTraversal() {
+        assertEquals("src/Main.java", ArchiveUploadService.entryPath("repo-main/src/Main.java", 1));
+        assertEquals("src/Main.java", ArchiveUploadService.entryPath("./src//Main.java", 0));
+        assertNull(ArchiveUploadService.entryPath("repo-main/../../etc/passwd", 1));
+        assertNull(ArchiveUploadService.entryPath("repo-main/", 1));
+    }
+
+    @Test
+    void testDetectFormat_SniffsMagicAndLeavesStreamUnread() throws Exception {
+        ByteArrayOutputStream zip = new ByteArrayOutputStream();
+        try (ZipOutputStream out = new ZipOutputStream(zip)) {
+            out.putNextEntry(new ZipEntry("a.txt"));
+            out.write("hello".getBytes());
+        }
+        BufferedInputStream in = new BufferedInputStream(new ByteArrayInputStream(zip.toByteArray()));
+
+        assertEquals("zip", ArchiveUploadService.detectFormat(in));
+        assertEquals(zip.size(), in.readAllBytes().length);
+    }
+
+    @Test
+    void testIsComplete_RequiresTheEndRecord() throws Exception {
+        byte[] zip = zip("a.java", "class A {}", "b.java", "class B {}");
+        int centralDirectory = indexOf(zip, new byte[] { 'P', 'K', 1, 2 });
+        assertTrue(ArchiveUploadService.isComplete("zip", zip));
+        // Cut between the last entry and the central directory
+        assertFalse(ArchiveUploadService.isComplete("zip", Arrays.copyOf(zip, centralDirectory)));
+
+        ByteArrayOutputStream tar = new ByteArrayOutputStream();
+        try (TarArchiveOutputStream out = new TarArchiveOutputStream(tar)) {
+            byte[] content = "class A {}".getBytes(StandardCharsets.UTF_8);
+            TarArchiveEntry entry = new TarArchiveEntry("a.java");
+            entry.setSize(content.length);
+            out.putArchiveEntry(entry);
+            out.write(content);
+            out.closeArchiveEntry();
+        }
+        assertTrue(ArchiveUploadService.isComplete("tar", tar.toByteArray()));
+        // Header and data block, but no end-of-archive blocks
+        assertFalse(ArchiveUploadService.isComplete("tar", Arrays.copyOf(tar.toByteArray(), 1024)));
+    }
+
+    @Test
+    void testUpload_StoresIndexesAndRecordsEveryEntry() throws Exception {
+        mockDependencies();
+        byte[] archive = zip(
+                "repo-main/src/Main.java", "class Main {}",
+                "repo-main/logo.png", "not text",
+                "repo-main/build/Gen.java", "class Gen {}",
+                "repo-main/.gitignore", "build/\n");
+
+        ArchiveUploadResult result = service.upload(projectId, new ByteArrayInputStream(archive), archive.length,
+                1, null, null, null);
+
+        Set<String> stored = Set.of("src/Main.java", "build/Gen.java", ".gitignore");
+        assertEquals("zip", result.format());
+        assertEquals(3, result.stored());
+        assertEquals(1, result.skipped());
+        assertEquals("class Main {}", workspace.get("src/Main.java"));
+        verify(projectFileRepository).upsertFiles(eq(projectId),
+                argThat(refs -> refs.stream().map(RagFileRef::path).toList()
+                        .equals(List.of("src/Main.java", "build/Gen.java", ".gitignore"))),
+                any());
+        verify(projectFileRepository).deleteFilesNotSeenSince(eq(projectId), any());
+        verify(workspaceService).retainOnly(projectId, stored);
+
+        verify(indexingService, timeout(2_000)).completeStreamingIndex(eq(status), anyInt(), eq(stored),
+                argThat(ignore -> ignore.isIgnored("build/Gen.java") && !ignore.isIgnored("src/Main.java")));
+        verify(indexingService).indexStreamedFile(eq(status), eq("src/Main.java"), eq("class Main {}"), anyInt(),
+                any());
+        // Arrived before the .gitignore that covers it; completion drops it
+        verify(indexingService).indexStreamedFile(eq(status), eq("build/Gen.java"), anyString(), anyInt(), any());
+        verify(indexingService, never()).indexStreamedFile(any(), eq(".gitignore"), anyString(), anyInt(), any());
+    }
+
+    @Test
+    void testUpload_AppliesIgnoreRulesToLaterEntries() throws Exception {
+        mockDependencies();
+        byte[] archive = zip(
+                ".ragignore", "*.generated.java\n",
+                "src/Api.generated.java", "class Api {}",
+                "src/Main.java", "class Main {}");
+
+        service.upload(projectId, new ByteArrayInputStream(archive), archive.length, 0, null, null, null);
+
+        verify(indexingService, timeout(2_000)).completeStreamingIndex(any(), anyInt(), anySet(), any());
+        verify(indexingService).indexStreamedFile(eq(status), eq("src/Api.generated.java"), anyString(), anyInt(),
+                argThat(ignore -> ignore.isIgnored("src/Api.generated.java")));
+    }
+
+    @Test
+    void testUpload_TruncatedArchiveKeepsThePreviousProject() throws Exception {
+        mockDependencies();
+        byte[] archive = zip("a.java", "class A {}", "b.java", "class B {}");
+        byte[] truncated = Arrays.copyOf(archive, archive.length / 2 + 20);
+
+        ResponseStatusException e = assertThrows(ResponseStatusException.class, () -> service.upload(projectId,
+                new ByteArrayInputStream(truncated), truncated.length, 0, null, null, null));
+
+        assertEquals(HttpStatus.BAD_REQUEST, e.getStatusCode());
+        verify(indexingService, timeout(2_000)).updateStatusToError(eq(projectId), anyString());
+        verify(indexingService, never()).completeStreamingIndex(any(), anyInt(), anySet(), any());
+        verify(projectFileRepository, never()).deleteFilesNotSeenSince(any(), any());
+        verify(workspaceService, never()).retainOnly(any(), anySet());
+    }
+
+    @Test
+    void testUpload_DataAccessFailureIsNotReportedAsBadArchive() throws Exception {
+        mockDependencies();
+        when(workspaceService.storeFile(eq(projectId), anyString(), any(InputStream.class), anyLong()))
+                .thenThrow(new DataAccessResourceFailureException("connection refused"));
+        byte[] archive = zip("a.java", "class A {}");
+
+        assertThrows(DataAccessResourceFailureException.class, () -> service.upload(projectId,
+                new ByteArrayInputStream(archive), archive.length, 0, null, null, null));
+        verify(indexingService, timeout(2_000)).updateStatusToError(eq(projectId), anyString());
+    }
+
+    private void mockDependencies() throws Exception {
+        Project project = new Project();
+        project.setId(projectId);
+        status.setProject(project);
+        status.setIndexedFiles(0);
+        status.setFailedFiles(0);
+        when(projectRepository.findById(projectId)).thenReturn(Optional.of(project));
+        when(indexingService.beginStreamingIndex(eq(projectId), anyString(), anyInt(), anyInt())).thenReturn(status);
+        when(fileContentService.isTextEligible(anyString())).thenAnswer(invocation -> {
+            String path = invocation.getArgument(0);
+            return path.endsWith(".java");
+        });
+        when(workspaceService.storeFile(eq(projectId), anyString(), any(InputStream.class), anyLong()))
+                .thenAnswer(invocation -> {
+                    byte[] content = invocation.<InputStream>getArgument(2).readAllBytes();
+                    workspace.put(invocation.getArgument(1), new String(content, StandardCharsets.UTF_8));
+                    return (long) content.length;
+                });
+        when(workspaceService.getFileAsString(eq(projectId), anyString()))
+                .thenAnswer(invocation -> workspace.get(invocation.<String>getArgument(1)));
+        when(projectFileRepository.upsertFiles(eq(projectId), anyList(), any()))
+                .thenAnswer(invocation -> new ManifestWriteResult(invocation.<List<?>>getArgument(1).size(), 0, 0));
+    }
+
+    private static int indexOf(byte[] bytes, byte[] needle) {
+        outer:
+        for (int i = 0; i + needle.length <= bytes.length; i++) {
+            for (int j = 0; j < needle.length; j++) {
+                if (bytes[i + j] != needle[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    /** Zip of alternating entry names and contents. */
+    private static byte[] zip(String... entries) throws Exception {
+        ByteArrayOutputStream zip = new ByteArrayOutputStream();
+        try (ZipOutputStream out = new ZipOutputStream(zip)) {
+            for (int i = 0; i < entries.length; i += 2) {
+                out.putNextEntry(new ZipEntry(entries[i]));
+                out.write(entries[i + 1].getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        return zip.toByteArray();
+    }
+}
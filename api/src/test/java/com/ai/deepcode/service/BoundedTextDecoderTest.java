@@ -0,0 +1,59 @@
+package com.ai.deepcode.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BoundedTextDecoderTest {
+
+    @Test
+    void testDecode_Utf8AcrossReadBoundaries() throws IOException {
+        // Multi-byte characters straddle the 8 KiB read buffer
+        String text = "é€😀".repeat(5000);
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+
+        BoundedTextDecoder.Result result = BoundedTextDecoder.decode(
+                new ByteArrayInputStream(bytes), -1, bytes.length);
+
+        assertTrue(result.isText());
+        assertEquals(text, result.text());
+        assertEquals(bytes.length, result.bytes());
+    }
+
+    @Test
+    void testDecode_RejectsDeclaredLengthBeforeReading() throws IOException {
+        ByteArrayInputStream in = new ByteArrayInputStream(new byte[100]);
+
+        BoundedTextDecoder.Result result = BoundedTextDecoder.decode(in, 100, 10);
+
+        assertEquals(BoundedTextDecoder.Status.TOO_LARGE, result.status());
+        assertEquals(100, in.available(), "Nothing should be read when the declared length is over the limit");
+    }
+
+    @Test
+    void testDecode_RejectsUndeclaredOversizeStream() throws IOException {
+        byte[] bytes = "a".repeat(50_000).getBytes(StandardCharsets.UTF_8);
+
+        BoundedTextDecoder.Result result = BoundedTextDecoder.decode(
+                new ByteArrayInputStream(bytes), -1, 20_000);
+
+        assertEquals(BoundedTextDecoder.Status.TOO_LARGE, result.status());
+    }
+
+    @Test
+    void testDecode_DetectsBinaryEarly() throws IOException {
+        byte[] bytes = new byte[1_000_000];
+        bytes[0] = (byte) 0x89;
+        bytes[1] = 'P';
+
+        BoundedTextDecoder.Result result = BoundedTextDecoder.decode(
+                new ByteArrayInputStream(bytes), bytes.length, 2_000_000);
+
+        assertEquals(BoundedTextDecoder.Status.BINARY, result.status());
+        assertTrue(result.bytes() <= 8192, "Binary detection should stop after the first block");
+    }
+}
@@ -0,0 +1,57 @@
+package com.ai.deepcode.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ChunkingServiceTest {
+
+    private final ChunkingService chunkingService =
+            new ChunkingService(List.of(new CodeChunker(), new CharacterChunker()), new TokenCounter("", true, 512), "syntax");
+
+    @Test
+    void testChunkFileContent_OffsetsAndLinesPointIntoSource() {
+        String source = "package x;\n\nclass A {\n    int a() { return 1; }\n}\n\nclass B {\n    int b() { return 2; }\n}\n";
+
+        List<ChunkingService.ChunkResult> chunks = chunkingService.chunkFileContent("X.java", source, 70, 0);
+
+        assertEquals(2, chunks.size());
+        ChunkingService.ChunkResult first = chunks.get(0);
+        assertEquals("File: X.java\n---\npackage x;\n\nclass A {\n    int a() { return 1; }\n}", first.content());
+        assertEquals(1, first.startLine());
+        assertEquals(5, first.endLine());
+
+        ChunkingService.ChunkResult second = chunks.get(1);
+        assertSame(source, second.source());
+        assertEquals("class B {\n    int b() { return 2; }\n}", second.content());
+        assertEquals(7, second.startLine());
+        assertEquals(9, second.endLine());
+    }
+
+    @Test
+    void testPackSmallFiles_PacksSiblingsAndKeepsPerFileSpans() {
+        Map<String, String> files = new LinkedHashMap<>();
+        files.put("dto/A.java", "record A(int x) {}\n");
+        files.put("dto/B.java", "record B(String y) {}\n");
+        files.put("other/C.java", "record C() {}\n");
+        files.put("dto/Big.java", "class Big {}\n".repeat(200));
+
+        Map<String, String> unpacked = new HashMap<>();
+        List<ChunkingService.FilePack> packs = chunkingService.packSmallFiles(files, 64, unpacked);
+
+        assertEquals(1, packs.size());
+        ChunkingService.FilePack pack = packs.get(0);
+        assertEquals(List.of("dto/A.java", "dto/B.java"),
+                pack.files().stream().map(ChunkingService.PackedFile::filePath).toList());
+        ChunkingService.PackedFile b = pack.files().get(1);
+        assertEquals("File: dto/B.java\n---\nrecord B(String y) {}", pack.text().substring(b.start(), b.end()));
+        assertEquals(1, b.lineCount());
+        assertEquals(Map.of("other/C.java", files.get("other/C.java"), "dto/Big.java", files.get("dto/Big.java")),
+                unpacked);
+    }
+}
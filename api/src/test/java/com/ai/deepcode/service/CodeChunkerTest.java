@@ -0,0 +1,74 @@
+package com.ai.deepcode.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CodeChunkerTest {
+
+    private final CodeChunker chunker = new CodeChunker();
+
+    private static List<String> texts(String content, List<Chunker.Span> spans) {
+        return spans.stream().map(s -> content.substring(s.start(), s.end())).toList();
+    }
+
+    @Test
+    void testSplit_JavaMembersStayWholeAndCommentsStickToNextMember() {
+        String method = """
+                    /** Adds. */
+                    int add(int a, int b) {
+                        String s = "}{ not a brace";
+                        return a + b; // }
+                    }
+                """;
+        String source = "package x;\n\npublic class Calc {\n" + method.repeat(6) + "}\n";
+
+        List<String> chunks = texts(source, chunker.split("Calc.java", source, 250, 50));
+
+        assertTrue(chunks.size() > 1);
+        for (String chunk : chunks) {
+            assertTrue(chunk.length() <= 250, chunk);
+            assertEquals(chunk.chars().filter(c -> c == '/').count() % 2, 0, chunk); // no half javadoc
+        }
+        assertTrue(chunks.get(0).startsWith("package x;"));
+        assertTrue(chunks.get(1).startsWith("/** Adds. */"));
+        assertTrue(chunks.get(chunks.size() - 1).endsWith("}\n}") || chunks.get(chunks.size() - 1).endsWith("}"));
+    }
+
+    @Test
+    void testSplit_PythonUsesIndentationAndPacksSmallFunctions() {
+        String source = """
+                import os
+
+                def a():
+                    return 1
+
+                def b():
+                    s = \"\"\"
+                def not_a_function():
+                \"\"\"
+                    return s
+
+                @decorated
+                def c():
+                    return 3
+                """;
+
+        List<String> whole = texts(source, chunker.split("m.py", source, 1000, 0));
+        assertEquals(1, whole.size());
+
+        List<String> chunks = texts(source, chunker.split("m.py", source, 70, 0));
+        assertTrue(chunks.stream().anyMatch(c -> c.startsWith("def b():") && c.contains("return s")));
+        assertTrue(chunks.stream().anyMatch(c -> c.startsWith("@decorated\ndef c():")));
+    }
+
+    @Test
+    void testSupports_KnownLanguagesOnly() {
+        assertTrue(chunker.supports("src/app/app.component.ts"));
+        assertTrue(chunker.supports("main.go"));
+        assertFalse(chunker.supports("README.md"));
+        assertFalse(chunker.supports("dir.java/Makefile"));
+    }
+}
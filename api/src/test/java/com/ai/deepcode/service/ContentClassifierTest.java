@@ -0,0 +1,116 @@
+package com.ai.deepcode.service;
+
+import com.ai.deepcode.service.ContentClassifier.SkipReason;
+import org.junit.jupiter.api.Test;
+
+import java.util.Base64;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ContentClassifierTest {
+
+    private final ContentClassifier classifier = new ContentClassifier(true, 1_048_576, 262_144, 1000, 5.8);
+
+    private SkipReason classify(String path, String content) {
+        return classifier.classify(path, content, IgnoreMatcher.NONE);
+    }
+
+    private static String source() {
+        StringBuilder sb = new StringBuilder("package demo;\n\npublic class Demo {\n");
+        for (int i = 0; i < 40; i++) {
+            sb.append("    public int method").append(i).append("(int value) {\n")
+                    .append("        return value * ").append(i).append(" + helper(\"name").append(i).append("\");\n")
+                    .append("    }\n\n");
+        }
+        return sb.append("}\n").toString();
+    }
+
+    @Test
+    void testClassify_OrdinarySourceIsEmbedded() {
+        assertNull(classify("src/Demo.java", source()));
+    }
+
+    @Test
+    void testClassify_Lockfile() {
+        assertEquals(SkipReason.LOCKFILE, classify("ui/package-lock.json", "{\"lockfileVersion\": 3}"));
+        assertEquals(SkipReason.LOCKFILE, classify("go.sum", "golang.org/x/text v0.3.0 h1:abc=\n"));
+    }
+
+    @Test
+    void testClassify_MinifiedByLineShape() {
+        String bundle = "var a=1;function b(c){return c+a}".repeat(200);
+        assertEquals(SkipReason.MINIFIED, classify("dist/app.js", bundle));
+        assertEquals(SkipReason.MINIFIED, classify("vendor/lib.min.js", "var a=1;"));
+    }
+
+    @Test
+    void testClassify_GeneratedHeader() {
+        String generated = "// Code generated by protoc-gen-go. DO NOT EDIT.\n" + source();
+        assertEquals(SkipReason.GENERATED, classify("api/demo.pb.go", generated));
+    }
+
+    @Test
+    void testClassify_BinaryAndHighEntropy() {
+        assertEquals(SkipReason.BINARY, classify("data.txt", "PK\u0003\u0004\u0000\u0000" + source()));
+
+        byte[] bytes = new byte[8192];
+        new Random(1).nextBytes(bytes);
+        String blob = Base64.getMimeEncoder().encodeToString(bytes);
+        assertEquals(SkipReason.HIGH_ENTROPY, classify("fixtures/key.txt", blob));
+    }
+
+    @Test
+    void testClassify_DataFilesHaveLowerSizeLimit() {
+        String big = "{\"k\": \"value\"},\n".repeat(20_000);
+        assertEquals(SkipReason.TOO_LARGE, classify("fixtures/dump.json", big));
+        assertNull(classify("notes/dump.md", big));
+    }
+
+    @Test
+    void testClassify_DisabledEmbedsEverything() {
+        ContentClassifier disabled = new ContentClassifier(false, 1_048_576, 262_144, 1000, 5.8);
+        assertNull(disabled.classify("yarn.lock", "# yarn lockfile v1\n", IgnoreMatcher.NONE));
+    }
+
+    @Test
+    void testIgnoreMatcher_GitignoreRules() {
+        IgnoreMatcher ignore = IgnoreMatcher.fromFiles(Map.of(
+                ".gitignore", "# build output\nnode_modules/\n/build\n*.log\n!keep.log\ndocs/**/*.tmp\n",
+                "sub/.ragignore", "fixtures/\n",
+                "src/App.java", "class App {}"));
+
+        assertTrue(ignore.isIgnored("node_modules/react/index.js"));
+        assertTrue(ignore.isIgnored("ui/node_modules/react/index.js"));
+        assertTrue(ignore.isIgnored("build/classes/App.class"));
+        assertFalse(ignore.isIgnored("src/build/Builder.java"));
+        assertTrue(ignore.isIgnored("logs/server.log"));
+        assertFalse(ignore.isIgnored("logs/keep.log"));
+        assertTrue(ignore.isIgnored("docs/a/b/draft.tmp"));
+        assertTrue(ignore.isIgnored("sub/fixtures/data.json"));
+        assertFalse(ignore.isIgnored("fixtures/data.json"));
+        assertFalse(ignore.isIgnored("src/App.java"));
+    }
+
+    @Test
+    void testIgnoreMatcher_LastRuleWinsAcrossNameExtensionAndPatternRules() {
+        IgnoreMatcher ignore = IgnoreMatcher.fromFiles(Map.of(
+                ".gitignore", "*.log\n!keep.log\nk?ep.log\n!tmp\ntmp/\n*.txt\n!notes/*.txt\n"));
+
+        assertTrue(ignore.isIgnored("keep.log"));
+        assertTrue(ignore.isIgnored("cache/tmp/a.java"));
+        assertTrue(ignore.isIgnored("todo.txt"));
+        assertFalse(ignore.isIgnored("notes/todo.txt"));
+        assertFalse(ignore.isIgnored("tmp"));
+        assertFalse(ignore.isIgnored("src/Keep.java"));
+    }
+
+    @Test
+    void testClassify_IgnoredPathAndIgnoreFileItself() {
+        IgnoreMatcher ignore = IgnoreMatcher.fromFiles(Map.of(".ragignore", "generated/\n"));
+        assertEquals(SkipReason.IGNORED, classifier.classify("generated/Api.java", source(), ignore));
+        assertEquals(SkipReason.IGNORED, classifier.classify(".ragignore", "generated/\n", ignore));
+        assertNull(classifier.classify("src/Demo.java", source(), ignore));
+    }
+}
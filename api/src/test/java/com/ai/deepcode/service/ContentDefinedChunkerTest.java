@@ -0,0 +1,56 @@
+package com.ai.deepcode.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ContentDefinedChunkerTest {
+
+    private final ContentDefinedChunker chunker = new ContentDefinedChunker();
+
+    private List<String> chunks(String content) {
+        return chunker.split("Big.java", content, 800, 0).stream()
+                .map(s -> content.substring(s.start(), s.end()))
+                .toList();
+    }
+
+    private static String source() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 400; i++) {
+            sb.append("    int field").append(i).append(" = compute(").append(i * 31 % 97).append(", \"v")
+                    .append(i).append("\");\n");
+        }
+        return sb.toString();
+    }
+
+    @Test
+    void testSplit_EditNearTopLeavesLaterChunksUnchanged() {
+        String original = source();
+        String edited = original.replace("int field3 = ", "long field3 = (long) ");
+
+        List<String> before = chunks(original);
+        List<String> after = chunks(edited);
+
+        Set<String> unchanged = new HashSet<>(before);
+        unchanged.retainAll(new HashSet<>(after));
+        assertTrue(before.size() > 10);
+        assertTrue(unchanged.size() >= before.size() - 2,
+                unchanged.size() + " of " + before.size() + " chunks survived the edit");
+    }
+
+    @Test
+    void testSplit_ChunksAreLineAlignedWithinBudgetAndCoverTheText() {
+        String content = source();
+        List<String> chunks = chunks(content);
+
+        for (String chunk : chunks) {
+            assertTrue(chunk.length() <= 800);
+            assertTrue(chunk.endsWith(";"), chunk);
+        }
+        assertEquals(content.replaceAll("\\s", ""), String.join("", chunks).replaceAll("\\s", ""));
+    }
+}
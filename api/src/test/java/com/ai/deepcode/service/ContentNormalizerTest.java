@@ -0,0 +1,101 @@
+package com.ai.deepcode.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ContentNormalizerTest {
+
+    private final ContentNormalizer normalizer = new ContentNormalizer();
+
+    @Test
+    void testNormalize_JavaDropsLicenseAndPackageAndCollapsesImports() {
+        String source = """
+                /*
+                 * Copyright 2024 Example Corp.
+                 * Licensed under the Apache License, Version 2.0.
+                 */
+                package com.example.service;
+
+                import java.util.List;
+                import java.util.Map;
+
+                import static org.junit.jupiter.api.Assertions.*;
+                import org.springframework.stereotype.Service;
+
+                @Service
+                public class Demo {
+                    List<String> names;
+                }
+                """;
+
+        String normalized = normalizer.normalize("src/Demo.java", source, true);
+
+        assertEquals("""
+                imports: List, Map, org.junit.jupiter.api.Assertions.*, Service
+                @Service
+                public class Demo {
+                    List<String> names;
+                }""", normalized);
+    }
+
+    @Test
+    void testNormalize_LeadingCommentWithoutLicenseIsKept() {
+        String source = "/** Entry point of the demo. */\npackage demo;\n\nclass Main {}\n";
+        assertEquals("/** Entry point of the demo. */\n\nclass Main {}", normalizer.normalize("Main.java", source, true));
+    }
+
+    @Test
+    void testNormalize_LicenseOnlyStrippedAtFileStart() {
+        String source = "// Copyright 2024 Example\nfunc main() {}\n";
+        assertEquals(source.strip(), normalizer.normalize("main.go", source, false));
+        assertEquals("func main() {}", normalizer.normalize("main.go", source, true));
+    }
+
+    @Test
+    void testNormalize_TypeScriptAndPythonImports() {
+        String ts = """
+                import { Component, OnInit } from '@angular/core';
+                import {
+                  HttpClient,
+                  type HttpParams,
+                } from '@angular/common/http';
+                import './polyfills';
+                import * as rx from 'rxjs';
+
+                export class AppComponent {}
+                """;
+        assertEquals("imports: Component, OnInit, HttpClient, HttpParams, rx\nexport class AppComponent {}",
+                normalizer.normalize("src/app/app.component.ts", ts, true));
+
+        String py = """
+                #!/usr/bin/env python3
+                # SPDX-License-Identifier: MIT
+                import os, sys
+                from typing import (
+                    List,
+                    Optional as Opt,
+                )
+
+                def main():
+                    pass
+                """;
+        assertEquals("#!/usr/bin/env python3\nimports: os, sys, List, Optional\ndef main():\n    pass",
+                normalizer.normalize("tool.py", py, true));
+    }
+
+    @Test
+    void testNormalize_GoImportBlockAndCIncludes() {
+        String go = "package main\n\nimport (\n\t\"fmt\"\n\tlog \"github.com/sirupsen/logrus\"\n)\n\nfunc main() {}\n";
+        assertEquals("imports: fmt, logrus\nfunc main() {}", normalizer.normalize("cmd/main.go", go, true));
+
+        String c = "#include <stdio.h>\n#include \"util/strings.h\"\n\nint main(void) { return 0; }\n";
+        assertEquals("imports: stdio.h, strings.h\nint main(void) { return 0; }", normalizer.normalize("main.c", c, true));
+    }
+
+    @Test
+    void testNormalize_NothingLeftKeepsOriginal() {
+        String source = "// Copyright 2024 Example\n";
+        assertEquals(source, normalizer.normalize("Empty.java", source, true));
+    }
+}
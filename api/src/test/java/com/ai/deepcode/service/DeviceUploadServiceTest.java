@@ -0,0 +1,177 @@
+package com.ai.deepcode.service;
+
+import com.ai.deepcode.dto.DeviceUploadResult;
+import com.ai.deepcode.repository.WorkspaceBlobRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class DeviceUploadServiceTest {
+
+    private static final String BOUNDARY = "----deepcode-test-boundary";
+
+    @TempDir
+    Path dir;
+
+    private final UUID projectId = UUID.randomUUID();
+    private WorkspaceStore store;
+    private WorkspaceService workspaceService;
+
+    @BeforeEach
+    void setUp() {
+        store = new WorkspaceStore(dir.toString(), 1 << 20, 1 << 20, "deflate", 1, 1 << 20);
+        workspaceService = new WorkspaceService(store, mock(WorkspaceBlobRepository.class), "none", 30_000);
+    }
+
+    @AfterEach
+    void tearDown() {
+        store.close();
+    }
+
+    private DeviceUploadService service(long maxRequestBytes, long maxFileBytes, long maxInFlightBytes) {
+        return new DeviceUploadService(workspaceService, maxRequestBytes, maxFileBytes, maxInFlightBytes);
+    }
+
+    @Test
+    void testUpload_StoresEachPartUnderItsPath() {
+        byte[] body = new Multipart()
+                .field("paths", "src/Main.java")
+                .file("Main.java", "class Main {}")
+                .file("README.md", "# Demo")
+                .build();
+
+        DeviceUploadResult result = service(1 << 20, 1 << 20, 1 << 20).upload(projectId, request(body));
+
+        assertEquals(2, result.uploaded());
+        assertEquals(0, result.failed());
+        assertEquals("src/Main.java", result.files().get(0).path());
+        // No queued path: the part's filename is used
+        assertEquals("README.md", result.files().get(1).path());
+        assertEquals("class Main {}", workspaceService.getFileAsString(projectId, "src/Main.java"));
+        assertEquals("# Demo", workspaceService.getFileAsString(projectId, "README.md"));
+    }
+
+    @Test
+    void testUpload_PerFileCapFailsOnlyThatPart() {
+        byte[] body = new Multipart()
+                .field("paths", "big.txt")
+                .file("big.txt", "x".repeat(500))
+                .field("paths", "small.txt")
+                .file("small.txt", "ok")
+                .build();
+
+        DeviceUploadResult result = service(1 << 20, 100, 1 << 20).upload(projectId, request(body));
+
+        assertEquals(1, result.uploaded());
+        assertEquals(1, result.failed());
+        assertTrue(result.files().get(0).error().startsWith("FILE_TOO_LARGE"), result.files().get(0).error());
+        assertFalse(workspaceService.hasFile(projectId, "big.txt"));
+        assertEquals("ok", workspaceService.getFileAsString(projectId, "small.txt"));
+    }
+
+    @Test
+    void testUpload_RequestCapAppliesWithoutContentLength() {
+        byte[] body = new Multipart()
+                .field("paths", "a.txt")
+                .file("a.txt", "a".repeat(600))
+                .field("paths", "b.txt")
+                .file("b.txt", "b".repeat(600))
+                .build();
+        // Declared too large: rejected before the body is read
+        ResponseStatusException declared = assertThrows(ResponseStatusException.class,
+                () -> service(1000, 1 << 20, 1 << 20).upload(projectId, request(body)));
+        assertEquals(HttpStatus.PAYLOAD_TOO_LARGE, declared.getStatusCode());
+        assertFalse(workspaceService.hasFile(projectId, "a.txt"));
+
+        // Chunked: the cap trips while streaming
+        MockHttpServletRequest chunked = new MockHttpServletRequest("POST", "/api/workspace/device/upload") {
+            @Override
+            public int getContentLength() {
+                return -1;
+            }
+
+            @Override
+            public long getContentLengthLong() {
+                return -1;
+            }
+        };
+        chunked.setContentType("multipart/form-data; boundary=" + BOUNDARY);
+        chunked.setContent(body);
+        ResponseStatusException streamed = assertThrows(ResponseStatusException.class,
+                () -> service(1000, 1 << 20, 1 << 20).upload(projectId, chunked));
+        assertEquals(HttpStatus.PAYLOAD_TOO_LARGE, streamed.getStatusCode());
+        assertFalse(workspaceService.hasFile(projectId, "b.txt"));
+    }
+
+    @Test
+    void testUpload_RejectedWhileTheInFlightBudgetIsSpent() {
+        DeviceUploadService service = service(1 << 20, 1 << 20, 1000);
+        byte[] body = new Multipart().field("paths", "a.txt").file("a.txt", "a".repeat(400)).build();
+
+        try (DeviceUploadService.Reservation ignored = service.reserve(800)) {
+            ResponseStatusException busy = assertThrows(ResponseStatusException.class,
+                    () -> service.upload(projectId, request(body)));
+            assertEquals(HttpStatus.SERVICE_UNAVAILABLE, busy.getStatusCode());
+            assertFalse(workspaceService.hasFile(projectId, "a.txt"));
+        }
+
+        // The budget is returned once the other upload finishes
+        assertEquals(1, service.upload(projectId, request(body)).uploaded());
+    }
+
+    @Test
+    void testUpload_RejectsNonMultipartRequests() {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/workspace/device/upload");
+        request.setContentType("application/json");
+        request.setContent("{}".getBytes(StandardCharsets.UTF_8));
+
+        ResponseStatusException e = assertThrows(ResponseStatusException.class,
+                () -> service(1 << 20, 1 << 20, 1 << 20).upload(projectId, request));
+        assertEquals(HttpStatus.BAD_REQUEST, e.getStatusCode());
+    }
+
+    private static MockHttpServletRequest request(byte[] body) {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/workspace/device/upload");
+        request.setContentType("multipart/form-data; boundary=" + BOUNDARY);
+        request.setContent(body);
+        return request;
+    }
+
+    /** Hand-built multipart/form-data body. */
+    private static final class Multipart {
+        private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        Multipart field(String name, String value) {
+            return part("Content-Disposition: form-data; name=\"" + name + "\"\r\n", value);
+        }
+
+        Multipart file(String filename, String content) {
+            return part("Content-Disposition: form-data; name=\"files\"; filename=\"" + filename + "\"\r\n"
+                    + "Content-Type: application/octet-stream\r\n", content);
+        }
+
+        private Multipart part(String headers, String content) {
+            out.writeBytes(("--" + BOUNDARY + "\r\n" + headers + "\r\n").getBytes(StandardCharsets.UTF_8));
+            out.writeBytes(content.getBytes(StandardCharsets.UTF_8));
+            out.writeBytes("\r\n".getBytes(StandardCharsets.UTF_8));
+            return this;
+        }
+
+        byte[] build() {
+            out.writeBytes(("--" + BOUNDARY + "--\r\n").getBytes(StandardCharsets.UTF_8));
+            return out.toByteArray();
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.ai.deepcode.service;
+
+import com.ai.deepcode.api.GithubApiClient;
+import com.ai.deepcode.api.GithubApiClient.TreeEntry;
+import com.ai.deepcode.api.GithubApiClient.TreeListing;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+public class GithubTreeWalkerTest {
+
+    @Test
+    void testCompareTreeOrder_MatchesGitOrdering() {
+        // Git sorts "a.txt" before the tree "a" (compared as "a/")
+        assertTrue(GithubTreeWalker.compareTreeOrder("a.txt", "a/x.java") < 0);
+        assertTrue(GithubTreeWalker.compareTreeOrder("a-b/x", "a/x") < 0);
+        assertTrue(GithubTreeWalker.compareTreeOrder("a/x", "ab") < 0);
+        assertTrue(GithubTreeWalker.compareTreeOrder("a", "a/x") < 0);
+        // Code point order, not UTF-16 order
+        assertTrue(GithubTreeWalker.compareTreeOrder("�", "😀") < 0);
+    }
+
+    @Test
+    void testWalk_TruncatedListingEmitsEveryPathOnce() {
+        GithubApiClient github = mock(GithubApiClient.class);
+        Map<String, List<TreeEntry>> recursive = Map.of(
+                "root", List.of(blob("a.txt"), tree("a", "ta"), blob("a/x.java")),
+                "ta", List.of(blob("x.java"), blob("y.java")),
+                "tb", List.of(blob("z.java")));
+        Map<String, List<TreeEntry>> level = Map.of(
+                "root", List.of(blob("a.txt"), tree("a", "ta"), tree("b", "tb"), blob("c.java")));
+        when(github.streamTree(any(), any(), any(), anyString(), anyBoolean(), any())).thenAnswer(invocation -> {
+            String sha = invocation.getArgument(3);
+            boolean isRecursive = invocation.getArgument(4);
+            Consumer<TreeEntry> sink = invocation.getArgument(5);
+            (isRecursive ? recursive : level).get(sha).forEach(sink);
+            // Only the root's recursive listing hits the limit
+            return new TreeListing(sha, isRecursive && sha.equals("root"));
+        });
+
+        List<String> emitted = new CopyOnWriteArrayList<>();
+        GithubTreeWalker.WalkResult result = new GithubTreeWalker(github, 2)
+                .walk("token", "octo", "demo", "root", emitted::add);
+
+        assertTrue(result.truncated());
+        assertEquals(5, result.files());
+        assertEquals(List.of("a.txt", "a/x.java", "a/y.java", "b/z.java", "c.java"),
+                emitted.stream().sorted().toList());
+    }
+
+    private static TreeEntry blob(String path) {
+        return new TreeEntry(path, "blob", null);
+    }
+
+    private static TreeEntry tree(String path, String sha) {
+        return new TreeEntry(path, "tree", sha);
+    }
+}
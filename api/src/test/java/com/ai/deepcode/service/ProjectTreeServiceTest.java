@@ -0,0 +1,102 @@
+package com.ai.deepcode.service;
+
+import com.ai.deepcode.dto.FileNode;
+import com.ai.deepcode.dto.FileTreePage;
+import com.ai.deepcode.entity.Project;
+import com.ai.deepcode.repository.ProjectRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import java.sql.ResultSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+public class ProjectTreeServiceTest {
+
+    private final UUID projectId = UUID.randomUUID();
+    private ProjectRepository projectRepository;
+    private JdbcTemplate jdbcTemplate;
+    private ProjectTreeService service;
+
+    @BeforeEach
+    void setUp() {
+        projectRepository = mock(ProjectRepository.class);
+        jdbcTemplate = mock(JdbcTemplate.class);
+        manifest("src/main/App.java", "src/main/util/Strings.java", "src/test/AppTest.java", "README.md", "pom.xml");
+        service = new ProjectTreeService(projectRepository, jdbcTemplate, 4);
+    }
+
+    private void manifest(String... paths) {
+        doAnswer(invocation -> {
+            RowCallbackHandler handler = invocation.getArgument(1);
+            for (String path : paths) {
+                ResultSet rs = mock(ResultSet.class);
+                when(rs.getString(1)).thenReturn(path);
+                handler.processRow(rs);
+            }
+            return null;
+        }).when(jdbcTemplate).query(anyString(), any(RowCallbackHandler.class), eq(projectId));
+    }
+
+    @Test
+    void testListDirectory_ListsOneLevelFoldersAndFilesByName() {
+        FileTreePage root = service.listDirectory(projectId, "r1", "", 0, 100);
+        assertEquals(List.of("README.md", "pom.xml", "src"), root.nodes().stream().map(FileNode::name).toList());
+        assertEquals("folder", root.nodes().get(2).type());
+        assertNull(root.nodes().get(2).children());
+
+        FileTreePage main = service.listDirectory(projectId, "r1", "/src/main/", 0, 100);
+        assertEquals("src/main", main.path());
+        assertEquals(List.of("src/main/App.java", "src/main/util"),
+                main.nodes().stream().map(FileNode::path).toList());
+    }
+
+    @Test
+    void testListDirectory_PagesWithOffsetAndTotal() {
+        FileTreePage page = service.listDirectory(projectId, "r1", "", 1, 1);
+        assertEquals(1, page.offset());
+        assertEquals(3, page.total());
+        assertEquals(List.of("pom.xml"), page.nodes().stream().map(FileNode::name).toList());
+
+        FileTreePage past = service.listDirectory(projectId, "r1", "", 10, 5);
+        assertEquals(3, past.offset());
+        assertTrue(past.nodes().isEmpty());
+    }
+
+    @Test
+    void testListDirectory_BuildsTheIndexOncePerRevision() {
+        service.listDirectory(projectId, "r1", "", 0, 10);
+        service.listDirectory(projectId, "r1", "src", 0, 10);
+        verify(jdbcTemplate, times(1)).query(anyString(), any(RowCallbackHandler.class), eq(projectId));
+
+        service.listDirectory(projectId, "r2", "", 0, 10);
+        verify(jdbcTemplate, times(2)).query(anyString(), any(RowCallbackHandler.class), eq(projectId));
+    }
+
+    @Test
+    void testNodeId_IsStablePerProjectAndPath() {
+        assertEquals(ProjectTreeService.nodeId(projectId, "src/main"), ProjectTreeService.nodeId(projectId, "src/main"));
+        assertNotEquals(ProjectTreeService.nodeId(projectId, "src/main"), ProjectTreeService.nodeId(projectId, "src"));
+        assertNotEquals(ProjectTreeService.nodeId(projectId, "src"), ProjectTreeService.nodeId(UUID.randomUUID(), "src"));
+        assertEquals(ProjectTreeService.nodeId(projectId, "src"),
+                service.listDirectory(projectId, "r1", "", 0, 10).nodes().get(2).id());
+    }
+
+    @Test
+    void testCurrentRevision_FallsBackToUpdateTime() {
+        Project project = new Project();
+        project.setRevision("abc123");
+        when(projectRepository.findById(projectId)).thenReturn(Optional.of(project));
+        assertEquals("abc123", service.currentRevision(projectId));
+
+        when(projectRepository.findById(projectId)).thenReturn(Optional.empty());
+        assertNull(service.currentRevision(projectId));
+    }
+}
@@ -0,0 +1,96 @@
+package com.ai.deepcode.service;
+
+import com.ai.deepcode.dto.GithubPushEvent;
+import com.ai.deepcode.entity.Project;
+import com.ai.deepcode.repository.ProjectFileRepository;
+import com.ai.deepcode.repository.ProjectRepository;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+public class PushReindexServiceTest {
+
+    private final ProjectRepository projectRepository = mock(ProjectRepository.class);
+    private final ProjectFileRepository projectFileRepository = mock(ProjectFileRepository.class);
+    private final IndexingService indexingService = mock(IndexingService.class);
+    private final GithubFileService githubFileService = mock(GithubFileService.class);
+    private final FileContentService fileContentService = mock(FileContentService.class);
+
+    @Test
+    void testPendingPush_LaterPushesWin() {
+        PushReindexService.PendingPush batch = new PushReindexService.PendingPush(0);
+        batch.markChanged(List.of("a.java", "b.java"));
+        batch.markRemoved(List.of("b.java", "c.java"));
+        batch.markChanged(List.of("c.java"));
+        batch.markChanged(null);
+
+        assertEquals(Set.of("a.java", "c.java"), batch.changed);
+        assertEquals(Set.of("b.java"), batch.removed);
+    }
+
+    @Test
+    void testSubmit_CoalescesABurstIntoOneRun() throws Exception {
+        Project project = project();
+        PushReindexService service = service(200, 60_000);
+        try {
+            service.submit(project, push(List.of("a.java"), List.of(), List.of()));
+            service.submit(project, push(List.of(), List.of("b.java"), List.of()));
+            service.submit(project, push(List.of(), List.of(), List.of("a.java")));
+
+            verify(indexingService, timeout(2_000)).reindexFiles(eq(project.getId()),
+                    eq(Map.of("b.java", "content of b.java")), eq(List.of("a.java")), anyMap());
+            Thread.sleep(400);
+            verify(indexingService, times(1)).reindexFiles(any(), anyMap(), anyCollection(), anyMap());
+        } finally {
+            service.shutdown();
+        }
+    }
+
+    @Test
+    void testSubmit_RunsOnceMaxDelayPassesWhilePushesKeepArriving() throws Exception {
+        Project project = project();
+        PushReindexService service = service(300, 400);
+        try {
+            // Pushes every 100 ms never leave a 300 ms quiet window
+            for (int i = 0; i < 15; i++) {
+                service.submit(project, push(List.of("f" + i + ".java"), List.of(), List.of()));
+                Thread.sleep(100);
+            }
+            verify(indexingService, atLeastOnce()).reindexFiles(eq(project.getId()), anyMap(), anyCollection(),
+                    anyMap());
+        } finally {
+            service.shutdown();
+        }
+    }
+
+    private PushReindexService service(long debounceMs, long maxDelayMs) {
+        when(fileContentService.isTextEligible(anyString())).thenReturn(true);
+        when(githubFileService.getFileContentWithToken(any(), any(), anyString(), any(), any(), any()))
+                .thenAnswer(invocation -> "content of " + invocation.getArgument(2));
+        return new PushReindexService(projectRepository, projectFileRepository, indexingService, githubFileService,
+                fileContentService, "token", debounceMs, maxDelayMs);
+    }
+
+    private Project project() {
+        Project project = new Project();
+        project.setId(UUID.randomUUID());
+        project.setGithubOwner("octo");
+        project.setGithubRepo("demo");
+        project.setGithubBranch("main");
+        when(projectRepository.findById(project.getId())).thenReturn(Optional.of(project));
+        return project;
+    }
+
+    private static GithubPushEvent push(List<String> added, List<String> modified, List<String> removed) {
+        return new GithubPushEvent("refs/heads/main", "abc123", false, null,
+                List.of(new GithubPushEvent.Commit("abc123", added, modified, removed)));
+    }
+}
@@ -0,0 +1,82 @@
+package com.ai.deepcode.service;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Token counting throughput over this repository's Java sources.
+ *
+ * Run after test-compile:
+ *   java -cp "target/test-classes:target/classes:$(mvn -q dependency:build-classpath -Dmdep.outputFile=/dev/stdout)" \
+ *        com.ai.deepcode.service.TokenCounterBenchmark
+ *
+ * Pass -Dvocab=/path/to/vocab.txt to measure a real WordPiece vocabulary;
+ * otherwise a synthetic one of single characters plus common code words is used.
+ * Throughput is ops/s over the whole corpus; multiply by corpusChars for chars/s.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TokenCounterBenchmark {
+
+    private String corpus;
+    private TokenCounter wordPiece;
+    private TokenCounter heuristic;
+
+    @Setup
+    public void setup() throws IOException {
+        StringBuilder text = new StringBuilder();
+        try (Stream<Path> files = Files.walk(Path.of("src/main/java"))) {
+            for (Path file : files.filter(f -> f.toString().endsWith(".java")).toList()) {
+                text.append(Files.readString(file));
+            }
+        }
+        corpus = text.toString();
+
+        String vocabPath = System.getProperty("vocab");
+        TokenCounter.Vocab vocab = vocabPath != null ? TokenCounter.Vocab.load(Path.of(vocabPath)) : syntheticVocab();
+        wordPiece = new TokenCounter(vocab, true, 512);
+        heuristic = new TokenCounter("", true, 512);
+        System.out.printf("%ncorpusChars=%d tokens=%d%n", corpus.length(), wordPiece.count(corpus));
+    }
+
+    private static TokenCounter.Vocab syntheticVocab() {
+        TokenCounter.Vocab vocab = TokenCounter.Vocab.of("[UNK]");
+        for (char c = '!'; c <= '~'; c++) {
+            vocab.add(String.valueOf(c));
+            vocab.add("##" + c);
+        }
+        for (String word : new String[]{"public", "private", "static", "final", "class", "return", "string",
+                "int", "long", "void", "new", "this", "if", "else", "for", "while", "null", "true", "false",
+                "import", "package", "list", "map", "get", "set", "##s", "##ed", "##ing", "##er", "##ment",
+                "##ion", "##able", "##service", "##repository", "##id", "##name", "##path", "##file"}) {
+            vocab.add(word);
+        }
+        return vocab;
+    }
+
+    @Benchmark
+    public int wordPiece() {
+        return wordPiece.count(corpus);
+    }
+
+    @Benchmark
+    public int heuristic() {
+        return heuristic.count(corpus);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(TokenCounterBenchmark.class.getSimpleName()).build()).run();
+    }
+}
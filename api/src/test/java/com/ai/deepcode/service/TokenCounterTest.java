@@ -0,0 +1,44 @@
+package com.ai.deepcode.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TokenCounterTest {
+
+    private final TokenCounter counter = new TokenCounter(
+            TokenCounter.Vocab.of("[UNK]", "public", "class", "get", "##name", "##s", "x", "=", "(", ")", "{", "}", ";"),
+            true, 20);
+
+    @Test
+    void testCount_WordPieceWithPunctuationAndUnknowns() {
+        assertEquals(2, counter.count("public class"));
+        assertEquals(2, counter.count("GetName"));          // get ##name, lowercased
+        assertEquals(3, counter.count("getNames"));         // get ##name ##s
+        assertEquals(1, counter.count("zebra"));            // [UNK]
+        assertEquals(6, counter.count("x = get();"));       // x = get ( ) ;
+    }
+
+    @Test
+    void testCount_IsAdditiveAcrossWhitespace() {
+        String text = "public class x {\n  getNames();\n}\n";
+        int newline = text.indexOf('\n') + 1;
+        assertEquals(counter.count(text), counter.count(text, 0, newline) + counter.count(text, newline, text.length()));
+    }
+
+    @Test
+    void testChunkFileContent_SplitsChunksOverTheModelLimit() {
+        ChunkingService chunkingService = new ChunkingService(List.of(new CharacterChunker()), counter, "syntax");
+        String content = "get ".repeat(80);
+
+        List<ChunkingService.ChunkResult> chunks = chunkingService.chunkFileContent("notes.txt", content, 1000, 0);
+
+        assertTrue(chunks.size() > 1);
+        for (ChunkingService.ChunkResult chunk : chunks) {
+            assertTrue(chunk.tokenCount() <= counter.maxContentTokens(), chunk.content());
+            assertEquals(counter.count(chunk.content()), chunk.tokenCount());
+        }
+    }
+}
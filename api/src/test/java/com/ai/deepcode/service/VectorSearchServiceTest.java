@@ -0,0 +1,74 @@
+package com.ai.deepcode.service;
+
+import com.ai.deepcode.dto.ChunkHitDto;
+import com.ai.deepcode.repository.ChunkRepository;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+public class VectorSearchServiceTest {
+
+    @Test
+    void testLexicalQuery_KeepsOnlyIdentifiersWhenPresent() {
+        assertEquals("findbygithubownerandgithubrepoandgithubbranch",
+                VectorSearchService.lexicalQuery("where is `findByGithubOwnerAndGithubRepoAndGithubBranch` used?"));
+        assertEquals("max_chunks | utf8",
+                VectorSearchService.lexicalQuery("what does max_chunks mean for utf8 input"));
+        assertEquals("indexing", VectorSearchService.lexicalQuery("how does `indexing` work"));
+    }
+
+    @Test
+    void testLexicalQuery_FallsBackToContentWords() {
+        assertEquals("authentication | token | refreshed",
+                VectorSearchService.lexicalQuery("How is the authentication token refreshed?"));
+        assertNull(VectorSearchService.lexicalQuery("how does it do that?"));
+        assertNull(VectorSearchService.lexicalQuery("__ ?"));
+    }
+
+    @Test
+    void testMergeTopK_KeepsBestScoresAcrossProjects() {
+        List<ChunkHitDto> merged = VectorSearchService.mergeTopK(List.of(
+                List.of(hit("a", 0.9), hit("b", 0.4)),
+                List.of(hit("c", 0.7), hit("d", 0.6), hit("e", 0.1))), 3);
+        assertEquals(List.of("a", "c", "d"), merged.stream().map(ChunkHitDto::filePath).toList());
+    }
+
+    @Test
+    void testSearchAcrossProjects_FlagsProjectsPastTheDeadlineAsPartial() {
+        UUID fast = UUID.randomUUID();
+        UUID slow = UUID.randomUUID();
+        ChunkRepository chunkRepository = mock(ChunkRepository.class);
+        EmbeddingService embeddingService = mock(EmbeddingService.class);
+        when(embeddingService.generateEmbedding(any(), any())).thenReturn(new float[768]);
+        when(chunkRepository.findSimilarChunks(eq(fast), any(), anyInt(), any(), any(), anyLong()))
+                .thenReturn(List.of(hit("fast.java", 0.5)));
+        when(chunkRepository.findSimilarChunks(eq(slow), any(), anyInt(), any(), any(), anyLong())).thenAnswer(invocation -> {
+            Thread.sleep(5_000);
+            return List.of(hit("slow.java", 0.9));
+        });
+
+        VectorSearchService service = new VectorSearchService(chunkRepository, embeddingService, false, 2, 200);
+        try {
+            VectorSearchService.MultiProjectResults results = service.searchAcrossProjects(List.of(fast, slow),
+                    "how is the token refreshed", 5, null, null);
+            assertTrue(results.partial());
+            assertEquals(List.of(slow), results.missingProjects());
+            assertEquals(List.of("fast.java"), results.results().stream()
+                    .map(VectorSearchService.SearchResult::filePath).toList());
+            // Each statement is bounded by what is left of the deadline
+            verify(chunkRepository).findSimilarChunks(eq(slow), any(), anyInt(), any(), any(),
+                    longThat(ms -> ms > 0 && ms <= 200));
+        } finally {
+            service.shutdown();
+        }
+    }
+
+    private static ChunkHitDto hit(String path, double score) {
+        return new ChunkHitDto(UUID.randomUUID(), UUID.randomUUID(), path, 0, "", null, null, score);
+    }
+}
@@ -0,0 +1,223 @@
+package com.ai.deepcode.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class WorkspaceStoreTest {
+
+    @TempDir
+    Path dir;
+
+    private WorkspaceStore open(long segmentMaxBytes, long compactMinDeadBytes) {
+        return new WorkspaceStore(dir.toString(), segmentMaxBytes, compactMinDeadBytes, "deflate", 1, 1 << 20);
+    }
+
+    @Test
+    void testStore_SurvivesReopenAndKeepsLatestVersion() {
+        WorkspaceStore store = open(1 << 20, 1 << 20);
+        store.storeFile("src/A.java", "class A {}".getBytes(StandardCharsets.UTF_8));
+        store.storeFile("src/B.java", "class B {}".getBytes(StandardCharsets.UTF_8));
+        store.storeFile("src/A.java", "class A { int x; }".getBytes(StandardCharsets.UTF_8));
+        store.close();
+
+        WorkspaceStore reopened = open(1 << 20, 1 << 20);
+        assertEquals(2, reopened.getFileCount());
+        assertEquals("class A { int x; }", reopened.getFileAsString("src/A.java"));
+        assertArrayEquals("class B {}".getBytes(StandardCharsets.UTF_8), reopened.getFile("src/B.java"));
+        reopened.close();
+    }
+
+    @Test
+    void testStore_CompactsOverwrittenRecords() throws Exception {
+        // Small segments and a zero threshold force rollover and compaction
+        WorkspaceStore store = open(4096, 0);
+        byte[] payload = new byte[1000];
+        for (int i = 0; i < 20; i++) {
+            payload[0] = (byte) i;
+            store.storeFile("hot.txt", payload);
+        }
+        store.storeFile("cold.txt", "cold".getBytes(StandardCharsets.UTF_8));
+        store.awaitCompaction();
+
+        assertEquals(19, store.getFile("hot.txt")[0]);
+        assertEquals("cold", store.getFileAsString("cold.txt"));
+        long onDisk;
+        try (var files = Files.list(dir)) {
+            onDisk = files.mapToLong(p -> p.toFile().length()).sum();
+        }
+        assertTrue(onDisk < 3 * 1100, "Dead records should have been compacted away, found " + onDisk + " bytes");
+        store.close();
+    }
+
+    @Test
+    void testStore_KeepsWritesMadeWhileCompactionRuns() throws Exception {
+        WorkspaceStore store = open(4096, 0);
+        byte[] payload = new byte[700];
+        for (int i = 0; i < 200; i++) {
+            payload[0] = (byte) i;
+            store.storeFile("hot.txt", payload);
+            store.storeFile("file" + (i % 7) + ".txt", ("v" + i).getBytes(StandardCharsets.UTF_8));
+            if (i % 5 == 0) {
+                store.removeFile("file" + ((i + 3) % 7) + ".txt");
+            }
+            assertEquals((byte) i, store.getFile("hot.txt")[0]);
+        }
+        store.awaitCompaction();
+        Map<String, String> expected = new HashMap<>();
+        for (String path : store.getAllPaths()) {
+            if (!path.equals("hot.txt")) {
+                expected.put(path, store.getFileAsString(path));
+            }
+        }
+        assertEquals((byte) 199, store.getFile("hot.txt")[0]);
+        assertTrue(store.stats().deadBytes() < 4096, "Dead records should have been compacted: " + store.stats());
+        store.close();
+
+        // Replaying the compacted segments gives the same files
+        WorkspaceStore reopened = open(4096, 0);
+        assertEquals(expected.size() + 1, reopened.getFileCount());
+        assertEquals((byte) 199, reopened.getFile("hot.txt")[0]);
+        expected.forEach((path, content) -> assertEquals(content, reopened.getFileAsString(path)));
+        reopened.close();
+    }
+
+    @Test
+    void testStore_TruncatesTornTailOnRecovery() throws Exception {
+        WorkspaceStore store = open(1 << 20, 1 << 20);
+        store.storeFile("ok.txt", "fine".getBytes(StandardCharsets.UTF_8));
+        store.close();
+
+        Path segment;
+        try (var files = Files.list(dir)) {
+            segment = files.findFirst().orElseThrow();
+        }
+        Files.write(segment, new byte[] { 0x57, 0x53, 0x53 }, StandardOpenOption.APPEND);
+
+        WorkspaceStore reopened = open(1 << 20, 1 << 20);
+        assertEquals("fine", reopened.getFileAsString("ok.txt"));
+        reopened.storeFile("next.txt", "after".getBytes(StandardCharsets.UTF_8));
+        assertEquals("after", reopened.getFileAsString("next.txt"));
+        reopened.close();
+    }
+
+    @Test
+    void testStreamingStore_DiscardsOversizedPart() throws Exception {
+        WorkspaceStore store = open(1 << 20, 1 << 20);
+        store.storeFile("a.txt", new ByteArrayInputStream("first".getBytes(StandardCharsets.UTF_8)), 100);
+
+        assertThrows(IllegalArgumentException.class,
+                () -> store.storeFile("big.txt", new ByteArrayInputStream(new byte[500]), 100));
+        store.storeFile("b.txt", new ByteArrayInputStream("second".getBytes(StandardCharsets.UTF_8)), 100);
+        store.close();
+
+        WorkspaceStore reopened = open(1 << 20, 1 << 20);
+        assertFalse(reopened.hasFile("big.txt"));
+        assertEquals("first", reopened.getFileAsString("a.txt"));
+        assertEquals("second", reopened.getFileAsString("b.txt"));
+        reopened.close();
+    }
+
+    @Test
+    void testStreamingStore_FillsTheTailAndMovesARecordThatOutgrowsIt() throws Exception {
+        WorkspaceStore store = open(8192, 1 << 20);
+        Random random = new Random(42);
+        byte[][] small = new byte[5][500];
+        for (int i = 0; i < small.length; i++) {
+            random.nextBytes(small[i]);
+            // A generous per-file cap must not reserve a segment per file
+            store.storeFile("small" + i + ".bin", new ByteArrayInputStream(small[i]), 1 << 20);
+        }
+        assertEquals(1, segmentCount());
+
+        // Incompressible and larger than the tail's remaining room
+        byte[] large = new byte[6000];
+        random.nextBytes(large);
+        assertEquals(large.length, store.storeFile("large.bin", new ByteArrayInputStream(large), 1 << 20));
+        assertEquals(2, segmentCount());
+        assertArrayEquals(large, store.getFile("large.bin"));
+        store.close();
+
+        WorkspaceStore reopened = open(8192, 1 << 20);
+        assertEquals(6, reopened.getFileCount());
+        assertArrayEquals(large, reopened.getFile("large.bin"));
+        for (int i = 0; i < small.length; i++) {
+            assertArrayEquals(small[i], reopened.getFile("small" + i + ".bin"));
+        }
+        reopened.close();
+    }
+
+    @Test
+    void testStore_CompressesAndServesRepeatReadsFromCache() throws Exception {
+        WorkspaceStore store = open(1 << 20, 1 << 20);
+        String source = "public class Foo { int bar() { return 42; } }\n".repeat(200);
+        store.storeFile("Foo.java", source.getBytes(StandardCharsets.UTF_8));
+        store.storeFile("Streamed.java", new ByteArrayInputStream(source.getBytes(StandardCharsets.UTF_8)), 1 << 20);
+
+        assertEquals(source, store.getFileAsString("Foo.java"));
+        assertEquals(source, store.getFileAsString("Foo.java"));
+        assertArrayEquals(source.getBytes(StandardCharsets.UTF_8), store.getFile("Streamed.java"));
+
+        WorkspaceStore.Stats stats = store.stats();
+        assertTrue(stats.compressionRatio() > 4, "Repetitive source should compress well: " + stats);
+        assertEquals(1, stats.cacheHits());
+        assertEquals(source.length(), stats.residentBytes());
+        store.close();
+    }
+
+    @Test
+    void testOpenFile_StreamsContentAndOutlivesCompaction() throws Exception {
+        WorkspaceStore store = open(8192, 0);
+        byte[] source = "public class Foo { int bar() { return 42; } }\n".repeat(100).getBytes(StandardCharsets.UTF_8);
+        store.storeFile("Foo.java", source);
+        store.storeFile("tiny.txt", "x".getBytes(StandardCharsets.UTF_8));
+
+        WorkspaceStore.Content content = store.openFile("Foo.java");
+        // Overwrites force compaction, which moves the open record
+        for (int i = 0; i < 10; i++) {
+            store.storeFile("churn.bin", new byte[2000]);
+        }
+        try (var in = content.stream()) {
+            assertEquals(source.length, content.length());
+            assertArrayEquals(source, in.readAllBytes());
+        }
+        try (var in = store.openFile("tiny.txt").stream()) {
+            assertArrayEquals("x".getBytes(StandardCharsets.UTF_8), in.readAllBytes());
+        }
+        assertNull(store.openFile("missing.txt"));
+        store.close();
+    }
+
+    @Test
+    void testRemoveByPrefix_TombstonesSurviveReopen() {
+        WorkspaceStore store = open(1 << 20, 1 << 20);
+        store.storeFile("p1/a.txt", "a".getBytes(StandardCharsets.UTF_8));
+        store.storeFile("p1/b.txt", "b".getBytes(StandardCharsets.UTF_8));
+        store.storeFile("p2/a.txt", "other".getBytes(StandardCharsets.UTF_8));
+
+        assertEquals(2, store.removeByPrefix("p1/"));
+        store.close();
+
+        WorkspaceStore reopened = open(1 << 20, 1 << 20);
+        assertEquals(1, reopened.getFileCount());
+        assertFalse(reopened.hasFile("p1/a.txt"));
+        assertEquals("other", reopened.getFileAsString("p2/a.txt"));
+        reopened.close();
+    }
+
+    private long segmentCount() throws Exception {
+        try (var files = Files.list(dir)) {
+            return files.filter(p -> p.toFile().length() > 0).count();
+        }
+    }
+}
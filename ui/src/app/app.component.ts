@@ -18,6 +18,7 @@ import { IndexingService, IndexRequest } from './services/indexing.service';
 import { RagChatService } from './services/rag-chat.service';
 import { GithubImportWizardComponent } from './components/github-import-wizard.component';
 import { GithubImportResponse } from './services/github-import.service';
+import { ProjectTreeService } from './services/project-tree.service';
 
 function uid(prefix = 'id') {
   return `${prefix}_${Math.random().toString(16).slice(2)}_${Date.now()}`;
@@ -280,6 +281,9 @@ export class AppComponent implements OnInit {
   // ✅ selection triggers preview (local or github based on node metadata)
   onSelectFile(node: FileNode) {
     this.selectedFile.set(node);
+    if (node.type === 'folder' && node.expanded && node.lazyProjectId && !node.children) {
+      this.loadLazyChildren(node);
+    }
     if (node.type !== 'file') return;
 
     // 1) local device file
@@ -399,7 +403,12 @@ export class AppComponent implements OnInit {
     if (!textFiles.length) return;
 
     this.workspace.uploadDeviceFiles(textFiles).subscribe({
-      next: (res) => console.log(`Uploaded ${res.uploaded} files to backend`),
+      next: (res) => {
+        console.log(`Uploaded ${res.uploaded} files to backend`);
+        if (res.failed) {
+          console.warn(`${res.failed} files failed to upload:`, res.files.filter(f => f.error));
+        }
+      },
       error: (err) => console.warn('Device file upload failed (backend may be offline):', err)
     });
   }
@@ -446,6 +455,7 @@ export class AppComponent implements OnInit {
   onGithubImported(res: GithubImportResponse) {
     console.log('[AppComponent] GitHub Import Success:', res);
     const { project, tree, indexingStarted } = res;
+    const lazy = tree == null;
 
     const roots = [...this.fileTree()];
 
@@ -456,7 +466,8 @@ export class AppComponent implements OnInit {
       type: 'folder',
       path: `from-github/${project.githubOwner}/${project.githubRepo}`,
       expanded: true,
-      children: tree ?? [],
+      children: lazy ? undefined : tree,
+      lazyProjectId: lazy ? project.id : undefined,
       source: 'github',
       githubMeta: {
         owner: project.githubOwner,
@@ -468,9 +479,10 @@ export class AppComponent implements OnInit {
 
     roots.push(ghRoot);
     this.fileTree.set(roots);
+    if (lazy) this.loadLazyChildren(ghRoot);
 
     // ✅ Track GitHub project in ProjectStore (with file tree)
-    const fileCount = this.countFiles(tree ?? []);
+    const fileCount = lazy ? project.fileCount : this.countFiles(tree ?? []);
     this.projectStore.addOrUpdateProject({
       id: project.id,
       source: 'github',
@@ -479,7 +491,8 @@ export class AppComponent implements OnInit {
       repo: project.githubRepo,
       branch: project.githubBranch,
       fileCount,
-      lastUpdated: Date.now()
+      lastUpdated: Date.now(),
+      lazyTree: lazy
     }, tree ?? []);
 
     this.closeGithubWizard(); // Close wizard and reset OAuth state
@@ -511,7 +524,7 @@ export class AppComponent implements OnInit {
 
         const { project, tree } = res;
 
-        if (!project || !Array.isArray(tree)) {
+        if (!project || (tree != null && !Array.isArray(tree))) {
           console.error('[GithubRefresh] Invalid response structure');
           return;
         }
@@ -519,15 +532,18 @@ export class AppComponent implements OnInit {
         const roots = [...this.fileTree()];
         const idx = roots.findIndex(r => r.id === node.id);
         if (idx >= 0) {
+          const lazy = tree == null;
           roots[idx] = {
             ...roots[idx],
             expanded: true,
-            children: tree ?? []
+            children: lazy ? undefined : tree,
+            lazyProjectId: lazy ? project.id : undefined
           };
           this.fileTree.set(roots);
+          if (lazy) this.loadLazyChildren(roots[idx]);
 
           // ✅ Update project in ProjectStore (with file tree)
-          const fileCount = this.countFiles(tree ?? []);
+          const fileCount = lazy ? project.fileCount : this.countFiles(tree ?? []);
           this.projectStore.addOrUpdateProject({
             id: project.id,
             source: 'github',
@@ -537,7 +553,8 @@ export class AppComponent implements OnInit {
             branch,
             subPath,
             fileCount,
-            lastUpdated: Date.now()
+            lastUpdated: Date.now(),
+            lazyTree: lazy
           }, tree ?? []);
 
           console.log('[GithubRefresh] SUCCESS files=' + fileCount);
@@ -549,6 +566,27 @@ export class AppComponent implements OnInit {
     });
   }
 
+  // ✅ Large imports come without an inline tree; fetch a folder's level on first expand.
+  // The project root is listed as '' since its node path is only a display path.
+  private loadLazyChildren(folder: FileNode) {
+    const projectId = folder.lazyProjectId!;
+    const dir = folder.id === projectId ? '' : folder.path;
+    this.projectTree.loadLevel(projectId, dir).subscribe({
+      next: (children) => {
+        const attach = (nodes: FileNode[]): FileNode[] =>
+          nodes.map(n => {
+            if (n.id === folder.id) return { ...n, expanded: true, children };
+            if (n.children?.length) return { ...n, children: attach(n.children) };
+            return n;
+          });
+        this.fileTree.set(attach(this.fileTree()));
+      },
+      error: (err) => {
+        console.error('[LazyTree] Failed to load', dir || '/', err);
+      }
+    });
+  }
+
   // ---------- Indexing & RAG ----------
   // View state: 'chat' | 'rag'
   activeView = signal<'chat' | 'rag'>('chat');
@@ -575,7 +613,8 @@ export class AppComponent implements OnInit {
     private themeService: ThemeService,
     private projectStore: ProjectStore,
     private indexingService: IndexingService,
-    private ragChat: RagChatService
+    private ragChat: RagChatService,
+    private projectTree: ProjectTreeService
   ) {
     // Track route changes to show/hide chat UI
     this.router.events.pipe(
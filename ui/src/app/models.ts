@@ -19,6 +19,7 @@ export interface FileNode {
   selected?: boolean;        // selection state for context mode
   source?: ImportSource;
   githubMeta?: GithubMeta;
+  lazyProjectId?: string;    // folder whose children are fetched from /api/projects/{id}/tree on expand
 }
 
 export type ChatRole = 'user' | 'assistant' | 'system';
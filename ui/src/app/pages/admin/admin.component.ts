@@ -6,6 +6,7 @@ import { OllamaService, OllamaModel } from '../../services/ollama.service';
 import { ProjectStore, ProjectSummary } from '../../services/project-store.service';
 import { ThemeService } from '../../services/theme.service';
 import { IndexingService, IndexStatusResponse, ContextFile } from '../../services/indexing.service';
+import { ProjectTreeService } from '../../services/project-tree.service';
 import { FileNode } from '../../models';
 
 interface ProjectFile {
@@ -64,7 +65,8 @@ export class AdminComponent implements OnInit {
     private ollamaService: OllamaService,
     private projectStore: ProjectStore,
     public themeService: ThemeService,
-    private indexingService: IndexingService
+    private indexingService: IndexingService,
+    private projectTree: ProjectTreeService
   ) { }
 
   get theme() { return this.themeService.theme; }
@@ -193,6 +195,25 @@ export class AdminComponent implements OnInit {
 
     // Get file tree from project store
     const projectData = this.projectStore.getProjectData(project.id);
+
+    // Large imports keep only the levels the user opened; list every file from the server
+    if (projectData?.summary.lazyTree) {
+      const summary = projectData.summary;
+      this.projectTree.listAllFiles(project.id).subscribe({
+        next: (nodes) => {
+          const files: ContextFile[] = [];
+          // Nodes carry full paths, so use them as names under an empty prefix
+          this.flattenFileTreeToContextFiles(nodes.map(n => ({ ...n, name: n.path })), '', summary, files);
+          this.startIndexing(project, files);
+        },
+        error: (err) => {
+          console.error('[AdminComponent] Failed to list project files:', err);
+          this.indexingError.set('Could not list the project files. Please re-import the project.');
+        }
+      });
+      return;
+    }
+
     if (!projectData || !projectData.tree || projectData.tree.length === 0) {
       this.indexingError.set('Project data not found in store. Please re-import the project.');
       return;
@@ -201,7 +222,10 @@ export class AdminComponent implements OnInit {
     // Flatten the file tree to get full ContextFile objects with github metadata
     const files: ContextFile[] = [];
     this.flattenFileTreeToContextFiles(projectData.tree, '', projectData.summary, files);
+    this.startIndexing(project, files);
+  }
 
+  private startIndexing(project: Project, files: ContextFile[]): void {
     if (files.length === 0) {
       this.indexingError.set('No files found to index');
       return;
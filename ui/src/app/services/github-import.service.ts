@@ -54,7 +54,7 @@ export interface GithubImportResponse {
     githubBranch: string;
     fileCount: number;
   };
-  tree: FileNode[];
+  tree: FileNode[] | null;   // null when the repo is too large; load it with ProjectTreeService
   indexingStarted: boolean;
 }
 
@@ -11,6 +11,7 @@ export interface ProjectSummary {
     subPath?: string;
     fileCount: number;
     lastUpdated: number;
+    lazyTree?: boolean;        // tree is loaded level by level; the stored one is partial
 }
 
 export interface ProjectData {
@@ -0,0 +1,76 @@
+import { Injectable } from '@angular/core';
+import { HttpClient, HttpParams } from '@angular/common/http';
+import { EMPTY, Observable, from } from 'rxjs';
+import { expand, map, mergeMap, reduce } from 'rxjs/operators';
+import { FileNode } from '../models';
+import { environment } from '../../environments/environment';
+
+/**
+ * One page of one directory level, as served by GET /api/projects/{id}/tree.
+ * Folder nodes come without children; they are requested with the folder's path.
+ */
+export interface FileTreePage {
+  projectId: string;
+  revision: string;
+  path: string;
+  nodes: FileNode[];
+  offset: number;
+  total: number;
+}
+
+const PAGE_SIZE = 500;
+const MAX_PARALLEL_LEVELS = 4;
+
+/**
+ * Lazy file tree of imported projects too large to be returned inline
+ * (tree.inline-max-files on the server).
+ */
+@Injectable({ providedIn: 'root' })
+export class ProjectTreeService {
+  private base = `${environment.apiBaseUrl}/api/projects`;
+
+  constructor(private http: HttpClient) { }
+
+  /**
+   * One page of the children of a directory ('' for the project root).
+   */
+  listLevel(projectId: string, path: string, offset = 0, limit = PAGE_SIZE): Observable<FileTreePage> {
+    const params = new HttpParams()
+      .set('path', path)
+      .set('offset', offset)
+      .set('limit', limit);
+    return this.http.get<FileTreePage>(`${this.base}/${projectId}/tree`, { params, withCredentials: true });
+  }
+
+  /**
+   * All children of a directory, fetched page by page. Folders are marked
+   * lazy so the tree loads them on first expand.
+   */
+  loadLevel(projectId: string, path: string): Observable<FileNode[]> {
+    return this.listLevel(projectId, path).pipe(
+      expand(page => page.offset + page.nodes.length < page.total
+        ? this.listLevel(projectId, path, page.offset + page.nodes.length)
+        : EMPTY),
+      reduce((nodes, page) => nodes.concat(page.nodes.map(n => this.toNode(projectId, n))), [] as FileNode[])
+    );
+  }
+
+  /**
+   * Every file of the project, walking the tree level by level (for indexing a lazy project).
+   */
+  listAllFiles(projectId: string): Observable<FileNode[]> {
+    return this.loadLevel(projectId, '').pipe(
+      expand(nodes => from(nodes.filter(n => n.type === 'folder')).pipe(
+        mergeMap(folder => this.loadLevel(projectId, folder.path), MAX_PARALLEL_LEVELS)
+      )),
+      map(nodes => nodes.filter(n => n.type === 'file')),
+      reduce((files, level) => files.concat(level), [] as FileNode[])
+    );
+  }
+
+  private toNode(projectId: string, n: FileNode): FileNode {
+    return n.type === 'folder'
+      ? { ...n, children: undefined, expanded: false, lazyProjectId: projectId }
+      : { ...n, children: undefined };
+  }
+}
@@ -3,8 +3,17 @@ import { HttpClient } from '@angular/common/http';
 import { Observable } from 'rxjs';
 import { environment } from '../../environments/environment';
 
+export interface UploadFileResult {
+  path: string;
+  bytes: number;
+  error: string | null;
+}
+
 export interface UploadResult {
   uploaded: number;
+  failed: number;
+  bytes: number;
+  files: UploadFileResult[];
 }
 
 @Injectable({ providedIn: 'root' })
@@ -16,9 +25,10 @@ export class WorkspaceService {
   uploadDeviceFiles(filesWithPath: { path: string; file: File }[]): Observable<UploadResult> {
     const formData = new FormData();
 
+    // The server streams parts in order, so each path must precede its file
     for (const item of filesWithPath) {
-      formData.append('files', item.file);
       formData.append('paths', item.path);
+      formData.append('files', item.file, item.path);
     }
 
     return this.http.post<UploadResult>(